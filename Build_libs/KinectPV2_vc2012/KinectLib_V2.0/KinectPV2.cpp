@@ -28,6 +28,14 @@ static const long long kThreadSleepDuration = 5L;
 uint32_t  bodyColors[] = { 0x0000ff, 0x00ff00, 0xff0000, 0xffff00, 0xff00ff, 0x00ffff, 0x00ffff, 0xffffff };
 
 namespace KinectPV2{
+	//64 bit TrackingId of a tracked body in the bits of the first two floats after its joints
+	static void putTrackingId(float * pSkeleton, IBody * pBody)
+	{
+		UINT64 trackingId = 0;
+		pBody->get_TrackingId(&trackingId);
+		memcpy(pSkeleton + JointType_Count * 9, &trackingId, sizeof(UINT64));
+	}
+
 	//////////////////////////////////////////////////////////////////////////////////////////////
 	Device::Device()
 	{
@@ -35,7 +43,6 @@ namespace KinectPV2{
 
 		//COLOR
 		pixelsData = (uint8_t  *)malloc(frame_size_color * 4 * sizeof(uint8_t));
-		pixelsDataTemp = (uint8_t  *)malloc(frame_size_color * 4 * sizeof(uint8_t));
 		colorFrameData = (uint32_t *)malloc(frame_size_color * sizeof(uint32_t));
 
 		//COLOR
@@ -126,6 +133,14 @@ namespace KinectPV2{
 		skeletonMapType = 0;
 
 		numberUsers = 0;
+
+		for (int i = 0; i < STREAM_COUNT; i++){
+			for (int j = 0; j < 3; j++)
+				streamExchanges[i].buffers[j] = NULL;
+			streamExchanges[i].state = 2;
+			streamExchanges[i].writeIndex = 0;
+			streamExchanges[i].sequence = 0;
+		}
 	}
 
 	bool Device::init()
@@ -551,7 +566,6 @@ namespace KinectPV2{
 		SafeRelease(kCoordinateMapper);
 
 		SafeDeletePointer(pixelsData);
-		SafeDeletePointer(pixelsDataTemp);
 		SafeDeletePointer(depth_16_Data);
 		SafeDeletePointer(depth_256_Data);
 		SafeDeletePointer(infraredData);
@@ -673,13 +687,23 @@ namespace KinectPV2{
 
 					if (SUCCEEDED(hr))
 					{
-						//ColorImageFormat_Bgra
-						pBufferColor = pixelsDataTemp;// new uint32_t[frame_size_color * 4];
-						hr = pColorFrame->CopyConvertedFrameDataToArray(frame_size_color * 4 * sizeof(uint8_t), reinterpret_cast<BYTE*>(pBufferColor), ColorImageFormat_Bgra);
-
+						//ColorImageFormat_Bgra, straight into the java buffer unless the color channels read it back
+						int colorSize = frame_size_color * 4 * sizeof(uint8_t);
+						uint8_t * pJavaColor = DeviceOptions::isEnableColorChannelsFrame() ? NULL : lockStream(STREAM_COLOR);
+						pBufferColor = pJavaColor != NULL ? pJavaColor : pixelsData;
+						hr = pColorFrame->CopyConvertedFrameDataToArray(colorSize, reinterpret_cast<BYTE*>(pBufferColor), ColorImageFormat_Bgra);
+
+						if (pJavaColor != NULL) {
+							if (SUCCEEDED(hr))
+								commitStream(STREAM_COLOR, colorSize, nTime);
+							else
+								unlockStream(STREAM_COLOR);
+						}
+						else if (SUCCEEDED(hr)) {
+							publishStream(STREAM_COLOR, nTime);
+						}
 
 						if (SUCCEEDED(hr)) {
-							memcpy(pixelsData, pBufferColor, frame_size_color * 4 * sizeof(uint8_t));
 							colorFrameReady = true;
 						}
 
@@ -711,6 +735,8 @@ namespace KinectPV2{
 										pixelBuffer++;
 										++indexColor;
 									}
+									publishStream(STREAM_POINT_CLOUD_COLOR, nTime);
+									publishStream(STREAM_COLOR_CHANNEL, nTime);
 								}
 							}
 						}
@@ -793,6 +819,7 @@ namespace KinectPV2{
 							}
 
 							infraredFrameReady = true;
+							publishStream(STREAM_INFRARED, nTime);
 						}
 					}
 					SafeRelease(pFrameDescription);
@@ -894,6 +921,19 @@ namespace KinectPV2{
 							//mtx.unlock();
 							//memcpy(depthData, depthFrameDataTemp, frame_size_depth * sizeof(uint32_t));
 							depthFrameReady = true;
+							publishStream(STREAM_RAW_DEPTH, nTime);
+
+							//packed 16 bit depth straight from the SDK into the java buffer
+							uint8_t * pJavaDepth = lockStream(STREAM_RAW_DEPTH_16);
+							if (pJavaDepth != NULL) {
+								if (SUCCEEDED(pDepthFrame->CopyFrameDataToArray(frame_size_depth, reinterpret_cast<UINT16*>(pJavaDepth))))
+									commitStream(STREAM_RAW_DEPTH_16, frame_size_depth * sizeof(uint16_t), nTime);
+								else
+									unlockStream(STREAM_RAW_DEPTH_16);
+							}
+							publishStream(STREAM_RAW_DEPTH_256, nTime);
+							publishStream(STREAM_DEPTH, nTime);
+							publishStream(STREAM_DEPTH_256, nTime);
 						}
 						else{
 							this_thread::sleep_for(chrono::milliseconds(kThreadSleepDuration));
@@ -949,6 +989,10 @@ namespace KinectPV2{
 										++depthIndex;
 									}
 
+									publishStream(STREAM_POINT_CLOUD_DEPTH, nTime);
+									publishStream(STREAM_MAP_DEPTH_TO_COLOR, nTime);
+									publishStream(STREAM_POINT_CLOUD_DEPTH_IMAGE, nTime);
+
 									//cout << "min: " << min << " max" << max << std::endl;
 									//std::cout << cameraSpaceIndex << std::endl;
 
@@ -1045,6 +1089,7 @@ namespace KinectPV2{
 							}
 							//memcpy(depthData, depthFrameDataTemp, frame_size_depth * sizeof(uint32_t));
 							//longExposureReady = true;
+							publishStream(STREAM_INFRARED_LONG_EXPOSURE, nTime);
 						}
 					}
 					SafeRelease(pFrameDescription);
@@ -1083,12 +1128,14 @@ namespace KinectPV2{
 				if (SUCCEEDED(hr))
 				{
 
+					INT64 nTime = 0;
 					IFrameDescription* pBodyIndexFrameDescription = NULL;
 					int nBodyIndexWidth = 0;
 					int nBodyIndexHeight = 0;
 					UINT nBodyIndexBufferSize = 0;
 					BYTE *pBodyIndexBuffer = NULL;
 
+					hr = pBodyIndexFrame->get_RelativeTime(&nTime);
 
 					if (SUCCEEDED(hr))
 					{
@@ -1208,6 +1255,10 @@ namespace KinectPV2{
 							}
 							numberUsers  = mUserCounter;
 
+							publishStream(STREAM_BODY_TRACK, nTime);
+							publishStream(STREAM_RAW_BODY_TRACK, nTime);
+							publishStream(STREAM_BODY_TRACK_IDS, nTime);
+
 							//std::cout << min <<" m, max "<< max << std::endl;
 							//memcpy(infraredData, inFraredFrameDataTemp, frame_size_depth * sizeof(uint32_t));
 							//	bodyIndexReady = true;
@@ -1250,6 +1301,7 @@ namespace KinectPV2{
 								}
 								//memcpy(infraredData, inFraredFrameDataTemp, frame_size_depth * sizeof(uint32_t));
 								//depthMaskReady = true;
+								publishStream(STREAM_DEPTH_MASK, nTime);
 
 							}
 							//	else{
@@ -1298,6 +1350,7 @@ namespace KinectPV2{
 
 				IBody* ppBodies[BODY_COUNT] = { 0 };
 				IBodyFrame* pBodyFrame = nullptr;
+				INT64 nBodyTime = 0;
 
 				HRESULT hr = E_FAIL;
 
@@ -1307,6 +1360,7 @@ namespace KinectPV2{
 					hr = kBodyFrameReader->AcquireLatestFrame(&pBodyFrame);
 					if (SUCCEEDED(hr))
 					{
+						pBodyFrame->get_RelativeTime(&nBodyTime);
 						hr = pBodyFrame->GetAndRefreshBodyData(BODY_COUNT, ppBodies);
 					}
 					else{
@@ -1517,6 +1571,8 @@ namespace KinectPV2{
 
 					}
 					faceDetectionReady = true;
+					publishStream(STREAM_FACE_COLOR, nBodyTime);
+					publishStream(STREAM_FACE_INFRARED, nBodyTime);
 				}
 
 
@@ -1547,6 +1603,7 @@ namespace KinectPV2{
 										if (SUCCEEDED(hr) && bTracked)
 										{
 											skeletonDataDepthMap[i*(JointType_Count + 1) * 9 + (JointType_Count + 1) * 9 - 1] = 1.0;
+											putTrackingId(skeletonDataDepthMap + i*(JointType_Count + 1) * 9, pBody);
 											Joint jointsTracked[JointType_Count];
 											HandState leftHandState = HandState_Unknown;
 											HandState rightHandState = HandState_Unknown;
@@ -1602,6 +1659,7 @@ namespace KinectPV2{
 									}
 								}
 								skeletonDepthReady = true;
+								publishStream(STREAM_SKELETON_DEPTH, nTime);
 							}
 
 							if (DeviceOptions::isEnableSkeletonColorMap()){
@@ -1615,6 +1673,7 @@ namespace KinectPV2{
 										if (SUCCEEDED(hr) && bTracked)
 										{
 											skeletonDataColorMap[i*(JointType_Count + 1) * 9 + (JointType_Count + 1) * 9 - 1] = 1.0;
+											putTrackingId(skeletonDataColorMap + i*(JointType_Count + 1) * 9, pBody);
 											Joint jointsTracked[JointType_Count];
 											HandState leftHandState = HandState_Unknown;
 											HandState rightHandState = HandState_Unknown;
@@ -1651,6 +1710,7 @@ namespace KinectPV2{
 									}
 								}
 								skeletonColorReady = true;
+								publishStream(STREAM_SKELETON_COLOR, nTime);
 							}
 
 							if (DeviceOptions::isEnableSkeleton3DMap()){
@@ -1664,6 +1724,7 @@ namespace KinectPV2{
 										if (SUCCEEDED(hr) && bTracked)
 										{
 											skeletonData3dMap[i*(JointType_Count + 1) * 9 + (JointType_Count + 1) * 9 - 1] = 1.0;
+											putTrackingId(skeletonData3dMap + i*(JointType_Count + 1) * 9, pBody);
 											Joint jointsTracked[JointType_Count];
 											HandState leftHandState = HandState_Unknown;
 											HandState rightHandState = HandState_Unknown;
@@ -1714,6 +1775,7 @@ namespace KinectPV2{
 									}
 								}
 								skeleton3dReady = true;
+								publishStream(STREAM_SKELETON_3D, nTime);
 							}
 						}
 					}
@@ -1746,6 +1808,7 @@ namespace KinectPV2{
 				// Body Frame
 				IBodyFrame * pBodyFrame = 0;
 				IBodyFrameReference * frameRef = nullptr;
+				INT64 nBodyTime = 0;
 				HRESULT hr = E_FAIL;
 
 				if (kBodyFrameReader != nullptr)
@@ -1760,6 +1823,7 @@ namespace KinectPV2{
 				if (SUCCEEDED(hr))
 				{
 					IBody* pBody[BODY_COUNT] = { 0 };
+					pBodyFrame->get_RelativeTime(&nBodyTime);
 					hr = pBodyFrame->GetAndRefreshBodyData(BODY_COUNT, pBody);
 					if (SUCCEEDED(hr))
 					{
@@ -1869,6 +1933,7 @@ namespace KinectPV2{
 					SafeRelease(pHDFaceFrame);
 				}
 				DeviceActivators::HDFaceDetectionReady(true);
+				publishStream(STREAM_HD_FACE, nBodyTime);
 			}
 		}
 	}
@@ -2107,5 +2172,169 @@ namespace KinectPV2{
 		return colorChannelsData;
 	}
 
+	//internal array of a stream and its size in bytes, NULL for the streams the SDK copies
+	//straight into the java buffers
+	void * Device::JNI_GetStreamData(int stream, int * size)
+	{
+		switch (stream){
+		case STREAM_COLOR:
+			*size = frame_size_color * 4;
+			return pixelsData;
+		case STREAM_DEPTH:
+			*size = frame_size_depth * 4;
+			return depth_16_Data;
+		case STREAM_DEPTH_256:
+			*size = frame_size_depth * 4;
+			return depth_256_Data;
+		case STREAM_RAW_DEPTH:
+			*size = frame_size_depth * 4;
+			return depthRaw_16_Data;
+		case STREAM_RAW_DEPTH_256:
+			*size = frame_size_depth * 4;
+			return depthRaw_256_Data;
+		case STREAM_DEPTH_MASK:
+			*size = frame_size_depth * 4;
+			return depthMaskData;
+		case STREAM_INFRARED:
+			*size = frame_size_depth * 4;
+			return infraredData;
+		case STREAM_INFRARED_LONG_EXPOSURE:
+			*size = frame_size_depth * 4;
+			return infraredLongExposureData;
+		case STREAM_BODY_TRACK:
+			*size = frame_size_depth * 4;
+			return bodyTrackData;
+		case STREAM_RAW_BODY_TRACK:
+			*size = frame_size_depth * 4;
+			return bodyTrackRaw;
+		case STREAM_BODY_TRACK_IDS:
+			*size = BODY_COUNT * 4;
+			return bodyTrackIds;
+		case STREAM_POINT_CLOUD_DEPTH_IMAGE:
+			*size = frame_size_depth * 4;
+			return pointCloudDepthImage;
+		case STREAM_SKELETON_3D:
+			*size = JOINTSIZE * 4;
+			return skeletonData3dMap;
+		case STREAM_SKELETON_DEPTH:
+			*size = JOINTSIZE * 4;
+			return skeletonDataDepthMap;
+		case STREAM_SKELETON_COLOR:
+			*size = JOINTSIZE * 4;
+			return skeletonDataColorMap;
+		case STREAM_FACE_COLOR:
+			*size = FACESIZE * 4;
+			return faceColorData;
+		case STREAM_FACE_INFRARED:
+			*size = FACESIZE * 4;
+			return faceInfraredData;
+		case STREAM_HD_FACE:
+			*size = HDFACEVERTEX * 4;
+			return hdFaceVertex;
+		case STREAM_POINT_CLOUD_DEPTH:
+			*size = frame_size_depth * 3 * 4;
+			return pointCloudPosData;
+		case STREAM_POINT_CLOUD_COLOR:
+			*size = frame_size_color * 3 * 4;
+			return pointCloudColorData;
+		case STREAM_COLOR_CHANNEL:
+			*size = frame_size_color * 3 * 4;
+			return colorChannelsData;
+		case STREAM_MAP_DEPTH_TO_COLOR:
+			*size = frame_size_depth * 2 * 4;
+			return mapDepthToColorData;
+		case STREAM_RAW_DEPTH_16:
+			*size = frame_size_depth * 2;
+			return NULL;
+		}
+		*size = 0;
+		return NULL;
+	}
+
+	bool Device::JNI_RegisterStreamExchange(int stream, void ** buffers, int64_t capacity)
+	{
+		int size = 0;
+		if (stream < 0 || stream >= STREAM_COUNT)
+			return false;
+
+		JNI_GetStreamData(stream, &size);
+		if (size == 0)
+			return false;
+
+		if (buffers != NULL && capacity < (int64_t)size + STREAM_TRAILER_SIZE)
+			return false;
+
+		StreamExchange & exchange = streamExchanges[stream];
+		std::lock_guard<std::mutex> lock(exchange.mutex);
+		for (int i = 0; i < 3; i++)
+			exchange.buffers[i] = buffers != NULL ? (uint8_t *)buffers[i] : NULL;
+
+		//same initial indices as the java FrameExchange, reader owns buffer 1
+		exchange.writeIndex = 0;
+		exchange.state = 2;
+		return true;
+	}
+
+	int Device::JNI_AcquireStreamFrame(int stream, int readIndex)
+	{
+		StreamExchange & exchange = streamExchanges[stream];
+		if ((exchange.state.load() & EXCHANGE_FRESH) == 0)
+			return readIndex;
+		return exchange.state.exchange(readIndex) & EXCHANGE_INDEX_MASK;
+	}
+
+	//performance counter in nanoseconds, scaled as java System.nanoTime on windows,
+	//steady_clock of the v120 toolset is the system clock and counts from 1970
+	int64_t Device::captureTime()
+	{
+		static LARGE_INTEGER frequency = { 0 };
+		if (frequency.QuadPart == 0)
+			QueryPerformanceFrequency(&frequency);
+		LARGE_INTEGER counter;
+		QueryPerformanceCounter(&counter);
+		return (int64_t)((double)counter.QuadPart / (double)frequency.QuadPart * 1000000000.0);
+	}
+
+	uint8_t * Device::lockStream(int stream)
+	{
+		StreamExchange & exchange = streamExchanges[stream];
+		exchange.mutex.lock();
+		uint8_t * buffer = exchange.buffers[exchange.writeIndex];
+		if (buffer == NULL)
+			exchange.mutex.unlock();
+		return buffer;
+	}
+
+	void Device::unlockStream(int stream)
+	{
+		streamExchanges[stream].mutex.unlock();
+	}
+
+	void Device::publishStream(int stream, INT64 relativeTime)
+	{
+		uint8_t * buffer = lockStream(stream);
+		if (buffer == NULL)
+			return;
+
+		int size = 0;
+		const void * pData = JNI_GetStreamData(stream, &size);
+		memcpy(buffer, pData, size);
+		commitStream(stream, size, relativeTime);
+	}
+
+	void Device::commitStream(int stream, int size, INT64 relativeTime)
+	{
+		StreamExchange & exchange = streamExchanges[stream];
+		uint8_t * buffer = exchange.buffers[exchange.writeIndex];
+
+		int64_t * trailer = (int64_t *)(buffer + size);
+		trailer[0] = ++exchange.sequence;
+		trailer[1] = captureTime();
+		trailer[2] = (int64_t)relativeTime;
+
+		exchange.writeIndex = exchange.state.exchange(exchange.writeIndex | EXCHANGE_FRESH) & EXCHANGE_INDEX_MASK;
+		exchange.mutex.unlock();
+	}
+
 
 }
\ No newline at end of file
@@ -41,6 +41,8 @@ along with KinectPV2.0 library for Processing.  If not, see
 
 #include <thread>
 #include <mutex>
+#include <atomic>
+#include <chrono>
 
 #include "ole2.h"
 
@@ -74,6 +76,52 @@ static const int HDFACEVERTEX = BODY_COUNT * 1347 * 2 + BODY_COUNT;
 //FACE DETECTION
 static const int FACESIZE = BODY_COUNT * (36);
 
+//FRAME STREAMS, must match the ids of KinectPV2.Stream
+enum FrameStream {
+	STREAM_COLOR = 0,
+	STREAM_DEPTH,
+	STREAM_DEPTH_256,
+	STREAM_RAW_DEPTH,
+	STREAM_RAW_DEPTH_256,
+	STREAM_DEPTH_MASK,
+	STREAM_INFRARED,
+	STREAM_INFRARED_LONG_EXPOSURE,
+	STREAM_BODY_TRACK,
+	STREAM_RAW_BODY_TRACK,
+	STREAM_BODY_TRACK_IDS,
+	STREAM_POINT_CLOUD_DEPTH_IMAGE,
+	STREAM_SKELETON_3D,
+	STREAM_SKELETON_DEPTH,
+	STREAM_SKELETON_COLOR,
+	STREAM_FACE_COLOR,
+	STREAM_FACE_INFRARED,
+	STREAM_HD_FACE,
+	STREAM_POINT_CLOUD_DEPTH,
+	STREAM_POINT_CLOUD_COLOR,
+	STREAM_COLOR_CHANNEL,
+	STREAM_MAP_DEPTH_TO_COLOR,
+	STREAM_RAW_DEPTH_16,
+	STREAM_COUNT
+};
+
+//sequence, capture time (performance counter ns, same origin as java System.nanoTime) and
+//sensor relative time written after the frame data of a registered buffer
+static const int STREAM_TRAILER_SIZE = 3 * sizeof(int64_t);
+
+//triple buffer state, index of the ready buffer | EXCHANGE_FRESH, must match KinectPV2.FrameExchange
+static const int EXCHANGE_INDEX_MASK = 3;
+static const int EXCHANGE_FRESH = 4;
+
+//java direct buffers of a FrameStream, written by the producer thread, swapped atomically with the reader,
+//the lock of each stream only orders its publishing with its registration, streams never share a lock
+struct StreamExchange {
+	uint8_t *		 buffers[3];
+	std::atomic<int> state;
+	int				 writeIndex;
+	int64_t			 sequence;
+	std::mutex		 mutex;
+};
+
 //////////////////////////////////////////////////////////////////////////////////////////////
 namespace KinectPV2{
 	class Device : public DeviceOptions, DeviceActivators
@@ -81,7 +129,6 @@ namespace KinectPV2{
 	private:
 		//color data
 		uint8_t *	  pixelsData;
-		uint8_t *	  pixelsDataTemp;
 		uint32_t *    colorFrameData;
 
 		float     *	  colorChannelsData;
@@ -143,6 +190,9 @@ namespace KinectPV2{
 		uint32_t *	 bodyTackDataUser_5;
 		uint32_t *	 bodyTackDataUser_6;
 
+		//java frame exchanges, one per FrameStream
+		StreamExchange streamExchanges[STREAM_COUNT];
+
 		int			appWidth;
 		int         appHeight;
 
@@ -263,6 +313,26 @@ namespace KinectPV2{
 
 		std::string						JNI_version() { return VERSION; }
 
+		//internal array of a FrameStream and its size in bytes, NULL if the SDK writes the java buffer
+		void *							JNI_GetStreamData(int stream, int * size);
+
+		//register the three java direct buffers that receive the frames of the stream, NULL to stop
+		bool							JNI_RegisterStreamExchange(int stream, void ** buffers, int64_t capacity);
+
+		//swap the reader buffer with the latest frame, returns the new reader index
+		int								JNI_AcquireStreamFrame(int stream, int readIndex);
+
+		//copy the latest frame of the stream into the write buffer and publish it
+		void							publishStream(int stream, INT64 relativeTime);
+
+		//lock the write buffer of the stream for the producer, NULL and unlocked if java has not registered it
+		uint8_t *						lockStream(int stream);
+		//release a locked write buffer without publishing it
+		void							unlockStream(int stream);
+		//write the trailer after size bytes of the locked write buffer, publish it and unlock
+		void							commitStream(int stream, int size, INT64 relativeTime);
+		static int64_t					captureTime();
+
 		int								JNI_getNumOfUsers();
 		uint32_t *						JNI_getTrackedIds();
 
@@ -321,6 +391,21 @@ namespace KinectPV2{
 			return kCoordinateMapper->MapCameraPointToColorSpace(cameraPoint, depthPoint);
 		}
 
+
+		HRESULT  							MapCameraPointsToDepthSpace(UINT count, const CameraSpacePoint *cameraPoints, DepthSpacePoint *depthPoints){
+			return kCoordinateMapper->MapCameraPointsToDepthSpace(count, cameraPoints, count, depthPoints);
+		}
+
+
+		HRESULT  							MapCameraPointsToColorSpace(UINT count, const CameraSpacePoint *cameraPoints, ColorSpacePoint *colorPoints){
+			return kCoordinateMapper->MapCameraPointsToColorSpace(count, cameraPoints, count, colorPoints);
+		}
+
+
+		HRESULT  							GetDepthFrameToCameraSpaceTable(UINT32 *count, PointF **table){
+			return kCoordinateMapper->GetDepthFrameToCameraSpaceTable(count, table);
+		}
+
 		//
 		//uint32_t						depthJNI[frame_size_depth];
 	};
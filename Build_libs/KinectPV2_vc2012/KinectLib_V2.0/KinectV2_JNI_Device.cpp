@@ -2,11 +2,11 @@
 #include "KinectV2_JNI_Device.h"
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniDevice
 * Signature: ()V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniDevice
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniDevice
 (JNIEnv * env, jobject obj)
 {
 	KinectPV2::Device* kinect = new KinectPV2::Device();
@@ -18,11 +18,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniDevice
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniInit
 * Signature: ()Z
 */
-JNIEXPORT jboolean JNICALL Java_KinectPV2_Device_jniInit
+JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniInit
 (JNIEnv * env, jobject obj)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -35,11 +35,11 @@ JNIEXPORT jboolean JNICALL Java_KinectPV2_Device_jniInit
 
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniVersion
 * Signature: ()Ljava/lang/String;
 */
-JNIEXPORT jstring JNICALL Java_KinectPV2_Device_jniVersion
+JNIEXPORT jstring JNICALL Java_KinectPV2_core_NativeFrameSource_jniVersion
 (JNIEnv * env, jobject obj)
 {
 	jstring result;
@@ -57,11 +57,11 @@ JNIEXPORT jstring JNICALL Java_KinectPV2_Device_jniVersion
 
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniUpdate
 * Signature: ()Z
 */
-JNIEXPORT jboolean JNICALL Java_KinectPV2_Device_jniUpdate
+JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniUpdate
 (JNIEnv * env, jobject obj)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -77,11 +77,11 @@ JNIEXPORT jboolean JNICALL Java_KinectPV2_Device_jniUpdate
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniStopDevice
 * Signature: ()V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniStopDevice
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniStopDevice
 (JNIEnv * env, jobject obj)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -92,11 +92,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniStopDevice
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniStopSignal
 * Signature: ()Z
 */
-JNIEXPORT jboolean JNICALL Java_KinectPV2_Device_jniStopSignal
+JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniStopSignal
 (JNIEnv * env, jobject obj)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -108,11 +108,11 @@ JNIEXPORT jboolean JNICALL Java_KinectPV2_Device_jniStopSignal
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableColorFrame
 * Signature: (Z)V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableColorFrame
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableColorFrame
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -123,11 +123,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableColorFrame
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableDepthFrame
 * Signature: (Z)V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableDepthFrame
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableDepthFrame
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -138,11 +138,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableDepthFrame
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableDepthMaskFrame
 * Signature: (Z)V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableDepthMaskFrame
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableDepthMaskFrame
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -153,11 +153,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableDepthMaskFrame
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableInfraredFrame
 * Signature: (Z)V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableInfraredFrame
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableInfraredFrame
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -168,11 +168,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableInfraredFrame
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableBodyTrackFrame
 * Signature: (Z)V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableBodyTrackFrame
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableBodyTrackFrame
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -183,11 +183,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableBodyTrackFrame
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableLongExposureInfrared
 * Signature: (Z)V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableInfraredLongExposure
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableInfraredLongExposure
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -198,11 +198,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableInfraredLongExposure
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableSkeletonDepth
 * Signature: ()V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableSkeletonDepth
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableSkeletonDepth
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -215,11 +215,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableSkeletonDepth
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableSkeletonColor
 * Signature: ()V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableSkeletonColor
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableSkeletonColor
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -232,11 +232,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableSkeletonColor
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableSkeleton3D
 * Signature: ()V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableSkeleton3D
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableSkeleton3D
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -249,11 +249,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableSkeleton3D
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableFaceDetection
 * Signature: ()V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableFaceDetection
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableFaceDetection
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -266,11 +266,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableFaceDetection
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniEnableHDFaceDetection
 * Signature: ()V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableHDFaceDetection
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableHDFaceDetection
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -281,7 +281,7 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableHDFaceDetection
 	env->DeleteLocalRef(cls);
 }
 
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableColorChannel
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableColorChannel
 (JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -292,398 +292,109 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableColorChannel
 }
 
 
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetColorChannel
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jfloatArray buffer = env->NewFloatArray((jsize)frame_size_color * 3);
-	const jfloat * pFloat = (const jfloat *)kinect->JNI_getColorChannel();
-	env->SetFloatArrayRegion(buffer, 0, (jsize)frame_size_color * 3, (const jfloat *)(pFloat));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-/*
-* Class:     KinectPV2_Device
-* Method:    jniGetDepthData
-* Signature: ()[I
-*/
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetColorData
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_color);
-	const jint * pInt = (const jint *)kinect->JNI_GetImage();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_color, (const jint *)(pInt));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-
-/*
-* Class:     KinectPV2_Device
-* Method:    jniGetDepth_16_Data
-* Signature: ()[I
-*/
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetDepth16Data
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	const jint * pInt = (const jint *)kinect->JNI_GetDepth_16_Data();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-/*
-* Class:     KinectPV2_Device
-* Method :   jniGetDepth_256_Data
-* Signature : ()[I
-*/
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetDepth256Data
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	const jint * pInt = (const jint *)kinect->JNI_GetDepth_256_Data();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-//Raw depth
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetRawDepth16Data
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	const jint * pInt = (const jint *)kinect->JNI_GetDepthRaw_16_Data();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetRawDepth256Data
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	const jint * pInt = (const jint *)kinect->JNI_GetDepthRaw_256_Data();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-
-/*
-* Class:     KinectPV2_Device
-* Method:    jniGetDepthData
-* Signature: ()[I
-*/
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetInfraredData
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	const jint * pInt = (const jint *)kinect->JNI_GetInfrared();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-/*
-* Class:     KinectPV2_Device
-* Method:    jniGetInfraredLongExposure
-* Signature: ()[I
-*/
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetInfraredLongExposure
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	const jint * pInt = (const jint *)kinect->JNI_GetLongExposureInfrared();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-/*
-* Class:     KinectPV2_Device
-* Method:    jniGetBodyTrack
-* Signature: ()[I
-*/
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetBodyTrack
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	const jint * pInt = (const jint *)kinect->JNI_GetBodyTrack();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-/*
-* Class:     KinectPV2_Device
-* Method:    jniGetDepthMask
-* Signature: ()[I
-*/
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetDepthMask
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	const jint * pInt = (const jint *)kinect->JNI_GetDepthMask();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-
-
-/*
-* Class:     KinectPV2_Device
-* Method:    jniGetSkeleton3D
-* Signature: ()[I
-*/
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetSkeleton3D
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jfloatArray buffer = env->NewFloatArray((jsize)JOINTSIZE);
-	const jfloat * pFloat = (const jfloat *)kinect->JNI_getSkeleton3DMapData();
-	env->SetFloatArrayRegion(buffer, 0, (jsize)JOINTSIZE, (const jfloat *)(pFloat));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-/*
-* Class:     KinectPV2_Device
-* Method:    jniGetSkeletonDepth
-* Signature: ()[I
-*/
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetSkeletonDepth
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jfloatArray buffer = env->NewFloatArray((jsize)JOINTSIZE);
-	const jfloat * pFloat = (const jfloat *)kinect->JNI_getSkeletonDepthMapData();
-	env->SetFloatArrayRegion(buffer, 0, (jsize)JOINTSIZE, (const jfloat *)(pFloat));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
+//POINT CLOUD
 
-/*
-* Class:     KinectPV2_Device
-* Method:    jniGetSkeletonColor
-* Signature: ()[I
-*/
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetSkeletonColor
-(JNIEnv * env, jobject obj)
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnablePointCloud
+(JNIEnv * env, jobject obj, jboolean toggle)
 {
 	jclass cls = env->GetObjectClass(obj);
 	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
 	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jfloatArray buffer = env->NewFloatArray((jsize)JOINTSIZE);
-	const jfloat * pFloat = (const jfloat *)kinect->JNI_getSkeletonColorMapData();
-	env->SetFloatArrayRegion(buffer, 0, (jsize)JOINTSIZE, (const jfloat *)(pFloat));
+	kinect->enablePointCloud(bool(toggle));
 	env->DeleteLocalRef(cls);
-
-	return buffer;
 }
 
-
 /*
-* Class:     KinectPV2_Device
-* Method:    jniGetFaceDetection
-* Signature: ()[I
+* Class:     KinectPV2_core_NativeFrameSource
+* Method:    jniRegisterFrameExchange
+* Signature: (ILjava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)Z
 */
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetFaceColorData
-(JNIEnv * env, jobject obj)
+JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniRegisterFrameExchange
+(JNIEnv * env, jobject obj, jint stream, jobject buffer0, jobject buffer1, jobject buffer2)
 {
 	jclass cls = env->GetObjectClass(obj);
 	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
 	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
 
-	jfloatArray buffer = env->NewFloatArray((jsize)FACESIZE);
-	const jfloat * pFloat = (const jfloat *)kinect->JNI_getFaceColorRawData();
-	env->SetFloatArrayRegion(buffer, 0, (jsize)FACESIZE, (const jfloat *)(pFloat));
+	jboolean result;
+	if (buffer0 == NULL || buffer1 == NULL || buffer2 == NULL){
+		result = (jboolean)kinect->JNI_RegisterStreamExchange((int)stream, NULL, 0);
+	}
+	else{
+		void * pBuffers[3] = { env->GetDirectBufferAddress(buffer0), env->GetDirectBufferAddress(buffer1), env->GetDirectBufferAddress(buffer2) };
+		jlong capacity = env->GetDirectBufferCapacity(buffer0);
+		result = (jboolean)kinect->JNI_RegisterStreamExchange((int)stream, pBuffers, (int64_t)capacity);
+	}
 	env->DeleteLocalRef(cls);
-
-	return buffer;
+	return result;
 }
 
 /*
-* Class:     KinectPV2_Device
-* Method:    jniGetFaceDetection
-* Signature: ()[I
+* Class:     KinectPV2_core_NativeFrameSource
+* Method:    jniAcquireFrame
+* Signature: (II)I
 */
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetFaceInfraredData
-(JNIEnv * env, jobject obj)
+JNIEXPORT jint JNICALL Java_KinectPV2_core_NativeFrameSource_jniAcquireFrame
+(JNIEnv * env, jobject obj, jint stream, jint readIndex)
 {
 	jclass cls = env->GetObjectClass(obj);
 	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
 	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jfloatArray buffer = env->NewFloatArray((jsize)FACESIZE);
-	const jfloat * pFloat = (const jfloat *)kinect->JNI_getFaceInfraredRawData();
-	env->SetFloatArrayRegion(buffer, 0, (jsize)FACESIZE, (const jfloat *)(pFloat));
+	jint index = (jint)kinect->JNI_AcquireStreamFrame((int)stream, (int)readIndex);
 	env->DeleteLocalRef(cls);
-
-	return buffer;
+	return index;
 }
 
-
 /*
-* Class:     KinectPV2_Device
-* Method:    jniGetHDFaceDetection
-* Signature: ()[I
+* Class:     KinectPV2_core_NativeFrameSource
+* Method:    jniAcquireFrames
+* Signature: ([I[II)V
 */
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetHDFaceDetection
-(JNIEnv * env, jobject obj)
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniAcquireFrames
+(JNIEnv * env, jobject obj, jintArray streams, jintArray readIndices, jint count)
 {
 	jclass cls = env->GetObjectClass(obj);
 	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
 	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
 
-	jfloatArray buffer = env->NewFloatArray((jsize)HDFACEVERTEX);
-	const jfloat * pFloat = (const jfloat *)kinect->JNI_getHDFaceVertexRawData();
-	env->SetFloatArrayRegion(buffer, 0, (jsize)HDFACEVERTEX, (const jfloat *)(pFloat));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-
-//POINT CLOUD
-
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnablePointCloud
-(JNIEnv * env, jobject obj, jboolean toggle)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-	kinect->enablePointCloud(bool(toggle));
-	env->DeleteLocalRef(cls);
-}
-
-
-JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetPointCloudDepthImage
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	const jint * pInt = (const jint *)kinect->JNI_pointCloudDepthImage();
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
+	jint * pStreams = (jint *)env->GetPrimitiveArrayCritical(streams, NULL);
+	jint * pRead = (jint *)env->GetPrimitiveArrayCritical(readIndices, NULL);
+	if (pStreams != NULL && pRead != NULL){
+		for (int i = 0; i < (int)count; i++){
+			pRead[i] = (jint)kinect->JNI_AcquireStreamFrame((int)pStreams[i], (int)pRead[i]);
+		}
+	}
+	if (pRead != NULL)
+		env->ReleasePrimitiveArrayCritical(readIndices, pRead, 0);
+	if (pStreams != NULL)
+		env->ReleasePrimitiveArrayCritical(streams, pStreams, JNI_ABORT);
 	env->DeleteLocalRef(cls);
-
-	return buffer;
 }
 
 /*
-* Class:     KinectPV2_Device
-* Method:    jniGetPointCloudDeptMap
-* Signature: ()[F
+* Class:     KinectPV2_core_NativeFrameSource
+* Method:    jniCopyBodyIndexUser
+* Signature: (I[I)V
 */
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetPointCloudDeptMap
-(JNIEnv * env, jobject obj)
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniCopyBodyIndexUser
+(JNIEnv * env, jobject obj, jint index, jintArray dst)
 {
 	jclass cls = env->GetObjectClass(obj);
 	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
 	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
 
-	jfloat * pFloat = (jfloat *)kinect->JNI_pointCloudPosData();
-
-	jfloatArray buffer = env->NewFloatArray(frame_size_depth * 3);
-	env->SetFloatArrayRegion(buffer, 0, frame_size_depth * 3, pFloat);
-
-
+	const jint * pInt = (const jint *)kinect->JNI_getBodyIndexUser((int)index);
+	env->SetIntArrayRegion(dst, 0, (jsize)frame_size_depth, pInt);
 	env->DeleteLocalRef(cls);
-
-	return buffer;
 }
 
 
 /*
-* Class:     KinectPV2_Device
-* Method:    jniGetPointCloudColorMap
-* Signature: ()[F
-*/
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetPointCloudColorMap
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	jfloatArray buffer = env->NewFloatArray((jsize)frame_size_color * 3);
-	const jfloat * pFloat = (const jfloat *)kinect->JNI_pointCloudColorData();
-	env->SetFloatArrayRegion(buffer, 0, (jsize)frame_size_color * 3, (const jfloat *)(pFloat));
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-/*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniSetLowThresholdDepthPC
 * Signature: (F)V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniSetLowThresholdDepthPC
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniSetLowThresholdDepthPC
 (JNIEnv * env, jobject obj, jint val)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -694,11 +405,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniSetLowThresholdDepthPC
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniGetLowThresholdDepthPC
 * Signature: ()F
 */
-JNIEXPORT jint JNICALL Java_KinectPV2_Device_jniGetLowThresholdDepthPC
+JNIEXPORT jint JNICALL Java_KinectPV2_core_NativeFrameSource_jniGetLowThresholdDepthPC
 (JNIEnv * env, jobject obj)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -711,11 +422,11 @@ JNIEXPORT jint JNICALL Java_KinectPV2_Device_jniGetLowThresholdDepthPC
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniSetHighThresholdDepthPC
 * Signature: (F)V
 */
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniSetHighThresholdDepthPC
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniSetHighThresholdDepthPC
 (JNIEnv * env, jobject obj, jint val)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -726,11 +437,11 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniSetHighThresholdDepthPC
 }
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jniGetHighThresholdDepthPC
 * Signature: ()F
 */
-JNIEXPORT jint JNICALL Java_KinectPV2_Device_jniGetHighThresholdDepthPC
+JNIEXPORT jint JNICALL Java_KinectPV2_core_NativeFrameSource_jniGetHighThresholdDepthPC
 (JNIEnv * env, jobject obj)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -744,7 +455,7 @@ JNIEXPORT jint JNICALL Java_KinectPV2_Device_jniGetHighThresholdDepthPC
 
 
 //NUMBER OF USERS
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniSetNumberOfUsers
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniSetNumberOfUsers
 (JNIEnv * env, jobject obj, jint val)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -755,23 +466,9 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniSetNumberOfUsers
 }
 
 //BODY TRACK INFORMATION
-JNIEXPORT jintArray JNICALL  Java_KinectPV2_Device_jniGetBodyIndexUser
-(JNIEnv * env, jobject obj, jint index)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
 
-	const jint * pInt = (const jint *)kinect->JNI_getBodyIndexUser((jint)index);
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
 
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-JNIEXPORT jint JNICALL  Java_KinectPV2_Device_jniGetNumberOfUsers
+JNIEXPORT jint JNICALL  Java_KinectPV2_core_NativeFrameSource_jniGetNumberOfUsers
 (JNIEnv * env, jobject obj)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -780,44 +477,13 @@ JNIEXPORT jint JNICALL  Java_KinectPV2_Device_jniGetNumberOfUsers
 	return kinect->JNI_getNumOfUsers();
 }
 
-JNIEXPORT jintArray JNICALL  Java_KinectPV2_Device_jniGetBodyTrackIds
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	const jint * pInt = (const jint *)kinect->JNI_getTrackedIds();
-	jintArray buffer = env->NewIntArray((jsize)BODY_COUNT);
-	env->SetIntArrayRegion(buffer, 0, (jsize)BODY_COUNT, (const jint *)(pInt));
-
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
-
-JNIEXPORT jintArray JNICALL  Java_KinectPV2_Device_jniGetRawBodyTrack
-(JNIEnv * env, jobject obj)
-{
-	jclass cls = env->GetObjectClass(obj);
-	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
-	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-
-	const jint * pInt = (const jint *)kinect->JNI_GetRawBodyTrack();
-	jintArray buffer = env->NewIntArray((jsize)frame_size_depth);
-	env->SetIntArrayRegion(buffer, 0, (jsize)frame_size_depth, (const jint *)(pInt));
-
-	env->DeleteLocalRef(cls);
-
-	return buffer;
-}
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jni_MapCameraPointToDepthSpace
 * Signature: (I)V
 */
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniMapCameraPointToDepthSpace
+JNIEXPORT jfloatArray JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraPointToDepthSpace
 (JNIEnv * env, jobject obj, jfloat valX, jfloat valY, jfloat valZ)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -844,11 +510,11 @@ JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniMapCameraPointToDepthSpac
 
 
 /*
-* Class:     KinectPV2_Device
+* Class:     KinectPV2_core_NativeFrameSource
 * Method:    jni_MapCameraPointToDepthSpace
 * Signature: (I)V
 */
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniMapCameraPointToColorSpace
+JNIEXPORT jfloatArray JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraPointToColorSpace
 (JNIEnv * env, jobject obj, jfloat valX, jfloat valY, jfloat valZ)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -873,24 +539,103 @@ JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniMapCameraPointToColorSpac
 	return buffer;
 }
 
-JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetMapDethToColorSpace(JNIEnv * env, jobject obj)
+
+/*
+* Class:     KinectPV2_core_NativeFrameSource
+* Method:    jniMapCameraPointsToDepthSpace
+* Signature: ([F[FI)V
+* packed x, y, z camera points to packed x, y depth points, the layouts of
+* CameraSpacePoint and DepthSpacePoint, in a single mapper call
+*/
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraPointsToDepthSpace
+(JNIEnv * env, jobject obj, jfloatArray src, jfloatArray dst, jint count)
+{
+	jclass cls = env->GetObjectClass(obj);
+	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
+	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
+
+	jfloat * pSrc = (jfloat *)env->GetPrimitiveArrayCritical(src, NULL);
+	jfloat * pDst = (jfloat *)env->GetPrimitiveArrayCritical(dst, NULL);
+	if (pSrc != NULL && pDst != NULL){
+		kinect->MapCameraPointsToDepthSpace((UINT)count, (const CameraSpacePoint *)pSrc, (DepthSpacePoint *)pDst);
+	}
+	if (pDst != NULL)
+		env->ReleasePrimitiveArrayCritical(dst, pDst, 0);
+	if (pSrc != NULL)
+		env->ReleasePrimitiveArrayCritical(src, pSrc, JNI_ABORT);
+	env->DeleteLocalRef(cls);
+}
+
+
+/*
+* Class:     KinectPV2_core_NativeFrameSource
+* Method:    jniMapCameraPointsToColorSpace
+* Signature: ([F[FI)V
+*/
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraPointsToColorSpace
+(JNIEnv * env, jobject obj, jfloatArray src, jfloatArray dst, jint count)
 {
 	jclass cls = env->GetObjectClass(obj);
 	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
 	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
-	//kinect->enableMapDepthToColorData();
 
-	jfloat * pfloat = (jfloat *)kinect->JNI_getMapDepthToColor();
+	jfloat * pSrc = (jfloat *)env->GetPrimitiveArrayCritical(src, NULL);
+	jfloat * pDst = (jfloat *)env->GetPrimitiveArrayCritical(dst, NULL);
+	if (pSrc != NULL && pDst != NULL){
+		kinect->MapCameraPointsToColorSpace((UINT)count, (const CameraSpacePoint *)pSrc, (ColorSpacePoint *)pDst);
+	}
+	if (pDst != NULL)
+		env->ReleasePrimitiveArrayCritical(dst, pDst, 0);
+	if (pSrc != NULL)
+		env->ReleasePrimitiveArrayCritical(src, pSrc, JNI_ABORT);
+	env->DeleteLocalRef(cls);
+}
 
-	jfloatArray buffer = env->NewFloatArray((jsize)frame_size_depth * 2);
-	env->SetFloatArrayRegion(buffer, 0, (jsize)frame_size_depth * 2, (jfloat *)(pfloat));
 
+/*
+* Class:     KinectPV2_core_NativeFrameSource
+* Method:    jniMapCameraBufferToDepthSpace
+* Signature: (Ljava/nio/FloatBuffer;Ljava/nio/FloatBuffer;I)V
+* the same mapper call on direct buffers, read and written in place
+*/
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraBufferToDepthSpace
+(JNIEnv * env, jobject obj, jobject src, jobject dst, jint count)
+{
+	jclass cls = env->GetObjectClass(obj);
+	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
+	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
+
+	jfloat * pSrc = (jfloat *)env->GetDirectBufferAddress(src);
+	jfloat * pDst = (jfloat *)env->GetDirectBufferAddress(dst);
+	if (pSrc != NULL && pDst != NULL){
+		kinect->MapCameraPointsToDepthSpace((UINT)count, (const CameraSpacePoint *)pSrc, (DepthSpacePoint *)pDst);
+	}
 	env->DeleteLocalRef(cls);
+}
 
-	return buffer;
+
+/*
+* Class:     KinectPV2_core_NativeFrameSource
+* Method:    jniMapCameraBufferToColorSpace
+* Signature: (Ljava/nio/FloatBuffer;Ljava/nio/FloatBuffer;I)V
+*/
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraBufferToColorSpace
+(JNIEnv * env, jobject obj, jobject src, jobject dst, jint count)
+{
+	jclass cls = env->GetObjectClass(obj);
+	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
+	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
+
+	jfloat * pSrc = (jfloat *)env->GetDirectBufferAddress(src);
+	jfloat * pDst = (jfloat *)env->GetDirectBufferAddress(dst);
+	if (pSrc != NULL && pDst != NULL){
+		kinect->MapCameraPointsToColorSpace((UINT)count, (const CameraSpacePoint *)pSrc, (ColorSpacePoint *)pDst);
+	}
+	env->DeleteLocalRef(cls);
 }
 
-JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableCoordinateMapperRGBDepth
+
+JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableCoordinateMapperRGBDepth
 (JNIEnv * env, jobject obj)
 {
 	jclass cls = env->GetObjectClass(obj);
@@ -900,4 +645,32 @@ JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableCoordinateMapperRGBDepth
 	kinect->enableCoordinateMapper(true);
 
 	env->DeleteLocalRef(cls);
-}
\ No newline at end of file
+}
+
+
+/*
+* Class:     KinectPV2_core_NativeFrameSource
+* Method:    jniCopyDepthFrameToCameraSpaceTable
+* Signature: ([F)Z
+* ray x, y of every depth pixel, PointF is packed as 2 floats
+*/
+JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniCopyDepthFrameToCameraSpaceTable
+(JNIEnv * env, jobject obj, jfloatArray dst)
+{
+	jclass cls = env->GetObjectClass(obj);
+	jfieldID fid = env->GetFieldID(cls, "ptr", "J");
+	KinectPV2::Device * kinect = (KinectPV2::Device *) env->GetLongField(obj, fid);
+
+	UINT32 count = 0;
+	PointF * table = NULL;
+	HRESULT hr = kinect->GetDepthFrameToCameraSpaceTable(&count, &table);
+	jboolean copied = JNI_FALSE;
+	if (SUCCEEDED(hr) && table != NULL && count == frame_size_depth){
+		env->SetFloatArrayRegion(dst, 0, (jsize)(count * 2), (const jfloat *)table);
+		copied = JNI_TRUE;
+	}
+	if (table != NULL)
+		CoTaskMemFree(table);
+	env->DeleteLocalRef(cls);
+	return copied;
+}
@@ -3,393 +3,301 @@
 #include "KinectPV2.h"
 
 
-/* Header for class KinectPV2_Device */
-#ifndef _Included_KinectPV2_Device
-#define _Included_KinectPV2_Device
+/* Header for class KinectPV2_core_NativeFrameSource */
+#ifndef _Included_KinectPV2_core_NativeFrameSource
+#define _Included_KinectPV2_core_NativeFrameSource
 #ifdef __cplusplus
 extern "C" {
 #endif
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniDevice
 	* Signature: ()V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniDevice
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniDevice
 		(JNIEnv *, jobject);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniInit
 	* Signature: ()Z
 	*/
-	JNIEXPORT jboolean JNICALL Java_KinectPV2_Device_jniInit
+	JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniInit
 		(JNIEnv *, jobject);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniVersion
 	* Signature: ()Ljava/lang/String;
 	*/
-	JNIEXPORT jstring JNICALL Java_KinectPV2_Device_jniVersion
+	JNIEXPORT jstring JNICALL Java_KinectPV2_core_NativeFrameSource_jniVersion
 		(JNIEnv *, jobject);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniUpdate
 	* Signature: ()Z
 	*/
-	JNIEXPORT jboolean JNICALL Java_KinectPV2_Device_jniUpdate
+	JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniUpdate
 		(JNIEnv *, jobject);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniStopDevice
 	* Signature: ()V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniStopDevice
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniStopDevice
 		(JNIEnv *, jobject);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniStopSignal
 	* Signature: ()Z
 	*/
-	JNIEXPORT jboolean JNICALL Java_KinectPV2_Device_jniStopSignal
+	JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniStopSignal
 		(JNIEnv *, jobject);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableColorFrame
 	* Signature: (Z)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableColorFrame
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableColorFrame
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableColorChannelsFrame
 	* Signature: (Z)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableColorChannel
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableColorChannel
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableDepthFrame
 	* Signature: (Z)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableDepthFrame
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableDepthFrame
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableDepthMaskFrame
 	* Signature: (Z)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableDepthMaskFrame
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableDepthMaskFrame
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableInfraredFrame
 	* Signature: (Z)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableInfraredFrame
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableInfraredFrame
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableBodyTrackFrame
 	* Signature: (Z)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableBodyTrackFrame
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableBodyTrackFrame
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableLongExposureInfrared
 	* Signature: (Z)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableInfraredLongExposure
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableInfraredLongExposure
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableSkeletonDepth
 	* Signature: ()V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableSkeletonDepth
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableSkeletonDepth
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableSkeletonColor
 	* Signature: ()V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableSkeletonColor
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableSkeletonColor
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableSkeleton3D
 	* Signature: ()V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableSkeleton3D
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableSkeleton3D
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableFaceDetection
 	* Signature: ()V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableFaceDetection
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableFaceDetection
 		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniEnableHDFaceDetection
 	* Signature: ()V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableHDFaceDetection
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableHDFaceDetection
 		(JNIEnv *, jobject, jboolean);
 
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetColorData
-	* Signature: ()[I
-	*/
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetColorData
-		(JNIEnv *, jobject);
-
-
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetDepthData
-	* Signature: ()[I
-	*/
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetDepth16Data
-		(JNIEnv *, jobject);
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetDepthData
-	* Signature: ()[I
-	*/
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetRawDepth16Data
-		(JNIEnv *, jobject);
-
-
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetDepthData
-	* Signature: ()[I
-	*/
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetRawDepth256Data
-		(JNIEnv *, jobject);
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetDepthData
-	* Signature: ()[I
-	*/
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetDepth256Data
-		(JNIEnv *, jobject);
-
 
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnablePointCloud
+		(JNIEnv *, jobject, jboolean);
 
 	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetInfraredData
-	* Signature: ()[I
-	*/
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetInfraredData
-		(JNIEnv *, jobject);
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetInfraredLongExposure
-	* Signature: ()[I
-	*/
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetInfraredLongExposure
-		(JNIEnv *, jobject);
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetBodyTrack
-	* Signature: ()[I
-	*/
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetBodyTrack
-		(JNIEnv *, jobject);
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetDepthMask
-	* Signature: ()[I
-	*/
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetDepthMask
-		(JNIEnv *, jobject);
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetSkeleton3D
-	* Signature: ()[I
-	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetSkeleton3D
-		(JNIEnv *, jobject);
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetSkeletonDepth
-	* Signature: ()[I
-	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetSkeletonDepth
-		(JNIEnv *, jobject);
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetSkeletonColor
-	* Signature: ()[I
+	* Class:     KinectPV2_core_NativeFrameSource
+	* Method:    jniRegisterFrameExchange
+	* Signature: (ILjava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)Z
 	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetSkeletonColor
-		(JNIEnv *, jobject);
+	JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniRegisterFrameExchange
+		(JNIEnv *, jobject, jint, jobject, jobject, jobject);
 
 	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetFaceDetection
-	* Signature: ()[I
+	* Class:     KinectPV2_core_NativeFrameSource
+	* Method:    jniAcquireFrame
+	* Signature: (II)I
 	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetFaceColorData
-		(JNIEnv *, jobject);
+	JNIEXPORT jint JNICALL Java_KinectPV2_core_NativeFrameSource_jniAcquireFrame
+		(JNIEnv *, jobject, jint, jint);
 
 	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetFaceDetection
-	* Signature: ()[I
+	* Class:     KinectPV2_core_NativeFrameSource
+	* Method:    jniAcquireFrames
+	* Signature: ([I[II)V
 	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetFaceInfraredData
-		(JNIEnv *, jobject);
-
-
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetMapDethToColorSpace
-		(JNIEnv *, jobject);
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniAcquireFrames
+		(JNIEnv *, jobject, jintArray, jintArray, jint);
 
 	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetHDFaceDetection
-	* Signature: ()[I
+	* Class:     KinectPV2_core_NativeFrameSource
+	* Method:    jniCopyBodyIndexUser
+	* Signature: (I[I)V
 	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetHDFaceDetection
-		(JNIEnv *, jobject);
-
-
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetColorChannel
-		(JNIEnv *, jobject);
-
-
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnablePointCloud
-		(JNIEnv *, jobject, jboolean);
-
-
-	JNIEXPORT jintArray JNICALL Java_KinectPV2_Device_jniGetPointCloudDepthImage
-		(JNIEnv *, jobject);
-
-
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetPointCloudDeptMap
-	* Signature: ()[F
-	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetPointCloudDeptMap
-		(JNIEnv *, jobject);
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniCopyBodyIndexUser
+		(JNIEnv *, jobject, jint, jintArray);
 
-	/*
-	* Class:     KinectPV2_Device
-	* Method:    jniGetPointCloudColorMap
-	* Signature: ()[F
-	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniGetPointCloudColorMap
-		(JNIEnv *, jobject);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniSetLowThresholdDepthPC
 	* Signature: (F)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniSetLowThresholdDepthPC
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniSetLowThresholdDepthPC
 		(JNIEnv *, jobject, jint);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniGetLowThresholdDepthPC
 	* Signature: ()F
 	*/
-	JNIEXPORT jint JNICALL Java_KinectPV2_Device_jniGetLowThresholdDepthPC
+	JNIEXPORT jint JNICALL Java_KinectPV2_core_NativeFrameSource_jniGetLowThresholdDepthPC
 		(JNIEnv *, jobject);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniSetHighThresholdDepthPC
 	* Signature: (F)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniSetHighThresholdDepthPC
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniSetHighThresholdDepthPC
 		(JNIEnv *, jobject, jint);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniGetHighThresholdDepthPC
 	* Signature: ()F
 	*/
-	JNIEXPORT jint JNICALL Java_KinectPV2_Device_jniGetHighThresholdDepthPC
-		(JNIEnv *, jobject);
-
-
-	JNIEXPORT jintArray JNICALL  Java_KinectPV2_Device_jniGetBodyIndexUser
-		(JNIEnv *, jobject, jint);
-
-	JNIEXPORT jint JNICALL  Java_KinectPV2_Device_jniGetNumberOfUsers
+	JNIEXPORT jint JNICALL Java_KinectPV2_core_NativeFrameSource_jniGetHighThresholdDepthPC
 		(JNIEnv *, jobject);
 
-	JNIEXPORT jintArray JNICALL  Java_KinectPV2_Device_jniGetBodyTrackIds
-		(JNIEnv *, jobject);
 
-	JNIEXPORT jintArray JNICALL  Java_KinectPV2_Device_jniGetRawBodyTrack
+	JNIEXPORT jint JNICALL  Java_KinectPV2_core_NativeFrameSource_jniGetNumberOfUsers
 		(JNIEnv *, jobject);
 
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jniSetNumberOfUsers
 	* Signature: (I)V
 	*/
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniSetNumberOfUsers
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniSetNumberOfUsers
 		(JNIEnv *, jobject, jint);
 
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jni_MapCameraPointToDepthSpace
 	* Signature: (I)V
 	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniMapCameraPointToDepthSpace
+	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraPointToDepthSpace
 		(JNIEnv *, jobject, jfloat, jfloat, jfloat);
 
 	/*
-	* Class:     KinectPV2_Device
+	* Class:     KinectPV2_core_NativeFrameSource
 	* Method:    jni_MapCameraPointToDepthSpace
 	* Signature: (I)V
 	*/
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniMapCameraPointToColorSpace
+	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraPointToColorSpace
 		(JNIEnv *, jobject, jfloat, jfloat, jfloat);
 
 
-	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_Device_jniMapCameraPointToColorSpace
+	JNIEXPORT jfloatArray JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraPointToColorSpace
 		(JNIEnv *, jobject, jfloat, jfloat, jfloat);
 
-	JNIEXPORT void JNICALL Java_KinectPV2_Device_jniEnableCoordinateMapperRGBDepth
+	/*
+	* Class:     KinectPV2_core_NativeFrameSource
+	* Method:    jniMapCameraPointsToDepthSpace
+	* Signature: ([F[FI)V
+	*/
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraPointsToDepthSpace
+		(JNIEnv *, jobject, jfloatArray, jfloatArray, jint);
+
+	/*
+	* Class:     KinectPV2_core_NativeFrameSource
+	* Method:    jniMapCameraPointsToColorSpace
+	* Signature: ([F[FI)V
+	*/
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraPointsToColorSpace
+		(JNIEnv *, jobject, jfloatArray, jfloatArray, jint);
+
+	/*
+	* Class:     KinectPV2_core_NativeFrameSource
+	* Method:    jniMapCameraBufferToDepthSpace
+	* Signature: (Ljava/nio/FloatBuffer;Ljava/nio/FloatBuffer;I)V
+	*/
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraBufferToDepthSpace
+		(JNIEnv *, jobject, jobject, jobject, jint);
+
+	/*
+	* Class:     KinectPV2_core_NativeFrameSource
+	* Method:    jniMapCameraBufferToColorSpace
+	* Signature: (Ljava/nio/FloatBuffer;Ljava/nio/FloatBuffer;I)V
+	*/
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniMapCameraBufferToColorSpace
+		(JNIEnv *, jobject, jobject, jobject, jint);
+
+	JNIEXPORT void JNICALL Java_KinectPV2_core_NativeFrameSource_jniEnableCoordinateMapperRGBDepth
 		(JNIEnv *, jobject);
 
+	/*
+	* Class:     KinectPV2_core_NativeFrameSource
+	* Method:    jniCopyDepthFrameToCameraSpaceTable
+	* Signature: ([F)Z
+	*/
+	JNIEXPORT jboolean JNICALL Java_KinectPV2_core_NativeFrameSource_jniCopyDepthFrameToCameraSpaceTable
+		(JNIEnv *, jobject, jfloatArray);
 
 
 #ifdef __cplusplus
@@ -0,0 +1,79 @@
+/*
+Thomas Sanchez Lengeling.
+http://codigogenerativo.com/
+
+KinectPV2, Kinect for Windows v2 library for processing
+
+Record depth, body index and skeleton streams into a binary file,
+press 'r' to start and stop recording, then scrub the recording with the mouse.
+*/
+
+import KinectPV2.*;
+import KinectPV2.core.*;
+
+KinectPV2 kinect;
+
+FrameRecorder recorder;
+FramePlayer   player;
+
+int [] rawDepth = new int[512 * 424];
+PImage playback;
+
+void setup() {
+  size(1024, 424, P3D);
+
+  kinect = new KinectPV2(this);
+  kinect.enableDepthImg(true);
+  kinect.enableBodyTrackImg(true);
+  kinect.enableSkeleton3DMap(true);
+  kinect.init();
+
+  playback = createImage(512, 424, ALPHA);
+}
+
+void draw() {
+  background(0);
+
+  image(kinect.getDepthImage(), 0, 0);
+
+  //only new frames are written
+  if (recorder != null) {
+    recorder.record(kinect, Stream.RAW_DEPTH, Stream.RAW_BODY_TRACK, Stream.SKELETON_3D);
+    fill(255, 0, 0);
+    text("recording " + recorder.getFrameCount() + " frames", 50, 50);
+  }
+
+  //frames are read from the mapped file, seeking is instant
+  if (player != null && player.getFrameCount(Stream.RAW_DEPTH) > 0) {
+    int index = (int) map(mouseX, 0, width, 0, player.getFrameCount(Stream.RAW_DEPTH) - 1);
+    RecordedFrame frame = player.getFrame(Stream.RAW_DEPTH, index);
+    frame.copyTo(rawDepth);
+
+    playback.loadPixels();
+    for (int i = 0; i < rawDepth.length; i++) {
+      int gray = (int) map(rawDepth[i], 0, 4500, 0, 255);
+      playback.pixels[i] = color(gray);
+    }
+    playback.updatePixels();
+    image(playback, 512, 0);
+  }
+
+  fill(255);
+  text(frameRate, 50, height - 50);
+}
+
+void keyPressed() {
+  if (key == 'r') {
+    if (recorder == null) {
+      if (player != null) {
+        player.close();
+        player = null;
+      }
+      recorder = new FrameRecorder(new File(dataPath("streams.kpv2")));
+    } else {
+      recorder.close();
+      recorder = null;
+      player = new FramePlayer(new File(dataPath("streams.kpv2")));
+    }
+  }
+}
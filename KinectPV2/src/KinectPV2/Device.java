@@ -23,11 +23,18 @@ package KinectPV2;
  THE SOFTWARE.
  */
 
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
-
-import com.jogamp.common.nio.Buffers;
-
+import java.util.function.Consumer;
+
+import KinectPV2.core.FrameBuffer;
+import KinectPV2.core.FrameSource;
+import KinectPV2.core.JointFilter;
+import KinectPV2.core.JointPredictor;
+import KinectPV2.core.KinectCore;
+import KinectPV2.core.NativeFrameSource;
+import KinectPV2.core.SkeletonFrame;
+import KinectPV2.core.Stream;
+import KinectPV2.core.TrackedUser;
 import processing.core.PApplet;
 import processing.core.PImage;
 import processing.core.PVector;
@@ -38,109 +45,58 @@ import processing.core.PVector;
  * @author Thomas Sanchez Lengeling
  *
  */
-public class Device implements Constants, FaceProperties, SkeletonProperties,
-		Runnable {
-
-	static {
-		int arch = Integer.parseInt(System.getProperty("sun.arch.data.model"));
-		String platformName = System.getProperty("os.name");
-		platformName = platformName.toLowerCase();
-		System.out.println(arch + " " + platformName);
-		if (arch == 64) {
-			System.loadLibrary("Kinect20.Face");
-			System.loadLibrary("KinectPV2");
-			System.out.println("Loading KinectV2");
-		} else {
-			System.out.println("not compatible with 32bits");
-		}
-	}
+public class Device extends KinectCore {
 
-	// IMAGES
-	private Image colorImg;
-	private Image depthImg;
-	private Image depth256Img;
-	private Image infraredImg;
-	private Image infraredLongExposureImg;
-	private Image bodyTrackImg;
+	// IMAGES of each stream, created on enable or first use, null when not allocated
+	private Image []  streamImages;
 	private Image []  bodyTrackUsersImg;
-	private Image depthMaskImg;
 
-	
-	private Image pointCloudDepthImg;
-
-	// SKELETON
+	// SKELETON views of the skeleton frames of the core
 	private Skeleton[] skeletonDepth;
 	private Skeleton[] skeleton3d;
 	private Skeleton[] skeletonColor;
+	private Skeleton[] skeletonFiltered;
+	private Skeleton[] skeletonPredicted;
 
 	private HDFaceData[] HDFace;
 
 	private FaceData[] faceData;
 
-	protected boolean runningKinect;
 	protected boolean stopDevice;
 
-	FloatBuffer pointCloudDepthPos;
-	FloatBuffer pointCloudColorPos;
-	FloatBuffer colorChannelBuffer;
+	// RAW FRAME DATA, reused every frame
+	private float[] rawFaceColor;
+	private float[] rawFaceInfrared;
+	private float[] rawHDFace;
+	private int[]   rawBodyTrackIds;
+	private ArrayList<PImage> bodyTrackUsersList;
 
 	private PApplet parent;
-	private long ptr;
-
-	private boolean startSensor;
 
 	/**
-	 * Start device
+	 * Start device with the Kinect v2
 	 * 
 	 * @param _p
 	 *            PApplet
 	 */
 	public Device(PApplet _p) {
+		this(_p, new NativeFrameSource());
+	}
+
+	/**
+	 * Start device with any FrameSource, ex. SyntheticFrameSource
+	 * 
+	 * @param _p
+	 *            PApplet
+	 * @param source
+	 *            FrameSource
+	 */
+	public Device(PApplet _p, FrameSource source) {
+		super(source);
 		parent = _p;
-		// SETUP IMAGES
-		colorImg = new Image(parent, WIDTHColor, HEIGHTColor, PImage.ARGB);
-		depthImg = new Image(parent, WIDTHDepth, HEIGHTDepth, PImage.ALPHA);
-		depth256Img = new Image(parent, WIDTHDepth, HEIGHTDepth, PImage.ALPHA);
-		infraredImg = new Image(parent, WIDTHDepth, HEIGHTDepth, PImage.ALPHA);
-
-		bodyTrackImg = new Image(parent, WIDTHDepth, HEIGHTDepth, PImage.RGB);
-		depthMaskImg = new Image(parent, WIDTHDepth, HEIGHTDepth, PImage.RGB);
-		
-	
+		// IMAGES are created on enable or first use
+		streamImages = new Image[Stream.values().length];
 		bodyTrackUsersImg = new Image[BODY_COUNT];
-		for (int i = 0; i < BODY_COUNT; i++) {
-			bodyTrackUsersImg[i] = new Image(parent, WIDTHDepth, HEIGHTDepth, PImage.RGB);
-		}  
-		
-
-		infraredLongExposureImg = new Image(parent, WIDTHDepth, HEIGHTDepth,
-				PImage.ALPHA);
-
-		pointCloudDepthImg = new Image(parent, WIDTHDepth, HEIGHTDepth,
-				PImage.ALPHA);
-
-		pointCloudDepthPos = Buffers.newDirectFloatBuffer(WIDTHDepth
-				* HEIGHTDepth * 3);
-		pointCloudColorPos = Buffers.newDirectFloatBuffer(WIDTHColor
-				* HEIGHTColor * 3);
-		colorChannelBuffer = Buffers.newDirectFloatBuffer(WIDTHColor
-				* HEIGHTColor * 3);
-
-		// SETUP SKELETON
-		skeletonDepth = new Skeleton[BODY_COUNT];
-		for (int i = 0; i < BODY_COUNT; i++) {
-			skeletonDepth[i] = new Skeleton();
-		}
-
-		skeleton3d = new Skeleton[BODY_COUNT];
-		for (int i = 0; i < BODY_COUNT; i++) {
-			skeleton3d[i] = new Skeleton();
-		}
-
-		skeletonColor = new Skeleton[BODY_COUNT];
-		for (int i = 0; i < BODY_COUNT; i++) {
-			skeletonColor[i] = new Skeleton();
-		}
 
 		// SETUP FACEDATA
 		faceData = new FaceData[BODY_COUNT];
@@ -152,27 +108,19 @@ public class Device implements Constants, FaceProperties, SkeletonProperties,
 		for (int i = 0; i < BODY_COUNT; i++) {
 			HDFace[i] = new HDFaceData();
 		}
-		
-		startSensor = false;
-
-		jniDevice();
 
+		rawFaceColor     = new float[Stream.FACE_COLOR.getLength()];
+		rawFaceInfrared  = new float[Stream.FACE_INFRARED.getLength()];
+		rawHDFace        = new float[Stream.HD_FACE.getLength()];
+		rawBodyTrackIds  = new int[Stream.BODY_TRACK_IDS.getLength()];
+		bodyTrackUsersList = new ArrayList<PImage>(BODY_COUNT);
 	}
 
 	protected void initDevice() {
-		startSensor = jniInit();
-		String load = jniVersion();
-		System.out.println("Version: " + load);
-		
-		if (startSensor == false) {
+		if (start() == false) {
 			System.out.println("ERROR STARTING KINECT V2");
 			parent.exit();
 		}
-
-		if (startSensor) {
-			runningKinect = true;
-			(new Thread(this)).start();
-		}
 	}
 
 	// IMAGES
@@ -182,36 +130,29 @@ public class Device implements Constants, FaceProperties, SkeletonProperties,
 	 * @return PImage
 	 */
 	public PImage getColorImage() {
-		int[] colorData = jniGetColorData();
-		PApplet.arrayCopy(colorData, 0, colorImg.pixels(), 0,
-				colorImg.getImgSize());
-		colorImg.updatePixels();
-
-        PApplet.arrayCopy(colorData, 0, colorImg.rawIntData, 0,
-                colorImg.getImgSize());
-
-		
-		return colorImg.img;
+		return updateImage(Stream.COLOR).img;
 	}
 	
 	
+	/**
+	 * Raw color values of the last getColorImage() call
+	 * @return int []
+	 */
 	public int [] getRawColor(){
-		return colorImg.rawIntData;
+		Image colorImg = getStreamImage(Stream.COLOR);
+		int [] rawIntData = colorImg.getRawIntData();
+		PApplet.arrayCopy(colorImg.pixels(), 0, rawIntData, 0,
+				colorImg.getImgSize());
+		return rawIntData;
 	}
 
-
 	/**
 	 * Get Depth Image as PImage 512 x 424
 	 * 
 	 * @return PImage
 	 */
 	public PImage getDepthImage() {
-		int [] depthData = jniGetDepth16Data();
-		PApplet.arrayCopy(depthData, 0, depthImg.pixels(), 0,
-				depthImg.getImgSize());
-		depthImg.updatePixels();
-
-		return depthImg.img;
+		return updateImage(Stream.DEPTH).img;
 	}
 
 	/**
@@ -219,47 +160,18 @@ public class Device implements Constants, FaceProperties, SkeletonProperties,
 	 * @return PImage
 	 */ 
 	public PImage getDepth256Image() {
-		int[] depth256Data = jniGetDepth256Data();
-		PApplet.arrayCopy(depth256Data, 0, depth256Img.pixels(), 0,
-				depth256Img.getImgSize());
-		depth256Img.updatePixels();
-
 		// jniDepthReadyCopy(true);
-		return depth256Img.img;
+		return updateImage(Stream.DEPTH_256).img;
 	}
 	
-	/**
-	 * Obtain the raw depth data values in mm from 0 to 4500
-	 * @return array of int
-	 */
-	public int []  getRawDepthData(){
-		return jniGetRawDepth16Data();
-	}
-	
-	
-	/**
-	 * Obtain the raw depth data values in mm from 0 to 256 
-	 * Data based on the  getDepth256Image
-	 * @return array of int
-	 */
-	public int []  getRawDepth256Data(){
-		return jniGetRawDepth256Data();
-	}
-	
-	
 	/**
 	 * Get Depth Mask Image, outline color of the users.
 	 * 
 	 * @return PImage
 	 */
 	public PImage getDepthMaskImage() {
-		int[] depthMaskData = jniGetDepthMask();
-		PApplet.arrayCopy(depthMaskData, 0, depthMaskImg.pixels(), 0,
-				depthMaskImg.getImgSize());
-		depthMaskImg.updatePixels();
-
 		// jniDepthReadyCopy(true);
-		return depthMaskImg.img;
+		return updateImage(Stream.DEPTH_MASK).img;
 	}
 
 	/**
@@ -268,12 +180,7 @@ public class Device implements Constants, FaceProperties, SkeletonProperties,
 	 * @return PImage
 	 */
 	public PImage getInfraredImage() {
-		int[] infraredData = jniGetInfraredData();
-		PApplet.arrayCopy(infraredData, 0, infraredImg.pixels(), 0,
-				infraredImg.getImgSize());
-		infraredImg.updatePixels();
-
-		return infraredImg.img;
+		return updateImage(Stream.INFRARED).img;
 	}
 
 	/**
@@ -282,43 +189,51 @@ public class Device implements Constants, FaceProperties, SkeletonProperties,
 	 * @return PImage
 	 */
 	public PImage getBodyTrackImage() {
-		int[] bodyTrackData = jniGetBodyTrack();
-		PApplet.arrayCopy(bodyTrackData, 0, bodyTrackImg.pixels(), 0,
-				bodyTrackImg.getImgSize());
-		bodyTrackImg.updatePixels();
-
-		return bodyTrackImg.img;
+		return updateImage(Stream.BODY_TRACK).img;
 	}
 
 	/**
-	 * Get Independent Body Index Track
+	 * Get Independent Body Index Track,
+	 * the same list is reused and refilled on every call,
+	 * user images are only updated when a new body frame arrived
 	 * 
-	 * @param index
-	 * @return
+	 * @return ArrayList of PImage
 	 */
 	public ArrayList getBodyTrackUser() {
-		ArrayList<PImage> listBodyTack = new ArrayList<PImage>(0);
-		int [] usersIds = jniGetBodyTrackIds();
+		bodyTrackUsersList.clear();
+		FrameBuffer frame = getFrameBuffer(Stream.BODY_TRACK_IDS);
+		copyIntFrame(frame, rawBodyTrackIds);
 		
-		for(int i = 0; i < usersIds.length; i++){
-			if( usersIds[i] == 1){
-				int[] rawData = jniGetBodyIndexUser(i);
-				PApplet.arrayCopy(rawData, 0, bodyTrackUsersImg[i].pixels(), 0, bodyTrackUsersImg[i].getImgSize());
-				bodyTrackUsersImg[i].updatePixels();
-				listBodyTack.add(bodyTrackUsersImg[i].img);
-			}
+		for(int i = 0; i < rawBodyTrackIds.length; i++){
+			if( rawBodyTrackIds[i] == 1)
+				bodyTrackUsersList.add(bodyTrackUserImage(i, frame).img);
 		}
-		return listBodyTack;
+		return bodyTrackUsersList;
 	}
-	
-	
-	
+
 	/**
-	 * Get the Number of currently track users based on the Body Track frame
-	 * @return Number of Users
+	 * Get the Body Index Track of a user as PImage 512 x 424,
+	 * only updated when a new body frame arrived
+	 * 
+	 * @param user TrackedUser of getUserTracker()
+	 * @return PImage or null if the user is lost
 	 */
-	public int getNumOfUsers(){
-		return jniGetNumberOfUsers();
+	public PImage getBodyTrackUser(TrackedUser user) {
+		if (!user.isTracked())
+			return null;
+		return bodyTrackUserImage(user.getBody(), getFrameBuffer(Stream.BODY_TRACK_IDS)).img;
+	}
+
+	private Image bodyTrackUserImage(int i, FrameBuffer frame) {
+		if (bodyTrackUsersImg[i] == null)
+			bodyTrackUsersImg[i] = new Image(parent, WIDTHDepth, HEIGHTDepth, PImage.RGB);
+		Image userImg = bodyTrackUsersImg[i];
+		userImg.setFrameInfo(getFrameInfo(Stream.BODY_TRACK_IDS));
+		if (!userImg.isCurrent(frame)) {
+			getFrameSource().copyBodyIndexUser(i, userImg.pixels());
+			userImg.updatePixels();
+		}
+		return userImg;
 	}
 
 	/**
@@ -327,13 +242,7 @@ public class Device implements Constants, FaceProperties, SkeletonProperties,
 	 * @return PImage
 	 */
 	public PImage getInfraredLongExposureImage() {
-		int[] longExposureData = jniGetInfraredLongExposure();
-		PApplet.arrayCopy(longExposureData, 0,
-				infraredLongExposureImg.pixels(), 0,
-				infraredLongExposureImg.getImgSize());
-		infraredLongExposureImg.updatePixels();
-
-		return infraredLongExposureImg.img;
+		return updateImage(Stream.INFRARED_LONG_EXPOSURE).img;
 	}
 
 	/**
@@ -343,10 +252,7 @@ public class Device implements Constants, FaceProperties, SkeletonProperties,
 	 * @return Skeleton []
 	 */
 	public Skeleton[] getSkeleton3d() {
-		float[] rawData = jniGetSkeleton3D();
-		for (int i = 0; i < BODY_COUNT; i++) {
-			skeleton3d[i].createSkeletonData(rawData, i);
-		}
+		skeleton3d = skeletonViews(skeleton3d, getSkeleton3dFrame());
 		return skeleton3d;
 	}
 
@@ -358,10 +264,7 @@ public class Device implements Constants, FaceProperties, SkeletonProperties,
 	 * @return Skeleton []
 	 */
 	public Skeleton[] getSkeletonDepthMap() {
-		float[] rawData = jniGetSkeletonDepth();
-		for (int i = 0; i < BODY_COUNT; i++) {
-			skeletonDepth[i].createSkeletonData(rawData, i);
-		}
+		skeletonDepth = skeletonViews(skeletonDepth, getSkeletonDepthFrame());
 		return skeletonDepth;
 	}
 
@@ -372,432 +275,278 @@ public class Device implements Constants, FaceProperties, SkeletonProperties,
 	 * @return Skeleton []
 	 */
 	public Skeleton[] getSkeletonColorMap() {
-		float[] rawData = jniGetSkeletonColor();
-		for (int i = 0; i < BODY_COUNT; i++) {
-			skeletonColor[i].createSkeletonData(rawData, i);
-		}
+		skeletonColor = skeletonViews(skeletonColor, getSkeletonColorFrame());
 		return skeletonColor;
 	}
 
-	// FACE DATA
-
 	/**
-	 * Generate Face Data for color map and infrared map
-	 */
-	public void generateFaceData() {
-		float[] rawFaceColorData = jniGetFaceColorData();
-		float[] rawFaceInfraredData = jniGetFaceInfraredData();
-
-		for (int i = 0; i < BODY_COUNT; i++)
-			faceData[i].createFaceData(rawFaceColorData, rawFaceInfraredData, i);
-
-	}
-
-	/**
-	 * Obtain Vertex positions corresponding the HD Color frame
-	 * @return
+	 * Get the Skeletons of a skeleton stream smoothed by a filter, ex. new
+	 * OneEuroFilter(), the filter is updated when a new frame arrived
+	 * 
+	 * @param filter JointFilter
+	 * @return Skeleton []
 	 */
-	public HDFaceData[] getHDFaceVertex() {
-		float[] rawData = jniGetHDFaceDetection();
-		for (int i = 0; i < BODY_COUNT; i++)
-			HDFace[i].createHDFaceVertexData(rawData, i);
-		return HDFace;
-	}
-
-	public FaceData[] getFaceData() {
-		return faceData;
+	public Skeleton[] getSkeletons(JointFilter filter) {
+		filter.update(getSkeletonFrame(filter.getStream()));
+		skeletonFiltered = skeletonViews(skeletonFiltered, filter.getFrame());
+		return skeletonFiltered;
 	}
 
-	// POINT CLOUDS
-
 	/**
-	 * Get Point Cloud Depth Map as FloatBuffer, transform to a float array with .array(), or get values with get(index)
+	 * Get the Skeletons of a skeleton stream extrapolated to a time, ex.
+	 * System.nanoTime() plus the display latency, the predictor is updated
+	 * when a new frame arrived
 	 * 
-	 * @return FloatBuffer
+	 * @param predictor JointPredictor
+	 * @param time System.nanoTime() of the prediction
+	 * @return Skeleton []
 	 */
-	public FloatBuffer getPointCloudDepthPos() {
-		float[] pcRawData = jniGetPointCloudDeptMap();
-		pointCloudDepthPos.put(pcRawData, 0, WIDTHDepth * HEIGHTDepth * 3);
-		pointCloudDepthPos.rewind();
-
-		return pointCloudDepthPos;
+	public Skeleton[] getSkeletons(JointPredictor predictor, long time) {
+		predictor.update(getSkeletonFrame(predictor.getStream()));
+		skeletonPredicted = skeletonViews(skeletonPredicted, predictor.predict(time));
+		return skeletonPredicted;
 	}
 
 	/**
-	 * Get Point Cloud Color Positions as a FloatBuffer, transform to a float array with .array(), or get values with get(index)
-	 * @return FloatBuffer
+	 * Get the 3d Skeleton of a user
+	 * 
+	 * @param user TrackedUser of getUserTracker()
+	 * @return Skeleton or null if the user is lost
 	 */
-	public FloatBuffer getPointCloudColorPos() {
-		float[] pcRawData = jniGetPointCloudColorMap();
-		pointCloudColorPos.put(pcRawData, 0, WIDTHColor * HEIGHTColor * 3);
-		pointCloudColorPos.rewind();
-
-		return pointCloudColorPos;
+	public Skeleton getSkeleton3d(TrackedUser user) {
+		return user.isTracked() ? getSkeleton3d()[user.getBody()] : null;
 	}
 
-	/**
-	 * Get the color channel buffer, 3 channels, 1920 x 1080 x 3 from [0-1]
-	 * transform to a float array with .array(), or get values with get(index)
-	 * Ideal method for load level openGL calls
-	 * @return FloatBuffer
-	 */
-	public FloatBuffer getColorChannelBuffer() {
-		float[] pcRawData = jniGetColorChannel();
-		colorChannelBuffer.put(pcRawData, 0, WIDTHColor * HEIGHTColor * 3);
-		colorChannelBuffer.rewind();
-
-		return colorChannelBuffer;
+	// views of a skeleton frame, created again only when the frame was replaced
+	private static Skeleton[] skeletonViews(Skeleton[] skeletons, SkeletonFrame frame) {
+		if (skeletons == null || skeletons[0].getSkeletonFrame() != frame)
+			return Skeleton.createSkeletons(frame);
+		return skeletons;
 	}
 
-	/**
-	 * Enable point cloud capture
-	 * @param toggle
-	 */
-	public void enablePointCloud(boolean toggle) {
-		jniEnablePointCloud(toggle);
-	}
+	// FACE DATA
 
 	/**
-	 * Get Point cloud Depth Image
-	 * @return PImage
+	 * Generate Face Data for color map and infrared map
 	 */
-	public PImage getPointCloudDepthImage() {
-		int[] rawData = jniGetPointCloudDepthImage();
-		PApplet.arrayCopy(rawData, 0, pointCloudDepthImg.pixels(), 0,
-				pointCloudDepthImg.getImgSize());
-		pointCloudDepthImg.updatePixels();
+	public void generateFaceData() {
+		copyFloatFrame(Stream.FACE_COLOR, rawFaceColor);
+		copyFloatFrame(Stream.FACE_INFRARED, rawFaceInfrared);
 
-		return pointCloudDepthImg.img;
-	}
+		for (int i = 0; i < BODY_COUNT; i++)
+			faceData[i].createFaceData(rawFaceColor, rawFaceInfrared, i);
 
-	/**
-	 * Set Threshold Depth Value Z for Point Cloud
-	 * 
-	 * @param float val
-	 */
-	public void setLowThresholdPC(int val) {
-		jniSetLowThresholdDepthPC(val);
 	}
 
 	/**
-	 * Get Threshold Depth Value Z from Point Cloud Default 1.9
-	 * 
-	 * @return default Threshold
+	 * Obtain Vertex positions corresponding the HD Color frame
+	 * @return
 	 */
-	public int getLowThresholdDepthPC() {
-		return jniGetLowThresholdDepthPC();
+	public HDFaceData[] getHDFaceVertex() {
+		copyFloatFrame(Stream.HD_FACE, rawHDFace);
+		for (int i = 0; i < BODY_COUNT; i++)
+			HDFace[i].createHDFaceVertexData(rawHDFace, i);
+		return HDFace;
 	}
 
-	/**
-	 * Set Threshold Depth Value Z for Point Cloud
-	 * 
-	 * @param float val
-	 */
-	public void setHighThresholdPC(int val) {
-		jniSetHighThresholdDepthPC(val);
+	public FaceData[] getFaceData() {
+		return faceData;
 	}
 
 	/**
-	 * Get Threshold Depth Value Z from Point Cloud Default 1.9
-	 * 
-	 * @return default Threshold
+	 * Face Data of a user, from the last generateFaceData()
+	 * @param user TrackedUser of getUserTracker()
+	 * @return FaceData or null if the user is lost
 	 */
-	public int getHighThresholdDepthPC() {
-		return jniGetHighThresholdDepthPC();
+	public FaceData getFaceData(TrackedUser user) {
+		return user.isTracked() ? faceData[user.getBody()] : null;
 	}
 
-
 	/**
-	 * Get Raw BodyTracking Data 512 x 424
-	 * 
-	 * @return int []
+	 * HD Face vertices of a user, from the last getHDFaceVertex()
+	 * @param user TrackedUser of getUserTracker()
+	 * @return HDFaceData or null if the user is lost
 	 */
-	public int[] getRawBodyTrack() {
-		return jniGetRawBodyTrack();
+	public HDFaceData getHDFaceVertex(TrackedUser user) {
+		return user.isTracked() ? HDFace[user.getBody()] : null;
 	}
 
+	// POINT CLOUDS
 
 	/**
-	 * Enable or Disable Color Image Capture
-	 * 
-	 * @param boolean toggle
+	 * Get Point cloud Depth Image
+	 * @return PImage
 	 */
-	public void enableColorImg(boolean toggle) {
-		jniEnableColorFrame(toggle);
+	public PImage getPointCloudDepthImage() {
+		return updateImage(Stream.POINT_CLOUD_DEPTH_IMAGE).img;
 	}
 
-	/**
-	 * Enable or disable color Point cloud.
-	 * Which is used to obtain getPointCloudColorPos() and getColorChannelBuffer();
-	 * The FloatBuffer getColorChannelBuffer is a 3 independent color channels of 1920 x 1080 x 3,
-	 * Values form between 0 and 1,  ideally for openGL calls
-	 * 
-	 * @param toggle
+	/*
+	 * public void enableMirror(boolean toggle){ jniSetMirror(toggle); }
 	 */
-	public void enableColorPointCloud(boolean toggle) {
-		jniEnableColorChannel(toggle);
+	
+	//MAPPERS
+	public PVector MapCameraPointToDepthSpace(PVector pos){
+		float [] rawData = mapCameraPointToDepthSpace(pos.x, pos.y, pos.z);
+		return new PVector(rawData[0], rawData[1]);
 	}
-
-	/**
-	 * Enable or Disable Depth Image Capture
-	 * 
-	 * @param boolean toggle
-	 */
-	public void enableDepthImg(boolean toggle) {
-		jniEnableDepthFrame(toggle);
+	
+	public PVector MapCameraPointToColorSpace(PVector pos){
+		float [] rawData = mapCameraPointToColorSpace(pos.x, pos.y, pos.z);
+		return new PVector(rawData[0], rawData[1]);
 	}
 
-	/**
-	 * Enable or Disable DepthMask Image Capture
-	 * 
-	 * @param boolean toggle
-	 */
-	public void enableDepthMaskImg(boolean toggle) {
-		jniEnableDepthMaskFrame(toggle);
-	}
+	// LISTENERS
 
 	/**
-	 * Enable or Disable Infrared Image Capture
-	 * 
-	 * @param boolean toggle
+	 * Call listener with the 3d skeletons of every new body frame, the
+	 * Skeleton array is owned by the listener registration and reused
+	 * @param listener Consumer of Skeleton []
 	 */
-	public void enableInfraredImg(boolean toggle) {
-		jniEnableInfraredFrame(toggle);
+	public void addSkeletonListener(Consumer<Skeleton[]> listener) {
+		addFrameListener(Stream.SKELETON_3D, new SkeletonListener(listener));
 	}
 
 	/**
-	 * Enable or Disable BodyTrack Image Capture
-	 * 
-	 * @param boolean toggle
+	 * Stop calling a skeleton listener
+	 * @param listener Consumer of Skeleton []
+	 * @return true if the listener was registered
 	 */
-	public void enableBodyTrackImg(boolean toggle) {
-		jniEnableBodyTrackFrame(toggle);
+	public boolean removeSkeletonListener(final Consumer<Skeleton[]> listener) {
+		return getFrameDispatcher().removeListeners(Stream.SKELETON_3D,
+				l -> l instanceof SkeletonListener && ((SkeletonListener) l).target == listener);
 	}
 
-	/**
-	 * Enable or Disable LongExposure Infrared Image Capture
-	 * 
-	 * @param boolean toggle
-	 */
-	public void enableInfraredLongExposureImg(boolean toggle) {
-		jniEnableInfraredLongExposure(toggle);
-	}
+	// parses the skeleton frames for a single listener
+	private static class SkeletonListener implements Consumer<FrameBuffer> {
+		final Consumer<Skeleton[]> target;
+		final SkeletonFrame skeletonFrame = new SkeletonFrame(Stream.SKELETON_3D);
+		final Skeleton[]    skeletons = Skeleton.createSkeletons(skeletonFrame);
 
-	/**
-	 * Enable or Disable Skeleton Depth Map Capture
-	 * 
-	 * @param boolean toggle
-	 */
-	public void enableSkeletonDepthMap(boolean toggle) {
-		jniEnableSkeletonDepth(toggle);
-	}
+		SkeletonListener(Consumer<Skeleton[]> target) {
+			this.target = target;
+		}
 
-	/**
-	 * Enable or Disable Skeleton Color Map Capture
-	 * 
-	 * @param boolean toggle
-	 */
-	public void enableSkeletonColorMap(boolean toggle) {
-		jniEnableSkeletonColor(toggle);
+		public void accept(FrameBuffer frame) {
+			skeletonFrame.update(frame);
+			target.accept(skeletons);
+		}
 	}
 
-	/**
-	 * Enable or Disable Skeleton 3D Map Capture
-	 * 
-	 * @param boolean toggle
-	 */
-	public void enableSkeleton3DMap(boolean toggle) {
-		jniEnableSkeleton3D(toggle);
+	// ALLOCATION
+
+	/**
+	 * Get the memory held for a stream: the frame exchange buffers, the Image
+	 * and the buffers returned by the getters, in bytes. Nothing is allocated
+	 * before the stream is enabled or read, and it is released when disabled.
+	 * @param stream Stream
+	 * @return long
+	 */
+	public long getAllocatedBytes(Stream stream) {
+		long bytes = super.getAllocatedBytes(stream);
+		Image image = streamImages[stream.ordinal()];
+		if (image != null)
+			bytes += image.getAllocatedBytes();
+
+		switch (stream) {
+		case BODY_TRACK_IDS:
+			for (Image userImg : bodyTrackUsersImg)
+				if (userImg != null)
+					bytes += userImg.getAllocatedBytes();
+			bytes += rawBodyTrackIds.length * 4L;
+			break;
+		case FACE_COLOR:
+			bytes += rawFaceColor.length * 4L;
+			break;
+		case FACE_INFRARED:
+			bytes += rawFaceInfrared.length * 4L;
+			break;
+		case HD_FACE:
+			bytes += rawHDFace.length * 4L;
+			break;
+		default:
+			break;
+		}
+		return bytes;
 	}
 
 	/**
-	 * Enable or Disable Face Tracking
-	 * 
-	 * @param boolean toggle
+	 * Number of image requests of a stream answered with the already converted
+	 * PImage, because no new frame arrived since the previous request
+	 * @param stream Stream
+	 * @return long, 0 for non image streams
 	 */
-	public void enableFaceDetection(boolean toggle) {
-		jniEnableFaceDetection(toggle);
+	public long getImageCacheHits(Stream stream) {
+		Image image = streamImages[stream.ordinal()];
+		return image != null ? image.getCacheHits() : 0;
 	}
 
 	/**
-	 * Enable HDFace detection
-	 * 
-	 * @param toggle
-	 */
-	public void enableHDFaceDetection(boolean toggle) {
-		jniEnableHDFaceDetection(toggle);
-	}
-	
-	public void  enableCoordinateMapperRGBDepth(boolean toggle){
-		jniEnableCoordinateMapperRGBDepth();
-	}
-
-	/*
-	 * public void enableMirror(boolean toggle){ jniSetMirror(toggle); }
+	 * Number of image requests of a stream that copied a new frame into the PImage
+	 * @param stream Stream
+	 * @return long, 0 for non image streams
 	 */
-	
-	//MAPPERS
-	public PVector MapCameraPointToDepthSpace(PVector pos){
-		float [] rawData = jniMapCameraPointToDepthSpace(pos.x, pos.y, pos.z);
-		return new PVector(rawData[0], rawData[1]);
-	}
-	
-	public PVector MapCameraPointToColorSpace(PVector pos){
-		float [] rawData = jniMapCameraPointToColorSpace(pos.x, pos.y, pos.z);
-		return new PVector(rawData[0], rawData[1]);
-	}
-	
-	public float [] getMapDepthToColor(){
-		return jniGetMapDethToColorSpace();
-	}
-		
-		
-	protected boolean updateDevice() {
-		boolean result = jniUpdate();
-		return result;
+	public long getImageCacheMisses(Stream stream) {
+		Image image = streamImages[stream.ordinal()];
+		return image != null ? image.getCacheMisses() : 0;
 	}
 
-	protected void stopDevice() {
-		jniStopDevice();
-	}
-	
-	protected void cleanDevice() {
-		jniStopSignal();
+	// allocate the Images of the enabled streams, release them when disabled
+	protected void streamEnabled(Stream stream, boolean toggle) {
+		if (toggle) {
+			getStreamImage(stream);
+			return;
+		}
+		streamImages[stream.ordinal()] = null;
+		if (stream == Stream.BODY_TRACK_IDS) {
+			for (int i = 0; i < bodyTrackUsersImg.length; i++)
+				bodyTrackUsersImg[i] = null;
+			bodyTrackUsersList.clear();
+		}
 	}
 
-	// ------JNI FUNCTIONS
-	private native void 	jniDevice();
-
-	private native boolean 	jniInit();
-
-	private native String 	jniVersion();
-
-	private native boolean 	jniUpdate();
-
-	// STOP
-	private native void 	jniStopDevice();
-
-	private native boolean 	jniStopSignal();
-
-	// ENABLE FRAMES
-	private native void 	jniEnableColorFrame(boolean toggle);
-
-	private native void 	jniEnableDepthFrame(boolean toggle);
-
-	private native void 	jniEnableDepthMaskFrame(boolean toggle);
-
-	private native void 	jniEnableInfraredFrame(boolean toggle);
-
-	private native void 	jniEnableBodyTrackFrame(boolean toggle);
-
-	private native void 	jniEnableInfraredLongExposure(boolean toggle);
-
-	private native void 	jniEnableSkeletonDepth(boolean toggle);
-
-	private native void 	jniEnableSkeletonColor(boolean toggle);
-
-	private native void 	jniEnableSkeleton3D(boolean toggle);
-
-	private native void 	jniEnableFaceDetection(boolean toggle);
-
-	private native void 	jniEnableHDFaceDetection(boolean toggle);
-
-	private native void 	jniEnablePointCloud(boolean toggle);
-	
-
-	// COLOR CHANNEL
-	private native void     jniEnableColorChannel(boolean toggle);
-	
-	private native float[] 	jniGetColorChannel();
-
-	
-	private native int[] 	jniGetColorData();
-
-	
-	// DEPTH
-	private native int[] 	jniGetDepth16Data();
-	
-	private native int[] 	jniGetDepth256Data();
-	
-	//DEPTH RAW
-	
-	private native int[] 	jniGetRawDepth16Data();
-	
-	private native int[] 	jniGetRawDepth256Data();
-	
-
-	private native int[] 	jniGetInfraredData();
-
-	private native int[] 	jniGetInfraredLongExposure();
-
-	private native int[] 	jniGetBodyTrack();
-
-	private native int[] 	jniGetDepthMask();
-
-	private native float[] 	jniGetSkeleton3D();
-
-	private native float[] 	jniGetSkeletonDepth();
-
-	private native float[] 	jniGetSkeletonColor();
-
-	private native float[] 	jniGetFaceColorData();
-
-	private native float[] 	jniGetFaceInfraredData();
-
-	private native float[] 	jniGetHDFaceDetection();
-
-	// POINT CLOUD
-	private native float[] 	jniGetPointCloudDeptMap();
-
-	private native float[] 	jniGetPointCloudColorMap();
-
-	private native int[] 	jniGetPointCloudDepthImage();
-
-	// PC THRESHOLDS
-	private native void 	jniSetLowThresholdDepthPC(int val);
-
-	private native int 		jniGetLowThresholdDepthPC();
-
-	private native void 	jniSetHighThresholdDepthPC(int val);
-
-	private native int     	jniGetHighThresholdDepthPC();
-
-	// BODY INDEX
-	private native void     jniSetNumberOfUsers(int index);
-
-	private native int[] 	jniGetBodyIndexUser(int index);
-	
-	private native int[]   	jniGetBodyTrackIds();
-	
-	private native int[]    jniGetRawBodyTrack();
-	
-	private native int      jniGetNumberOfUsers();
-	//crists
-	
-	//MAPERS
-	private native float[]	jniMapCameraPointToDepthSpace(float camaraSpacePointX, float cameraSpacePointY, float cameraSpacePointZ);
-	
-	private native float[]  jniMapCameraPointToColorSpace(float camaraSpacePointX, float cameraSpacePointY, float cameraSpacePointZ);
-
-	private native float[]  jniGetMapDethToColorSpace();
-	
-	private native void     jniEnableCoordinateMapperRGBDepth();
-	
-	public void run() {
-		int fr = PApplet.round(1000.0f / parent.frameRate);
-		while (runningKinect) {
-			// boolean result = updateDevice();
-
-			// if(!result){
-			// System.out.println("Error updating Kinect EXIT");
-			// }
-			try {
-				Thread.sleep(fr); // 2
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-				return;
-			}
+	// Image of an image stream, created on first use, null for the other streams
+	private Image getStreamImage(Stream stream) {
+		Image image = streamImages[stream.ordinal()];
+		if (image != null)
+			return image;
+
+		switch (stream) {
+		case COLOR:
+			image = new Image(parent, WIDTHColor, HEIGHTColor, PImage.ARGB);
+			break;
+		case DEPTH:
+		case DEPTH_256:
+		case INFRARED:
+		case INFRARED_LONG_EXPOSURE:
+		case POINT_CLOUD_DEPTH_IMAGE:
+			image = new Image(parent, WIDTHDepth, HEIGHTDepth, PImage.ALPHA);
+			break;
+		case BODY_TRACK:
+		case DEPTH_MASK:
+			image = new Image(parent, WIDTHDepth, HEIGHTDepth, PImage.RGB);
+			break;
+		default:
+			return null;
 		}
-
+		streamImages[stream.ordinal()] = image;
+		return image;
+	}
+
+	// FRAME COPY
+
+	// copy and upload the pixels only when the stream has a new frame
+	private Image updateImage(Stream stream) {
+		Image image = getStreamImage(stream);
+		FrameBuffer frame = getFrameBuffer(stream);
+		image.setFrameInfo(getFrameInfo(stream));
+		if (image.isCurrent(frame))
+			return image;
+		if (stream == Stream.COLOR)
+			getColorConverter().bgraToArgb(frame.getByteBuffer(), WIDTHColor, HEIGHTColor, image.pixels());
+		else
+			copyIntFrame(frame, image.pixels());
+		image.updatePixels();
+		return image;
 	}
 }
@@ -1,5 +1,6 @@
 package KinectPV2;
 
+import KinectPV2.core.FaceProperties;
 import processing.core.PVector;
 
 /*
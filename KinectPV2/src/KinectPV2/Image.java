@@ -23,6 +23,8 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
 THE SOFTWARE.
 */
 
+import KinectPV2.core.FrameBuffer;
+import KinectPV2.core.FrameInfo;
 import processing.core.PApplet;
 import processing.core.PImage;
 
@@ -32,27 +34,28 @@ import processing.core.PImage;
  *
  */
 public class Image{
-	private    float fps;
+	private    FrameInfo frameInfo;
 	private    int imgPixelSize;
 	private    PApplet parent;
 	
 	protected  PImage    img;
 	private    boolean   processRawData;
 	
-	protected  byte  []  rawByteData;
-	
-	protected  float []  rawFloatData;
+	// allocated on first use
 	protected  int   []  rawIntData;
+
+	// frame currently shown, sequence and capture time
+	private    long  frameSequence;
+	private    long  frameTimestamp;
+	private    long  cacheHits;
+	private    long  cacheMisses;
 	
 	public Image(PApplet p, int width, int height, int MODE){
 		parent = p;
 		img    =  parent.createImage(width, height, MODE);
 		imgPixelSize = width * height;
-		rawByteData  = new byte[imgPixelSize];
-		
-		rawIntData   = new int[imgPixelSize];
-		rawFloatData = new float[imgPixelSize];
 		processRawData= false;
+		frameSequence = -1;
 	}
 	
 	/**
@@ -85,6 +88,27 @@ public class Image{
 		return img.pixels;
 	}
 	
+	/**
+	 * get raw int data of the Image size, allocated on first use
+	 * @return int []
+	 */
+	public int [] getRawIntData(){
+		if(rawIntData == null)
+			rawIntData = new int[imgPixelSize];
+		return rawIntData;
+	}
+
+	/**
+	 * get memory held by the pixels and the raw data, in bytes
+	 * @return long
+	 */
+	public long getAllocatedBytes(){
+		long bytes = imgPixelSize * 4L;
+		if(rawIntData != null)
+			bytes += rawIntData.length * 4L;
+		return bytes;
+	}
+
 	/**
 	 * get Image
 	 * @return PImage
@@ -94,11 +118,56 @@ public class Image{
 	}
 	
 	/**
-	 * get Fps of the current Image
+	 * get Fps of the current Image, frames produced per second by its stream
 	 * @return float
 	 */
 	public float getFPS() {
-		return fps;
+		return frameInfo != null ? frameInfo.getFPS() : 0;
+	}
+
+	/**
+	 * get metadata of the frame shown in the Image, null before the first update
+	 * @return FrameInfo
+	 */
+	public FrameInfo getFrameInfo() {
+		return frameInfo;
+	}
+
+	protected void setFrameInfo(FrameInfo frameInfo) {
+		this.frameInfo = frameInfo;
+	}
+
+	/**
+	 * Check if the Image already holds the frame, otherwise mark it as the
+	 * current one, the caller then has to copy it and update the pixels
+	 * @param frame FrameBuffer
+	 * @return true if the pixels are up to date
+	 */
+	protected boolean isCurrent(FrameBuffer frame) {
+		if (frame.getSequence() == frameSequence && frame.getTimestamp() == frameTimestamp) {
+			cacheHits++;
+			return true;
+		}
+		frameSequence  = frame.getSequence();
+		frameTimestamp = frame.getTimestamp();
+		cacheMisses++;
+		return false;
+	}
+
+	/**
+	 * get number of updates that reused the pixels of the current frame
+	 * @return long
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * get number of updates that copied a new frame into the pixels
+	 * @return long
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
 	}
 	
 	/**
@@ -1,4 +1,5 @@
 package KinectPV2;
+import KinectPV2.core.SkeletonFrame;
 import processing.core.PVector;
 
 /*
@@ -26,6 +27,8 @@ THE SOFTWARE.
 
 /**
  * Simple Joint Class with (x, y, z) position, Orientation, state and type
+ * A joint is a view of a single body and joint of a SkeletonFrame, it
+ * always reads the last unpacked frame.
  * @author thomas
  *
  */
@@ -33,35 +36,43 @@ public class KJoint {
 	
 	protected PVector pos;
 	
-	protected int state;
-	
 	protected int type;
 	
 	protected  KQuaternion  orientation;
 	
+	private final SkeletonFrame frame;
+	private final int body;
 	
-	
-	KJoint(float x, float y, float z, KQuaternion ori, int state){
-		pos = new PVector(x, y, z);
-		orientation = ori;
-		this.state = state;
+	KJoint(SkeletonFrame frame, int body, int type){
+		this.frame = frame;
+		this.body  = body;
+		this.type  = type;
+		pos = new PVector();
+		orientation = new KQuaternion();
 	}
 	
-	KJoint(){}
-	
 	/**
-	 * Get orientation of a single Joint
+	 * Get orientation of a single Joint, the same KQuaternion is updated on every call
 	 * @return Quartenion
 	 */
 	public KQuaternion getOrientation() {
+		if (type < SkeletonFrame.JOINTS) {
+			float [] orientations = frame.getOrientations();
+			int index = SkeletonFrame.index(body, type) * 4;
+			orientation.w = orientations[index];
+			orientation.x = orientations[index + 1];
+			orientation.y = orientations[index + 2];
+			orientation.z = orientations[index + 3];
+		}
 		return orientation;
 	}
 	
 	/**
-	 * get PVector Position
+	 * get PVector Position, the same PVector is updated on every call
 	 * @return
 	 */
 	public PVector getPosition(){
+		pos.set(getX(), getY(), getZ());
 		return pos;
 	}
 	/**
@@ -69,7 +80,7 @@ public class KJoint {
 	 * @return float x
 	 */
 	public float getX(){
-		return pos.x;
+		return type < SkeletonFrame.JOINTS ? frame.getX(body, type) : 0;
 	}
 	
 	/**
@@ -77,7 +88,7 @@ public class KJoint {
 	 * @return float y
 	 */
 	public float getY(){
-		return pos.y;
+		return type < SkeletonFrame.JOINTS ? frame.getY(body, type) : 0;
 	}
 	
 	/**
@@ -85,7 +96,7 @@ public class KJoint {
 	 * @return float z
 	 */
 	public float getZ(){
-		return pos.z;
+		return type < SkeletonFrame.JOINTS ? frame.getZ(body, type) : 0;
 	}
 	
 	/**
@@ -93,7 +104,7 @@ public class KJoint {
 	 * @return state
 	 */
 	public int getState(){
-		return state;
+		return type < SkeletonFrame.JOINTS ? frame.getState(body, type) : 0;
 	}
 	
 	/**
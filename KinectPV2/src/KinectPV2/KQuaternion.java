@@ -38,14 +38,14 @@ public class KQuaternion {
 	
 	float w;
 	
-	KQuaternion(float w, float x, float y, float z){
+	public KQuaternion(float w, float x, float y, float z){
 		this.x = x;
 		this.y = y;
 		this.z = z;
 		this.w = w;
 	}
 	
-	KQuaternion(){
+	public KQuaternion(){
 		this.x = 0;
 		this.y = 0;
 		this.z = 0;
@@ -74,6 +74,180 @@ public class KQuaternion {
 	                , q1.w * q2.y + q1.y * q2.w + q1.z * q2.x - q1.x * q2.z
 	                , q1.w * q2.z + q1.z * q2.w + q1.x * q2.y - q1.y * q2.x);
 	 }
+
+	// IN PLACE, no allocation
+
+	/**
+	 * Set the components
+	 * @return this
+	 */
+	public KQuaternion set(float w, float x, float y, float z){
+		this.w = w;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	/**
+	 * Copy the components of q
+	 * @param q KQuaternion
+	 * @return this
+	 */
+	public KQuaternion set(KQuaternion q){
+		return set(q.w, q.x, q.y, q.z);
+	}
+
+	/**
+	 * Rotate (x1, y1, z1) by this unit quaternion into out
+	 * @param out float array of at least 3
+	 * @return out
+	 */
+	public float [] rotateInto(float x1, float y1, float z1, float [] out){
+		rotate(w, x, y, z, x1, y1, z1, out, 0);
+		return out;
+	}
+
+	/**
+	 * Rotate (x1, y1, z1) by this unit quaternion into out
+	 * @param out PVector
+	 * @return out
+	 */
+	public PVector rotateInto(float x1, float y1, float z1, PVector out){
+		// t = 2 * (q x v), v' = v + w * t + q x t
+		float tx = 2 * (y * z1 - z * y1);
+		float ty = 2 * (z * x1 - x * z1);
+		float tz = 2 * (x * y1 - y * x1);
+		out.x = x1 + w * tx + (y * tz - z * ty);
+		out.y = y1 + w * ty + (z * tx - x * tz);
+		out.z = z1 + w * tz + (x * ty - y * tx);
+		return out;
+	}
+
+	/**
+	 * this * q into out, out can be this or q
+	 * @param q KQuaternion
+	 * @param out KQuaternion
+	 * @return out
+	 */
+	public KQuaternion multInto(KQuaternion q, KQuaternion out){
+		return out.set(w * q.w - x * q.x - y * q.y - z * q.z
+				, w * q.x + x * q.w + y * q.z - z * q.y
+				, w * q.y + y * q.w + z * q.x - x * q.z
+				, w * q.z + z * q.w + x * q.y - y * q.x);
+	}
+
+	/**
+	 * Conjugate into out, out can be this
+	 * @param out KQuaternion
+	 * @return out
+	 */
+	public KQuaternion conjInto(KQuaternion out){
+		return out.set(w, -x, -y, -z);
+	}
+
+	/**
+	 * Scale to unit length, a zero quaternion is left unchanged
+	 * @return this
+	 */
+	public KQuaternion normalize(){
+		float len = (float) Math.sqrt(w * w + x * x + y * y + z * z);
+		if (len > 0) {
+			float inv = 1.0f / len;
+			w *= inv;
+			x *= inv;
+			y *= inv;
+			z *= inv;
+		}
+		return this;
+	}
+
+	/**
+	 * Dot product
+	 * @param q KQuaternion
+	 * @return float
+	 */
+	public float dot(KQuaternion q){
+		return w * q.w + x * q.x + y * q.y + z * q.z;
+	}
+
+	/**
+	 * Spherical interpolation from this to q along the shortest path into out,
+	 * out can be this or q
+	 * @param q KQuaternion
+	 * @param t 0 gives this, 1 gives q
+	 * @param out KQuaternion
+	 * @return out
+	 */
+	public KQuaternion slerpInto(KQuaternion q, float t, KQuaternion out){
+		float qw = q.w, qx = q.x, qy = q.y, qz = q.z;
+		float cos = dot(q);
+		if (cos < 0) {
+			cos = -cos;
+			qw = -qw;
+			qx = -qx;
+			qy = -qy;
+			qz = -qz;
+		}
+		float a;
+		float b;
+		if (cos > 0.9995f) {
+			// nearly parallel, linear interpolation then normalize
+			a = 1 - t;
+			b = t;
+			out.set(a * w + b * qw, a * x + b * qx, a * y + b * qy, a * z + b * qz);
+			return out.normalize();
+		}
+		float theta = (float) Math.acos(cos);
+		float sin = (float) Math.sin(theta);
+		a = (float) Math.sin((1 - t) * theta) / sin;
+		b = (float) Math.sin(t * theta) / sin;
+		return out.set(a * w + b * qw, a * x + b * qx, a * y + b * qy, a * z + b * qz);
+	}
+
+	// BATCH, packed w, x, y, z quaternions as in SkeletonFrame.getOrientations()
+
+	/**
+	 * Rotate count packed vectors (x, y, z) each by its packed unit quaternion
+	 * (w, x, y, z) in one pass, out can be vectors
+	 * @param orientations float array of count x 4
+	 * @param vectors float array of count x 3
+	 * @param out float array of count x 3
+	 * @param count number of vectors
+	 */
+	public static void rotate(float [] orientations, float [] vectors, float [] out, int count){
+		for (int i = 0; i < count; i++) {
+			int q = i * 4;
+			int v = i * 3;
+			rotate(orientations[q], orientations[q + 1], orientations[q + 2], orientations[q + 3],
+					vectors[v], vectors[v + 1], vectors[v + 2], out, v);
+		}
+	}
+
+	/**
+	 * Rotate a single vector (x1, y1, z1), ex. a joint axis, by count packed
+	 * unit quaternions (w, x, y, z) in one pass
+	 * @param orientations float array of count x 4
+	 * @param out float array of count x 3
+	 * @param count number of quaternions
+	 */
+	public static void rotate(float [] orientations, float x1, float y1, float z1, float [] out, int count){
+		for (int i = 0; i < count; i++) {
+			int q = i * 4;
+			rotate(orientations[q], orientations[q + 1], orientations[q + 2], orientations[q + 3],
+					x1, y1, z1, out, i * 3);
+		}
+	}
+
+	private static void rotate(float w, float x, float y, float z,
+			float x1, float y1, float z1, float [] out, int offset){
+		float tx = 2 * (y * z1 - z * y1);
+		float ty = 2 * (z * x1 - x * z1);
+		float tz = 2 * (x * y1 - y * x1);
+		out[offset]     = x1 + w * tx + (y * tz - z * ty);
+		out[offset + 1] = y1 + w * ty + (z * tx - x * tz);
+		out[offset + 2] = z1 + w * tz + (x * ty - y * tx);
+	}
 	 
 	public float getX(){
 		return x;
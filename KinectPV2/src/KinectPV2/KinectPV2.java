@@ -1,5 +1,6 @@
 package KinectPV2;
 
+import KinectPV2.core.FrameSource;
 import processing.core.PApplet;
 
 /*
@@ -40,6 +41,19 @@ public class KinectPV2 extends Device{
 		
 		parent.registerMethod("dispose", this);
 	}
+
+	/**
+	 * KinectPV2 reading frames from any FrameSource,
+	 * ex. new KinectPV2(this, new SyntheticFrameSource()) without a Kinect
+	 * @param _p PApplet
+	 * @param source FrameSource
+	 */
+	public KinectPV2(PApplet _p, FrameSource source) {
+		super(_p, source);
+		parent = _p;
+		
+		parent.registerMethod("dispose", this);
+	}
 	
 	public void init(){
 		initDevice();
@@ -23,8 +23,13 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
 THE SOFTWARE.
 */
 
+import KinectPV2.core.SkeletonFrame;
+import KinectPV2.core.SkeletonProperties;
+
 /**
  * Skeleton Class
+ * A skeleton is a view of a single body of a SkeletonFrame, its joints
+ * always read the last unpacked frame.
  * @author Thomas Sanchez Lengeling
  *
  */
@@ -33,15 +38,15 @@ public class Skeleton implements SkeletonProperties{
 	
 	protected KJoint [] kJoints;
 	
-	protected int leftHandState;
-	protected int rightHandState;
-	
-	private boolean tracked;
+	private final SkeletonFrame frame;
+	private final int body;
 	
-	Skeleton(){
+	Skeleton(SkeletonFrame frame, int body){
+		this.frame = frame;
+		this.body  = body;
 		kJoints  = new KJoint[JointType_Count + 1];
 		for(int i = 0; i < JointType_Count + 1; i++){
-			kJoints[i] = new KJoint(0,0,0, new KQuaternion(), 0);
+			kJoints[i] = new KJoint(frame, body, i);
 		}
 	}
 	
@@ -49,7 +54,7 @@ public class Skeleton implements SkeletonProperties{
 	 * if the current skeleton is being tracked
 	 */
 	public boolean isTracked(){
-		return tracked;
+		return frame.isTracked(body);
 	}
 	
 	/**
@@ -65,7 +70,7 @@ public class Skeleton implements SkeletonProperties{
 	 * @return int leftHandState
 	 */
 	public int getLeftHandState(){
-		return leftHandState;
+		return frame.getLeftHandState(body);
 	}
 	
 	/**
@@ -73,40 +78,34 @@ public class Skeleton implements SkeletonProperties{
 	 * @return int rightHandState
 	 */
 	public int getRightHandState(){
-		return rightHandState;
+		return frame.getRightHandState(body);
 	}
 	
-	protected void createSkeletonData(float [] rawData, int i){
-		int index2 = i * (JointType_Count+1) * 9;
-		int indexJoint = index2 + (JointType_Count+1) * 9 - 1;
-		if(rawData[indexJoint] == 1.0){
-			tracked = true;
-		}else{
-			tracked = false;
-		}
-		
-		if(tracked){
-			for(int j = 0; j < JointType_Count; ++j){			
-				int index1 = j * 9;
-				kJoints[j].pos.x = rawData[index2 + index1 + 0];
-				kJoints[j].pos.y = rawData[index2 + index1 + 1];
-				kJoints[j].pos.z = rawData[index2 + index1 + 2];
-				
-				kJoints[j].orientation.w = rawData[index2 + index1 + 3];
-				kJoints[j].orientation.x = rawData[index2 + index1 + 4];
-				kJoints[j].orientation.y = rawData[index2 + index1 + 5];
-				kJoints[j].orientation.z = rawData[index2 + index1 + 6];
-				
-				int state =   (int)rawData[index2 + index1 + 7];
-				int type  =   (int)rawData[index2 + index1 + 8];
-				
-				kJoints[j].state = state;
-				kJoints[j].type  = type;
-				if(type == JointType_HandLeft)
-					leftHandState = state;
-				if(type == JointType_HandRight)
-					rightHandState = state;
-			}
-		}
+	/**
+	 * Index of the body in the skeleton frame
+	 * @return int 0 - 5
+	 */
+	public int getBodyIndex(){
+		return body;
+	}
+	
+	/**
+	 * SkeletonFrame the skeleton reads from
+	 * @return SkeletonFrame
+	 */
+	public SkeletonFrame getSkeletonFrame(){
+		return frame;
+	}
+	
+	/**
+	 * Create the views of all the bodies of a skeleton frame
+	 * @param frame SkeletonFrame
+	 * @return Skeleton []
+	 */
+	static Skeleton [] createSkeletons(SkeletonFrame frame){
+		Skeleton [] skeletons = new Skeleton[BODY_COUNT];
+		for(int i = 0; i < BODY_COUNT; i++)
+			skeletons[i] = new Skeleton(frame, i);
+		return skeletons;
 	}
 }
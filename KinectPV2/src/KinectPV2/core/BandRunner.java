@@ -0,0 +1,153 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a range of rows in bands on a ForkJoinPool, the range is halved
+ * until a band holds at most the band rows. Without a pool, or when the
+ * range fits in a single band, the rows run on the calling thread and no
+ * task is forked. Every stage computing a frame in parallel owns one.
+ */
+final class BandRunner {
+
+	/**
+	 * Rows of a band, from start to end
+	 */
+	interface IntBiConsumer {
+		void accept(int start, int end);
+	}
+
+	private final ForkJoinPool pool;
+	private final boolean      ownPool;
+
+	private int bandRows;
+
+	/**
+	 * Runner on the common ForkJoinPool
+	 * @param bandRows rows of a band
+	 */
+	BandRunner(int bandRows) {
+		pool = ForkJoinPool.commonPool();
+		ownPool = false;
+		this.bandRows = bandRows;
+	}
+
+	/**
+	 * Runner on its own pool, 1 runs on the calling thread
+	 * @param parallelism number of worker threads
+	 * @param bandRows rows of a band
+	 */
+	BandRunner(int parallelism, int bandRows) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be at least 1, got " + parallelism);
+		pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		ownPool = pool != null;
+		this.bandRows = bandRows;
+	}
+
+	int getParallelism() {
+		return pool != null ? pool.getParallelism() : 1;
+	}
+
+	void setBandRows(int rows) {
+		if (rows < 1)
+			throw new IllegalArgumentException("band rows must be at least 1, got " + rows);
+		bandRows = rows;
+	}
+
+	int getBandRows() {
+		return bandRows;
+	}
+
+	/**
+	 * True if run() splits rows over several tasks
+	 * @param rows int
+	 * @return boolean
+	 */
+	boolean splits(int rows) {
+		return pool != null && rows > bandRows;
+	}
+
+	/**
+	 * Run rows in bands of at most the band rows
+	 * @param rows int
+	 * @param band IntBiConsumer
+	 */
+	void run(int rows, IntBiConsumer band) {
+		run(rows, bandRows, band);
+	}
+
+	/**
+	 * Run rows in bands of at most grain rows, ex. 1 for units already
+	 * sized as bands
+	 * @param rows int
+	 * @param grain at least 1
+	 * @param band IntBiConsumer
+	 */
+	void run(int rows, int grain, IntBiConsumer band) {
+		// a single thread runs every row, no task forked
+		if (pool == null || rows <= grain)
+			band.accept(0, rows);
+		else
+			pool.invoke(new Band(band, grain, 0, rows));
+	}
+
+	/**
+	 * Shut down the worker threads of a runner created with its own pool
+	 */
+	void close() {
+		if (ownPool)
+			pool.shutdown();
+	}
+
+	private final static class Band extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final IntBiConsumer band;
+		final int grain;
+		final int start;
+		final int end;
+
+		Band(IntBiConsumer band, int grain, int start, int end) {
+			this.band = band;
+			this.grain = grain;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			int rows = end - start;
+			if (rows > grain) {
+				int mid = start + rows / 2;
+				invokeAll(new Band(band, grain, start, mid), new Band(band, grain, mid, end));
+				return;
+			}
+			band.accept(start, end);
+		}
+	}
+}
@@ -0,0 +1,295 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Converts BGRA color frames into ARGB pixels, RGB planes or grayscale.
+ * The frame is split into tiles of rows converted in parallel on a
+ * ForkJoinPool, the results are written into destination arrays owned by
+ * the caller so they can be reused every frame.
+ * A converter converts one frame at a time, use one per thread.
+ */
+public class ColorConverter {
+
+	/**
+	 * Default number of rows per tile
+	 */
+	public final static int DEFAULT_TILE_ROWS = 64;
+
+	private final static float INV_255 = 1.0f / 255.0f;
+
+	// conversions
+	private final static int ARGB         = 0;
+	private final static int PLANAR_BYTE  = 1;
+	private final static int PLANAR_FLOAT = 2;
+	private final static int GRAY_BYTE    = 3;
+	private final static int GRAY_ARGB    = 4;
+
+	private final BandRunner runner;
+	private final BandRunner.IntBiConsumer tile = this::tile;
+
+	// little endian views of the last source, BGRA bytes read as ARGB ints
+	private ByteBuffer lastSource;
+	private ByteBuffer byteView;
+	private IntBuffer  intView;
+
+	// arguments of the running conversion
+	private int     op;
+	private int     width;
+	private int     height;
+	private int[]   ints;
+	private byte[]  bytes;
+	private float[] floats;
+
+	/**
+	 * Converter running on the common ForkJoinPool
+	 */
+	public ColorConverter() {
+		runner = new BandRunner(DEFAULT_TILE_ROWS);
+	}
+
+	/**
+	 * Converter running on its own pool, 1 converts on the calling thread
+	 * @param parallelism number of worker threads
+	 */
+	public ColorConverter(int parallelism) {
+		runner = new BandRunner(parallelism, DEFAULT_TILE_ROWS);
+	}
+
+	/**
+	 * Number of threads converting a frame
+	 * @return int
+	 */
+	public int getParallelism() {
+		return runner.getParallelism();
+	}
+
+	/**
+	 * Rows converted by a single task
+	 * @param rows at least 1
+	 */
+	public void setTileRows(int rows) {
+		runner.setBandRows(rows);
+	}
+
+	/**
+	 * Rows converted by a single task
+	 * @return int
+	 */
+	public int getTileRows() {
+		return runner.getBandRows();
+	}
+
+	/**
+	 * BGRA to ARGB pixels, alpha forced to opaque
+	 * @param src BGRA bytes, width x height x 4
+	 * @param width frame width
+	 * @param height frame height
+	 * @param dst int array of at least width x height
+	 * @return dst
+	 */
+	public int[] bgraToArgb(ByteBuffer src, int width, int height, int[] dst) {
+		checkSize(src, width, height, dst.length, 1);
+		convert(ARGB, width, height, dst, null, null);
+		return dst;
+	}
+
+	/**
+	 * BGRA to planar RGB bytes, the red plane followed by the green and the blue planes
+	 * @param src BGRA bytes, width x height x 4
+	 * @param width frame width
+	 * @param height frame height
+	 * @param dst byte array of at least width x height x 3
+	 * @return dst
+	 */
+	public byte[] bgraToPlanarRGB(ByteBuffer src, int width, int height, byte[] dst) {
+		checkSize(src, width, height, dst.length, 3);
+		convert(PLANAR_BYTE, width, height, null, dst, null);
+		return dst;
+	}
+
+	/**
+	 * BGRA to planar RGB floats from 0 to 1, the red plane followed by the green and the blue planes
+	 * @param src BGRA bytes, width x height x 4
+	 * @param width frame width
+	 * @param height frame height
+	 * @param dst float array of at least width x height x 3
+	 * @return dst
+	 */
+	public float[] bgraToPlanarRGB(ByteBuffer src, int width, int height, float[] dst) {
+		checkSize(src, width, height, dst.length, 3);
+		convert(PLANAR_FLOAT, width, height, null, null, dst);
+		return dst;
+	}
+
+	/**
+	 * BGRA to 8 bit luma, BT.601 weights
+	 * @param src BGRA bytes, width x height x 4
+	 * @param width frame width
+	 * @param height frame height
+	 * @param dst byte array of at least width x height
+	 * @return dst
+	 */
+	public byte[] bgraToGray(ByteBuffer src, int width, int height, byte[] dst) {
+		checkSize(src, width, height, dst.length, 1);
+		convert(GRAY_BYTE, width, height, null, dst, null);
+		return dst;
+	}
+
+	/**
+	 * BGRA to gray ARGB pixels, BT.601 weights, ready for display
+	 * @param src BGRA bytes, width x height x 4
+	 * @param width frame width
+	 * @param height frame height
+	 * @param dst int array of at least width x height
+	 * @return dst
+	 */
+	public int[] bgraToGray(ByteBuffer src, int width, int height, int[] dst) {
+		checkSize(src, width, height, dst.length, 1);
+		convert(GRAY_ARGB, width, height, dst, null, null);
+		return dst;
+	}
+
+	/**
+	 * Shut down the worker threads of a converter created with its own pool
+	 */
+	public void close() {
+		runner.close();
+	}
+
+	// CONVERSION
+
+	private void checkSize(ByteBuffer src, int width, int height, int capacity, int channels) {
+		if (width < 1 || height < 1)
+			throw new IllegalArgumentException("invalid frame size " + width + " x " + height);
+		int pixels = width * height;
+		if (src.capacity() < pixels * 4)
+			throw new IllegalArgumentException("source needs " + pixels * 4
+					+ " bytes, has " + src.capacity());
+		if (capacity < pixels * channels)
+			throw new IllegalArgumentException("destination needs " + pixels * channels
+					+ " elements, has " + capacity);
+		if (src != lastSource) {
+			lastSource = src;
+			byteView = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			byteView.clear();
+			intView = byteView.asIntBuffer();
+		}
+	}
+
+	private void convert(int op, int width, int height, int[] ints, byte[] bytes, float[] floats) {
+		this.op = op;
+		this.width = width;
+		this.height = height;
+		this.ints = ints;
+		this.bytes = bytes;
+		this.floats = floats;
+		runner.run(height, tile);
+		this.ints = null;
+		this.bytes = null;
+		this.floats = null;
+	}
+
+	// rows from rowStart to rowEnd, the tiles of a split frame position their own view
+	private void tile(int rowStart, int rowEnd) {
+		IntBuffer src = op == ARGB && runner.splits(height) ? intView.duplicate() : intView;
+		convert(op, rowStart * width, rowEnd * width, width * height, src, ints, bytes, floats);
+	}
+
+	// pixels from to to, src positioned by the ARGB copy
+	private void convert(int op, int from, int to, int plane, IntBuffer src,
+			int[] ints, byte[] bytes, float[] floats) {
+		switch (op) {
+		case ARGB:
+			toArgb(src, from, to, ints);
+			break;
+		case PLANAR_BYTE:
+			toPlanarBytes(from, to, plane, bytes);
+			break;
+		case PLANAR_FLOAT:
+			toPlanarFloats(from, to, plane, floats);
+			break;
+		case GRAY_BYTE:
+			toGrayBytes(from, to, bytes);
+			break;
+		case GRAY_ARGB:
+			toGrayArgb(from, to, ints);
+			break;
+		}
+	}
+
+	// BGRA bytes read little endian are already ARGB, bulk copy then force the alpha
+	private static void toArgb(IntBuffer src, int from, int to, int[] ints) {
+		src.position(from);
+		src.get(ints, from, to - from);
+		for (int i = from; i < to; i++)
+			ints[i] |= 0xff000000;
+	}
+
+	private void toPlanarBytes(int from, int to, int plane, byte[] bytes) {
+		ByteBuffer src = byteView;
+		int g = plane;
+		int b = plane * 2;
+		for (int i = from, s = from << 2; i < to; i++, s += 4) {
+			bytes[b + i] = src.get(s);
+			bytes[g + i] = src.get(s + 1);
+			bytes[i]     = src.get(s + 2);
+		}
+	}
+
+	private void toPlanarFloats(int from, int to, int plane, float[] floats) {
+		ByteBuffer src = byteView;
+		int g = plane;
+		int b = plane * 2;
+		for (int i = from, s = from << 2; i < to; i++, s += 4) {
+			int bgra = src.getInt(s);
+			floats[b + i] = (bgra & 0xff) * INV_255;
+			floats[g + i] = ((bgra >> 8) & 0xff) * INV_255;
+			floats[i]     = ((bgra >> 16) & 0xff) * INV_255;
+		}
+	}
+
+	private void toGrayBytes(int from, int to, byte[] bytes) {
+		ByteBuffer src = byteView;
+		for (int i = from, s = from << 2; i < to; i++, s += 4)
+			bytes[i] = (byte) luma(src.getInt(s));
+	}
+
+	private void toGrayArgb(int from, int to, int[] ints) {
+		ByteBuffer src = byteView;
+		for (int i = from, s = from << 2; i < to; i++, s += 4) {
+			int y = luma(src.getInt(s));
+			ints[i] = 0xff000000 | (y << 16) | (y << 8) | y;
+		}
+	}
+
+	// fixed point BT.601, 77 R + 150 G + 29 B over 256
+	private static int luma(int bgra) {
+		return (((bgra >> 16) & 0xff) * 77 + ((bgra >> 8) & 0xff) * 150 + (bgra & 0xff) * 29) >> 8;
+	}
+}
@@ -1,4 +1,4 @@
-package KinectPV2;
+package KinectPV2.core;
 
 /*
 Copyright (C) 2014  Thomas Sanchez Lengeling.
@@ -40,4 +40,5 @@ public interface Constants {
 	
 	public final static int Int32 = 0;
 	public final static int Float = 1;
+	public final static int Int16 = 2;
 }
@@ -0,0 +1,395 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.FloatBuffer;
+
+/**
+ * Camera space to depth and color image mapping in Java, from tables cached
+ * once from a FrameSource, so no call crosses JNI and the same mapping works
+ * with recorded frames or without any device.
+ * A camera point (x, y, z) is looked up by its ray (x / z, y / z) in a grid
+ * of nodes holding a + b / z per image coordinate, interpolated bilinearly:
+ * the lens distortion is in a and the parallax of the color camera in b.
+ * Both are sampled by mapping every node at two depths, then the centers of
+ * the cells are mapped at a third depth to measure how far the model is
+ * from the source, see getDepthError and getColorError.
+ */
+public class CoordinateMapper {
+
+	public final static int   DEFAULT_GRID_SIZE = 97;
+	public final static float DEFAULT_RAY_RANGE = 1.2f;
+
+	private final static long MAGIC   = 0x3150414D3256504BL; // "KPV2MAP1"
+	private final static int  VERSION = 1;
+
+	// sample depths of the nodes, in meters
+	private final static float NEAR = 1.0f;
+	private final static float FAR  = 4.0f;
+
+	// depth the model is checked at, between the sample depths
+	private final static float CHECK = 2.5f;
+
+	private final static float INVALID = Float.NEGATIVE_INFINITY;
+
+	private final int   size;
+	private final float range;
+	private final float step;
+	private final float invStep;
+
+	// a x, b x, a y, b y per node
+	private final float[] depthTable;
+	private final float[] colorTable;
+
+	// largest distance to the source at the check depth, in pixels
+	private final float depthError;
+	private final float colorError;
+
+	private CoordinateMapper(int size, float range, float[] depthTable, float[] colorTable,
+			float depthError, float colorError) {
+		this.size  = size;
+		this.range = range;
+		this.depthTable = depthTable;
+		this.colorTable = colorTable;
+		this.depthError = depthError;
+		this.colorError = colorError;
+		step    = 2 * range / (size - 1);
+		invStep = 1.0f / step;
+	}
+
+	/**
+	 * Sample the mapping of a source, with a single batch mapping per image and depth
+	 * @param source started FrameSource
+	 * @return CoordinateMapper
+	 */
+	public static CoordinateMapper create(FrameSource source) {
+		return create(source, DEFAULT_GRID_SIZE, DEFAULT_RAY_RANGE);
+	}
+
+	/**
+	 * @param source started FrameSource
+	 * @param size nodes per side of the grid
+	 * @param range largest ray x / z and y / z of the grid
+	 * @return CoordinateMapper
+	 */
+	public static CoordinateMapper create(FrameSource source, int size, float range) {
+		if (size < 2 || range <= 0)
+			throw new IllegalArgumentException("grid of " + size + " nodes over " + range);
+		int nodes = size * size;
+		float step = 2 * range / (size - 1);
+		float[] near = new float[nodes * 3];
+		float[] far  = new float[nodes * 3];
+		for (int j = 0; j < size; j++) {
+			for (int i = 0; i < size; i++) {
+				int n = (j * size + i) * 3;
+				float u = -range + i * step;
+				float v = -range + j * step;
+				near[n]     = u * NEAR;
+				near[n + 1] = v * NEAR;
+				near[n + 2] = NEAR;
+				far[n]      = u * FAR;
+				far[n + 1]  = v * FAR;
+				far[n + 2]  = FAR;
+			}
+		}
+		float[] mappedNear = new float[nodes * 2];
+		float[] mappedFar  = new float[nodes * 2];
+
+		source.mapCameraPointsToDepthSpace(near, mappedNear, nodes);
+		source.mapCameraPointsToDepthSpace(far, mappedFar, nodes);
+		float[] depthTable = table(mappedNear, mappedFar, nodes);
+
+		source.mapCameraPointsToColorSpace(near, mappedNear, nodes);
+		source.mapCameraPointsToColorSpace(far, mappedFar, nodes);
+		float[] colorTable = table(mappedNear, mappedFar, nodes);
+
+		// the centers of the cells at the check depth, as far as possible from the nodes
+		int cells = (size - 1) * (size - 1);
+		float[] check = new float[cells * 3];
+		for (int j = 0; j < size - 1; j++) {
+			for (int i = 0; i < size - 1; i++) {
+				int n = (j * (size - 1) + i) * 3;
+				check[n]     = (-range + (i + 0.5f) * step) * CHECK;
+				check[n + 1] = (-range + (j + 0.5f) * step) * CHECK;
+				check[n + 2] = CHECK;
+			}
+		}
+		float[] mappedCheck = new float[cells * 2];
+		CoordinateMapper model = new CoordinateMapper(size, range, depthTable, colorTable, Float.NaN, Float.NaN);
+		source.mapCameraPointsToDepthSpace(check, mappedCheck, cells);
+		float depthError = model.error(depthTable, check, mappedCheck, cells);
+		source.mapCameraPointsToColorSpace(check, mappedCheck, cells);
+		float colorError = model.error(colorTable, check, mappedCheck, cells);
+
+		return new CoordinateMapper(size, range, depthTable, colorTable, depthError, colorError);
+	}
+
+	// largest distance between the points mapped by the source and by the table
+	private float error(float[] table, float[] src, float[] mapped, int count) {
+		float max = 0;
+		for (int p = 0; p < count; p++) {
+			float mx = mapped[p * 2];
+			float my = mapped[p * 2 + 1];
+			// rays the source can not map
+			if (Float.isInfinite(mx) || Float.isNaN(mx) || Float.isInfinite(my) || Float.isNaN(my))
+				continue;
+			float iz = 1.0f / src[p * 3 + 2];
+			float u  = src[p * 3] * iz;
+			float v  = src[p * 3 + 1] * iz;
+			float dx = lookup(table, 0, u, v, iz) - mx;
+			float dy = lookup(table, 2, u, v, iz) - my;
+			float e  = (float) Math.sqrt(dx * dx + dy * dy);
+			if (e > max)
+				max = e;
+		}
+		return max;
+	}
+
+	// m = a + b / z solved from the two sample depths
+	private static float[] table(float[] near, float[] far, int nodes) {
+		float[] table = new float[nodes * 4];
+		float invDelta = 1.0f / (1.0f / NEAR - 1.0f / FAR);
+		for (int n = 0; n < nodes; n++) {
+			for (int c = 0; c < 2; c++) {
+				float m0 = near[n * 2 + c];
+				float m1 = far[n * 2 + c];
+				float b = (m0 - m1) * invDelta;
+				table[n * 4 + c * 2]     = m0 - b / NEAR;
+				table[n * 4 + c * 2 + 1] = b;
+			}
+		}
+		return table;
+	}
+
+	// MAPPING
+
+	/**
+	 * Map count packed camera space points x, y, z to the depth image, x, y per
+	 * point into dst, -Infinity for points that can not be mapped
+	 * @param src float array of at least count x 3
+	 * @param dst float array of at least count x 2
+	 * @param count number of points
+	 * @return dst
+	 */
+	public float[] mapCameraPointsToDepthSpace(float[] src, float[] dst, int count) {
+		map(depthTable, src, dst, 0, count);
+		return dst;
+	}
+
+	/**
+	 * Map count packed camera space points x, y, z to the color image, x, y per
+	 * point into dst, -Infinity for points that can not be mapped
+	 * @param src float array of at least count x 3
+	 * @param dst float array of at least count x 2
+	 * @param count number of points
+	 * @return dst
+	 */
+	public float[] mapCameraPointsToColorSpace(float[] src, float[] dst, int count) {
+		map(colorTable, src, dst, 0, count);
+		return dst;
+	}
+
+	// points from to to, for callers mapping one image band per task
+	void mapCameraPointsToColorSpace(float[] src, float[] dst, int from, int to) {
+		map(colorTable, src, dst, from, to);
+	}
+
+	/**
+	 * Map count packed camera space points from index 0 of src to the depth image
+	 * @param src FloatBuffer of at least count x 3
+	 * @param dst FloatBuffer of at least count x 2
+	 * @param count number of points
+	 * @return dst
+	 */
+	public FloatBuffer mapCameraPointsToDepthSpace(FloatBuffer src, FloatBuffer dst, int count) {
+		map(depthTable, src, dst, count);
+		return dst;
+	}
+
+	/**
+	 * Map count packed camera space points from index 0 of src to the color image
+	 * @param src FloatBuffer of at least count x 3
+	 * @param dst FloatBuffer of at least count x 2
+	 * @param count number of points
+	 * @return dst
+	 */
+	public FloatBuffer mapCameraPointsToColorSpace(FloatBuffer src, FloatBuffer dst, int count) {
+		map(colorTable, src, dst, count);
+		return dst;
+	}
+
+	private void map(float[] table, float[] src, float[] dst, int from, int to) {
+		for (int i = from; i < to; i++) {
+			int s = i * 3;
+			int d = i * 2;
+			float z = src[s + 2];
+			if (!(z > 0)) {
+				dst[d]     = INVALID;
+				dst[d + 1] = INVALID;
+				continue;
+			}
+			float iz = 1.0f / z;
+			float u  = src[s] * iz;
+			float v  = src[s + 1] * iz;
+			dst[d]     = lookup(table, 0, u, v, iz);
+			dst[d + 1] = lookup(table, 2, u, v, iz);
+		}
+	}
+
+	private void map(float[] table, FloatBuffer src, FloatBuffer dst, int count) {
+		for (int i = 0; i < count; i++) {
+			int s = i * 3;
+			int d = i * 2;
+			float z = src.get(s + 2);
+			if (!(z > 0)) {
+				dst.put(d, INVALID);
+				dst.put(d + 1, INVALID);
+				continue;
+			}
+			float iz = 1.0f / z;
+			float u  = src.get(s) * iz;
+			float v  = src.get(s + 1) * iz;
+			dst.put(d, lookup(table, 0, u, v, iz));
+			dst.put(d + 1, lookup(table, 2, u, v, iz));
+		}
+	}
+
+	// bilinear a + b / z of the cell of the ray, extrapolated past the grid
+	private float lookup(float[] table, int channel, float u, float v, float iz) {
+		float gx = (u + range) * invStep;
+		float gy = (v + range) * invStep;
+		int ix = Math.min(Math.max((int) Math.floor(gx), 0), size - 2);
+		int iy = Math.min(Math.max((int) Math.floor(gy), 0), size - 2);
+		float fx = gx - ix;
+		float fy = gy - iy;
+		int n00 = (iy * size + ix) * 4 + channel;
+		int n10 = n00 + 4;
+		int n01 = n00 + size * 4;
+		int n11 = n01 + 4;
+		float m00 = table[n00] + table[n00 + 1] * iz;
+		float m10 = table[n10] + table[n10 + 1] * iz;
+		float m01 = table[n01] + table[n01 + 1] * iz;
+		float m11 = table[n11] + table[n11 + 1] * iz;
+		float top    = m00 + (m10 - m00) * fx;
+		float bottom = m01 + (m11 - m01) * fx;
+		return top + (bottom - top) * fy;
+	}
+
+	public int getGridSize() {
+		return size;
+	}
+
+	public float getRayRange() {
+		return range;
+	}
+
+	/**
+	 * Largest distance in depth image pixels between this mapping and the
+	 * source at the centers of the grid cells at 2.5 m, the error of the
+	 * a + b / z model and of the interpolation. Measured by create
+	 * @return float
+	 */
+	public float getDepthError() {
+		return depthError;
+	}
+
+	/**
+	 * Largest distance in color image pixels between this mapping and the
+	 * source at the centers of the grid cells at 2.5 m
+	 * @return float
+	 */
+	public float getColorError() {
+		return colorError;
+	}
+
+	// FILES
+
+	/**
+	 * Save the tables, ex. next to a recording
+	 * @param file File
+	 */
+	public void save(File file) {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			write(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to save mapping " + file, e);
+		}
+	}
+
+	/**
+	 * Load tables saved with save
+	 * @param file File
+	 * @return CoordinateMapper
+	 */
+	public static CoordinateMapper load(File file) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return read(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to load mapping " + file, e);
+		}
+	}
+
+	void write(DataOutputStream out) throws IOException {
+		out.writeLong(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(size);
+		out.writeFloat(range);
+		out.writeFloat(depthError);
+		out.writeFloat(colorError);
+		for (float value : depthTable)
+			out.writeFloat(value);
+		for (float value : colorTable)
+			out.writeFloat(value);
+	}
+
+	static CoordinateMapper read(DataInputStream in) throws IOException {
+		if (in.readLong() != MAGIC)
+			throw new IOException("not a mapping file");
+		int version = in.readInt();
+		if (version != VERSION)
+			throw new IOException("mapping version " + version + " is not supported");
+		int size    = in.readInt();
+		float range = in.readFloat();
+		if (size < 2 || range <= 0)
+			throw new IOException("grid of " + size + " nodes over " + range);
+		float depthError = in.readFloat();
+		float colorError = in.readFloat();
+		float[] depthTable = new float[size * size * 4];
+		float[] colorTable = new float[size * size * 4];
+		for (int i = 0; i < depthTable.length; i++)
+			depthTable[i] = in.readFloat();
+		for (int i = 0; i < colorTable.length; i++)
+			colorTable[i] = in.readFloat();
+		return new CoordinateMapper(size, range, depthTable, colorTable, depthError, colorError);
+	}
+}
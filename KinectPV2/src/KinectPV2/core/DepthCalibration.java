@@ -0,0 +1,150 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Calibration of a depth camera: the camera space ray of every depth pixel,
+ * fetched once from a FrameSource, and the CoordinateMapper of the same
+ * sensor. Saved next to a recording, it turns recorded 16 bit depth frames
+ * into point clouds and maps camera points without the device.
+ */
+public class DepthCalibration implements Constants {
+
+	private final static long MAGIC   = 0x314C41433256504BL; // "KPV2CAL1"
+	private final static int  VERSION = 1;
+
+	private final float[]          rays;
+	private final CoordinateMapper mapper;
+
+	/**
+	 * @param rays ray x, y at 1 meter of every depth pixel, 512 x 424 x 2, copied
+	 * @param mapper CoordinateMapper of the same sensor, or null
+	 */
+	public DepthCalibration(float[] rays, CoordinateMapper mapper) {
+		this(rays, mapper, true);
+	}
+
+	private DepthCalibration(float[] rays, CoordinateMapper mapper, boolean copy) {
+		if (rays.length != WIDTHDepth * HEIGHTDepth * 2)
+			throw new IllegalArgumentException("ray table needs " + WIDTHDepth * HEIGHTDepth * 2 + " floats, got " + rays.length);
+		this.rays   = copy ? rays.clone() : rays;
+		this.mapper = mapper;
+	}
+
+	// calibration keeping rays without a copy, for the tables it filled itself
+	private static DepthCalibration wrap(float[] rays, CoordinateMapper mapper) {
+		return new DepthCalibration(rays, mapper, false);
+	}
+
+	/**
+	 * Fetch the ray table and sample the mapping of a started source
+	 * @param source FrameSource
+	 * @return DepthCalibration
+	 */
+	public static DepthCalibration create(FrameSource source) {
+		float[] rays = new float[WIDTHDepth * HEIGHTDepth * 2];
+		if (!source.copyDepthFrameToCameraSpaceTable(rays))
+			throw new IllegalStateException("the depth calibration of " + source.getVersion() + " is not available yet");
+		return wrap(rays, CoordinateMapper.create(source));
+	}
+
+	/**
+	 * Ray x, y at 1 meter of every depth pixel
+	 * @return float [], a copy
+	 */
+	public float[] getRays() {
+		return rays.clone();
+	}
+
+	// rays without a copy, for the point cloud builder
+	float[] rays() {
+		return rays;
+	}
+
+	/**
+	 * CoordinateMapper of the same sensor
+	 * @return CoordinateMapper or null
+	 */
+	public CoordinateMapper getCoordinateMapper() {
+		return mapper;
+	}
+
+	// FILES
+
+	/**
+	 * Save the calibration file
+	 * @param file File
+	 */
+	public void save(File file) {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeLong(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(WIDTHDepth);
+			out.writeInt(HEIGHTDepth);
+			for (float value : rays)
+				out.writeFloat(value);
+			out.writeBoolean(mapper != null);
+			if (mapper != null)
+				mapper.write(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to save calibration " + file, e);
+		}
+	}
+
+	/**
+	 * Load a calibration file
+	 * @param file File
+	 * @return DepthCalibration
+	 */
+	public static DepthCalibration load(File file) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readLong() != MAGIC)
+				throw new IOException("not a calibration file");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("calibration version " + version + " is not supported");
+			int width  = in.readInt();
+			int height = in.readInt();
+			if (width != WIDTHDepth || height != HEIGHTDepth)
+				throw new IOException("calibration of a " + width + " x " + height + " depth camera");
+			float[] rays = new float[width * height * 2];
+			for (int i = 0; i < rays.length; i++)
+				rays[i] = in.readFloat();
+			CoordinateMapper mapper = in.readBoolean() ? CoordinateMapper.read(in) : null;
+			return wrap(rays, mapper);
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to load calibration " + file, e);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Long-lived direct buffer holding one frame of a single Stream.
+ * The producer (the native device or a java producer) writes the frame in
+ * place followed by a trailer with the frame sequence number, its capture
+ * time and the sensor time, see FrameExchange.
+ * Typed views share the same memory, so reading a frame does not copy it.
+ */
+public class FrameBuffer {
+
+	/**
+	 * Bytes written after the frame data, sequence, capture time and sensor time (long)
+	 */
+	public final static int TRAILER_BYTES = 24;
+
+	private final Stream     stream;
+	private final int        frameBytes;
+	private final ByteBuffer buffer;
+	private final ByteBuffer data;
+
+	private IntBuffer   intView;
+	private FloatBuffer floatView;
+	private ShortBuffer shortView;
+
+	public FrameBuffer(Stream stream){
+		this.stream = stream;
+		frameBytes  = stream.getFrameBytes();
+		buffer = ByteBuffer.allocateDirect(frameBytes + TRAILER_BYTES).order(ByteOrder.nativeOrder());
+
+		buffer.limit(frameBytes);
+		data = buffer.slice().order(ByteOrder.nativeOrder());
+		buffer.clear();
+	}
+
+	/**
+	 * Stream of the buffer
+	 * @return Stream
+	 */
+	public Stream getStream(){
+		return stream;
+	}
+
+	/**
+	 * Whole buffer including the trailer, the one registered with the producer
+	 * @return ByteBuffer
+	 */
+	protected ByteBuffer getBuffer(){
+		return buffer;
+	}
+
+	/**
+	 * Frame data as bytes, in native byte order
+	 * @return ByteBuffer
+	 */
+	public ByteBuffer getByteBuffer(){
+		return data;
+	}
+
+	/**
+	 * Frame data as int values, for Int32 streams
+	 * @return IntBuffer
+	 */
+	public IntBuffer asIntBuffer(){
+		if(intView == null)
+			intView = data.asIntBuffer();
+		return intView;
+	}
+
+	/**
+	 * Frame data as float values, for Float streams
+	 * @return FloatBuffer
+	 */
+	public FloatBuffer asFloatBuffer(){
+		if(floatView == null)
+			floatView = data.asFloatBuffer();
+		return floatView;
+	}
+
+	/**
+	 * Frame data as short values, for Int16 streams, unsigned
+	 * @return ShortBuffer
+	 */
+	public ShortBuffer asShortBuffer(){
+		if(shortView == null)
+			shortView = data.asShortBuffer();
+		return shortView;
+	}
+
+	/**
+	 * Sequence number of the frame currently in the buffer, 0 if no frame arrived yet
+	 * @return long
+	 */
+	public long getSequence(){
+		return buffer.getLong(frameBytes);
+	}
+
+	/**
+	 * Capture time of the frame currently in the buffer, in System.nanoTime() units
+	 * @return long
+	 */
+	public long getTimestamp(){
+		return buffer.getLong(frameBytes + 8);
+	}
+
+	/**
+	 * Sensor relative time of the frame currently in the buffer, in 100 ns units,
+	 * 0 if the producer has no sensor clock
+	 * @return long
+	 */
+	public long getDeviceTime(){
+		return buffer.getLong(frameBytes + 16);
+	}
+
+	/**
+	 * Producer side, mark the frame written in getByteBuffer() as a new frame
+	 * @param timestamp capture time of the frame, System.nanoTime()
+	 */
+	public void commit(long timestamp){
+		commit(getSequence() + 1, timestamp, 0);
+	}
+
+	/**
+	 * Producer side, tag the frame written in getByteBuffer()
+	 * @param sequence frame sequence number
+	 * @param timestamp capture time of the frame, System.nanoTime()
+	 * @param deviceTime sensor time of the frame in 100 ns units, or 0
+	 */
+	public void commit(long sequence, long timestamp, long deviceTime){
+		buffer.putLong(frameBytes, sequence);
+		buffer.putLong(frameBytes + 8, timestamp);
+		buffer.putLong(frameBytes + 16, deviceTime);
+	}
+}
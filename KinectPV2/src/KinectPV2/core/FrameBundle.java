@@ -0,0 +1,182 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Frames of several streams acquired together by KinectCore.snapshot().
+ * Every member keeps the sequence number and capture time it had when the
+ * snapshot was taken. The bundle is reused by the following snapshots, the
+ * frames stay valid until then.
+ */
+public class FrameBundle {
+
+	private final EnumSet<Stream> streams;
+	private final Set<Stream>     streamsView;
+
+	private final FrameBuffer[] frames;
+	private final long[]        sequences;
+	private final long[]        timestamps;
+	private final long[]        previousSequences;
+
+	private long snapshotTime;
+	private long snapshotCount;
+
+	public FrameBundle() {
+		int count = Stream.values().length;
+		streams = EnumSet.noneOf(Stream.class);
+		streamsView = Collections.unmodifiableSet(streams);
+		frames = new FrameBuffer[count];
+		sequences = new long[count];
+		timestamps = new long[count];
+		previousSequences = new long[count];
+	}
+
+	/**
+	 * Streams of the last snapshot
+	 * @return Set of Stream, read only
+	 */
+	public Set<Stream> getStreams() {
+		return streamsView;
+	}
+
+	/**
+	 * Check if the last snapshot holds a stream
+	 * @param stream Stream
+	 * @return boolean
+	 */
+	public boolean contains(Stream stream) {
+		return streams.contains(stream);
+	}
+
+	/**
+	 * Frame of a stream, read it with asIntBuffer(), asFloatBuffer() or asShortBuffer()
+	 * @param stream Stream of the snapshot
+	 * @return FrameBuffer
+	 */
+	public FrameBuffer getFrame(Stream stream) {
+		check(stream);
+		return frames[stream.ordinal()];
+	}
+
+	/**
+	 * Sequence number of the frame of a stream, 0 if the stream had no frame yet
+	 * @param stream Stream of the snapshot
+	 * @return long
+	 */
+	public long getSequence(Stream stream) {
+		check(stream);
+		return sequences[stream.ordinal()];
+	}
+
+	/**
+	 * Capture time of the frame of a stream, in System.nanoTime() units
+	 * @param stream Stream of the snapshot
+	 * @return long
+	 */
+	public long getTimestamp(Stream stream) {
+		check(stream);
+		return timestamps[stream.ordinal()];
+	}
+
+	/**
+	 * Check if the frame of a stream arrived after the previous snapshot
+	 * @param stream Stream of the snapshot
+	 * @return boolean
+	 */
+	public boolean isNew(Stream stream) {
+		check(stream);
+		int i = stream.ordinal();
+		return sequences[i] != previousSequences[i];
+	}
+
+	/**
+	 * Time between the oldest and the newest frame of the snapshot, in nanoseconds
+	 * @return long
+	 */
+	public long getTimeSpread() {
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (Stream stream : streams) {
+			int i = stream.ordinal();
+			if (sequences[i] == 0)
+				continue;
+			min = Math.min(min, timestamps[i]);
+			max = Math.max(max, timestamps[i]);
+		}
+		return min <= max ? max - min : 0;
+	}
+
+	/**
+	 * Time the last snapshot was taken, System.nanoTime()
+	 * @return long
+	 */
+	public long getSnapshotTime() {
+		return snapshotTime;
+	}
+
+	/**
+	 * Number of snapshots taken into this bundle
+	 * @return long
+	 */
+	public long getSnapshotCount() {
+		return snapshotCount;
+	}
+
+	// start a new snapshot
+	void begin() {
+		for (Stream stream : streams)
+			frames[stream.ordinal()] = null;
+		streams.clear();
+	}
+
+	// tag a member with the values of its trailer
+	void set(Stream stream, FrameBuffer frame) {
+		int i = stream.ordinal();
+		streams.add(stream);
+		frames[i] = frame;
+		previousSequences[i] = sequences[i];
+		sequences[i] = frame.getSequence();
+		timestamps[i] = frame.getTimestamp();
+	}
+
+	void end(long time) {
+		snapshotTime = time;
+		snapshotCount++;
+	}
+
+	// the exchange of the stream was released, its frame is no longer valid
+	void remove(Stream stream) {
+		streams.remove(stream);
+		frames[stream.ordinal()] = null;
+	}
+
+	private void check(Stream stream) {
+		if (!streams.contains(stream))
+			throw new IllegalArgumentException(stream + " is not part of the snapshot");
+	}
+}
@@ -0,0 +1,288 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Delivers the frames of the streams with listeners from the acquisition
+ * thread of the KinectCore, as soon as the frame source publishes them.
+ * A stream with listeners is acquired only by the dispatcher, the getters
+ * of the KinectCore read a copy relayed through a second FrameExchange.
+ * The dispatcher takes a stream over when its first listener is added and
+ * hands it back once the last one is removed, both under the consumer lock
+ * of the stream in the KinectCore, so the stream never has two consumers.
+ * Listeners run on the acquisition thread, or on an Executor when one is
+ * set. The FrameBuffer handed to a listener is valid until it returns, the
+ * next frame of the stream is not acquired before every listener of the
+ * previous one returned.
+ */
+public class FrameDispatcher {
+
+	/**
+	 * Default time the acquisition thread waits when no new frame arrived, in nanoseconds
+	 */
+	public final static long DEFAULT_POLL_INTERVAL = 1000000L;
+
+	private final KinectCore device;
+	private final Slot[] slots;
+
+	private volatile Executor executor;
+	private volatile long     pollInterval = DEFAULT_POLL_INTERVAL;
+
+	private volatile long   dispatchCount;
+	private final AtomicLong listenerErrors = new AtomicLong();
+
+	// listeners and hand-off state of a single stream
+	private final static class Slot {
+		final Stream stream;
+		final CopyOnWriteArrayList<Consumer<FrameBuffer>> listeners = new CopyOnWriteArrayList<Consumer<FrameBuffer>>();
+		final AtomicInteger pending = new AtomicInteger();
+
+		// guarded by the consumer lock of the stream
+		boolean       consuming;
+		FrameExchange relay;
+
+		long lastSequence;
+
+		Slot(Stream stream) {
+			this.stream = stream;
+		}
+	}
+
+	FrameDispatcher(KinectCore device) {
+		this.device = device;
+		Stream[] streams = Stream.values();
+		slots = new Slot[streams.length];
+		for (int i = 0; i < streams.length; i++)
+			slots[i] = new Slot(streams[i]);
+	}
+
+	/**
+	 * Call listener with every new frame of a stream, the stream has to be
+	 * enabled, a disabled stream is skipped until it is enabled again
+	 * @param stream Stream
+	 * @param listener Consumer of FrameBuffer
+	 */
+	public void addListener(Stream stream, Consumer<FrameBuffer> listener) {
+		if (listener == null)
+			throw new NullPointerException("listener");
+		Slot slot = slots[stream.ordinal()];
+		ReentrantLock lock = device.getConsumerLock(stream);
+		lock.lock();
+		try {
+			slot.listeners.add(listener);
+			slot.consuming = true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stop calling a listener
+	 * @param stream Stream
+	 * @param listener Consumer of FrameBuffer
+	 * @return true if the listener was registered
+	 */
+	public boolean removeListener(Stream stream, Consumer<FrameBuffer> listener) {
+		return slots[stream.ordinal()].listeners.remove(listener);
+	}
+
+	/**
+	 * Stop calling the listeners of a stream matching filter
+	 * @param stream Stream
+	 * @param filter Predicate of Consumer
+	 * @return true if a listener was removed
+	 */
+	public boolean removeListeners(Stream stream, Predicate<Consumer<FrameBuffer>> filter) {
+		return slots[stream.ordinal()].listeners.removeIf(filter);
+	}
+
+	/**
+	 * Number of listeners of a stream
+	 * @param stream Stream
+	 * @return int
+	 */
+	public int getListenerCount(Stream stream) {
+		return slots[stream.ordinal()].listeners.size();
+	}
+
+	/**
+	 * Run the listeners on executor, null runs them on the acquisition thread.
+	 * Any Executor works, ex. Executors.newFixedThreadPool(2)
+	 * @param executor Executor or null
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Executor running the listeners, null when they run on the acquisition thread
+	 * @return Executor
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Time the acquisition thread waits when no new frame arrived
+	 * @param nanos wait in nanoseconds, at least 1
+	 */
+	public void setPollInterval(long nanos) {
+		if (nanos < 1)
+			throw new IllegalArgumentException("poll interval must be positive, got " + nanos);
+		pollInterval = nanos;
+	}
+
+	/**
+	 * Time the acquisition thread waits when no new frame arrived, in nanoseconds
+	 * @return long
+	 */
+	public long getPollInterval() {
+		return pollInterval;
+	}
+
+	/**
+	 * Number of frames delivered to the listeners
+	 * @return long
+	 */
+	public long getDispatchCount() {
+		return dispatchCount;
+	}
+
+	/**
+	 * Number of exceptions thrown by the listeners
+	 * @return long
+	 */
+	public long getListenerErrors() {
+		return listenerErrors.get();
+	}
+
+	/**
+	 * Exchange the getters of the device read a consumed stream from, null
+	 * when the stream has no listeners. The caller holds the consumer lock
+	 * of the stream.
+	 * @param stream Stream
+	 * @return FrameExchange
+	 */
+	FrameExchange getRelay(Stream stream) {
+		Slot slot = slots[stream.ordinal()];
+		if (!slot.consuming)
+			return null;
+		FrameExchange relay = slot.relay;
+		if (relay == null) {
+			relay = new FrameExchange(stream);
+			slot.relay = relay;
+		}
+		return relay;
+	}
+
+	/**
+	 * Acquisition thread, acquire the streams with listeners once and deliver the new frames
+	 * @return true if at least one frame was delivered
+	 */
+	boolean dispatch() {
+		boolean dispatched = false;
+		for (Slot slot : slots) {
+			FrameBuffer   frame;
+			FrameExchange relay;
+			ReentrantLock lock = device.getConsumerLock(slot.stream);
+			lock.lock();
+			try {
+				if (!slot.consuming)
+					continue;
+				if (slot.listeners.isEmpty() && slot.pending.get() == 0) {
+					slot.consuming = false;
+					slot.relay = null;
+					continue;
+				}
+				if (slot.pending.get() > 0)
+					continue;
+				FrameExchange exchange = device.getEnabledExchange(slot.stream);
+				if (exchange == null) {
+					slot.relay = null;
+					continue;
+				}
+				frame = exchange.acquire();
+				relay = slot.relay;
+			} finally {
+				lock.unlock();
+			}
+
+			long sequence = frame.getSequence();
+			if (sequence == 0 || sequence == slot.lastSequence)
+				continue;
+			slot.lastSequence = sequence;
+
+			if (relay != null)
+				relay.publish(frame);
+			deliver(slot, frame);
+			dispatchCount++;
+			dispatched = true;
+		}
+		return dispatched;
+	}
+
+	private void deliver(final Slot slot, final FrameBuffer frame) {
+		Executor target = executor;
+		for (final Consumer<FrameBuffer> listener : slot.listeners) {
+			if (target == null) {
+				accept(listener, frame);
+				continue;
+			}
+			slot.pending.incrementAndGet();
+			try {
+				target.execute(new Runnable() {
+					public void run() {
+						try {
+							accept(listener, frame);
+						} finally {
+							slot.pending.decrementAndGet();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				slot.pending.decrementAndGet();
+				listenerErrors.incrementAndGet();
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void accept(Consumer<FrameBuffer> listener, FrameBuffer frame) {
+		try {
+			listener.accept(frame);
+		} catch (RuntimeException e) {
+			listenerErrors.incrementAndGet();
+			e.printStackTrace();
+		}
+	}
+}
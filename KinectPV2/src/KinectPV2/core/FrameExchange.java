@@ -0,0 +1,183 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triple buffered, lock free hand-off of the frames of a single Stream.
+ * The producer always owns the write buffer and the consumer the read
+ * buffer, the third one holds the latest complete frame. Publishing and
+ * acquiring only swap buffer indices, so the consumer never blocks the
+ * producer and never sees a half written frame.
+ * One producer thread and one consumer thread per exchange.
+ */
+public class FrameExchange {
+
+	// state = index of the ready buffer | FRESH when it was not acquired yet
+	protected final static int INDEX_MASK = 3;
+	protected final static int FRESH      = 4;
+
+	private final Stream          stream;
+	protected final FrameBuffer[] buffers;
+	private final AtomicInteger   state;
+	private final FrameInfo       frameInfo;
+
+	private int  writeIndex;
+	private int  readIndex;
+	private long sequence;
+
+	public FrameExchange(Stream stream){
+		this.stream = stream;
+		buffers = new FrameBuffer[3];
+		for(int i = 0; i < buffers.length; i++){
+			buffers[i] = new FrameBuffer(stream);
+		}
+		writeIndex = 0;
+		readIndex  = 1;
+		state = new AtomicInteger(2);
+		frameInfo = new FrameInfo(stream);
+	}
+
+	/**
+	 * Stream of the exchange
+	 * @return Stream
+	 */
+	public Stream getStream(){
+		return stream;
+	}
+
+	/**
+	 * Memory held by the three frame buffers, in bytes
+	 * @return long
+	 */
+	public long getAllocatedBytes(){
+		long bytes = 0;
+		for(FrameBuffer buffer : buffers)
+			bytes += buffer.getBuffer().capacity();
+		return bytes;
+	}
+
+	/**
+	 * Producer side, buffer where the next frame has to be written
+	 * @return FrameBuffer
+	 */
+	public FrameBuffer getWriteBuffer(){
+		return buffers[writeIndex];
+	}
+
+	/**
+	 * Producer side, publish the frame written in getWriteBuffer() with the next sequence number
+	 * @param timestamp capture time of the frame, System.nanoTime()
+	 */
+	public void publish(long timestamp){
+		publish(timestamp, 0);
+	}
+
+	/**
+	 * Producer side, publish the frame written in getWriteBuffer() with the next sequence number
+	 * @param timestamp capture time of the frame, System.nanoTime()
+	 * @param deviceTime sensor time of the frame in 100 ns units, or 0
+	 */
+	public void publish(long timestamp, long deviceTime){
+		buffers[writeIndex].commit(++sequence, timestamp, deviceTime);
+		writeIndex = state.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * Producer side, publish a copy of a frame of another exchange of the same
+	 * stream, keeping its sequence number and times
+	 * @param frame FrameBuffer of the same Stream
+	 */
+	public void publish(FrameBuffer frame){
+		if(frame.getStream() != stream)
+			throw new IllegalArgumentException(frame.getStream() + " frame published into a " + stream + " exchange");
+		FrameBuffer target = buffers[writeIndex];
+		ByteBuffer dst = target.getByteBuffer().duplicate();
+		dst.clear();
+		ByteBuffer src = frame.getByteBuffer().duplicate();
+		src.clear();
+		dst.put(src);
+		sequence = frame.getSequence();
+		target.commit(sequence, frame.getTimestamp(), frame.getDeviceTime());
+		writeIndex = state.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * Consumer side, latest complete frame, the returned buffer stays untouched
+	 * until the next call
+	 * @return FrameBuffer
+	 */
+	public FrameBuffer acquire(){
+		return acquired(exchangeRead(readIndex));
+	}
+
+	/**
+	 * Consumer side, metadata and counters of the acquired frames
+	 * @return FrameInfo
+	 */
+	public FrameInfo getFrameInfo(){
+		return frameInfo;
+	}
+
+	/**
+	 * Consumer side, buffer returned by the last acquire()
+	 * @return FrameBuffer
+	 */
+	public FrameBuffer getReadBuffer(){
+		return buffers[readIndex];
+	}
+
+	/**
+	 * Index of the read buffer, for sources acquiring several exchanges at once
+	 * @return int
+	 */
+	protected int getReadIndex(){
+		return readIndex;
+	}
+
+	/**
+	 * Make the buffer swapped in by the source the read buffer
+	 * @param read new read index, returned by the source
+	 * @return FrameBuffer
+	 */
+	protected FrameBuffer acquired(int read){
+		readIndex = read;
+		FrameBuffer frame = buffers[readIndex];
+		frameInfo.update(frame);
+		return frame;
+	}
+
+	/**
+	 * Swap the read buffer with the ready one if it holds a new frame
+	 * @param read current read index
+	 * @return new read index
+	 */
+	protected int exchangeRead(int read){
+		if((state.get() & FRESH) == 0)
+			return read;
+		return state.getAndSet(read) & INDEX_MASK;
+	}
+}
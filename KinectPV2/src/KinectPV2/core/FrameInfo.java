@@ -0,0 +1,143 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+/**
+ * Metadata of the last frame acquired from a Stream, with the frame
+ * counters of the stream.
+ * produced counts the frames published since the first acquired one,
+ * dropped the ones overwritten before they could be acquired.
+ */
+public class FrameInfo {
+
+	private final Stream        stream;
+	private final RateEstimator rate;
+
+	private long sequence;
+	private long timestamp;
+	private long deviceTime;
+
+	private long firstSequence;
+	private long framesConsumed;
+	private long framesDropped;
+
+	public FrameInfo(Stream stream){
+		this.stream = stream;
+		rate = new RateEstimator();
+	}
+
+	/**
+	 * Track the frame just acquired, called once per acquire
+	 * @param frame FrameBuffer
+	 */
+	void update(FrameBuffer frame){
+		long next = frame.getSequence();
+		if(next <= sequence)
+			return;
+
+		if(sequence == 0){
+			firstSequence = next;
+		}else{
+			framesDropped += next - sequence - 1;
+		}
+		framesConsumed++;
+
+		sequence   = next;
+		timestamp  = frame.getTimestamp();
+		deviceTime = frame.getDeviceTime();
+		rate.update(sequence, timestamp);
+	}
+
+	/**
+	 * Stream of the frames
+	 * @return Stream
+	 */
+	public Stream getStream(){
+		return stream;
+	}
+
+	/**
+	 * Sequence number of the last acquired frame, 0 when no frame arrived yet
+	 * @return long
+	 */
+	public long getSequence(){
+		return sequence;
+	}
+
+	/**
+	 * Capture time of the last acquired frame, System.nanoTime()
+	 * @return long
+	 */
+	public long getTimestamp(){
+		return timestamp;
+	}
+
+	/**
+	 * Sensor time of the last acquired frame, in 100 ns units
+	 * @return long
+	 */
+	public long getDeviceTime(){
+		return deviceTime;
+	}
+
+	/**
+	 * Time since the capture of the last acquired frame, in nanoseconds
+	 * @return long
+	 */
+	public long getLatency(){
+		return sequence == 0 ? 0 : System.nanoTime() - timestamp;
+	}
+
+	/**
+	 * Frames published by the producer since the first acquired frame
+	 * @return long
+	 */
+	public long getFramesProduced(){
+		return sequence == 0 ? 0 : sequence - firstSequence + 1;
+	}
+
+	/**
+	 * Frames acquired by the consumer
+	 * @return long
+	 */
+	public long getFramesConsumed(){
+		return framesConsumed;
+	}
+
+	/**
+	 * Frames replaced by a newer one before being acquired
+	 * @return long
+	 */
+	public long getFramesDropped(){
+		return framesDropped;
+	}
+
+	/**
+	 * Frames per second produced by the stream, over the last second
+	 * @return float
+	 */
+	public float getFPS(){
+		return rate.getRate();
+	}
+}
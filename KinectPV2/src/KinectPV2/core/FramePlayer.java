@@ -0,0 +1,301 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Plays back a recording written by FrameRecorder.
+ * The file is memory mapped in segments, so any frame of any stream is
+ * reached in constant time and read in place, without loading the
+ * recording into the heap.
+ */
+public class FramePlayer implements RecordingProperties {
+
+	// mapped window size, each segment also maps one full frame past its end
+	public final static long SEGMENT_BYTES = 1L << 30;
+
+	private final FileChannel channel;
+	private final long        size;
+	private final ByteOrder   order;
+	private final long        startTimeMillis;
+
+	private MappedByteBuffer [] segments;
+	private long segmentOverlap;
+
+	// frame index of each stream, by ordinal
+	private final long [][] offsets;
+	private final long [][] timestamps;
+	private final Stream [] streams;
+
+	/**
+	 * Open a recording
+	 * @param file File
+	 */
+	public FramePlayer(File file) {
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			size = channel.size();
+
+			ByteBuffer header = read(0, HEADER_BYTES, ByteOrder.LITTLE_ENDIAN);
+			long magic = header.getLong(0);
+			if (magic == MAGIC)
+				order = ByteOrder.LITTLE_ENDIAN;
+			else if (magic == Long.reverseBytes(MAGIC))
+				order = ByteOrder.BIG_ENDIAN;
+			else
+				throw new IllegalArgumentException(file + " is not a KinectPV2 recording");
+			header.order(order);
+			if (header.getInt(8) != VERSION)
+				throw new IllegalArgumentException(file + " has an unsupported version " + header.getInt(8));
+			startTimeMillis = header.getLong(16);
+
+			int count = Stream.values().length;
+			int [] frames = new int[count];
+			offsets    = new long[count][];
+			timestamps = new long[count][];
+
+			long [] index = readIndex();
+			int entries = index.length / 3;
+			for (int i = 0; i < entries; i++)
+				frames[Stream.fromId((int) index[i * 3 + 2]).ordinal()]++;
+
+			ArrayList<Stream> recorded = new ArrayList<Stream>();
+			for (Stream stream : Stream.values()) {
+				int o = stream.ordinal();
+				offsets[o]    = new long[frames[o]];
+				timestamps[o] = new long[frames[o]];
+				if (frames[o] > 0) {
+					recorded.add(stream);
+					segmentOverlap = Math.max(segmentOverlap, FRAME_HEADER_BYTES + (long) stream.getFrameBytes());
+				}
+				frames[o] = 0;
+			}
+			streams = recorded.toArray(new Stream[recorded.size()]);
+
+			for (int i = 0; i < entries; i++) {
+				int o = Stream.fromId((int) index[i * 3 + 2]).ordinal();
+				offsets[o][frames[o]]    = index[i * 3 + 0];
+				timestamps[o][frames[o]] = index[i * 3 + 1];
+				frames[o]++;
+			}
+			segments = new MappedByteBuffer[(int) ((size + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to open recording " + file, e);
+		}
+	}
+
+	/**
+	 * Streams present in the recording
+	 * @return Stream []
+	 */
+	public Stream [] getStreams() {
+		return streams.clone();
+	}
+
+	/**
+	 * Number of frames of a stream
+	 * @param stream Stream
+	 * @return int
+	 */
+	public int getFrameCount(Stream stream) {
+		return offsets[stream.ordinal()].length;
+	}
+
+	/**
+	 * Wall clock time the recording started, in milliseconds
+	 * @return long
+	 */
+	public long getStartTimeMillis() {
+		return startTimeMillis;
+	}
+
+	/**
+	 * Timestamp of the first frame, System.nanoTime() of the recording machine
+	 * @return long
+	 */
+	public long getStartTime() {
+		long start = Long.MAX_VALUE;
+		for (Stream stream : streams)
+			start = Math.min(start, timestamps[stream.ordinal()][0]);
+		return streams.length > 0 ? start : 0;
+	}
+
+	/**
+	 * Timestamp of the last frame
+	 * @return long
+	 */
+	public long getEndTime() {
+		long end = Long.MIN_VALUE;
+		for (Stream stream : streams) {
+			long [] times = timestamps[stream.ordinal()];
+			end = Math.max(end, times[times.length - 1]);
+		}
+		return streams.length > 0 ? end : 0;
+	}
+
+	/**
+	 * Length of the recording in nanoseconds
+	 * @return long
+	 */
+	public long getDuration() {
+		return getEndTime() - getStartTime();
+	}
+
+	/**
+	 * Index of the last frame of a stream captured at or before a time,
+	 * 0 before the first frame
+	 * @param stream Stream
+	 * @param timestamp System.nanoTime() of the recording machine
+	 * @return int
+	 */
+	public int getFrameIndex(Stream stream, long timestamp) {
+		int found = Arrays.binarySearch(timestamps[stream.ordinal()], timestamp);
+		if (found >= 0)
+			return found;
+		return Math.max(0, -found - 2);
+	}
+
+	/**
+	 * Frame of a stream shown at a time of the recording
+	 * @param stream Stream
+	 * @param timestamp System.nanoTime() of the recording machine
+	 * @return RecordedFrame
+	 */
+	public RecordedFrame getFrameAt(Stream stream, long timestamp) {
+		return getFrame(stream, getFrameIndex(stream, timestamp));
+	}
+
+	/**
+	 * Frame of a stream by index, mapped in place
+	 * @param stream Stream
+	 * @param index 0 - getFrameCount(stream) - 1
+	 * @return RecordedFrame
+	 */
+	public RecordedFrame getFrame(Stream stream, int index) {
+		long offset = offsets[stream.ordinal()][index];
+		int  segment = (int) (offset / SEGMENT_BYTES);
+		int  position = (int) (offset - segment * SEGMENT_BYTES);
+
+		ByteBuffer chunk = segment(segment).duplicate().order(order);
+		if (chunk.getInt(position) != FRAME_TAG)
+			throw new IllegalStateException("corrupted frame " + index + " of " + stream);
+		long sequence   = chunk.getLong(position + 8);
+		long timestamp  = chunk.getLong(position + 16);
+		long deviceTime = chunk.getLong(position + 24);
+		int  encoding   = chunk.getInt(position + 32);
+		int  bytes      = chunk.getInt(position + 36);
+
+		chunk.limit(position + FRAME_HEADER_BYTES + bytes);
+		chunk.position(position + FRAME_HEADER_BYTES);
+		ByteBuffer data = chunk.slice().order(order);
+		return new RecordedFrame(stream, index, sequence, timestamp, deviceTime, encoding, data);
+	}
+
+	/**
+	 * Close the file, mapped segments are released by the garbage collector
+	 */
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to close recording", e);
+		}
+		segments = null;
+	}
+
+	private MappedByteBuffer segment(int segment) {
+		MappedByteBuffer mapped = segments[segment];
+		if (mapped == null) {
+			long start = segment * SEGMENT_BYTES;
+			long length = Math.min(size - start, SEGMENT_BYTES + segmentOverlap);
+			try {
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			} catch (IOException e) {
+				throw new UncheckedIOException("unable to map recording", e);
+			}
+			segments[segment] = mapped;
+		}
+		return mapped;
+	}
+
+	// offset, timestamp and stream id of every frame, from the index or by scanning the frames
+	private long [] readIndex() throws IOException {
+		if (size >= HEADER_BYTES + TRAILER_BYTES) {
+			ByteBuffer trailer = read(size - TRAILER_BYTES, TRAILER_BYTES, order);
+			if (trailer.getInt(12) == END_TAG) {
+				long indexOffset = trailer.getLong(0);
+				int frames = trailer.getInt(8);
+				ByteBuffer index = read(indexOffset, 8 + frames * INDEX_ENTRY_BYTES, order);
+				if (index.getInt(0) == INDEX_TAG && index.getInt(4) == frames) {
+					long [] entries = new long[frames * 3];
+					for (int i = 0; i < frames; i++) {
+						int entry = 8 + i * INDEX_ENTRY_BYTES;
+						entries[i * 3 + 0] = index.getLong(entry);
+						entries[i * 3 + 1] = index.getLong(entry + 8);
+						entries[i * 3 + 2] = index.getInt(entry + 16);
+					}
+					return entries;
+				}
+			}
+		}
+
+		long [] entries = new long[3 * 1024];
+		int frames = 0;
+		long position = HEADER_BYTES;
+		while (position + FRAME_HEADER_BYTES <= size) {
+			ByteBuffer header = read(position, FRAME_HEADER_BYTES, order);
+			int bytes = header.getInt(36);
+			if (header.getInt(0) != FRAME_TAG || position + FRAME_HEADER_BYTES + bytes > size)
+				break;
+			if (frames * 3 == entries.length)
+				entries = Arrays.copyOf(entries, entries.length * 2);
+			entries[frames * 3 + 0] = position;
+			entries[frames * 3 + 1] = header.getLong(16);
+			entries[frames * 3 + 2] = header.getInt(4);
+			frames++;
+			position += (FRAME_HEADER_BYTES + bytes + 7) & ~7L;
+		}
+		return Arrays.copyOf(entries, frames * 3);
+	}
+
+	private ByteBuffer read(long position, int length, ByteOrder byteOrder) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(byteOrder);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("unexpected end of recording");
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,233 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Records frames of any stream into a binary file, see RecordingProperties.
+ * Frames are written straight from their direct FrameBuffer, raw depth and
+ * body index values are packed to 16 bits. Call record() once per draw,
+ * only new frames are written, and close() to write the frame index.
+ */
+public class FrameRecorder implements RecordingProperties {
+
+	private final FileChannel channel;
+	private final ByteBuffer  header;
+	private ByteBuffer        packed;
+
+	// last recorded sequence of each stream
+	private final long [] sequences;
+
+	// frame index
+	private long [] offsets;
+	private long [] timestamps;
+	private int []  streams;
+	private int     frameCount;
+
+	private long    position;
+	private boolean closed;
+
+	/**
+	 * Create the recording, an existing file is replaced
+	 * @param file File
+	 */
+	public FrameRecorder(File file) {
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to create recording " + file, e);
+		}
+		header = ByteBuffer.allocateDirect(FRAME_HEADER_BYTES).order(ByteOrder.nativeOrder());
+		sequences  = new long[Stream.values().length];
+		offsets    = new long[1024];
+		timestamps = new long[1024];
+		streams    = new int[1024];
+
+		header.clear();
+		header.putLong(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? LITTLE_ENDIAN : BIG_ENDIAN);
+		header.putLong(System.currentTimeMillis());
+		header.putLong(0);
+		header.flip();
+		write(header);
+	}
+
+	/**
+	 * Record the latest frame of every stream from the device, if new
+	 * @param device KinectCore, ex. a KinectPV2
+	 * @param streams Stream
+	 * @return number of recorded frames
+	 */
+	public int record(KinectCore device, Stream... streams) {
+		int count = 0;
+		for (Stream stream : streams) {
+			if (record(device.getFrameBuffer(stream)))
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Record a frame if it is newer than the last recorded frame of its stream
+	 * @param frame FrameBuffer
+	 * @return true if the frame was written
+	 */
+	public boolean record(FrameBuffer frame) {
+		if (closed)
+			throw new IllegalStateException("recording is closed");
+
+		Stream stream = frame.getStream();
+		long sequence = frame.getSequence();
+		if (sequence == 0 || sequence == sequences[stream.ordinal()])
+			return false;
+		sequences[stream.ordinal()] = sequence;
+
+		int encoding = isUInt16(stream) ? ENCODING_UINT16 : ENCODING_RAW;
+		ByteBuffer payload = encoding == ENCODING_UINT16 ? pack(frame) : frame.getByteBuffer().duplicate();
+		payload.rewind();
+		int bytes = payload.remaining();
+
+		addIndex(stream, frame.getTimestamp());
+
+		header.clear();
+		header.putInt(FRAME_TAG);
+		header.putInt(stream.id);
+		header.putLong(sequence);
+		header.putLong(frame.getTimestamp());
+		header.putLong(frame.getDeviceTime());
+		header.putInt(encoding);
+		header.putInt(bytes);
+		header.flip();
+		write(header);
+		write(payload);
+		pad();
+		return true;
+	}
+
+	/**
+	 * Number of frames written
+	 * @return int
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Size of the recording, in bytes
+	 * @return long
+	 */
+	public long getBytesWritten() {
+		return position;
+	}
+
+	/**
+	 * Write the frame index and close the file
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			long indexOffset = position;
+			ByteBuffer index = ByteBuffer.allocateDirect(8 + frameCount * INDEX_ENTRY_BYTES + TRAILER_BYTES)
+					.order(ByteOrder.nativeOrder());
+			index.putInt(INDEX_TAG);
+			index.putInt(frameCount);
+			for (int i = 0; i < frameCount; i++) {
+				index.putLong(offsets[i]);
+				index.putLong(timestamps[i]);
+				index.putInt(streams[i]);
+				index.putInt(0);
+			}
+			index.putLong(indexOffset);
+			index.putInt(frameCount);
+			index.putInt(END_TAG);
+			index.flip();
+			write(index);
+			channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to close recording", e);
+		}
+	}
+
+	// streams with values that fit in 16 bits
+	static boolean isUInt16(Stream stream) {
+		return stream == Stream.RAW_DEPTH || stream == Stream.RAW_DEPTH_256 || stream == Stream.RAW_BODY_TRACK;
+	}
+
+	private ByteBuffer pack(FrameBuffer frame) {
+		int length = frame.getStream().length;
+		if (packed == null || packed.capacity() < length * 2)
+			packed = ByteBuffer.allocateDirect(length * 2).order(ByteOrder.nativeOrder());
+		packed.clear();
+		IntBuffer src = frame.asIntBuffer();
+		for (int i = 0; i < length; i++)
+			packed.putShort((short) src.get(i));
+		packed.flip();
+		return packed;
+	}
+
+	private void addIndex(Stream stream, long timestamp) {
+		if (frameCount == offsets.length) {
+			offsets    = Arrays.copyOf(offsets, frameCount * 2);
+			timestamps = Arrays.copyOf(timestamps, frameCount * 2);
+			streams    = Arrays.copyOf(streams, frameCount * 2);
+		}
+		offsets[frameCount]    = position;
+		timestamps[frameCount] = timestamp;
+		streams[frameCount]    = stream.id;
+		frameCount++;
+	}
+
+	private void pad() {
+		int padding = (int) (-position & 7);
+		if (padding > 0) {
+			header.clear();
+			for (int i = 0; i < padding; i++)
+				header.put((byte) 0);
+			header.flip();
+			write(header);
+		}
+	}
+
+	private void write(ByteBuffer buffer) {
+		try {
+			while (buffer.hasRemaining())
+				position += channel.write(buffer);
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to write recording", e);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.FloatBuffer;
+
+/**
+ * Producer of the frames read by KinectCore.
+ * A source fills the FrameExchange of every opened Stream and answers the
+ * sensor queries, NativeFrameSource for the Kinect v2 and
+ * SyntheticFrameSource for a generated scene without any device.
+ */
+public interface FrameSource {
+
+	/**
+	 * Start producing frames of the enabled streams
+	 * @return true if the source started
+	 */
+	public boolean start();
+
+	/**
+	 * Name and version of the source
+	 * @return String
+	 */
+	public String getVersion();
+
+	/**
+	 * Poll the source
+	 * @return false if the source is not able to produce frames
+	 */
+	public boolean update();
+
+	/**
+	 * Stop producing frames
+	 */
+	public void stop();
+
+	/**
+	 * Release the source, it can not be started again
+	 */
+	public void close();
+
+	/**
+	 * Enable or disable the production of a stream, called before start()
+	 * @param stream Stream
+	 * @param toggle boolean
+	 */
+	public void enableStream(Stream stream, boolean toggle);
+
+	/**
+	 * Create the FrameExchange the frames of a stream are published into
+	 * @param stream Stream
+	 * @return FrameExchange
+	 */
+	public FrameExchange openExchange(Stream stream);
+
+	/**
+	 * Stop publishing into the FrameExchange of a stream
+	 * @param stream Stream
+	 */
+	public void closeExchange(Stream stream);
+
+	/**
+	 * Acquire the latest frame of several exchanges of this source at once,
+	 * as close in time as the source allows
+	 * @param exchanges opened exchanges
+	 * @param count number of exchanges to acquire
+	 */
+	public void acquireFrames(FrameExchange [] exchanges, int count);
+
+	/**
+	 * Copy the body index image of a single user, ARGB
+	 * @param index user 0 - 5
+	 * @param dst int array of 512 x 424
+	 */
+	public void copyBodyIndexUser(int index, int [] dst);
+
+	/**
+	 * Number of users in the last body index frame
+	 * @return int
+	 */
+	public int getNumberOfUsers();
+
+	public void setLowThresholdPC(int val);
+
+	public int getLowThresholdPC();
+
+	public void setHighThresholdPC(int val);
+
+	public int getHighThresholdPC();
+
+	/**
+	 * Map a camera space point, in meters, to the depth image
+	 * @return float [] x, y
+	 */
+	public float [] mapCameraPointToDepthSpace(float x, float y, float z);
+
+	/**
+	 * Map a camera space point, in meters, to the color image
+	 * @return float [] x, y
+	 */
+	public float [] mapCameraPointToColorSpace(float x, float y, float z);
+
+	/**
+	 * Map count packed camera space points x, y, z, in meters, to the depth
+	 * image, x, y per point into dst
+	 * @param src float array of at least count x 3
+	 * @param dst float array of at least count x 2
+	 * @param count number of points
+	 */
+	public default void mapCameraPointsToDepthSpace(float [] src, float [] dst, int count) {
+		for (int i = 0; i < count; i++) {
+			float [] point = mapCameraPointToDepthSpace(src[i * 3], src[i * 3 + 1], src[i * 3 + 2]);
+			dst[i * 2]     = point[0];
+			dst[i * 2 + 1] = point[1];
+		}
+	}
+
+	/**
+	 * Map count packed camera space points x, y, z, in meters, to the color
+	 * image, x, y per point into dst
+	 * @param src float array of at least count x 3
+	 * @param dst float array of at least count x 2
+	 * @param count number of points
+	 */
+	public default void mapCameraPointsToColorSpace(float [] src, float [] dst, int count) {
+		for (int i = 0; i < count; i++) {
+			float [] point = mapCameraPointToColorSpace(src[i * 3], src[i * 3 + 1], src[i * 3 + 2]);
+			dst[i * 2]     = point[0];
+			dst[i * 2 + 1] = point[1];
+		}
+	}
+
+	/**
+	 * Map count packed camera space points of a direct FloatBuffer in the
+	 * native byte order to the depth image, in place without any copy
+	 * @param src direct FloatBuffer of at least count x 3
+	 * @param dst direct FloatBuffer of at least count x 2
+	 * @param count number of points
+	 * @return false if the source maps only arrays
+	 */
+	public default boolean mapCameraPointsToDepthSpace(FloatBuffer src, FloatBuffer dst, int count) {
+		return false;
+	}
+
+	/**
+	 * Map count packed camera space points of a direct FloatBuffer in the
+	 * native byte order to the color image, in place without any copy
+	 * @param src direct FloatBuffer of at least count x 3
+	 * @param dst direct FloatBuffer of at least count x 2
+	 * @param count number of points
+	 * @return false if the source maps only arrays
+	 */
+	public default boolean mapCameraPointsToColorSpace(FloatBuffer src, FloatBuffer dst, int count) {
+		return false;
+	}
+
+	public void enableCoordinateMapperRGBDepth();
+
+	/**
+	 * Copy the camera space ray of every depth pixel, x, y at a depth of 1 meter,
+	 * a camera space point is the ray times the depth in meters
+	 * @param dst float array of at least 512 x 424 x 2
+	 * @return false if the table is not available yet
+	 */
+	public boolean copyDepthFrameToCameraSpaceTable(float [] dst);
+}
@@ -0,0 +1,454 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Streaming gesture recognition over the 3d skeleton stream. Every new frame
+ * adds the normalized features of the selected joints of each tracked body to
+ * a ring buffer of that body: positions relative to SpineMid divided by the
+ * SpineShoulder to SpineBase distance, so the features do not depend on where
+ * the user stands or on the size of the user.
+ * The last frames of every body are then matched against each template with
+ * dynamic time warping in a Sakoe-Chiba band, abandoned as soon as a row
+ * exceeds the threshold of the template. The templates are split in chunks
+ * matched in parallel on a ForkJoinPool, with reused tasks and rows, so a
+ * frame costs no allocation. The best match under its threshold is reported
+ * to the listeners from update, and the history of the body is cleared.
+ * Templates are recorded from the same features with startRecording and
+ * stopRecording. Update, templates and recording from a single thread.
+ */
+public class GestureEngine implements SkeletonProperties {
+
+	/**
+	 * Default number of frames kept per body, 3 seconds at 30 Hz
+	 */
+	public final static int   DEFAULT_WINDOW     = 90;
+	public final static float DEFAULT_BAND_RATIO = 0.25f;
+
+	private final static float INF = java.lang.Float.POSITIVE_INFINITY;
+
+	private final int[] joints;
+	private final int   dims;
+	private final int   window;
+
+	private final ForkJoinPool pool;
+	private final boolean      ownPool;
+	private final Match        match;
+
+	// ring of each body, every frame written twice so the last frames are contiguous
+	private final float[][] history;
+	private final int[]     head;
+	private final int[]     count;
+	private final long[]    frames;
+	private final long[]    recordStart;
+
+	// copied on add and remove, iterated without an iterator on every detection
+	private volatile GestureListener[] listeners = new GestureListener[0];
+
+	private GestureTemplate[] templates = new GestureTemplate[0];
+	private Chunk[]           chunks    = new Chunk[0];
+	private float[]           distances = new float[0];
+
+	private float bandRatio = DEFAULT_BAND_RATIO;
+	private long  sequence;
+
+	/**
+	 * Engine on the common ForkJoinPool
+	 * @param joints JointTypes of the features, ex. JointType_HandRight
+	 */
+	public GestureEngine(int... joints) {
+		this(joints, DEFAULT_WINDOW, 0);
+	}
+
+	/**
+	 * @param joints JointTypes of the features
+	 * @param window frames kept per body, the longest template
+	 * @param parallelism threads of its own pool, 1 matches on the calling thread, 0 for the common pool
+	 */
+	public GestureEngine(int[] joints, int window, int parallelism) {
+		if (joints.length == 0)
+			throw new IllegalArgumentException("a gesture needs at least 1 joint");
+		for (int joint : joints)
+			if (joint < 0 || joint >= SkeletonFrame.JOINTS)
+				throw new IllegalArgumentException("joint type " + joint);
+		if (window < 2)
+			throw new IllegalArgumentException("window must be at least 2, got " + window);
+		if (parallelism < 0)
+			throw new IllegalArgumentException("parallelism " + parallelism);
+		this.joints = joints.clone();
+		this.window = window;
+		dims = joints.length * 3;
+		if (parallelism == 0)
+			pool = ForkJoinPool.commonPool();
+		else
+			pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		ownPool = pool != null && parallelism > 1;
+		match   = new Match();
+
+		history     = new float[BODY_COUNT][window * 2 * dims];
+		head        = new int[BODY_COUNT];
+		count       = new int[BODY_COUNT];
+		frames      = new long[BODY_COUNT];
+		recordStart = new long[BODY_COUNT];
+		Arrays.fill(recordStart, -1);
+	}
+
+	/**
+	 * Add the features of a new 3d skeleton frame and match the templates,
+	 * nothing is done if the frame was already added
+	 * @param frame SkeletonFrame of SKELETON_3D, ex. KinectCore.getSkeleton3dFrame()
+	 * @return true if the frame was added
+	 */
+	public boolean update(SkeletonFrame frame) {
+		if (frame.getStream() != Stream.SKELETON_3D)
+			throw new IllegalArgumentException(frame.getStream() + " is not the 3d skeleton stream");
+		if (frame.getSequence() == sequence)
+			return false;
+		sequence = frame.getSequence();
+		for (int body = 0; body < BODY_COUNT; body++) {
+			if (frame.isTracked(body)) {
+				addFeatures(frame, body);
+			} else {
+				count[body] = 0;
+				recordStart[body] = -1;
+			}
+		}
+		if (chunks.length == 0)
+			return true;
+
+		if (pool == null || chunks.length == 1) {
+			for (Chunk chunk : chunks)
+				chunk.match();
+		} else {
+			match.reinitialize();
+			pool.invoke(match);
+		}
+		detect();
+		return true;
+	}
+
+	private void addFeatures(SkeletonFrame frame, int body) {
+		float[] p = frame.getPositions();
+		int origin   = SkeletonFrame.index(body, JointType_SpineMid) * 3;
+		int shoulder = SkeletonFrame.index(body, JointType_SpineShoulder) * 3;
+		int base     = SkeletonFrame.index(body, JointType_SpineBase) * 3;
+		float sx = p[shoulder] - p[base];
+		float sy = p[shoulder + 1] - p[base + 1];
+		float sz = p[shoulder + 2] - p[base + 2];
+		float scale = (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+		float inv = scale > 1.0E-3f ? 1.0f / scale : 1.0f;
+
+		int h = (head[body] + 1) % window;
+		float[] ring = history[body];
+		int a = h * dims;
+		int b = (h + window) * dims;
+		for (int k = 0; k < joints.length; k++) {
+			int j = SkeletonFrame.index(body, joints[k]) * 3;
+			for (int c = 0; c < 3; c++) {
+				float f = (p[j + c] - p[origin + c]) * inv;
+				ring[a++] = f;
+				ring[b++] = f;
+			}
+		}
+		head[body] = h;
+		if (count[body] < window)
+			count[body]++;
+		frames[body]++;
+	}
+
+	// best match under its threshold of each body
+	private void detect() {
+		int n = templates.length;
+		for (int body = 0; body < BODY_COUNT; body++) {
+			if (recordStart[body] != -1)
+				continue;
+			int best = -1;
+			for (int t = 0; t < n; t++) {
+				float d = distances[body * n + t];
+				if (d <= templates[t].getThreshold() && (best == -1 || d < distances[body * n + best]))
+					best = t;
+			}
+			if (best == -1)
+				continue;
+			float distance = distances[body * n + best];
+			count[body] = 0;
+			for (GestureListener listener : listeners)
+				listener.gestureDetected(body, templates[best], distance);
+		}
+	}
+
+	// mean distance per template frame between a template and the last frames of a body
+	private float dtw(GestureTemplate template, int body, float[] prev, float[] cur) {
+		int m = template.getLength();
+		float[] t = template.features();
+		float[] s = history[body];
+		int start = (head[body] - m + 1 + window) % window;
+		int r = Math.max(1, (int) (m * bandRatio));
+		float limit = template.getThreshold() * m;
+
+		prev[0] = 0;
+		for (int j = 1; j <= m; j++)
+			prev[j] = INF;
+		for (int i = 1; i <= m; i++) {
+			int lo = Math.max(1, i - r);
+			int hi = Math.min(m, i + r);
+			cur[lo - 1] = INF;
+			float rowMin = INF;
+			int ti = (i - 1) * dims;
+			for (int j = lo; j <= hi; j++) {
+				int si = (start + j - 1) * dims;
+				float d = 0;
+				for (int c = 0; c < dims; c++) {
+					float e = t[ti + c] - s[si + c];
+					d += e * e;
+				}
+				float best = prev[j - 1];
+				if (prev[j] < best)
+					best = prev[j];
+				if (cur[j - 1] < best)
+					best = cur[j - 1];
+				float v = (float) Math.sqrt(d) + best;
+				cur[j] = v;
+				if (v < rowMin)
+					rowMin = v;
+			}
+			if (hi < m)
+				cur[hi + 1] = INF;
+			// early abandon, the path cost only grows
+			if (rowMin > limit)
+				return INF;
+			float[] swap = prev;
+			prev = cur;
+			cur = swap;
+		}
+		return prev[m] / m;
+	}
+
+	// the chunks in parallel
+	private final class Match extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void compute() {
+			for (Chunk chunk : chunks)
+				chunk.reinitialize();
+			invokeAll(chunks);
+		}
+	}
+
+	// templates from - to of every body, with its own rows
+	private final class Chunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final int     from;
+		final int     to;
+		final float[] prev;
+		final float[] cur;
+
+		Chunk(int from, int to, int maxLength) {
+			this.from = from;
+			this.to   = to;
+			prev = new float[maxLength + 1];
+			cur  = new float[maxLength + 1];
+		}
+
+		@Override
+		protected void compute() {
+			match();
+		}
+
+		void match() {
+			int n = templates.length;
+			for (int body = 0; body < BODY_COUNT; body++) {
+				for (int t = from; t < to; t++) {
+					GestureTemplate template = templates[t];
+					distances[body * n + t] = count[body] >= template.getLength()
+							? dtw(template, body, prev, cur) : INF;
+				}
+			}
+		}
+	}
+
+	// TEMPLATES
+
+	/**
+	 * Add a template recorded with the same joints
+	 * @param template GestureTemplate
+	 */
+	public void addTemplate(GestureTemplate template) {
+		if (!template.hasJoints(joints))
+			throw new IllegalArgumentException(template + " was recorded with other joints");
+		if (template.getLength() > window)
+			throw new IllegalArgumentException(template + " is longer than the window of " + window + " frames");
+		GestureTemplate[] next = Arrays.copyOf(templates, templates.length + 1);
+		next[templates.length] = template;
+		setTemplates(next);
+	}
+
+	public boolean removeTemplate(GestureTemplate template) {
+		for (int t = 0; t < templates.length; t++) {
+			if (templates[t] == template) {
+				GestureTemplate[] next = new GestureTemplate[templates.length - 1];
+				System.arraycopy(templates, 0, next, 0, t);
+				System.arraycopy(templates, t + 1, next, t, next.length - t);
+				setTemplates(next);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// chunks for the new templates, a few per thread
+	private void setTemplates(GestureTemplate[] next) {
+		int maxLength = 0;
+		for (GestureTemplate template : next)
+			maxLength = Math.max(maxLength, template.getLength());
+		int parallelism = pool != null ? pool.getParallelism() : 1;
+		int size = Math.max(1, (next.length + parallelism * 2 - 1) / (parallelism * 2));
+		Chunk[] nextChunks = new Chunk[(next.length + size - 1) / size];
+		for (int c = 0; c < nextChunks.length; c++)
+			nextChunks[c] = new Chunk(c * size, Math.min(next.length, (c + 1) * size), maxLength);
+		templates = next;
+		chunks    = nextChunks;
+		distances = new float[BODY_COUNT * next.length];
+		Arrays.fill(distances, INF);
+	}
+
+	public int getTemplateCount() {
+		return templates.length;
+	}
+
+	public GestureTemplate getTemplate(int index) {
+		return templates[index];
+	}
+
+	/**
+	 * Mean distance per frame of a template to the last frames of a body,
+	 * infinite if abandoned or there are not enough frames
+	 * @param body 0 - 5
+	 * @param template index of the template
+	 * @return float
+	 */
+	public float getDistance(int body, int template) {
+		return distances[body * templates.length + template];
+	}
+
+	/**
+	 * Half width of the warping band, as a ratio of the template length
+	 * @param ratio 0 - 1, default DEFAULT_BAND_RATIO
+	 */
+	public void setBandRatio(float ratio) {
+		if (ratio <= 0 || ratio > 1)
+			throw new IllegalArgumentException("band ratio " + ratio);
+		bandRatio = ratio;
+	}
+
+	public float getBandRatio() {
+		return bandRatio;
+	}
+
+	// RECORDING
+
+	/**
+	 * Start recording the features of a tracked body, detection is paused for the body
+	 * @param body 0 - 5
+	 */
+	public void startRecording(int body) {
+		recordStart[body] = frames[body];
+	}
+
+	public boolean isRecording(int body) {
+		return recordStart[body] != -1;
+	}
+
+	/**
+	 * Stop recording a body and create a template of the recorded frames,
+	 * not added to the engine
+	 * @param body 0 - 5
+	 * @param name name of the gesture
+	 * @return GestureTemplate
+	 */
+	public GestureTemplate stopRecording(int body, String name) {
+		if (recordStart[body] == -1)
+			throw new IllegalStateException("body " + body + " is not recording, or was lost");
+		long recorded = frames[body] - recordStart[body];
+		recordStart[body] = -1;
+		if (recorded == 0)
+			throw new IllegalStateException("no frames recorded for body " + body);
+		int m = (int) Math.min(recorded, count[body]);
+		int start = (head[body] - m + 1 + window) % window;
+		return new GestureTemplate(name, joints,
+				Arrays.copyOfRange(history[body], start * dims, (start + m) * dims));
+	}
+
+	// LISTENERS
+
+	public synchronized void addGestureListener(GestureListener listener) {
+		GestureListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+		next[listeners.length] = listener;
+		listeners = next;
+	}
+
+	public synchronized boolean removeGestureListener(GestureListener listener) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				GestureListener[] next = new GestureListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, next, 0, i);
+				System.arraycopy(listeners, i + 1, next, i, next.length - i);
+				listeners = next;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Frames in the history of a body
+	 * @param body 0 - 5
+	 * @return int
+	 */
+	public int getFrameCount(int body) {
+		return count[body];
+	}
+
+	/**
+	 * Number of threads matching a frame
+	 * @return int
+	 */
+	public int getParallelism() {
+		return pool != null ? pool.getParallelism() : 1;
+	}
+
+	/**
+	 * Shut down the pool of the engine, the common pool is left running
+	 */
+	public void close() {
+		if (ownPool)
+			pool.shutdown();
+	}
+}
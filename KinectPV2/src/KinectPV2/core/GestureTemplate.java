@@ -0,0 +1,116 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.util.Arrays;
+
+/**
+ * Recorded gesture, a sequence of normalized joint features as produced by
+ * a GestureEngine with the same joints, one row of joints x 3 floats per frame.
+ */
+public class GestureTemplate {
+
+	/**
+	 * Default max mean distance per frame of a match, in body scales
+	 */
+	public final static float DEFAULT_THRESHOLD = 0.25f;
+
+	private final String  name;
+	private final int[]   joints;
+	private final float[] features;
+	private final int     length;
+
+	private volatile float threshold = DEFAULT_THRESHOLD;
+
+	/**
+	 * @param name name of the gesture
+	 * @param joints JointTypes of the features
+	 * @param features frames x joints x 3 normalized positions, copied
+	 */
+	public GestureTemplate(String name, int[] joints, float[] features) {
+		int dims = joints.length * 3;
+		if (dims == 0 || features.length == 0 || features.length % dims != 0)
+			throw new IllegalArgumentException(features.length + " features for " + joints.length + " joints");
+		this.name     = name;
+		this.joints   = joints.clone();
+		this.features = features.clone();
+		length = features.length / dims;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * JointTypes of the features
+	 * @return int [], a copy
+	 */
+	public int[] getJoints() {
+		return joints.clone();
+	}
+
+	/**
+	 * Normalized features, frames x joints x 3
+	 * @return float [], a copy
+	 */
+	public float[] getFeatures() {
+		return features.clone();
+	}
+
+	/**
+	 * Number of frames
+	 * @return int
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Max mean distance per frame of a match
+	 * @param threshold in body scales
+	 */
+	public void setThreshold(float threshold) {
+		if (threshold <= 0)
+			throw new IllegalArgumentException("threshold " + threshold);
+		this.threshold = threshold;
+	}
+
+	public float getThreshold() {
+		return threshold;
+	}
+
+	// features without a copy, for the engine
+	float[] features() {
+		return features;
+	}
+
+	boolean hasJoints(int[] other) {
+		return Arrays.equals(joints, other);
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + length + " frames)";
+	}
+}
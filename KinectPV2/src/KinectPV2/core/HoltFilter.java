@@ -0,0 +1,99 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+/**
+ * Holt double exponential smoothing of the joints, a smoothed position plus
+ * a smoothed trend, per frame. Follows steady motion without the lag of a
+ * plain exponential filter. The data smoothing factor of inferred joints is
+ * divided by the inferred factor.
+ */
+public class HoltFilter extends JointFilter {
+
+	public final static float DEFAULT_ALPHA = 0.5f;
+	public final static float DEFAULT_GAMMA = 0.25f;
+
+	private final float[] alpha;
+	private final float[] gamma;
+
+	private final float[] level;
+	private final float[] trend;
+
+	public HoltFilter() {
+		this(Stream.SKELETON_3D);
+	}
+
+	public HoltFilter(Stream stream) {
+		super(stream);
+		alpha = new float[JOINTS];
+		gamma = new float[JOINTS];
+		level = new float[BODY_COUNT * JOINTS * 3];
+		trend = new float[BODY_COUNT * JOINTS * 3];
+		setParameters(DEFAULT_ALPHA, DEFAULT_GAMMA);
+	}
+
+	/**
+	 * Set the parameters of a joint type
+	 * @param joint JointType
+	 * @param alpha weight of the new position, 0 - 1, lower is smoother
+	 * @param gamma weight of the new trend, 0 - 1, lower is smoother
+	 */
+	public void setParameters(int joint, float alpha, float gamma) {
+		if (alpha <= 0 || alpha > 1 || gamma < 0 || gamma > 1)
+			throw new IllegalArgumentException("alpha " + alpha + ", gamma " + gamma);
+		this.alpha[joint] = alpha;
+		this.gamma[joint] = gamma;
+	}
+
+	/**
+	 * Set the parameters of every joint type
+	 */
+	public void setParameters(float alpha, float gamma) {
+		for (int joint = 0; joint < JOINTS; joint++)
+			setParameters(joint, alpha, gamma);
+	}
+
+	public float getAlpha(int joint) {
+		return alpha[joint];
+	}
+
+	public float getGamma(int joint) {
+		return gamma[joint];
+	}
+
+	@Override
+	protected void reset(int i, float x) {
+		level[i] = x;
+		trend[i] = 0;
+	}
+
+	@Override
+	protected float filter(int i, int joint, float x, float dt, float weight) {
+		float a = alpha[joint] / weight;
+		float previous = level[i];
+		level[i] = a * x + (1.0f - a) * (previous + trend[i]);
+		trend[i] = gamma[joint] * (level[i] - previous) + (1.0f - gamma[joint]) * trend[i];
+		return level[i];
+	}
+}
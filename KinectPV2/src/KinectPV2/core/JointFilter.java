@@ -0,0 +1,171 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.util.Arrays;
+
+/**
+ * Smoothing stage over a skeleton stream. Filters every joint coordinate of
+ * the tracked bodies of each new SkeletonFrame into a filtered SkeletonFrame
+ * of its own, with state kept in packed arrays indexed like the frame
+ * positions, so a frame costs no allocation.
+ * Inferred joints are filtered harder by the inferred factor of their joint
+ * type, not tracked joints keep their last filtered position. The state of a
+ * body is reset when it stops being tracked.
+ */
+public abstract class JointFilter implements SkeletonProperties {
+
+	public final static float DEFAULT_INFERRED_FACTOR = 3.0f;
+
+	// time step used for the first frame and after a gap
+	private final static float DEFAULT_DT = 1.0f / 30.0f;
+	private final static float MAX_DT     = 0.5f;
+
+	protected final static int JOINTS = SkeletonFrame.JOINTS;
+
+	private final SkeletonFrame frame;
+	private final float[]       last;
+	private final boolean[]     active;
+	private final float[]       inferredFactor;
+
+	private long lastTimestamp;
+
+	protected JointFilter(Stream stream) {
+		frame          = new SkeletonFrame(stream);
+		last           = new float[BODY_COUNT * JOINTS * 3];
+		active         = new boolean[BODY_COUNT];
+		inferredFactor = new float[JOINTS];
+		Arrays.fill(inferredFactor, DEFAULT_INFERRED_FACTOR);
+	}
+
+	/**
+	 * Filter a new frame of the stream, nothing is done if the frame was already filtered
+	 * @param src SkeletonFrame, ex. KinectCore.getSkeleton3dFrame()
+	 * @return true if the frame was filtered
+	 */
+	public boolean update(SkeletonFrame src) {
+		if (src.getSequence() == frame.getSequence())
+			return false;
+		float dt = (src.getTimestamp() - lastTimestamp) / 1.0E9f;
+		if (lastTimestamp == 0 || dt <= 0 || dt > MAX_DT)
+			dt = DEFAULT_DT;
+		lastTimestamp = src.getTimestamp();
+
+		frame.set(src);
+		float[] positions = frame.getPositions();
+		byte[]  states    = frame.getStates();
+		for (int body = 0; body < BODY_COUNT; body++) {
+			if (!frame.isTracked(body)) {
+				active[body] = false;
+				continue;
+			}
+			boolean first = !active[body];
+			active[body] = true;
+			for (int joint = 0; joint < JOINTS; joint++) {
+				int j = SkeletonFrame.index(body, joint);
+				// the hand joints hold the hand state, they are taken as tracked
+				int state = joint == JointType_HandLeft || joint == JointType_HandRight
+						? TrackingState_Tracked : states[j];
+				for (int i = j * 3; i < j * 3 + 3; i++) {
+					if (first) {
+						reset(i, positions[i]);
+						last[i] = positions[i];
+					} else if (state == TrackingState_NotTracked) {
+						positions[i] = last[i];
+					} else {
+						float weight = state == TrackingState_Inferred ? inferredFactor[joint] : 1.0f;
+						last[i] = positions[i] = filter(i, joint, positions[i], dt, weight);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Start the filter of a coordinate again from a position
+	 * @param i index in the packed positions
+	 * @param x position
+	 */
+	protected abstract void reset(int i, float x);
+
+	/**
+	 * Filter a coordinate
+	 * @param i index in the packed positions
+	 * @param joint JointType
+	 * @param x measured position
+	 * @param dt seconds since the previous frame
+	 * @param weight 1 for tracked joints, the inferred factor for inferred joints
+	 * @return filtered position
+	 */
+	protected abstract float filter(int i, int joint, float x, float dt, float weight);
+
+	/**
+	 * Drop the state of every body, the next frame starts the filters again
+	 */
+	public void reset() {
+		Arrays.fill(active, false);
+		lastTimestamp = 0;
+	}
+
+	/**
+	 * How much harder inferred joints of a type are filtered, 1 filters them as tracked joints
+	 * @param joint JointType
+	 * @param factor greater or equal to 1
+	 */
+	public void setInferredFactor(int joint, float factor) {
+		if (factor < 1)
+			throw new IllegalArgumentException("inferred factor " + factor + " is less than 1");
+		inferredFactor[joint] = factor;
+	}
+
+	/**
+	 * Set the inferred factor of every joint type
+	 * @param factor greater or equal to 1
+	 */
+	public void setInferredFactor(float factor) {
+		for (int joint = 0; joint < JOINTS; joint++)
+			setInferredFactor(joint, factor);
+	}
+
+	public float getInferredFactor(int joint) {
+		return inferredFactor[joint];
+	}
+
+	/**
+	 * Filtered frame, the same SkeletonFrame on every call
+	 * @return SkeletonFrame
+	 */
+	public SkeletonFrame getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Stream of the filtered frames
+	 * @return Stream
+	 */
+	public Stream getStream() {
+		return frame.getStream();
+	}
+}
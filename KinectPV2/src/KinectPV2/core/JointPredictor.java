@@ -0,0 +1,301 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+/**
+ * Latency compensation of a skeleton stream. Keeps the last three frames of
+ * every tracked body and extrapolates the joint positions to a requested
+ * time, ex. the time the next render is shown, from the velocity and the
+ * acceleration between the capture timestamps of the frames. Feed it the
+ * frames of a JointFilter to keep the jitter out of the acceleration.
+ * Orientations and states are the ones of the last frame.
+ * The one frame ahead error is measured on every new frame, along with the
+ * error of using the last frame as it is, the lag being compensated.
+ * Not thread safe, update and predict from the same thread.
+ */
+public class JointPredictor implements SkeletonProperties {
+
+	public final static long DEFAULT_MAX_HORIZON = 150000000L;
+
+	private final static int HISTORY = 3;
+	private final static int JOINTS  = SkeletonFrame.JOINTS;
+
+	private final SkeletonFrame frame;
+	private final float[][]     history;
+	private final long[]        times;
+	private final int[]         samples;
+
+	private int head;
+
+	// 1 / seconds between the last frames, 0 when unknown
+	private float invDt01;
+	private float invDt12;
+	private float dtAcc;
+
+	private boolean acceleration = true;
+	private long    maxHorizon   = DEFAULT_MAX_HORIZON;
+	private long    predictionTime;
+
+	private long   errorCount;
+	private double errorSum;
+	private double errorSquares;
+	private double holdErrorSum;
+	private float  maxError;
+
+	public JointPredictor() {
+		this(Stream.SKELETON_3D);
+	}
+
+	public JointPredictor(Stream stream) {
+		frame   = new SkeletonFrame(stream);
+		history = new float[HISTORY][BODY_COUNT * JOINTS * 3];
+		times   = new long[HISTORY];
+		samples = new int[BODY_COUNT];
+	}
+
+	/**
+	 * Add a new frame of the stream, nothing is done if the frame was already added
+	 * @param src SkeletonFrame, ex. KinectCore.getSkeleton3dFrame() or JointFilter.getFrame()
+	 * @return true if the frame was added
+	 */
+	public boolean update(SkeletonFrame src) {
+		if (src.getSequence() == frame.getSequence())
+			return false;
+		long time = src.getTimestamp();
+		measureErrors(src, horizon(time));
+
+		head = (head + 1) % HISTORY;
+		float[] positions = src.getPositions();
+		float[] current   = history[head];
+		for (int body = 0; body < BODY_COUNT; body++) {
+			if (!src.isTracked(body)) {
+				samples[body] = 0;
+				continue;
+			}
+			int start = SkeletonFrame.index(body, 0) * 3;
+			System.arraycopy(positions, start, current, start, JOINTS * 3);
+			if (samples[body] < HISTORY)
+				samples[body]++;
+		}
+		times[head] = time;
+		invDt12 = invDt01;
+		invDt01 = inverse(time - times[previous(1)]);
+		dtAcc   = invDt01 > 0 && invDt12 > 0 ? 0.5f * (1.0f / invDt01 + 1.0f / invDt12) : 0;
+
+		frame.set(src);
+		predictionTime = time;
+		return true;
+	}
+
+	/**
+	 * Extrapolate the joints of the tracked bodies to a time, the prediction
+	 * is limited to the max horizon after the last frame
+	 * @param time System.nanoTime() of the prediction, ex. the render time
+	 * @return SkeletonFrame with the predicted positions, the same on every call
+	 */
+	public SkeletonFrame predict(long time) {
+		float h = horizon(time);
+		float[] positions = frame.getPositions();
+		byte[]  states    = frame.getStates();
+		float[] current   = history[head];
+		for (int body = 0; body < BODY_COUNT; body++) {
+			int n = samples[body];
+			if (n == 0)
+				continue;
+			for (int joint = 0; joint < JOINTS; joint++) {
+				int j = SkeletonFrame.index(body, joint);
+				boolean hold = !isTracked(joint, states[j]);
+				for (int i = j * 3; i < j * 3 + 3; i++)
+					positions[i] = hold ? current[i] : extrapolate(i, n, h);
+			}
+		}
+		predictionTime = time;
+		return frame;
+	}
+
+	// error of the prediction of the new frame from the previous frames
+	private void measureErrors(SkeletonFrame src, float h) {
+		float[] positions = src.getPositions();
+		byte[]  states    = src.getStates();
+		float[] current   = history[head];
+		for (int body = 0; body < BODY_COUNT; body++) {
+			int n = samples[body];
+			if (n == 0 || !src.isTracked(body))
+				continue;
+			for (int joint = 0; joint < JOINTS; joint++) {
+				int j = SkeletonFrame.index(body, joint);
+				if (!isTracked(joint, states[j]))
+					continue;
+				float error = 0;
+				float hold  = 0;
+				for (int i = j * 3; i < j * 3 + 3; i++) {
+					float e = extrapolate(i, n, h) - positions[i];
+					float d = current[i] - positions[i];
+					error += e * e;
+					hold  += d * d;
+				}
+				error = (float) Math.sqrt(error);
+				errorSum     += error;
+				errorSquares += error * error;
+				holdErrorSum += Math.sqrt(hold);
+				if (error > maxError)
+					maxError = error;
+				errorCount++;
+			}
+		}
+	}
+
+	// position of a coordinate h seconds after the last frame
+	private float extrapolate(int i, int n, float h) {
+		float p0 = history[head][i];
+		if (n < 2 || invDt01 == 0)
+			return p0;
+		float p1 = history[previous(1)][i];
+		float v  = (p0 - p1) * invDt01;
+		if (n < 3 || !acceleration || dtAcc == 0)
+			return p0 + v * h;
+		float p2 = history[previous(2)][i];
+		float a  = (v - (p1 - p2) * invDt12) / dtAcc;
+		return p0 + v * h + 0.5f * a * h * h;
+	}
+
+	// seconds from the last frame to a time, within 0 and the max horizon
+	private float horizon(long time) {
+		long h = Math.min(Math.max(time - times[head], 0), maxHorizon);
+		return h / 1.0E9f;
+	}
+
+	private int previous(int k) {
+		return (head + HISTORY - k) % HISTORY;
+	}
+
+	private static float inverse(long nanos) {
+		return nanos > 0 ? 1.0E9f / nanos : 0;
+	}
+
+	// the hand joints hold the hand state, they are taken as tracked
+	private static boolean isTracked(int joint, int state) {
+		return joint == JointType_HandLeft || joint == JointType_HandRight
+				|| state != TrackingState_NotTracked;
+	}
+
+	/**
+	 * Use the acceleration, or only the velocity, default true
+	 * @param toggle boolean
+	 */
+	public void enableAcceleration(boolean toggle) {
+		acceleration = toggle;
+	}
+
+	public boolean isAccelerationEnabled() {
+		return acceleration;
+	}
+
+	/**
+	 * Max time a prediction goes past the last frame
+	 * @param nanos nanoseconds, default DEFAULT_MAX_HORIZON
+	 */
+	public void setMaxHorizon(long nanos) {
+		if (nanos < 0)
+			throw new IllegalArgumentException("max horizon " + nanos);
+		maxHorizon = nanos;
+	}
+
+	public long getMaxHorizon() {
+		return maxHorizon;
+	}
+
+	/**
+	 * Time of the positions of the predicted frame, System.nanoTime()
+	 * @return long
+	 */
+	public long getPredictionTime() {
+		return predictionTime;
+	}
+
+	/**
+	 * Predicted frame, the same SkeletonFrame on every call
+	 * @return SkeletonFrame
+	 */
+	public SkeletonFrame getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Stream of the predicted frames
+	 * @return Stream
+	 */
+	public Stream getStream() {
+		return frame.getStream();
+	}
+
+	/**
+	 * Mean distance between the one frame ahead prediction and the new frame, per joint
+	 * @return float
+	 */
+	public float getMeanError() {
+		return errorCount > 0 ? (float) (errorSum / errorCount) : 0;
+	}
+
+	/**
+	 * Root mean square of the one frame ahead prediction error
+	 * @return float
+	 */
+	public float getRmsError() {
+		return errorCount > 0 ? (float) Math.sqrt(errorSquares / errorCount) : 0;
+	}
+
+	/**
+	 * Largest one frame ahead prediction error
+	 * @return float
+	 */
+	public float getMaxError() {
+		return maxError;
+	}
+
+	/**
+	 * Mean distance between the previous frame and the new frame per joint,
+	 * the error without prediction
+	 * @return float
+	 */
+	public float getMeanHoldError() {
+		return errorCount > 0 ? (float) (holdErrorSum / errorCount) : 0;
+	}
+
+	/**
+	 * Number of joint errors measured
+	 * @return long
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	public void resetErrors() {
+		errorCount   = 0;
+		errorSum     = 0;
+		errorSquares = 0;
+		holdErrorSum = 0;
+		maxError     = 0;
+	}
+}
@@ -0,0 +1,124 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+/**
+ * Kalman filter of the joints, a constant velocity model per coordinate
+ * driven by white noise acceleration. The measurement noise of inferred
+ * joints is multiplied by the square of the inferred factor.
+ * Defaults are for SKELETON_3D, in meters.
+ */
+public class KalmanFilter extends JointFilter {
+
+	public final static float DEFAULT_PROCESS_NOISE     = 2.0f;
+	public final static float DEFAULT_MEASUREMENT_NOISE = 1.0E-4f;
+
+	private final float[] processNoise;
+	private final float[] measurementNoise;
+
+	// state and symmetric covariance per coordinate
+	private final float[] position;
+	private final float[] velocity;
+	private final float[] p00;
+	private final float[] p01;
+	private final float[] p11;
+
+	public KalmanFilter() {
+		this(Stream.SKELETON_3D);
+	}
+
+	public KalmanFilter(Stream stream) {
+		super(stream);
+		processNoise     = new float[JOINTS];
+		measurementNoise = new float[JOINTS];
+		int size = BODY_COUNT * JOINTS * 3;
+		position = new float[size];
+		velocity = new float[size];
+		p00      = new float[size];
+		p01      = new float[size];
+		p11      = new float[size];
+		setParameters(DEFAULT_PROCESS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+	}
+
+	/**
+	 * Set the parameters of a joint type
+	 * @param joint JointType
+	 * @param processNoise variance of the acceleration, higher follows faster
+	 * @param measurementNoise variance of the measured position, higher is smoother
+	 */
+	public void setParameters(int joint, float processNoise, float measurementNoise) {
+		if (processNoise <= 0 || measurementNoise <= 0)
+			throw new IllegalArgumentException("process noise " + processNoise + ", measurement noise " + measurementNoise);
+		this.processNoise[joint]     = processNoise;
+		this.measurementNoise[joint] = measurementNoise;
+	}
+
+	/**
+	 * Set the parameters of every joint type
+	 */
+	public void setParameters(float processNoise, float measurementNoise) {
+		for (int joint = 0; joint < JOINTS; joint++)
+			setParameters(joint, processNoise, measurementNoise);
+	}
+
+	public float getProcessNoise(int joint) {
+		return processNoise[joint];
+	}
+
+	public float getMeasurementNoise(int joint) {
+		return measurementNoise[joint];
+	}
+
+	@Override
+	protected void reset(int i, float x) {
+		position[i] = x;
+		velocity[i] = 0;
+		p00[i] = measurementNoise[(i / 3) % JOINTS];
+		p01[i] = 0;
+		p11[i] = 1.0f;
+	}
+
+	@Override
+	protected float filter(int i, int joint, float x, float dt, float weight) {
+		// predict
+		float q   = processNoise[joint];
+		float dt2 = dt * dt;
+		float a00 = p00[i] + dt * (2 * p01[i] + dt * p11[i]) + q * dt2 * dt2 / 4;
+		float a01 = p01[i] + dt * p11[i] + q * dt2 * dt / 2;
+		float a11 = p11[i] + q * dt2;
+		float p   = position[i] + velocity[i] * dt;
+
+		// correct
+		float s  = a00 + measurementNoise[joint] * weight * weight;
+		float k0 = a00 / s;
+		float k1 = a01 / s;
+		float y  = x - p;
+		position[i] = p + k0 * y;
+		velocity[i] += k1 * y;
+		p00[i] = (1 - k0) * a00;
+		p01[i] = (1 - k0) * a01;
+		p11[i] = a11 - k1 * a01;
+		return position[i];
+	}
+}
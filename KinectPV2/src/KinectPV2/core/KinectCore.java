@@ -0,0 +1,1589 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.EnumSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Headless Kinect v2 device, without any Processing dependency.
+ * Enables the streams of a FrameSource and gives access to their frames as
+ * raw buffers and arrays, snapshots and listeners. KinectPV2 builds the
+ * PImage and Skeleton getters on top of it.
+ */
+public class KinectCore implements Constants, FaceProperties, SkeletonProperties,
+		Runnable {
+
+	protected volatile boolean runningKinect;
+
+	// POINT CLOUD buffers, created on first use
+	private FloatBuffer pointCloudDepthPos;
+	private FloatBuffer pointCloudColorPos;
+	private FloatBuffer colorChannelBuffer;
+	private FloatBuffer pointCloudNormals;
+
+	// POINT CLOUD in Java, from the 16 bit depth and the depth calibration
+	private boolean           pointCloudJava;
+	private long              pointCloudSequence;
+	private DepthCalibration  depthCalibration;
+	private PointCloudBuilder pointCloudBuilder;
+
+	// REGISTRATION of the depth and color frames, created on first use, with
+	// the depth frame of the last mapping and the snapshot of both
+	private final static EnumSet<Stream> REGISTRATION_STREAMS =
+			EnumSet.of(Stream.RAW_DEPTH_16, Stream.MAP_DEPTH_TO_COLOR);
+	private Registration registration;
+	private FrameBundle  registrationBundle;
+	private FrameBuffer  registrationDepth;
+
+	// VOXEL GRID downsampling the point clouds, created on first use
+	private VoxelGrid voxelGrid;
+
+	// NORMALS of the point clouds, computed again once per frame
+	private NormalEstimator normalEstimator;
+	private long            normalsSequence;
+
+	// OCTREE of the point clouds, built again once per frame
+	private PointOctree octree;
+	private long        octreeSequence;
+
+	// SKELETON FRAMES of the skeleton streams, created on first use
+	private SkeletonFrame[] skeletonFrames;
+
+	// USERS matched over the 3d skeleton frames, created on first use
+	private UserTracker userTracker;
+
+	// FRAME EXCHANGES, opened with the frame source on demand
+	private FrameExchange[] frameExchanges;
+	private boolean[]       enabledStreams;
+
+	// CONSUMER LOCKS, held by the thread acquiring a stream, getter or dispatcher
+	private final ReentrantLock[] consumerLocks;
+
+	// SNAPSHOT, the held bundle answers the getters of its streams
+	private FrameBundle     frameBundle;
+	private FrameBundle     heldBundle;
+	private FrameExchange[] snapshotExchanges;
+	private FrameExchange[] snapshotReads;
+
+	// LISTENERS, served by the acquisition thread
+	private volatile FrameDispatcher dispatcher;
+
+	private FrameSource    source;
+	private ColorConverter colorConverter;
+
+	// MAPPING in Java when set, scratch arrays of the buffer variants
+	private volatile CoordinateMapper coordinateMapper;
+	private float[]          mapSrc;
+	private float[]          mapDst;
+
+	private boolean startSensor;
+
+	/**
+	 * Headless device with the Kinect v2
+	 */
+	public KinectCore() {
+		this(new NativeFrameSource());
+	}
+
+	/**
+	 * Headless device with any FrameSource, ex. SyntheticFrameSource
+	 * @param source FrameSource
+	 */
+	public KinectCore(FrameSource source) {
+		this.source = source;
+		frameExchanges = new FrameExchange[Stream.values().length];
+		enabledStreams = new boolean[Stream.values().length];
+		consumerLocks = new ReentrantLock[Stream.values().length];
+		for (int i = 0; i < consumerLocks.length; i++)
+			consumerLocks[i] = new ReentrantLock();
+		skeletonFrames = new SkeletonFrame[Stream.values().length];
+		startSensor = false;
+	}
+
+	/**
+	 * Start the frame source and the acquisition thread
+	 * @return false if the source did not start
+	 */
+	public boolean start() {
+		startSensor = source.start();
+		String load = source.getVersion();
+		System.out.println("Version: " + load);
+
+		if (startSensor) {
+			runningKinect = true;
+			Thread acquisition = new Thread(this, "KinectPV2 acquisition");
+			acquisition.setDaemon(true);
+			acquisition.start();
+		}
+		return startSensor;
+	}
+
+	/**
+	 * Stop the acquisition thread and release the frame source
+	 */
+	public void close() {
+		runningKinect = false;
+		stopDevice();
+		cleanDevice();
+	}
+
+	/**
+	 * Check if the frame source started
+	 * @return boolean
+	 */
+	public boolean isStarted() {
+		return startSensor;
+	}
+
+	// COLOR
+
+	/**
+	 * Copy the current color frame 1920 x 1080 (ARGB) into dst, no allocation
+	 * @param dst int array of at least 1920 x 1080
+	 * @return dst
+	 */
+	public int [] getColorData(int [] dst){
+		return getColorConverter().bgraToArgb(getFrameBuffer(Stream.COLOR).getByteBuffer(),
+				WIDTHColor, HEIGHTColor, dst);
+	}
+
+	/**
+	 * Copy the current color frame 1920 x 1080 (ARGB) into dst, no allocation
+	 * @param dst direct or array backed IntBuffer
+	 * @return dst, rewound
+	 */
+	public IntBuffer getColorData(IntBuffer dst){
+		return copyIntFrame(Stream.COLOR, dst);
+	}
+
+	/**
+	 * Convert the current color frame into planar RGB, red, green and blue planes 1920 x 1080
+	 * @param dst byte array of at least 1920 x 1080 x 3
+	 * @return dst
+	 */
+	public byte [] getColorPlanarData(byte [] dst){
+		return getColorConverter().bgraToPlanarRGB(getFrameBuffer(Stream.COLOR).getByteBuffer(),
+				WIDTHColor, HEIGHTColor, dst);
+	}
+
+	/**
+	 * Convert the current color frame into planar RGB from 0 to 1, red, green and blue planes 1920 x 1080
+	 * @param dst float array of at least 1920 x 1080 x 3
+	 * @return dst
+	 */
+	public float [] getColorPlanarData(float [] dst){
+		return getColorConverter().bgraToPlanarRGB(getFrameBuffer(Stream.COLOR).getByteBuffer(),
+				WIDTHColor, HEIGHTColor, dst);
+	}
+
+	/**
+	 * Convert the current color frame into 8 bit gray 1920 x 1080
+	 * @param dst byte array of at least 1920 x 1080
+	 * @return dst
+	 */
+	public byte [] getColorGrayData(byte [] dst){
+		return getColorConverter().bgraToGray(getFrameBuffer(Stream.COLOR).getByteBuffer(),
+				WIDTHColor, HEIGHTColor, dst);
+	}
+
+	/**
+	 * Converter used for the color frames, created on first use on the common ForkJoinPool
+	 * @return ColorConverter
+	 */
+	public ColorConverter getColorConverter(){
+		if(colorConverter == null)
+			colorConverter = new ColorConverter();
+		return colorConverter;
+	}
+
+	/**
+	 * Set the converter used for the color frames, ex. new ColorConverter(2) to limit the threads
+	 * @param converter ColorConverter
+	 */
+	public void setColorConverter(ColorConverter converter){
+		colorConverter = converter;
+	}
+
+	// DEPTH
+
+	/**
+	 * Obtain the raw depth data values in mm from 0 to 4500
+	 * @return array of int
+	 */
+	public int []  getRawDepthData(){
+		return getRawDepthData(new int[Stream.RAW_DEPTH.length]);
+	}
+
+	/**
+	 * Copy the raw depth data values in mm into dst, no allocation
+	 * @param dst int array of at least 512 x 424
+	 * @return dst
+	 */
+	public int []  getRawDepthData(int [] dst){
+		return copyIntFrame(Stream.RAW_DEPTH, dst);
+	}
+
+	/**
+	 * Copy the raw depth data values in mm into dst, no allocation
+	 * @param dst direct or array backed IntBuffer
+	 * @return dst, rewound
+	 */
+	public IntBuffer getRawDepthData(IntBuffer dst){
+		return copyIntFrame(Stream.RAW_DEPTH, dst);
+	}
+
+	/**
+	 * Obtain the raw depth data values in mm as unsigned 16 bits, half the
+	 * size of getRawDepthData(), read them with RawDepth.millimeters()
+	 * @return array of short
+	 */
+	public short [] getRawDepth16Data(){
+		return getRawDepth16Data(new short[Stream.RAW_DEPTH_16.length]);
+	}
+
+	/**
+	 * Get the raw depth data values in mm as unsigned 16 bits, without any copy,
+	 * the view stays valid until the next read of the stream
+	 * @return ShortBuffer, rewound
+	 */
+	public ShortBuffer getRawDepth16Buffer(){
+		ShortBuffer src = getFrameBuffer(Stream.RAW_DEPTH_16).asShortBuffer();
+		src.rewind();
+		return src;
+	}
+
+	/**
+	 * Copy the raw depth data values in mm as unsigned 16 bits into dst, no allocation
+	 * @param dst short array of at least 512 x 424
+	 * @return dst
+	 */
+	public short [] getRawDepth16Data(short [] dst){
+		checkFrame(Stream.RAW_DEPTH_16, Int16, dst.length);
+		ShortBuffer src = getFrameBuffer(Stream.RAW_DEPTH_16).asShortBuffer();
+		src.rewind();
+		src.get(dst, 0, Stream.RAW_DEPTH_16.length);
+		return dst;
+	}
+
+	/**
+	 * Copy the raw depth data values in mm as unsigned 16 bits into dst, no allocation
+	 * @param dst direct or array backed ShortBuffer of at least 512 x 424
+	 * @return dst, rewound
+	 */
+	public ShortBuffer getRawDepth16Data(ShortBuffer dst){
+		checkFrame(Stream.RAW_DEPTH_16, Int16, dst.capacity());
+		ShortBuffer src = getFrameBuffer(Stream.RAW_DEPTH_16).asShortBuffer();
+		src.rewind();
+		dst.clear();
+		dst.put(src);
+		dst.rewind();
+		return dst;
+	}
+
+	/**
+	 * Obtain the raw depth data values in mm from 0 to 256 
+	 * Data based on the  getDepth256Image
+	 * @return array of int
+	 */
+	public int []  getRawDepth256Data(){
+		return getRawDepth256Data(new int[Stream.RAW_DEPTH_256.length]);
+	}
+
+	/**
+	 * Copy the raw depth data values from 0 to 256 into dst, no allocation
+	 * @param dst int array of at least 512 x 424
+	 * @return dst
+	 */
+	public int []  getRawDepth256Data(int [] dst){
+		return copyIntFrame(Stream.RAW_DEPTH_256, dst);
+	}
+
+	// BODY TRACK
+
+	/**
+	 * Get the Number of currently track users based on the Body Track frame
+	 * @return Number of Users
+	 */
+	public int getNumOfUsers(){
+		return source.getNumberOfUsers();
+	}
+
+	/**
+	 * Get Raw BodyTracking Data 512 x 424
+	 * 
+	 * @return int []
+	 */
+	public int[] getRawBodyTrack() {
+		return getRawBodyTrack(new int[Stream.RAW_BODY_TRACK.length]);
+	}
+
+	/**
+	 * Copy the Raw BodyTracking Data 512 x 424 into dst, no allocation
+	 * 
+	 * @param dst int array of at least 512 x 424
+	 * @return dst
+	 */
+	public int[] getRawBodyTrack(int [] dst) {
+		return copyIntFrame(Stream.RAW_BODY_TRACK, dst);
+	}
+
+	/**
+	 * Copy the Raw BodyTracking Data 512 x 424 into dst, no allocation
+	 * 
+	 * @param dst direct or array backed IntBuffer
+	 * @return dst, rewound
+	 */
+	public IntBuffer getRawBodyTrack(IntBuffer dst) {
+		return copyIntFrame(Stream.RAW_BODY_TRACK, dst);
+	}
+
+	// SKELETON
+
+	/**
+	 * Get the 3d skeletons of all the bodies as packed arrays, in meters
+	 * @return SkeletonFrame
+	 */
+	public SkeletonFrame getSkeleton3dFrame() {
+		return getSkeletonFrame(Stream.SKELETON_3D);
+	}
+
+	/**
+	 * Get the skeletons of all the bodies mapped to the depth image, as packed arrays
+	 * @return SkeletonFrame
+	 */
+	public SkeletonFrame getSkeletonDepthFrame() {
+		return getSkeletonFrame(Stream.SKELETON_DEPTH);
+	}
+
+	/**
+	 * Get the skeletons of all the bodies mapped to the color image, as packed arrays
+	 * @return SkeletonFrame
+	 */
+	public SkeletonFrame getSkeletonColorFrame() {
+		return getSkeletonFrame(Stream.SKELETON_COLOR);
+	}
+
+	/**
+	 * Get the SkeletonFrame of a skeleton stream, unpacked only when a new frame arrived.
+	 * The same SkeletonFrame is returned on every call
+	 * @param stream SKELETON_3D, SKELETON_DEPTH or SKELETON_COLOR
+	 * @return SkeletonFrame
+	 */
+	public SkeletonFrame getSkeletonFrame(Stream stream) {
+		SkeletonFrame skeletonFrame = skeletonFrames[stream.ordinal()];
+		if (skeletonFrame == null) {
+			skeletonFrame = new SkeletonFrame(stream);
+			skeletonFrames[stream.ordinal()] = skeletonFrame;
+		}
+		skeletonFrame.update(getFrameBuffer(stream));
+		return skeletonFrame;
+	}
+
+	/**
+	 * Get the UserTracker, updated with the 3d skeleton frame on every call.
+	 * Needs enableSkeleton3DMap(true)
+	 * @return UserTracker
+	 */
+	public UserTracker getUserTracker() {
+		if (userTracker == null)
+			userTracker = new UserTracker();
+		userTracker.update(getSkeleton3dFrame());
+		return userTracker;
+	}
+
+	// POINT CLOUDS
+
+	/**
+	 * Get Point Cloud Depth Map as FloatBuffer, transform to a float array with .array(), or get values with get(index)
+	 * 
+	 * @return FloatBuffer
+	 */
+	public FloatBuffer getPointCloudDepthPos() {
+		if (pointCloudDepthPos == null)
+			pointCloudDepthPos = newDirectFloatBuffer(Stream.POINT_CLOUD_DEPTH.length);
+		if (pointCloudJava) {
+			FrameBuffer frame = getFrameBuffer(Stream.RAW_DEPTH_16);
+			if (frame.getSequence() != pointCloudSequence) {
+				buildPointCloud(frame, pointCloudDepthPos);
+				pointCloudSequence = frame.getSequence();
+			}
+			pointCloudDepthPos.rewind();
+			return pointCloudDepthPos;
+		}
+		return copyFloatFrame(Stream.POINT_CLOUD_DEPTH, pointCloudDepthPos);
+	}
+
+	/**
+	 * Copy the Point Cloud Depth Map (x, y, z) into dst, no allocation
+	 * @param dst direct or array backed FloatBuffer of at least 512 x 424 x 3
+	 * @return dst, rewound
+	 */
+	public FloatBuffer getPointCloudDepthPos(FloatBuffer dst) {
+		if (pointCloudJava)
+			return buildPointCloud(getFrameBuffer(Stream.RAW_DEPTH_16), dst);
+		return copyFloatFrame(Stream.POINT_CLOUD_DEPTH, dst);
+	}
+
+	/**
+	 * Copy the Point Cloud Depth Map (x, y, z) into dst, no allocation
+	 * @param dst float array of at least 512 x 424 x 3
+	 * @return dst
+	 */
+	public float [] getPointCloudDepthPos(float [] dst) {
+		if (pointCloudJava)
+			return getPointCloudBuilder().build(getDepthCalibration(),
+					getFrameBuffer(Stream.RAW_DEPTH_16).asShortBuffer(),
+					getLowThresholdDepthPC(), getHighThresholdDepthPC(), dst);
+		return copyFloatFrame(Stream.POINT_CLOUD_DEPTH, dst);
+	}
+
+	private FloatBuffer buildPointCloud(FrameBuffer frame, FloatBuffer dst) {
+		return getPointCloudBuilder().build(getDepthCalibration(), frame.asShortBuffer(),
+				getLowThresholdDepthPC(), getHighThresholdDepthPC(), dst);
+	}
+
+	/**
+	 * Compute the Point Cloud Depth Map in Java from the 16 bit depth frames
+	 * and the depth calibration, instead of the point cloud of the device,
+	 * so no point cloud crosses JNI and recordings of the 16 bit depth
+	 * give the same point clouds
+	 * @param toggle
+	 */
+	public void enablePointCloudJava(boolean toggle) {
+		if (toggle)
+			enableStreams(true, Stream.RAW_DEPTH_16);
+		pointCloudJava = toggle;
+		pointCloudSequence = 0;
+		octreeSequence = 0;
+		normalsSequence = 0;
+		invalidateRegistration();
+	}
+
+	public boolean isPointCloudJava() {
+		return pointCloudJava;
+	}
+
+	/**
+	 * Get the DepthCalibration, fetched from the frame source on first use once the device started
+	 * @return DepthCalibration
+	 */
+	public synchronized DepthCalibration getDepthCalibration() {
+		if (depthCalibration == null)
+			depthCalibration = DepthCalibration.create(source);
+		return depthCalibration;
+	}
+
+	/**
+	 * Use a DepthCalibration, ex. loaded with the recording the frames come from
+	 * @param calibration DepthCalibration
+	 */
+	public synchronized void setDepthCalibration(DepthCalibration calibration) {
+		depthCalibration = calibration;
+		pointCloudSequence = 0;
+		octreeSequence = 0;
+		normalsSequence = 0;
+		invalidateRegistration();
+	}
+
+	/**
+	 * Get the builder of the Java point clouds, on the common ForkJoinPool by default
+	 * @return PointCloudBuilder
+	 */
+	public PointCloudBuilder getPointCloudBuilder() {
+		if (pointCloudBuilder == null)
+			pointCloudBuilder = new PointCloudBuilder();
+		return pointCloudBuilder;
+	}
+
+	/**
+	 * Use another PointCloudBuilder, ex. with its own pool
+	 * @param builder PointCloudBuilder
+	 */
+	public void setPointCloudBuilder(PointCloudBuilder builder) {
+		pointCloudBuilder = builder;
+	}
+
+	/**
+	 * Downsample the Point Cloud Depth Map with the VoxelGrid, one centroid
+	 * per occupied cell, the buffer is reused by the next call
+	 * @return FloatBuffer x, y, z per voxel, rewound and limited to the voxels
+	 */
+	public FloatBuffer getPointCloudVoxels() {
+		VoxelGrid grid = getVoxelGrid();
+		grid.filter(getPointCloudDepthPos(), WIDTHDepth * HEIGHTDepth);
+		return grid.getPoints();
+	}
+
+	/**
+	 * Get the VoxelGrid of getPointCloudVoxels(), 2 cm cells on the common ForkJoinPool by default
+	 * @return VoxelGrid
+	 */
+	public VoxelGrid getVoxelGrid() {
+		if (voxelGrid == null)
+			voxelGrid = new VoxelGrid();
+		return voxelGrid;
+	}
+
+	/**
+	 * Use another VoxelGrid, ex. with its own pool
+	 * @param grid VoxelGrid
+	 */
+	public void setVoxelGrid(VoxelGrid grid) {
+		voxelGrid = grid;
+	}
+
+	/**
+	 * Get the Point Cloud Depth Map with a normal per point, interleaved
+	 * x, y, z, normal x, y, z per depth pixel, ready for a VBO. Pixels
+	 * without depth have a normal of 0, 0, 0. Computed again only when a
+	 * new frame arrived
+	 * @return FloatBuffer of 512 x 424 x 6, rewound
+	 */
+	public FloatBuffer getPointCloudNormals() {
+		if (pointCloudNormals == null) {
+			pointCloudNormals = newDirectFloatBuffer(WIDTHDepth * HEIGHTDepth * NormalEstimator.STRIDE);
+			normalsSequence = 0;
+		}
+		// sequence first, a newer cloud is only computed again by the next call
+		long sequence = getFrameBuffer(pointCloudJava ? Stream.RAW_DEPTH_16 : Stream.POINT_CLOUD_DEPTH).getSequence();
+		FloatBuffer cloud = getPointCloudDepthPos();
+		if (sequence == 0 || sequence != normalsSequence) {
+			getNormalEstimator().compute(cloud, pointCloudNormals);
+			normalsSequence = sequence;
+		}
+		pointCloudNormals.rewind();
+		return pointCloudNormals;
+	}
+
+	/**
+	 * Copy the Point Cloud Depth Map with a normal per point into dst, no allocation
+	 * @param dst direct or array backed FloatBuffer of at least 512 x 424 x 6
+	 * @return dst, rewound
+	 */
+	public FloatBuffer getPointCloudNormals(FloatBuffer dst) {
+		return getNormalEstimator().compute(getPointCloudDepthPos(), dst);
+	}
+
+	/**
+	 * Get the NormalEstimator of getPointCloudNormals(), on the common ForkJoinPool by default
+	 * @return NormalEstimator
+	 */
+	public NormalEstimator getNormalEstimator() {
+		if (normalEstimator == null)
+			normalEstimator = new NormalEstimator();
+		return normalEstimator;
+	}
+
+	/**
+	 * Use another NormalEstimator, ex. with a larger window
+	 * @param estimator NormalEstimator
+	 */
+	public void setNormalEstimator(NormalEstimator estimator) {
+		normalEstimator = estimator;
+		normalsSequence = 0;
+	}
+
+	/**
+	 * Get the PointOctree of the Point Cloud Depth Map, for box, sphere and
+	 * nearest queries returning the indices of the points, built again
+	 * only when a new frame arrived
+	 * @return PointOctree
+	 */
+	public PointOctree getPointCloudOctree() {
+		if (octree == null)
+			octree = new PointOctree();
+		// sequence first, a newer cloud is only built again by the next call
+		long sequence = getFrameBuffer(pointCloudJava ? Stream.RAW_DEPTH_16 : Stream.POINT_CLOUD_DEPTH).getSequence();
+		FloatBuffer cloud = getPointCloudDepthPos();
+		if (sequence == 0 || sequence != octreeSequence) {
+			octree.build(cloud, WIDTHDepth * HEIGHTDepth);
+			octreeSequence = sequence;
+		}
+		return octree;
+	}
+
+	/**
+	 * Use another PointOctree, ex. with smaller leaves
+	 * @param octree PointOctree
+	 */
+	public void setPointCloudOctree(PointOctree octree) {
+		this.octree = octree;
+		octreeSequence = 0;
+	}
+
+	/**
+	 * Get Point Cloud Color Positions as a FloatBuffer, transform to a float array with .array(), or get values with get(index)
+	 * @return FloatBuffer
+	 */
+	public FloatBuffer getPointCloudColorPos() {
+		if (pointCloudColorPos == null)
+			pointCloudColorPos = newDirectFloatBuffer(Stream.POINT_CLOUD_COLOR.length);
+		return copyFloatFrame(Stream.POINT_CLOUD_COLOR, pointCloudColorPos);
+	}
+
+	/**
+	 * Copy the Point Cloud Color Positions (x, y, z) into dst, no allocation
+	 * @param dst direct or array backed FloatBuffer of at least 1920 x 1080 x 3
+	 * @return dst, rewound
+	 */
+	public FloatBuffer getPointCloudColorPos(FloatBuffer dst) {
+		return copyFloatFrame(Stream.POINT_CLOUD_COLOR, dst);
+	}
+
+	/**
+	 * Get the color channel buffer, 3 channels, 1920 x 1080 x 3 from [0-1]
+	 * transform to a float array with .array(), or get values with get(index)
+	 * Ideal method for load level openGL calls
+	 * @return FloatBuffer
+	 */
+	public FloatBuffer getColorChannelBuffer() {
+		if (colorChannelBuffer == null)
+			colorChannelBuffer = newDirectFloatBuffer(Stream.COLOR_CHANNEL.length);
+		return copyFloatFrame(Stream.COLOR_CHANNEL, colorChannelBuffer);
+	}
+
+	/**
+	 * Copy the color channel buffer, 1920 x 1080 x 3, into dst, no allocation
+	 * @param dst direct or array backed FloatBuffer of at least 1920 x 1080 x 3
+	 * @return dst, rewound
+	 */
+	public FloatBuffer getColorChannelBuffer(FloatBuffer dst) {
+		return copyFloatFrame(Stream.COLOR_CHANNEL, dst);
+	}
+
+	/**
+	 * Set Threshold Depth Value Z for Point Cloud
+	 * 
+	 * @param float val
+	 */
+	public void setLowThresholdPC(int val) {
+		source.setLowThresholdPC(val);
+		pointCloudSequence = 0;
+		octreeSequence = 0;
+		normalsSequence = 0;
+		invalidateRegistration();
+	}
+
+	/**
+	 * Get Threshold Depth Value Z from Point Cloud Default 1.9
+	 * 
+	 * @return default Threshold
+	 */
+	public int getLowThresholdDepthPC() {
+		return source.getLowThresholdPC();
+	}
+
+	/**
+	 * Set Threshold Depth Value Z for Point Cloud
+	 * 
+	 * @param float val
+	 */
+	public void setHighThresholdPC(int val) {
+		source.setHighThresholdPC(val);
+		pointCloudSequence = 0;
+		octreeSequence = 0;
+		normalsSequence = 0;
+		invalidateRegistration();
+	}
+
+	/**
+	 * Get Threshold Depth Value Z from Point Cloud Default 1.9
+	 * 
+	 * @return default Threshold
+	 */
+	public int getHighThresholdDepthPC() {
+		return source.getHighThresholdPC();
+	}
+
+	// MAPPERS
+
+	/**
+	 * Map a camera space point, in meters, to the depth image
+	 * @return float [] x, y
+	 */
+	public float [] mapCameraPointToDepthSpace(float x, float y, float z){
+		CoordinateMapper mapper = coordinateMapper;
+		if (mapper != null)
+			return mapper.mapCameraPointsToDepthSpace(new float[] { x, y, z }, new float[2], 1);
+		return source.mapCameraPointToDepthSpace(x, y, z);
+	}
+
+	/**
+	 * Map a camera space point, in meters, to the color image
+	 * @return float [] x, y
+	 */
+	public float [] mapCameraPointToColorSpace(float x, float y, float z){
+		CoordinateMapper mapper = coordinateMapper;
+		if (mapper != null)
+			return mapper.mapCameraPointsToColorSpace(new float[] { x, y, z }, new float[2], 1);
+		return source.mapCameraPointToColorSpace(x, y, z);
+	}
+
+	/**
+	 * Map count packed camera space points x, y, z, in meters, to the depth
+	 * image, x, y per point into dst, in a single call. Uses the CoordinateMapper when set
+	 * @param src float array of at least count x 3, ex. SkeletonFrame.getPositions()
+	 * @param dst float array of at least count x 2
+	 * @param count number of points
+	 * @return dst
+	 */
+	public float [] mapCameraPointsToDepthSpace(float [] src, float [] dst, int count){
+		CoordinateMapper mapper = coordinateMapper;
+		if (mapper != null)
+			return mapper.mapCameraPointsToDepthSpace(src, dst, count);
+		source.mapCameraPointsToDepthSpace(src, dst, count);
+		return dst;
+	}
+
+	/**
+	 * Map count packed camera space points x, y, z, in meters, to the color
+	 * image, x, y per point into dst, in a single call. Uses the CoordinateMapper when set
+	 * @param src float array of at least count x 3, ex. SkeletonFrame.getPositions()
+	 * @param dst float array of at least count x 2
+	 * @param count number of points
+	 * @return dst
+	 */
+	public float [] mapCameraPointsToColorSpace(float [] src, float [] dst, int count){
+		CoordinateMapper mapper = coordinateMapper;
+		if (mapper != null)
+			return mapper.mapCameraPointsToColorSpace(src, dst, count);
+		source.mapCameraPointsToColorSpace(src, dst, count);
+		return dst;
+	}
+
+	/**
+	 * Map count packed camera space points from index 0 of src to the depth
+	 * image, direct buffers in the native byte order without any copy
+	 * @param src FloatBuffer of at least count x 3
+	 * @param dst FloatBuffer of at least count x 2
+	 * @param count number of points
+	 * @return dst
+	 */
+	public FloatBuffer mapCameraPointsToDepthSpace(FloatBuffer src, FloatBuffer dst, int count){
+		CoordinateMapper mapper = coordinateMapper;
+		if (mapper != null)
+			return mapper.mapCameraPointsToDepthSpace(src, dst, count);
+		return mapPoints(src, dst, count, false);
+	}
+
+	/**
+	 * Map count packed camera space points from index 0 of src to the color
+	 * image, direct buffers in the native byte order without any copy
+	 * @param src FloatBuffer of at least count x 3
+	 * @param dst FloatBuffer of at least count x 2
+	 * @param count number of points
+	 * @return dst
+	 */
+	public FloatBuffer mapCameraPointsToColorSpace(FloatBuffer src, FloatBuffer dst, int count){
+		CoordinateMapper mapper = coordinateMapper;
+		if (mapper != null)
+			return mapper.mapCameraPointsToColorSpace(src, dst, count);
+		return mapPoints(src, dst, count, true);
+	}
+
+	// direct buffers go straight to the source, heap buffers through reused scratch arrays
+	private FloatBuffer mapPoints(FloatBuffer src, FloatBuffer dst, int count, boolean color){
+		if (isNative(src) && isNative(dst)) {
+			boolean mapped = color ? source.mapCameraPointsToColorSpace(src, dst, count)
+					: source.mapCameraPointsToDepthSpace(src, dst, count);
+			if (mapped)
+				return dst;
+		}
+		return mapArrays(src, dst, count, color);
+	}
+
+	private static boolean isNative(FloatBuffer buffer) {
+		return buffer.isDirect() && buffer.order() == ByteOrder.nativeOrder();
+	}
+
+	private synchronized FloatBuffer mapArrays(FloatBuffer src, FloatBuffer dst, int count, boolean color){
+		if (mapSrc == null || mapSrc.length < count * 3) {
+			mapSrc = new float[count * 3];
+			mapDst = new float[count * 2];
+		}
+		for (int i = 0; i < count * 3; i++)
+			mapSrc[i] = src.get(i);
+		if (color)
+			source.mapCameraPointsToColorSpace(mapSrc, mapDst, count);
+		else
+			source.mapCameraPointsToDepthSpace(mapSrc, mapDst, count);
+		for (int i = 0; i < count * 2; i++)
+			dst.put(i, mapDst[i]);
+		return dst;
+	}
+
+	/**
+	 * Sample the mapping of the frame source into a CoordinateMapper, once the device started
+	 * @return CoordinateMapper
+	 */
+	public CoordinateMapper createCoordinateMapper(){
+		return CoordinateMapper.create(source);
+	}
+
+	/**
+	 * Map the points in Java with a CoordinateMapper, ex. created or loaded
+	 * for a recording, null maps with the frame source again
+	 * @param mapper CoordinateMapper or null
+	 */
+	public void setCoordinateMapper(CoordinateMapper mapper){
+		coordinateMapper = mapper;
+	}
+
+	public CoordinateMapper getCoordinateMapper(){
+		return coordinateMapper;
+	}
+
+	public float [] getMapDepthToColor(){
+		return getMapDepthToColor(new float[Stream.MAP_DEPTH_TO_COLOR.length]);
+	}
+
+	/**
+	 * Copy the depth to color mapping (x, y) of every depth pixel into dst, no allocation
+	 * @param dst float array of at least 512 x 424 x 2
+	 * @return dst
+	 */
+	public float [] getMapDepthToColor(float [] dst){
+		return copyFloatFrame(Stream.MAP_DEPTH_TO_COLOR, dst);
+	}
+
+	// REGISTRATION
+
+	/**
+	 * Copy the color of every depth pixel 512 x 424 (ARGB) into dst, 0 for the
+	 * pixels without color, no allocation. The mapping is indexed once per
+	 * depth frame. Needs enableColorImg(true) and enablePointCloud(true),
+	 * or enablePointCloudJava(true) to map in Java
+	 * @param dst int array of at least 512 x 424
+	 * @return dst
+	 */
+	public int [] getRegisteredColorData(int [] dst){
+		Registration registration = updateRegistration(false);
+		return registration.colorAtDepth(getFrameBuffer(Stream.COLOR).getByteBuffer(), dst);
+	}
+
+	/**
+	 * Copy the depth in mm of every color pixel 1920 x 1080 into dst, 0 for the
+	 * pixels without depth, no allocation. Needs the 16 bit depth frames,
+	 * enableDepthImg(true) and enablePointCloud(true), or
+	 * enablePointCloudJava(true). The depth frame and the mapping of the
+	 * device are acquired in one snapshot, the held snapshot if it has both
+	 * @param dst int array of at least 1920 x 1080
+	 * @return dst
+	 */
+	public int [] getRegisteredDepthData(int [] dst){
+		Registration registration = updateRegistration(true);
+		return registration.depthAtColor(registrationDepth.asShortBuffer(), dst);
+	}
+
+	// index the mapping, with depth also keep the depth frame it maps in registrationDepth
+	private Registration updateRegistration(boolean depth) {
+		Registration registration = getRegistration();
+		if (pointCloudJava) {
+			// the depth frame is the mapping
+			FrameBuffer frame = getFrameBuffer(Stream.RAW_DEPTH_16);
+			registration.setMapping(getDepthCalibration(), frame.asShortBuffer(),
+					getLowThresholdDepthPC(), getHighThresholdDepthPC(), frame.getSequence());
+			registrationDepth = frame;
+			return registration;
+		}
+		FrameBuffer mapping;
+		if (depth) {
+			FrameBundle bundle = heldBundle;
+			if (bundle == null || !bundle.getStreams().containsAll(REGISTRATION_STREAMS)) {
+				if (registrationBundle == null)
+					registrationBundle = new FrameBundle();
+				bundle = acquireBundle(REGISTRATION_STREAMS, registrationBundle);
+			}
+			mapping = bundle.getFrame(Stream.MAP_DEPTH_TO_COLOR);
+			registrationDepth = bundle.getFrame(Stream.RAW_DEPTH_16);
+		} else {
+			mapping = getFrameBuffer(Stream.MAP_DEPTH_TO_COLOR);
+		}
+		registration.setMapping(mapping.asFloatBuffer(), mapping.getSequence());
+		return registration;
+	}
+
+	private void invalidateRegistration() {
+		if (registration != null)
+			registration.invalidate();
+	}
+
+	/**
+	 * Get the Registration of the depth and color frames, on the common ForkJoinPool by default
+	 * @return Registration
+	 */
+	public Registration getRegistration() {
+		if (registration == null)
+			registration = new Registration();
+		return registration;
+	}
+
+	/**
+	 * Use another Registration, ex. with its own pool or bilinear sampling
+	 * @param registration Registration
+	 */
+	public void setRegistration(Registration registration) {
+		this.registration = registration;
+	}
+
+	// ANY STREAM
+
+	/**
+	 * Copy the current frame of any Int32 stream into dst, no allocation
+	 * 
+	 * @param stream Stream
+	 * @param dst int array of at least stream.getLength()
+	 * @return dst
+	 */
+	public int[] getFrameData(Stream stream, int [] dst) {
+		return copyIntFrame(stream, dst);
+	}
+
+	/**
+	 * Copy the current frame of any Float stream into dst, no allocation,
+	 * ex. the packed joints of SKELETON_3D
+	 * 
+	 * @param stream Stream
+	 * @param dst float array of at least stream.getLength()
+	 * @return dst
+	 */
+	public float[] getFrameData(Stream stream, float [] dst) {
+		return copyFloatFrame(stream, dst);
+	}
+
+	/**
+	 * Copy the current frame of any Int32 stream into dst, no allocation
+	 * 
+	 * @param stream Stream
+	 * @param dst direct or array backed IntBuffer
+	 * @return dst, rewound
+	 */
+	public IntBuffer getFrameData(Stream stream, IntBuffer dst) {
+		return copyIntFrame(stream, dst);
+	}
+
+	/**
+	 * Copy the current frame of any Float stream into dst, no allocation
+	 * 
+	 * @param stream Stream
+	 * @param dst direct or array backed FloatBuffer
+	 * @return dst, rewound
+	 */
+	public FloatBuffer getFrameData(Stream stream, FloatBuffer dst) {
+		return copyFloatFrame(stream, dst);
+	}
+
+	// ENABLE
+
+	/**
+	 * Enable or Disable Color Image Capture
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableColorImg(boolean toggle) {
+		enableStreams(toggle, Stream.COLOR);
+	}
+
+	/**
+	 * Enable or disable color Point cloud.
+	 * Which is used to obtain getPointCloudColorPos() and getColorChannelBuffer();
+	 * The FloatBuffer getColorChannelBuffer is a 3 independent color channels of 1920 x 1080 x 3,
+	 * Values form between 0 and 1,  ideally for openGL calls
+	 * 
+	 * @param toggle
+	 */
+	public void enableColorPointCloud(boolean toggle) {
+		enableStreams(toggle, Stream.POINT_CLOUD_COLOR, Stream.COLOR_CHANNEL);
+	}
+
+	/**
+	 * Enable or Disable Depth Image Capture
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableDepthImg(boolean toggle) {
+		enableStreams(toggle, Stream.DEPTH, Stream.DEPTH_256, Stream.RAW_DEPTH, Stream.RAW_DEPTH_16, Stream.RAW_DEPTH_256);
+	}
+
+	/**
+	 * Enable or Disable DepthMask Image Capture
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableDepthMaskImg(boolean toggle) {
+		enableStreams(toggle, Stream.DEPTH_MASK);
+	}
+
+	/**
+	 * Enable or Disable Infrared Image Capture
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableInfraredImg(boolean toggle) {
+		enableStreams(toggle, Stream.INFRARED);
+	}
+
+	/**
+	 * Enable or Disable BodyTrack Image Capture
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableBodyTrackImg(boolean toggle) {
+		enableStreams(toggle, Stream.BODY_TRACK, Stream.BODY_TRACK_IDS, Stream.RAW_BODY_TRACK);
+	}
+
+	/**
+	 * Enable or Disable LongExposure Infrared Image Capture
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableInfraredLongExposureImg(boolean toggle) {
+		enableStreams(toggle, Stream.INFRARED_LONG_EXPOSURE);
+	}
+
+	/**
+	 * Enable or Disable Skeleton Depth Map Capture
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableSkeletonDepthMap(boolean toggle) {
+		enableStreams(toggle, Stream.SKELETON_DEPTH);
+	}
+
+	/**
+	 * Enable or Disable Skeleton Color Map Capture
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableSkeletonColorMap(boolean toggle) {
+		enableStreams(toggle, Stream.SKELETON_COLOR);
+	}
+
+	/**
+	 * Enable or Disable Skeleton 3D Map Capture
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableSkeleton3DMap(boolean toggle) {
+		enableStreams(toggle, Stream.SKELETON_3D);
+	}
+
+	/**
+	 * Enable or Disable Face Tracking
+	 * 
+	 * @param boolean toggle
+	 */
+	public void enableFaceDetection(boolean toggle) {
+		enableStreams(toggle, Stream.FACE_COLOR, Stream.FACE_INFRARED);
+	}
+
+	/**
+	 * Enable HDFace detection
+	 * 
+	 * @param toggle
+	 */
+	public void enableHDFaceDetection(boolean toggle) {
+		enableStreams(toggle, Stream.HD_FACE);
+	}
+
+	/**
+	 * Enable point cloud capture
+	 * @param toggle
+	 */
+	public void enablePointCloud(boolean toggle) {
+		enableStreams(toggle, Stream.POINT_CLOUD_DEPTH, Stream.POINT_CLOUD_DEPTH_IMAGE);
+	}
+
+	public void  enableCoordinateMapperRGBDepth(boolean toggle){
+		source.enableCoordinateMapperRGBDepth();
+	}
+
+	// enable the streams in the source, or release them with their buffers and frame exchange
+	protected void enableStreams(boolean toggle, Stream... streams) {
+		for (Stream stream : streams) {
+			source.enableStream(stream, toggle);
+			synchronized (this) {
+				enabledStreams[stream.ordinal()] = toggle;
+			}
+			if (!toggle) {
+				releaseFrameExchange(stream);
+				switch (stream) {
+				case POINT_CLOUD_DEPTH:
+					pointCloudDepthPos = null;
+					pointCloudNormals = null;
+					break;
+				case POINT_CLOUD_COLOR:
+					pointCloudColorPos = null;
+					break;
+				case COLOR_CHANNEL:
+					colorChannelBuffer = null;
+					break;
+				case SKELETON_3D:
+				case SKELETON_DEPTH:
+				case SKELETON_COLOR:
+					skeletonFrames[stream.ordinal()] = null;
+					break;
+				default:
+					break;
+				}
+			}
+			streamEnabled(stream, toggle);
+		}
+	}
+
+	/**
+	 * Called after a stream was enabled or disabled, to allocate or release
+	 * what a subclass keeps for it
+	 * @param stream Stream
+	 * @param toggle boolean
+	 */
+	protected void streamEnabled(Stream stream, boolean toggle) {
+	}
+
+	// ALLOCATION
+
+	/**
+	 * Get the memory held for a stream: the frame exchange buffers and the
+	 * buffers returned by the getters, in bytes. Nothing is allocated before
+	 * the stream is enabled or read, and it is released when disabled.
+	 * @param stream Stream
+	 * @return long
+	 */
+	public long getAllocatedBytes(Stream stream) {
+		long bytes = 0;
+		FrameExchange exchange = frameExchanges[stream.ordinal()];
+		if (exchange != null)
+			bytes += exchange.getAllocatedBytes();
+
+		SkeletonFrame skeletonFrame = skeletonFrames[stream.ordinal()];
+		if (skeletonFrame != null)
+			bytes += skeletonFrame.getAllocatedBytes();
+
+		switch (stream) {
+		case POINT_CLOUD_DEPTH:
+			bytes += pointCloudDepthPos != null ? pointCloudDepthPos.capacity() * 4L : 0;
+			bytes += pointCloudNormals != null ? pointCloudNormals.capacity() * 4L : 0;
+			break;
+		case POINT_CLOUD_COLOR:
+			bytes += pointCloudColorPos != null ? pointCloudColorPos.capacity() * 4L : 0;
+			break;
+		case COLOR_CHANNEL:
+			bytes += colorChannelBuffer != null ? colorChannelBuffer.capacity() * 4L : 0;
+			break;
+		default:
+			break;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Get the memory held for all the streams, in bytes
+	 * @return long
+	 */
+	public long getAllocatedBytes() {
+		long bytes = 0;
+		for (Stream stream : Stream.values())
+			bytes += getAllocatedBytes(stream);
+		return bytes;
+	}
+
+	// FRAME EXCHANGE
+
+	/**
+	 * Get the triple buffered FrameExchange of a stream, opened once with
+	 * the FrameSource, which publishes every new frame straight into it.
+	 * @param stream Stream
+	 * @return FrameExchange
+	 */
+	public synchronized FrameExchange getFrameExchange(Stream stream) {
+		FrameExchange exchange = frameExchanges[stream.ordinal()];
+		if (exchange == null) {
+			exchange = source.openExchange(stream);
+			frameExchanges[stream.ordinal()] = exchange;
+		}
+		return exchange;
+	}
+
+	/**
+	 * Get the FrameExchange of an enabled stream like getFrameExchange(),
+	 * null without opening it when the stream is disabled
+	 * @param stream Stream
+	 * @return FrameExchange
+	 */
+	synchronized FrameExchange getEnabledExchange(Stream stream) {
+		return enabledStreams[stream.ordinal()] ? getFrameExchange(stream) : null;
+	}
+
+	/**
+	 * Get the FrameSource producing the frames
+	 * @return FrameSource
+	 */
+	public FrameSource getFrameSource() {
+		return source;
+	}
+
+	/**
+	 * Get the latest complete frame of a stream as a direct FrameBuffer,
+	 * read it with asIntBuffer(), asFloatBuffer() or asShortBuffer() without
+	 * further copies. The buffer is not modified until the next call for the
+	 * same stream.
+	 * @param stream Stream
+	 * @return FrameBuffer
+	 */
+	public FrameBuffer getFrameBuffer(Stream stream) {
+		if (heldBundle != null && heldBundle.contains(stream))
+			return heldBundle.getFrame(stream);
+		ReentrantLock lock = consumerLocks[stream.ordinal()];
+		lock.lock();
+		try {
+			return readExchange(stream).acquire();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Get the capture time, sequence number and frame counters of the last
+	 * frame acquired from a stream
+	 * @param stream Stream
+	 * @return FrameInfo
+	 */
+	public FrameInfo getFrameInfo(Stream stream) {
+		ReentrantLock lock = consumerLocks[stream.ordinal()];
+		lock.lock();
+		try {
+			return readExchange(stream).getFrameInfo();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stop writing frames into the FrameExchange of a stream and release it
+	 * @param stream Stream
+	 */
+	public synchronized void releaseFrameExchange(Stream stream) {
+		if (frameExchanges[stream.ordinal()] != null) {
+			if (heldBundle != null)
+				heldBundle.remove(stream);
+			source.closeExchange(stream);
+			frameExchanges[stream.ordinal()] = null;
+		}
+	}
+
+	// SNAPSHOT
+
+	/**
+	 * Acquire the latest frame of several streams at once into the reusable
+	 * FrameBundle of the device. Until the next snapshot or releaseSnapshot(),
+	 * the getters of these streams, ex. getDepthImage() or getSkeleton3d(),
+	 * read the frames of the snapshot instead of acquiring new ones.
+	 * @param streams EnumSet of Stream
+	 * @return FrameBundle
+	 */
+	public FrameBundle snapshot(EnumSet<Stream> streams) {
+		if (frameBundle == null)
+			frameBundle = new FrameBundle();
+		return snapshot(streams, frameBundle);
+	}
+
+	/**
+	 * Acquire the latest frame of several streams at once into bundle, see snapshot(EnumSet)
+	 * @param streams EnumSet of Stream
+	 * @param bundle FrameBundle to fill, valid until the next snapshot
+	 * @return bundle
+	 */
+	public FrameBundle snapshot(EnumSet<Stream> streams, FrameBundle bundle) {
+		heldBundle = acquireBundle(streams, bundle);
+		return bundle;
+	}
+
+	// acquire the latest frame of the streams at once into bundle, without holding it
+	private FrameBundle acquireBundle(EnumSet<Stream> streams, FrameBundle bundle) {
+		if (snapshotExchanges == null) {
+			snapshotExchanges = new FrameExchange[Stream.values().length];
+			snapshotReads = new FrameExchange[Stream.values().length];
+		}
+		// lock every stream in order, the dispatcher holds one at a time
+		int locked = 0;
+		int reads = 0;
+		try {
+			for (Stream stream : streams) {
+				consumerLocks[stream.ordinal()].lock();
+				locked++;
+				snapshotReads[reads++] = readExchange(stream);
+			}
+			// streams with listeners are relayed by the dispatcher, acquire them directly
+			int count = 0;
+			for (int i = 0; i < reads; i++) {
+				FrameExchange exchange = snapshotReads[i];
+				if (exchange == frameExchanges[exchange.getStream().ordinal()])
+					snapshotExchanges[count++] = exchange;
+				else
+					exchange.acquire();
+			}
+			source.acquireFrames(snapshotExchanges, count);
+		} finally {
+			for (Stream stream : streams) {
+				if (locked-- == 0)
+					break;
+				consumerLocks[stream.ordinal()].unlock();
+			}
+		}
+
+		bundle.begin();
+		for (int i = 0; i < reads; i++) {
+			FrameExchange exchange = snapshotReads[i];
+			bundle.set(exchange.getStream(), exchange.getReadBuffer());
+		}
+		bundle.end(System.nanoTime());
+		return bundle;
+	}
+
+	/**
+	 * Go back to acquiring the latest frame on every getter call
+	 */
+	public void releaseSnapshot() {
+		heldBundle = null;
+	}
+
+	// exchange the getters read under the consumer lock, the relay of the dispatcher for streams with listeners
+	private FrameExchange readExchange(Stream stream) {
+		FrameDispatcher frameDispatcher = dispatcher;
+		if (frameDispatcher != null) {
+			FrameExchange relay = frameDispatcher.getRelay(stream);
+			if (relay != null)
+				return relay;
+		}
+		return getFrameExchange(stream);
+	}
+
+	/**
+	 * Lock held by the thread acquiring a stream, the getters or the FrameDispatcher
+	 * @param stream Stream
+	 * @return ReentrantLock
+	 */
+	ReentrantLock getConsumerLock(Stream stream) {
+		return consumerLocks[stream.ordinal()];
+	}
+
+	// LISTENERS
+
+	/**
+	 * Get the FrameDispatcher calling the frame listeners, created on first use
+	 * @return FrameDispatcher
+	 */
+	public FrameDispatcher getFrameDispatcher() {
+		FrameDispatcher frameDispatcher = dispatcher;
+		if (frameDispatcher == null) {
+			synchronized (this) {
+				if (dispatcher == null)
+					dispatcher = new FrameDispatcher(this);
+				frameDispatcher = dispatcher;
+			}
+		}
+		return frameDispatcher;
+	}
+
+	/**
+	 * Call listener from the acquisition thread with every new frame of a
+	 * stream. The stream has to be enabled, the FrameBuffer is valid until
+	 * the listener returns. Add the listeners before init().
+	 * @param stream Stream
+	 * @param listener Consumer of FrameBuffer
+	 */
+	public void addFrameListener(Stream stream, Consumer<FrameBuffer> listener) {
+		getFrameDispatcher().addListener(stream, listener);
+	}
+
+	/**
+	 * Stop calling a frame listener
+	 * @param stream Stream
+	 * @param listener Consumer of FrameBuffer
+	 * @return true if the listener was registered
+	 */
+	public boolean removeFrameListener(Stream stream, Consumer<FrameBuffer> listener) {
+		return dispatcher != null && dispatcher.removeListener(stream, listener);
+	}
+
+	/**
+	 * Call listener with every new color frame, BGRA bytes 1920 x 1080
+	 * @param listener Consumer of FrameBuffer
+	 */
+	public void addColorListener(Consumer<FrameBuffer> listener) {
+		addFrameListener(Stream.COLOR, listener);
+	}
+
+	/**
+	 * Call listener with every new depth frame, 16 bit millimeters 512 x 424 (RAW_DEPTH_16)
+	 * @param listener Consumer of FrameBuffer
+	 */
+	public void addDepthListener(Consumer<FrameBuffer> listener) {
+		addFrameListener(Stream.RAW_DEPTH_16, listener);
+	}
+
+	/**
+	 * Call listener with every new infrared frame, ARGB 512 x 424
+	 * @param listener Consumer of FrameBuffer
+	 */
+	public void addInfraredListener(Consumer<FrameBuffer> listener) {
+		addFrameListener(Stream.INFRARED, listener);
+	}
+
+	/**
+	 * Call listener with the 3d skeletons of every new body frame, the
+	 * SkeletonFrame is owned by the listener registration and reused
+	 * @param listener Consumer of SkeletonFrame
+	 */
+	public void addSkeletonFrameListener(Consumer<SkeletonFrame> listener) {
+		addFrameListener(Stream.SKELETON_3D, new SkeletonFrameListener(listener));
+	}
+
+	/**
+	 * Stop calling a skeleton frame listener
+	 * @param listener Consumer of SkeletonFrame
+	 * @return true if the listener was registered
+	 */
+	public boolean removeSkeletonFrameListener(final Consumer<SkeletonFrame> listener) {
+		return getFrameDispatcher().removeListeners(Stream.SKELETON_3D,
+				l -> l instanceof SkeletonFrameListener && ((SkeletonFrameListener) l).target == listener);
+	}
+
+	/**
+	 * Run the listeners on executor instead of the acquisition thread, null
+	 * to run them synchronously
+	 * @param executor Executor or null
+	 */
+	public void setListenerExecutor(Executor executor) {
+		getFrameDispatcher().setExecutor(executor);
+	}
+
+	// unpacks the skeleton frames for a single listener
+	private static class SkeletonFrameListener implements Consumer<FrameBuffer> {
+		final Consumer<SkeletonFrame> target;
+		final SkeletonFrame skeletonFrame = new SkeletonFrame(Stream.SKELETON_3D);
+
+		SkeletonFrameListener(Consumer<SkeletonFrame> target) {
+			this.target = target;
+		}
+
+		public void accept(FrameBuffer frame) {
+			skeletonFrame.update(frame);
+			target.accept(skeletonFrame);
+		}
+	}
+
+	// FRAME COPY
+
+	protected int[] copyIntFrame(Stream stream, int[] dst) {
+		return copyIntFrame(getFrameBuffer(stream), dst);
+	}
+
+	protected int[] copyIntFrame(FrameBuffer frame, int[] dst) {
+		Stream stream = frame.getStream();
+		checkFrame(stream, Int32, dst.length);
+		IntBuffer src = frame.asIntBuffer();
+		src.rewind();
+		src.get(dst, 0, stream.length);
+		return dst;
+	}
+
+	protected float[] copyFloatFrame(Stream stream, float[] dst) {
+		checkFrame(stream, Float, dst.length);
+		FloatBuffer src = getFrameBuffer(stream).asFloatBuffer();
+		src.rewind();
+		src.get(dst, 0, stream.length);
+		return dst;
+	}
+
+	protected IntBuffer copyIntFrame(Stream stream, IntBuffer dst) {
+		checkFrame(stream, Int32, dst.capacity());
+		IntBuffer src = getFrameBuffer(stream).asIntBuffer();
+		src.rewind();
+		dst.clear();
+		dst.put(src);
+		dst.rewind();
+		return dst;
+	}
+
+	protected FloatBuffer copyFloatFrame(Stream stream, FloatBuffer dst) {
+		checkFrame(stream, Float, dst.capacity());
+		FloatBuffer src = getFrameBuffer(stream).asFloatBuffer();
+		src.rewind();
+		dst.clear();
+		dst.put(src);
+		dst.rewind();
+		return dst;
+	}
+
+	private static void checkFrame(Stream stream, int type, int capacity) {
+		if (stream.type != type)
+			throw new IllegalArgumentException(stream + " is not a "
+					+ (type == Int32 ? "Int32" : type == Float ? "Float" : "Int16") + " stream");
+		if (capacity < stream.length)
+			throw new IllegalArgumentException(stream + " needs "
+					+ stream.length + " elements, destination has " + capacity);
+	}
+
+	private static FloatBuffer newDirectFloatBuffer(int length) {
+		return ByteBuffer.allocateDirect(length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	protected boolean updateDevice() {
+		boolean result = source.update();
+		return result;
+	}
+
+	protected void stopDevice() {
+		source.stop();
+	}
+	
+	protected void cleanDevice() {
+		source.close();
+	}
+
+	/**
+	 * Acquisition thread, delivers the new frames to the listeners
+	 */
+	public void run() {
+		while (runningKinect) {
+			FrameDispatcher frameDispatcher = dispatcher;
+			if (frameDispatcher == null) {
+				LockSupport.parkNanos(FrameDispatcher.DEFAULT_POLL_INTERVAL * 10);
+				continue;
+			}
+			if (!frameDispatcher.dispatch())
+				LockSupport.parkNanos(frameDispatcher.getPollInterval());
+		}
+	}
+}
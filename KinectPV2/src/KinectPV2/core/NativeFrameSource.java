@@ -0,0 +1,326 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * FrameSource of the Kinect v2, through the KinectPV2 native library.
+ * The native libraries are loaded with the class, so only when a
+ * NativeFrameSource is created.
+ */
+public class NativeFrameSource implements FrameSource {
+
+	static {
+		int arch = Integer.parseInt(System.getProperty("sun.arch.data.model"));
+		String platformName = System.getProperty("os.name");
+		platformName = platformName.toLowerCase();
+		System.out.println(arch + " " + platformName);
+		if (arch == 64) {
+			System.loadLibrary("Kinect20.Face");
+			System.loadLibrary("KinectPV2");
+			System.out.println("Loading KinectV2");
+		} else {
+			System.out.println("not compatible with 32bits");
+		}
+	}
+
+	private long ptr;
+
+	// stream ids and read indices of acquireFrames, reused every call
+	private final int [] acquireIds     = new int[Stream.values().length];
+	private final int [] acquireIndices = new int[Stream.values().length];
+
+	public NativeFrameSource() {
+		jniDevice();
+	}
+
+	public boolean start() {
+		return jniInit();
+	}
+
+	public String getVersion() {
+		return jniVersion();
+	}
+
+	public boolean update() {
+		return jniUpdate();
+	}
+
+	public void stop() {
+		jniStopDevice();
+	}
+
+	public void close() {
+		jniStopSignal();
+	}
+
+	public void enableStream(Stream stream, boolean toggle) {
+		switch (stream) {
+		case COLOR:
+			jniEnableColorFrame(toggle);
+			break;
+		case POINT_CLOUD_COLOR:
+		case COLOR_CHANNEL:
+			jniEnableColorChannel(toggle);
+			break;
+		case DEPTH:
+		case DEPTH_256:
+		case RAW_DEPTH:
+		case RAW_DEPTH_16:
+		case RAW_DEPTH_256:
+			jniEnableDepthFrame(toggle);
+			break;
+		case DEPTH_MASK:
+			jniEnableDepthMaskFrame(toggle);
+			break;
+		case INFRARED:
+			jniEnableInfraredFrame(toggle);
+			break;
+		case INFRARED_LONG_EXPOSURE:
+			jniEnableInfraredLongExposure(toggle);
+			break;
+		case BODY_TRACK:
+		case BODY_TRACK_IDS:
+		case RAW_BODY_TRACK:
+			jniEnableBodyTrackFrame(toggle);
+			break;
+		case POINT_CLOUD_DEPTH:
+		case POINT_CLOUD_DEPTH_IMAGE:
+			jniEnablePointCloud(toggle);
+			break;
+		case SKELETON_3D:
+			jniEnableSkeleton3D(toggle);
+			break;
+		case SKELETON_DEPTH:
+			jniEnableSkeletonDepth(toggle);
+			break;
+		case SKELETON_COLOR:
+			jniEnableSkeletonColor(toggle);
+			break;
+		case FACE_COLOR:
+		case FACE_INFRARED:
+			jniEnableFaceDetection(toggle);
+			break;
+		case HD_FACE:
+			jniEnableHDFaceDetection(toggle);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * The native threads write every new frame straight into the
+	 * registered buffers of the exchange
+	 */
+	public FrameExchange openExchange(Stream stream) {
+		FrameExchange exchange = new FrameExchange(stream) {
+			protected int exchangeRead(int read) {
+				return jniAcquireFrame(getStream().id, read);
+			}
+		};
+		if (!jniRegisterFrameExchange(stream.id, exchange.buffers[0].getBuffer(),
+				exchange.buffers[1].getBuffer(), exchange.buffers[2].getBuffer()))
+			throw new IllegalStateException("unable to register the frame exchange of " + stream);
+		return exchange;
+	}
+
+	public void closeExchange(Stream stream) {
+		jniRegisterFrameExchange(stream.id, null, null, null);
+	}
+
+	/**
+	 * A single native call swaps the read buffers of all the exchanges
+	 */
+	public void acquireFrames(FrameExchange [] exchanges, int count) {
+		for (int i = 0; i < count; i++) {
+			acquireIds[i] = exchanges[i].getStream().id;
+			acquireIndices[i] = exchanges[i].getReadIndex();
+		}
+		jniAcquireFrames(acquireIds, acquireIndices, count);
+		for (int i = 0; i < count; i++)
+			exchanges[i].acquired(acquireIndices[i]);
+	}
+
+	public void copyBodyIndexUser(int index, int [] dst) {
+		jniCopyBodyIndexUser(index, dst);
+	}
+
+	public int getNumberOfUsers() {
+		return jniGetNumberOfUsers();
+	}
+
+	public void setLowThresholdPC(int val) {
+		jniSetLowThresholdDepthPC(val);
+	}
+
+	public int getLowThresholdPC() {
+		return jniGetLowThresholdDepthPC();
+	}
+
+	public void setHighThresholdPC(int val) {
+		jniSetHighThresholdDepthPC(val);
+	}
+
+	public int getHighThresholdPC() {
+		return jniGetHighThresholdDepthPC();
+	}
+
+	public float [] mapCameraPointToDepthSpace(float x, float y, float z) {
+		return jniMapCameraPointToDepthSpace(x, y, z);
+	}
+
+	public float [] mapCameraPointToColorSpace(float x, float y, float z) {
+		return jniMapCameraPointToColorSpace(x, y, z);
+	}
+
+	public void mapCameraPointsToDepthSpace(float [] src, float [] dst, int count) {
+		checkPoints(src, dst, count);
+		jniMapCameraPointsToDepthSpace(src, dst, count);
+	}
+
+	public void mapCameraPointsToColorSpace(float [] src, float [] dst, int count) {
+		checkPoints(src, dst, count);
+		jniMapCameraPointsToColorSpace(src, dst, count);
+	}
+
+	public boolean mapCameraPointsToDepthSpace(FloatBuffer src, FloatBuffer dst, int count) {
+		checkPoints(src.capacity(), dst.capacity(), count);
+		jniMapCameraBufferToDepthSpace(src, dst, count);
+		return true;
+	}
+
+	public boolean mapCameraPointsToColorSpace(FloatBuffer src, FloatBuffer dst, int count) {
+		checkPoints(src.capacity(), dst.capacity(), count);
+		jniMapCameraBufferToColorSpace(src, dst, count);
+		return true;
+	}
+
+	// the native side trusts the lengths
+	private static void checkPoints(float [] src, float [] dst, int count) {
+		checkPoints(src.length, dst.length, count);
+	}
+
+	private static void checkPoints(int src, int dst, int count) {
+		if (count < 0 || src < count * 3 || dst < count * 2)
+			throw new IllegalArgumentException(count + " points do not fit in " + src + " / " + dst + " floats");
+	}
+
+	public void enableCoordinateMapperRGBDepth() {
+		jniEnableCoordinateMapperRGBDepth();
+	}
+
+	public boolean copyDepthFrameToCameraSpaceTable(float [] dst) {
+		if (dst.length < Constants.WIDTHDepth * Constants.HEIGHTDepth * 2)
+			throw new IllegalArgumentException("ray table needs " + Constants.WIDTHDepth * Constants.HEIGHTDepth * 2 + " floats, got " + dst.length);
+		return jniCopyDepthFrameToCameraSpaceTable(dst);
+	}
+
+	// ------JNI FUNCTIONS
+	private native void 	jniDevice();
+
+	private native boolean 	jniInit();
+
+	private native String 	jniVersion();
+
+	private native boolean 	jniUpdate();
+
+	// STOP
+	private native void 	jniStopDevice();
+
+	private native boolean 	jniStopSignal();
+
+	// ENABLE FRAMES
+	private native void 	jniEnableColorFrame(boolean toggle);
+
+	private native void 	jniEnableDepthFrame(boolean toggle);
+
+	private native void 	jniEnableDepthMaskFrame(boolean toggle);
+
+	private native void 	jniEnableInfraredFrame(boolean toggle);
+
+	private native void 	jniEnableBodyTrackFrame(boolean toggle);
+
+	private native void 	jniEnableInfraredLongExposure(boolean toggle);
+
+	private native void 	jniEnableSkeletonDepth(boolean toggle);
+
+	private native void 	jniEnableSkeletonColor(boolean toggle);
+
+	private native void 	jniEnableSkeleton3D(boolean toggle);
+
+	private native void 	jniEnableFaceDetection(boolean toggle);
+
+	private native void 	jniEnableHDFaceDetection(boolean toggle);
+
+	private native void 	jniEnablePointCloud(boolean toggle);
+	
+
+	// COLOR CHANNEL
+	private native void     jniEnableColorChannel(boolean toggle);
+
+	// FRAME EXCHANGE
+	private native boolean 	jniRegisterFrameExchange(int stream, ByteBuffer buffer0, ByteBuffer buffer1, ByteBuffer buffer2);
+
+	private native int 		jniAcquireFrame(int stream, int readIndex);
+
+	private native void 	jniAcquireFrames(int [] streams, int [] readIndices, int count);
+
+	// PC THRESHOLDS
+	private native void 	jniSetLowThresholdDepthPC(int val);
+
+	private native int 		jniGetLowThresholdDepthPC();
+
+	private native void 	jniSetHighThresholdDepthPC(int val);
+
+	private native int     	jniGetHighThresholdDepthPC();
+
+	// BODY INDEX
+	private native void     jniSetNumberOfUsers(int index);
+
+	private native void 	jniCopyBodyIndexUser(int index, int[] dst);
+	
+	private native int      jniGetNumberOfUsers();
+	//crists
+	
+	//MAPERS
+	private native float[]	jniMapCameraPointToDepthSpace(float camaraSpacePointX, float cameraSpacePointY, float cameraSpacePointZ);
+	
+	private native float[]  jniMapCameraPointToColorSpace(float camaraSpacePointX, float cameraSpacePointY, float cameraSpacePointZ);
+
+	private native void     jniMapCameraPointsToDepthSpace(float[] src, float[] dst, int count);
+
+	private native void     jniMapCameraPointsToColorSpace(float[] src, float[] dst, int count);
+
+	private native void     jniMapCameraBufferToDepthSpace(FloatBuffer src, FloatBuffer dst, int count);
+
+	private native void     jniMapCameraBufferToColorSpace(FloatBuffer src, FloatBuffer dst, int count);
+
+	private native void     jniEnableCoordinateMapperRGBDepth();
+
+	private native boolean  jniCopyDepthFrameToCameraSpaceTable(float[] dst);
+	
+}
@@ -0,0 +1,326 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.FloatBuffer;
+
+/**
+ * Normals of organized point clouds, 512 x 424 points x, y, z in image
+ * order, ex. KinectCore.getPointCloudDepthPos().
+ * The sums of the points and of their products are accumulated into
+ * integral images, so the covariance of the points in a window around any
+ * pixel costs 4 lookups whatever the window size. The normal is the
+ * eigenvector of the smallest eigenvalue of the covariance, turned towards
+ * the sensor. Points with a depth z of 0 are left out of the windows.
+ * Rows and columns of the integral images and the normals are split into
+ * bands computed in parallel on a ForkJoinPool.
+ * An estimator handles one cloud at a time, use one per thread.
+ */
+public class NormalEstimator implements Constants {
+
+	/**
+	 * Default half size of the window, 4 is 9 x 9 pixels
+	 */
+	public final static int DEFAULT_WINDOW_RADIUS = 4;
+
+	/**
+	 * Default fraction of the window with depth needed for a normal
+	 */
+	public final static float DEFAULT_MIN_VALID = 0.5f;
+
+	/**
+	 * Default number of rows per band
+	 */
+	public final static int DEFAULT_BAND_ROWS = 53;
+
+	/**
+	 * Floats per point of the output, x, y, z, normal x, y, z
+	 */
+	public final static int STRIDE = 6;
+
+	private final static int PIXELS = WIDTHDepth * HEIGHTDepth;
+
+	// count, x, y, z, xx, xy, xz, yy, yz, zz per entry of the integral image
+	private final static int TERMS = 10;
+	private final static int ROW   = (WIDTHDepth + 1) * TERMS;
+
+	// passes, over bands of rows but the columns of the integral images
+	private final BandRunner runner;
+	private final BandRunner.IntBiConsumer rows    = this::rows;
+	private final BandRunner.IntBiConsumer columns = this::columns;
+	private final BandRunner.IntBiConsumer normals = this::normals;
+
+
+	private int   radius   = DEFAULT_WINDOW_RADIUS;
+	private float minValid = DEFAULT_MIN_VALID;
+
+	// integral images, 513 x 425 entries with a first row and column of 0
+	private double[] integral;
+
+	// arguments of the running estimation
+	private FloatBuffer src;
+	private FloatBuffer dst;
+
+	/**
+	 * Estimator running on the common ForkJoinPool
+	 */
+	public NormalEstimator() {
+		runner = new BandRunner(DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Estimator running on its own pool, 1 computes on the calling thread
+	 * @param parallelism number of worker threads
+	 */
+	public NormalEstimator(int parallelism) {
+		runner = new BandRunner(parallelism, DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Number of threads estimating a cloud
+	 * @return int
+	 */
+	public int getParallelism() {
+		return runner.getParallelism();
+	}
+
+	/**
+	 * Rows, or columns of the integral images, computed by a single task
+	 * @param rows at least 1
+	 */
+	public void setBandRows(int rows) {
+		runner.setBandRows(rows);
+	}
+
+	public int getBandRows() {
+		return runner.getBandRows();
+	}
+
+	/**
+	 * Half size of the window of a normal, larger windows give smoother normals
+	 * @param radius from 1 to 32
+	 */
+	public void setWindowRadius(int radius) {
+		if (radius < 1 || radius > 32)
+			throw new IllegalArgumentException("window radius must be from 1 to 32, got " + radius);
+		this.radius = radius;
+	}
+
+	public int getWindowRadius() {
+		return radius;
+	}
+
+	/**
+	 * Fraction of the window with depth needed for a normal, pixels next to
+	 * holes and on the borders get no normal below it
+	 * @param fraction from 0 to 1
+	 */
+	public void setMinValid(float fraction) {
+		if (!(fraction >= 0 && fraction <= 1))
+			throw new IllegalArgumentException("min valid must be from 0 to 1, got " + fraction);
+		minValid = fraction;
+	}
+
+	public float getMinValid() {
+		return minValid;
+	}
+
+	/**
+	 * Normals of an organized cloud, written interleaved with the points,
+	 * x, y, z, normal x, y, z per pixel. Pixels without depth, or without
+	 * enough depth around them, get a normal of 0, 0, 0
+	 * @param cloud FloatBuffer of at least 512 x 424 x 3, ex. KinectCore.getPointCloudDepthPos()
+	 * @param dst direct or array backed FloatBuffer of at least 512 x 424 x 6, ex. for a VBO
+	 * @return dst, rewound
+	 */
+	public FloatBuffer compute(FloatBuffer cloud, FloatBuffer dst) {
+		if (cloud.capacity() < PIXELS * 3)
+			throw new IllegalArgumentException("cloud needs " + PIXELS * 3
+					+ " floats, has " + cloud.capacity());
+		if (dst.capacity() < PIXELS * STRIDE)
+			throw new IllegalArgumentException("destination needs " + PIXELS * STRIDE
+					+ " floats, has " + dst.capacity());
+		if (integral == null)
+			integral = new double[(HEIGHTDepth + 1) * ROW];
+		src = cloud;
+		this.dst = dst;
+		runner.run(HEIGHTDepth, rows);
+		runner.run(WIDTHDepth, columns);
+		runner.run(HEIGHTDepth, normals);
+		src = null;
+		this.dst = null;
+		dst.rewind();
+		return dst;
+	}
+
+	/**
+	 * Shut down the worker threads of an estimator created with its own pool
+	 */
+	public void close() {
+		runner.close();
+	}
+
+	// sums of the points of every row from its first pixel
+	private void rows(int start, int end) {
+		double[] sums = integral;
+		for (int y = start; y < end; y++) {
+			int o = (y + 1) * ROW;
+			for (int t = 0; t < TERMS; t++)
+				sums[o + t] = 0;
+			for (int x = 0; x < WIDTHDepth; x++) {
+				int p = (y * WIDTHDepth + x) * 3;
+				double px = src.get(p);
+				double py = src.get(p + 1);
+				double pz = src.get(p + 2);
+				int n = o + TERMS;
+				if (pz > 0) {
+					sums[n]     = sums[o] + 1;
+					sums[n + 1] = sums[o + 1] + px;
+					sums[n + 2] = sums[o + 2] + py;
+					sums[n + 3] = sums[o + 3] + pz;
+					sums[n + 4] = sums[o + 4] + px * px;
+					sums[n + 5] = sums[o + 5] + px * py;
+					sums[n + 6] = sums[o + 6] + px * pz;
+					sums[n + 7] = sums[o + 7] + py * py;
+					sums[n + 8] = sums[o + 8] + py * pz;
+					sums[n + 9] = sums[o + 9] + pz * pz;
+				} else {
+					System.arraycopy(sums, o, sums, n, TERMS);
+				}
+				o = n;
+			}
+		}
+	}
+
+	// then down the columns, the first row stays 0
+	private void columns(int start, int end) {
+		double[] sums = integral;
+		int from = (start + 1) * TERMS;
+		int to   = (end + 1) * TERMS;
+		for (int y = 1; y <= HEIGHTDepth; y++) {
+			int row  = y * ROW;
+			int last = row - ROW;
+			for (int t = from; t < to; t++)
+				sums[row + t] += sums[last + t];
+		}
+	}
+
+	private void normals(int start, int end) {
+		double[] sums = integral;
+		double[] c = new double[TERMS];
+		int r = radius;
+		for (int y = start; y < end; y++) {
+			int y0 = Math.max(y - r, 0);
+			int y1 = Math.min(y + r + 1, HEIGHTDepth);
+			for (int x = 0; x < WIDTHDepth; x++) {
+				int i = y * WIDTHDepth + x;
+				float px = src.get(i * 3);
+				float py = src.get(i * 3 + 1);
+				float pz = src.get(i * 3 + 2);
+				int o = i * STRIDE;
+				dst.put(o, px);
+				dst.put(o + 1, py);
+				dst.put(o + 2, pz);
+				dst.put(o + 3, 0);
+				dst.put(o + 4, 0);
+				dst.put(o + 5, 0);
+				if (!(pz > 0))
+					continue;
+				int x0 = Math.max(x - r, 0);
+				int x1 = Math.min(x + r + 1, WIDTHDepth);
+				int a = y0 * ROW + x0 * TERMS;
+				int b = y0 * ROW + x1 * TERMS;
+				int d = y1 * ROW + x0 * TERMS;
+				int e = y1 * ROW + x1 * TERMS;
+				for (int t = 0; t < TERMS; t++)
+					c[t] = sums[e + t] - sums[b + t] - sums[d + t] + sums[a + t];
+				double n = c[0];
+				if (n < 3 || n < minValid * (2 * r + 1) * (2 * r + 1))
+					continue;
+				normal(c, px, py, pz, o);
+			}
+		}
+	}
+
+	// eigenvector of the smallest eigenvalue of the covariance, from the
+	// largest cross product of two rows of covariance - eigenvalue
+	private void normal(double[] c, float px, float py, float pz, int o) {
+		double inv = 1.0 / c[0];
+		double mx = c[1] * inv;
+		double my = c[2] * inv;
+		double mz = c[3] * inv;
+		double xx = c[4] * inv - mx * mx;
+		double xy = c[5] * inv - mx * my;
+		double xz = c[6] * inv - mx * mz;
+		double yy = c[7] * inv - my * my;
+		double yz = c[8] * inv - my * mz;
+		double zz = c[9] * inv - mz * mz;
+
+		double q  = (xx + yy + zz) / 3;
+		double p1 = xy * xy + xz * xz + yz * yz;
+		double p2 = (xx - q) * (xx - q) + (yy - q) * (yy - q) + (zz - q) * (zz - q) + 2 * p1;
+		if (!(p2 > 0))
+			return;
+		double p = Math.sqrt(p2 / 6);
+		double ip = 1.0 / p;
+		double bxx = (xx - q) * ip;
+		double byy = (yy - q) * ip;
+		double bzz = (zz - q) * ip;
+		double bxy = xy * ip;
+		double bxz = xz * ip;
+		double byz = yz * ip;
+		double det = bxx * (byy * bzz - byz * byz) - bxy * (bxy * bzz - byz * bxz)
+				+ bxz * (bxy * byz - byy * bxz);
+		double phi = Math.acos(Math.max(-1, Math.min(1, det / 2))) / 3;
+		double l = q + 2 * p * Math.cos(phi + 2 * Math.PI / 3);
+
+		double ax = xx - l, ay = xy, az = xz;
+		double bx = xy, by = yy - l, bz = yz;
+		double cx = xz, cy = yz, cz = zz - l;
+
+		double n0x = ay * bz - az * by, n0y = az * bx - ax * bz, n0z = ax * by - ay * bx;
+		double n1x = ay * cz - az * cy, n1y = az * cx - ax * cz, n1z = ax * cy - ay * cx;
+		double n2x = by * cz - bz * cy, n2y = bz * cx - bx * cz, n2z = bx * cy - by * cx;
+		double d0 = n0x * n0x + n0y * n0y + n0z * n0z;
+		double d1 = n1x * n1x + n1y * n1y + n1z * n1z;
+		double d2 = n2x * n2x + n2y * n2y + n2z * n2z;
+
+		double nx = n0x, ny = n0y, nz = n0z, dm = d0;
+		if (d1 > dm) {
+			nx = n1x; ny = n1y; nz = n1z; dm = d1;
+		}
+		if (d2 > dm) {
+			nx = n2x; ny = n2y; nz = n2z; dm = d2;
+		}
+		if (!(dm > 0))
+			return;
+		// towards the sensor at the origin
+		double s = 1.0 / Math.sqrt(dm);
+		if (nx * px + ny * py + nz * pz > 0)
+			s = -s;
+		dst.put(o + 3, (float) (nx * s));
+		dst.put(o + 4, (float) (ny * s));
+		dst.put(o + 5, (float) (nz * s));
+	}
+}
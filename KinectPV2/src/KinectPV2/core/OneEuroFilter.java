@@ -0,0 +1,115 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+/**
+ * One-Euro filter of the joints: a low pass filter whose cutoff frequency
+ * rises with the speed of the joint, smooth at rest and responsive in fast
+ * movements. The cutoff of inferred joints is divided by the inferred factor.
+ * Defaults are for SKELETON_3D, in meters.
+ */
+public class OneEuroFilter extends JointFilter {
+
+	public final static float DEFAULT_MIN_CUTOFF = 1.0f;
+	public final static float DEFAULT_BETA       = 10.0f;
+	public final static float DEFAULT_D_CUTOFF   = 1.0f;
+
+	private final float[] minCutoff;
+	private final float[] beta;
+	private final float[] dCutoff;
+
+	private final float[] value;
+	private final float[] derivative;
+
+	public OneEuroFilter() {
+		this(Stream.SKELETON_3D);
+	}
+
+	public OneEuroFilter(Stream stream) {
+		super(stream);
+		minCutoff  = new float[JOINTS];
+		beta       = new float[JOINTS];
+		dCutoff    = new float[JOINTS];
+		value      = new float[BODY_COUNT * JOINTS * 3];
+		derivative = new float[BODY_COUNT * JOINTS * 3];
+		setParameters(DEFAULT_MIN_CUTOFF, DEFAULT_BETA, DEFAULT_D_CUTOFF);
+	}
+
+	/**
+	 * Set the parameters of a joint type
+	 * @param joint JointType
+	 * @param minCutoff cutoff frequency at rest, in Hz, lower is smoother
+	 * @param beta cutoff increase per unit of speed, higher lags less
+	 * @param dCutoff cutoff frequency of the speed, in Hz
+	 */
+	public void setParameters(int joint, float minCutoff, float beta, float dCutoff) {
+		if (minCutoff <= 0 || dCutoff <= 0 || beta < 0)
+			throw new IllegalArgumentException("cutoff " + minCutoff + ", beta " + beta + ", d cutoff " + dCutoff);
+		this.minCutoff[joint] = minCutoff;
+		this.beta[joint]      = beta;
+		this.dCutoff[joint]   = dCutoff;
+	}
+
+	/**
+	 * Set the parameters of every joint type
+	 */
+	public void setParameters(float minCutoff, float beta, float dCutoff) {
+		for (int joint = 0; joint < JOINTS; joint++)
+			setParameters(joint, minCutoff, beta, dCutoff);
+	}
+
+	public float getMinCutoff(int joint) {
+		return minCutoff[joint];
+	}
+
+	public float getBeta(int joint) {
+		return beta[joint];
+	}
+
+	public float getDCutoff(int joint) {
+		return dCutoff[joint];
+	}
+
+	@Override
+	protected void reset(int i, float x) {
+		value[i]      = x;
+		derivative[i] = 0;
+	}
+
+	@Override
+	protected float filter(int i, int joint, float x, float dt, float weight) {
+		float dx = (x - value[i]) / dt;
+		float edx = derivative[i] + alpha(dCutoff[joint], dt) * (dx - derivative[i]);
+		derivative[i] = edx;
+		float cutoff = (minCutoff[joint] + beta[joint] * Math.abs(edx)) / weight;
+		value[i] += alpha(cutoff, dt) * (x - value[i]);
+		return value[i];
+	}
+
+	// smoothing factor of a first order low pass filter
+	private static float alpha(float cutoff, float dt) {
+		float r = 2.0f * (float) Math.PI * cutoff * dt;
+		return r / (r + 1.0f);
+	}
+}
@@ -0,0 +1,181 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Point clouds of 16 bit depth frames computed in Java, every camera space
+ * point is the ray of its pixel from a DepthCalibration times the depth in
+ * meters. The frame is split into bands of rows computed in parallel on a
+ * ForkJoinPool, straight into a FloatBuffer or float array owned by the
+ * caller, x, y, z per depth pixel. Pixels out of the thresholds are 0, 0, 0
+ * as in the point cloud of the device.
+ * A builder builds one frame at a time, use one per thread.
+ */
+public class PointCloudBuilder implements Constants {
+
+	/**
+	 * Default number of rows per band
+	 */
+	public final static int DEFAULT_BAND_ROWS = 53;
+
+	private final static int PIXELS = WIDTHDepth * HEIGHTDepth;
+
+	private final BandRunner runner;
+	private final BandRunner.IntBiConsumer band = this::band;
+
+	// arguments of the running build
+	private float[]     rays;
+	private ShortBuffer depth;
+	private int         low;
+	private int         high;
+	private FloatBuffer buffer;
+	private float[]     array;
+
+	/**
+	 * Builder running on the common ForkJoinPool
+	 */
+	public PointCloudBuilder() {
+		runner = new BandRunner(DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Builder running on its own pool, 1 builds on the calling thread
+	 * @param parallelism number of worker threads
+	 */
+	public PointCloudBuilder(int parallelism) {
+		runner = new BandRunner(parallelism, DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Number of threads building a frame
+	 * @return int
+	 */
+	public int getParallelism() {
+		return runner.getParallelism();
+	}
+
+	/**
+	 * Rows built by a single task
+	 * @param rows at least 1
+	 */
+	public void setBandRows(int rows) {
+		runner.setBandRows(rows);
+	}
+
+	public int getBandRows() {
+		return runner.getBandRows();
+	}
+
+	/**
+	 * Build the point cloud of a depth frame into dst
+	 * @param calibration DepthCalibration of the sensor
+	 * @param depth 16 bit depth in millimeters, 512 x 424, ex. KinectCore.getRawDepth16Buffer()
+	 * @param low points with a depth up to low are 0
+	 * @param high points with a depth from high are 0
+	 * @param dst direct or array backed FloatBuffer of at least 512 x 424 x 3
+	 * @return dst, rewound
+	 */
+	public FloatBuffer build(DepthCalibration calibration, ShortBuffer depth, int low, int high, FloatBuffer dst) {
+		checkSize(depth, dst.capacity());
+		build(calibration, depth, low, high, dst, null);
+		dst.rewind();
+		return dst;
+	}
+
+	/**
+	 * Build the point cloud of a depth frame into dst
+	 * @param calibration DepthCalibration of the sensor
+	 * @param depth 16 bit depth in millimeters, 512 x 424
+	 * @param low points with a depth up to low are 0
+	 * @param high points with a depth from high are 0
+	 * @param dst float array of at least 512 x 424 x 3
+	 * @return dst
+	 */
+	public float[] build(DepthCalibration calibration, ShortBuffer depth, int low, int high, float[] dst) {
+		checkSize(depth, dst.length);
+		build(calibration, depth, low, high, null, dst);
+		return dst;
+	}
+
+	/**
+	 * Shut down the worker threads of a builder created with its own pool
+	 */
+	public void close() {
+		runner.close();
+	}
+
+	private static void checkSize(ShortBuffer depth, int capacity) {
+		if (depth.capacity() < PIXELS)
+			throw new IllegalArgumentException("depth needs " + PIXELS + " values, has " + depth.capacity());
+		if (capacity < PIXELS * 3)
+			throw new IllegalArgumentException("destination needs " + PIXELS * 3 + " floats, has " + capacity);
+	}
+
+	private void build(DepthCalibration calibration, ShortBuffer depth, int low, int high,
+			FloatBuffer buffer, float[] array) {
+		rays = calibration.rays();
+		this.depth = depth;
+		this.low = low;
+		this.high = high;
+		this.buffer = buffer;
+		this.array = array;
+		runner.run(HEIGHTDepth, band);
+		rays = null;
+		this.depth = null;
+		this.buffer = null;
+		this.array = null;
+	}
+
+	private void band(int rowStart, int rowEnd) {
+		float[]     rays   = this.rays;
+		ShortBuffer depth  = this.depth;
+		FloatBuffer buffer = this.buffer;
+		float[]     array  = this.array;
+		int from = rowStart * WIDTHDepth;
+		int to   = rowEnd * WIDTHDepth;
+		for (int i = from; i < to; i++) {
+			int d = depth.get(i) & 0xffff;
+			float x = 0;
+			float y = 0;
+			float z = 0;
+			if (d > low && d < high) {
+				z = d * 0.001f;
+				x = rays[i * 2] * z;
+				y = rays[i * 2 + 1] * z;
+			}
+			if (array != null) {
+				array[i * 3]     = x;
+				array[i * 3 + 1] = y;
+				array[i * 3 + 2] = z;
+			} else {
+				buffer.put(i * 3, x);
+				buffer.put(i * 3 + 1, y);
+				buffer.put(i * 3 + 2, z);
+			}
+		}
+	}
+}
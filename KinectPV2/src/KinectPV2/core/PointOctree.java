@@ -0,0 +1,656 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Octree over a point cloud, ex. KinectCore.getPointCloudDepthPos(), for
+ * box, sphere and k nearest neighbour queries returning the indices of
+ * the points in the cloud. Points with a depth z of 0 are left out.
+ * The tree is kept in arrays, no object per node: the points are sorted
+ * along a Morton curve of 2^10 cells per axis with a radix sort, then
+ * every node is a range of the sorted points with the index of its 8
+ * children. The valid points are read from the cloud and given their
+ * curve codes in parallel bands of rows on a ForkJoinPool. Building again
+ * reuses the arrays, so once sized a new frame allocates nothing.
+ * Queries only read the tree and can run on several threads, build it
+ * again only once they are done.
+ */
+public class PointOctree implements Constants {
+
+	/**
+	 * Default maximum number of points of a leaf
+	 */
+	public final static int DEFAULT_LEAF_SIZE = 16;
+
+	/**
+	 * Default number of rows of 512 points per band
+	 */
+	public final static int DEFAULT_BAND_ROWS = 53;
+
+	/**
+	 * Levels of the tree, cells of the deepest level are the root over 2^10
+	 */
+	public final static int MAX_DEPTH = 10;
+
+	private final static int CELLS = 1 << MAX_DEPTH;
+	private final static int RADIX      = 15;
+	private final static int RADIX_MASK = (1 << RADIX) - 1;
+	private final static int PASSES     = (MAX_DEPTH * 3 + RADIX - 1) / RADIX;
+	private final static int LEAF  = -2;
+
+	// cell coordinates spread to every third bit
+	private final static int[] SPREAD = new int[CELLS];
+	static {
+		for (int i = 0; i < CELLS; i++)
+			SPREAD[i] = spread(i);
+	}
+
+	private final BandRunner runner;
+	private final BandRunner.IntBiConsumer scanPass   = this::scan;
+	private final BandRunner.IntBiConsumer codesPass  = this::codes;
+	private final BandRunner.IntBiConsumer gatherPass = this::gather;
+
+
+	private int leafSize = DEFAULT_LEAF_SIZE;
+
+	// POINTS sorted along the curve, x, y, z, with their index in the cloud
+	// and their key, the code of the curve over the slot in the scan
+	private int     count;
+	private float[] xyz   = new float[0];
+	private int[]   index = new int[0];
+	private long[]  keys  = new long[0];
+
+	// valid points of every band packed at the start of the band with
+	// their index in the cloud, keys before the sort
+	private float[] scan      = new float[0];
+	private int[]   scanIndex = new int[0];
+	private long[]  keysTmp   = new long[0];
+	private final int[] histogram = new int[PASSES << RADIX];
+
+	// BANDS, valid points, offset in the sorted points and bounds
+	private int[]   bandValid  = new int[0];
+	private int[]   bandOffset = new int[0];
+	private float[] bandBounds = new float[0];
+
+	// arguments of the running build
+	private FloatBuffer source;
+	private int         sourceCount;
+	private int         bandPoints;
+	private float       minX, minY, minZ;
+	private float       scale;
+
+	// NODES, range of sorted points, 8 children or -1, LEAF first for the
+	// leaves, min x, y, z and size
+	private int     nodeCount;
+	private int[]   nodeStart = new int[0];
+	private int[]   nodeEnd   = new int[0];
+	private int[]   children  = new int[0];
+	private float[] boxes     = new float[0];
+
+	// edge of the root cube
+	private float size;
+
+	/**
+	 * Tree built on the common ForkJoinPool
+	 */
+	public PointOctree() {
+		runner = new BandRunner(DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Tree built on its own pool, 1 builds on the calling thread
+	 * @param parallelism number of worker threads
+	 */
+	public PointOctree(int parallelism) {
+		runner = new BandRunner(parallelism, DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Number of threads building a tree
+	 * @return int
+	 */
+	public int getParallelism() {
+		return runner.getParallelism();
+	}
+
+	/**
+	 * Rows of 512 points read by a single task
+	 * @param rows at least 1
+	 */
+	public void setBandRows(int rows) {
+		runner.setBandRows(rows);
+	}
+
+	public int getBandRows() {
+		return runner.getBandRows();
+	}
+
+	/**
+	 * Maximum number of points of a leaf, used by the next build
+	 * @param leafSize at least 1
+	 */
+	public void setLeafSize(int leafSize) {
+		if (leafSize < 1)
+			throw new IllegalArgumentException("leaf size must be at least 1, got " + leafSize);
+		this.leafSize = leafSize;
+	}
+
+	public int getLeafSize() {
+		return leafSize;
+	}
+
+	/**
+	 * Shut down the worker threads of a tree created with its own pool
+	 */
+	public void close() {
+		runner.close();
+	}
+
+	// BUILD
+
+	/**
+	 * Build the tree over count points x, y, z
+	 * @param src FloatBuffer of at least count x 3, ex. KinectCore.getPointCloudDepthPos()
+	 * @param count number of points, ex. 512 x 424
+	 * @return number of points in the tree, the points with depth
+	 */
+	public int build(FloatBuffer src, int count) {
+		if (count < 0 || src.capacity() < count * 3)
+			throw new IllegalArgumentException("source needs " + count * 3
+					+ " floats, has " + src.capacity());
+		if (scan.length < count * 3) {
+			scan = new float[count * 3];
+			scanIndex = new int[count];
+			xyz = new float[count * 3];
+			index = new int[count];
+			keys = new long[count];
+			keysTmp = new long[count];
+		}
+		// a single band on a single thread
+		bandPoints = getParallelism() == 1 ? Math.max(count, 1) : runner.getBandRows() * WIDTHDepth;
+		int bands = Math.max((count + bandPoints - 1) / bandPoints, 1);
+		if (bandValid.length < bands) {
+			bandValid = new int[bands];
+			bandOffset = new int[bands];
+			bandBounds = new float[bands * 6];
+		}
+		source = src;
+		sourceCount = count;
+		runner.run(bands, 1, scanPass);
+		source = null;
+
+		// bounds of the bands, offsets of their points once packed
+		float x0 = java.lang.Float.MAX_VALUE, y0 = java.lang.Float.MAX_VALUE, z0 = java.lang.Float.MAX_VALUE;
+		float x1 = -java.lang.Float.MAX_VALUE, y1 = -java.lang.Float.MAX_VALUE, z1 = -java.lang.Float.MAX_VALUE;
+		int n = 0;
+		for (int b = 0; b < bands; b++) {
+			bandOffset[b] = n;
+			n += bandValid[b];
+			if (bandValid[b] == 0)
+				continue;
+			float[] bb = bandBounds;
+			if (bb[b * 6] < x0)
+				x0 = bb[b * 6];
+			if (bb[b * 6 + 1] < y0)
+				y0 = bb[b * 6 + 1];
+			if (bb[b * 6 + 2] < z0)
+				z0 = bb[b * 6 + 2];
+			if (bb[b * 6 + 3] > x1)
+				x1 = bb[b * 6 + 3];
+			if (bb[b * 6 + 4] > y1)
+				y1 = bb[b * 6 + 4];
+			if (bb[b * 6 + 5] > z1)
+				z1 = bb[b * 6 + 5];
+		}
+		this.count = n;
+		nodeCount = 0;
+		if (n == 0)
+			return 0;
+		size = Math.max(Math.max(x1 - x0, y1 - y0), Math.max(z1 - z0, 1e-6f)) * 1.0001f;
+		minX = x0;
+		minY = y0;
+		minZ = z0;
+		scale = CELLS / size;
+		runner.run(bands, 1, codesPass);
+		sort(n);
+		runner.run((n + bandPoints - 1) / bandPoints, 1, gatherPass);
+		node(0, n, 0, x0, y0, z0);
+		return n;
+	}
+
+	// valid points of a band packed at its start, with their bounds
+	private void scan(int band) {
+		FloatBuffer src = source;
+		float[] p = scan;
+		int from = band * bandPoints;
+		int to = Math.min(from + bandPoints, sourceCount);
+		float x0 = java.lang.Float.MAX_VALUE, y0 = java.lang.Float.MAX_VALUE, z0 = java.lang.Float.MAX_VALUE;
+		float x1 = -java.lang.Float.MAX_VALUE, y1 = -java.lang.Float.MAX_VALUE, z1 = -java.lang.Float.MAX_VALUE;
+		int m = from;
+		for (int i = from; i < to; i++) {
+			float z = src.get(i * 3 + 2);
+			if (!(z > 0))
+				continue;
+			float x = src.get(i * 3);
+			float y = src.get(i * 3 + 1);
+			if (java.lang.Float.isNaN(x + y) || java.lang.Float.isInfinite(x + y + z))
+				continue;
+			p[m * 3]     = x;
+			p[m * 3 + 1] = y;
+			p[m * 3 + 2] = z;
+			scanIndex[m++] = i;
+			if (x < x0)
+				x0 = x;
+			if (x > x1)
+				x1 = x;
+			if (y < y0)
+				y0 = y;
+			if (y > y1)
+				y1 = y;
+			if (z < z0)
+				z0 = z;
+			if (z > z1)
+				z1 = z;
+		}
+		bandValid[band] = m - from;
+		float[] bb = bandBounds;
+		bb[band * 6]     = x0;
+		bb[band * 6 + 1] = y0;
+		bb[band * 6 + 2] = z0;
+		bb[band * 6 + 3] = x1;
+		bb[band * 6 + 4] = y1;
+		bb[band * 6 + 5] = z1;
+	}
+
+	// curve code of the points of a band over their slot in the scan
+	private void codes(int band) {
+		float[] p = scan;
+		float x0 = minX, y0 = minY, z0 = minZ, s = scale;
+		int from = band * bandPoints;
+		int to = from + bandValid[band];
+		int k = bandOffset[band];
+		for (int i = from; i < to; i++) {
+			int qx = Math.min((int) ((p[i * 3] - x0) * s), CELLS - 1);
+			int qy = Math.min((int) ((p[i * 3 + 1] - y0) * s), CELLS - 1);
+			int qz = Math.min((int) ((p[i * 3 + 2] - z0) * s), CELLS - 1);
+			long code = SPREAD[qx] | SPREAD[qy] << 1 | SPREAD[qz] << 2;
+			keysTmp[k++] = code << 32 | i;
+		}
+	}
+
+	// sorted points of a range copied from the scan, the curve order of the queries
+	private void gather(int range) {
+		float[] p = scan;
+		int from = range * bandPoints;
+		int to = Math.min(from + bandPoints, count);
+		for (int j = from; j < to; j++) {
+			long key = keys[j];
+			int i = (int) key;
+			index[j] = scanIndex[i];
+			xyz[j * 3]     = p[i * 3];
+			xyz[j * 3 + 1] = p[i * 3 + 1];
+			xyz[j * 3 + 2] = p[i * 3 + 2];
+		}
+	}
+
+	// 10 bits spread to every third bit
+	private static int spread(int v) {
+		v = (v | v << 16) & 0x030000FF;
+		v = (v | v << 8)  & 0x0300F00F;
+		v = (v | v << 4)  & 0x030C30C3;
+		v = (v | v << 2)  & 0x09249249;
+		return v;
+	}
+
+	// radix sort of keysTmp into keys on the codes in the high bits, 15 bits
+	// a pass, the histograms of all the passes counted in a single read
+	private void sort(int n) {
+		int[] h = histogram;
+		Arrays.fill(h, 0);
+		for (int j = 0; j < n; j++) {
+			int c = (int) (keysTmp[j] >>> 32);
+			for (int pass = 0; pass < PASSES; pass++)
+				h[pass << RADIX | (c >>> (pass * RADIX)) & RADIX_MASK]++;
+		}
+		long[] src = keysTmp;
+		long[] dst = keys;
+		for (int pass = 0; pass < PASSES; pass++) {
+			int base = pass << RADIX;
+			for (int b = 0, sum = 0; b <= RADIX_MASK; b++) {
+				int c = h[base + b];
+				h[base + b] = sum;
+				sum += c;
+			}
+			int shift = 32 + pass * RADIX;
+			for (int j = 0; j < n; j++) {
+				long key = src[j];
+				dst[h[base + ((int) (key >>> shift) & RADIX_MASK)]++] = key;
+			}
+			long[] t = src;
+			src = dst;
+			dst = t;
+		}
+		// the sorted array becomes keys whatever the number of passes
+		if (src != keys) {
+			keysTmp = keys;
+			keys = src;
+		}
+	}
+
+	// every task runs a single band of a pass
+	private void scan(int start, int end) {
+		for (int b = start; b < end; b++)
+			scan(b);
+	}
+
+	private void codes(int start, int end) {
+		for (int b = start; b < end; b++)
+			codes(b);
+	}
+
+	private void gather(int start, int end) {
+		for (int r = start; r < end; r++)
+			gather(r);
+	}
+
+	// node of the sorted points from start to end, children split on the
+	// 3 bits of the next level, found by binary search
+	private int node(int start, int end, int level, float ox, float oy, float oz) {
+		int node = nodeCount++;
+		if (nodeStart.length < nodeCount)
+			growNodes();
+		float cell = size / (1 << level);
+		nodeStart[node] = start;
+		nodeEnd[node] = end;
+		boxes[node * 4]     = ox;
+		boxes[node * 4 + 1] = oy;
+		boxes[node * 4 + 2] = oz;
+		boxes[node * 4 + 3] = cell;
+		// a leaf only marks its first child
+		if (end - start <= leafSize || level == MAX_DEPTH) {
+			children[node * 8] = LEAF;
+			return node;
+		}
+		Arrays.fill(children, node * 8, node * 8 + 8, -1);
+		int shift = 32 + 3 * (MAX_DEPTH - 1 - level);
+		float half = cell * 0.5f;
+		// only the octants holding points, the octant of the first point left
+		for (int from = start; from < end;) {
+			int o = (int) (keys[from] >>> shift) & 7;
+			int to = upper(from, end, shift, o);
+			int child = node(from, to, level + 1,
+					ox + ((o & 1) != 0 ? half : 0),
+					oy + ((o & 2) != 0 ? half : 0),
+					oz + ((o & 4) != 0 ? half : 0));
+			children[node * 8 + o] = child;
+			from = to;
+		}
+		return node;
+	}
+
+	// first point from from with an octant above o
+	private int upper(int from, int end, int shift, int o) {
+		int lo = from, hi = end;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (((int) (keys[mid] >>> shift) & 7) <= o)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private void growNodes() {
+		int capacity = Math.max(nodeStart.length * 2, 1024);
+		nodeStart = Arrays.copyOf(nodeStart, capacity);
+		nodeEnd = Arrays.copyOf(nodeEnd, capacity);
+		children = Arrays.copyOf(children, capacity * 8);
+		boxes = Arrays.copyOf(boxes, capacity * 4);
+	}
+
+	/**
+	 * Points of the last build
+	 * @return int
+	 */
+	public int getPointCount() {
+		return count;
+	}
+
+	/**
+	 * Nodes of the last build
+	 * @return int
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	// QUERIES
+
+	/**
+	 * Points inside an axis aligned box
+	 * @param x1 min x
+	 * @param y1 min y
+	 * @param z1 min z
+	 * @param x2 max x
+	 * @param y2 max y
+	 * @param z2 max z
+	 * @param dst indices of the points in the cloud, filled up to its length
+	 * @return number of indices written
+	 */
+	public int box(float x1, float y1, float z1, float x2, float y2, float z2, int[] dst) {
+		if (nodeCount == 0)
+			return 0;
+		return box(0, x1, y1, z1, x2, y2, z2, dst, 0);
+	}
+
+	private int box(int node, float x1, float y1, float z1, float x2, float y2, float z2,
+			int[] dst, int n) {
+		int b = node * 4;
+		float bx = boxes[b], by = boxes[b + 1], bz = boxes[b + 2], s = boxes[b + 3];
+		if (bx > x2 || by > y2 || bz > z2 || bx + s < x1 || by + s < y1 || bz + s < z1)
+			return n;
+		// every point of a node inside the box
+		if (bx >= x1 && by >= y1 && bz >= z1 && bx + s <= x2 && by + s <= y2 && bz + s <= z2)
+			return all(node, dst, n);
+		if (isLeaf(node)) {
+			for (int j = nodeStart[node]; j < nodeEnd[node] && n < dst.length; j++) {
+				float x = xyz[j * 3], y = xyz[j * 3 + 1], z = xyz[j * 3 + 2];
+				if (x >= x1 && x <= x2 && y >= y1 && y <= y2 && z >= z1 && z <= z2)
+					dst[n++] = index[j];
+			}
+			return n;
+		}
+		for (int o = 0; o < 8 && n < dst.length; o++) {
+			int child = children[node * 8 + o];
+			if (child >= 0)
+				n = box(child, x1, y1, z1, x2, y2, z2, dst, n);
+		}
+		return n;
+	}
+
+	/**
+	 * Points inside a sphere
+	 * @param x center x
+	 * @param y center y
+	 * @param z center z
+	 * @param radius in the units of the cloud
+	 * @param dst indices of the points in the cloud, filled up to its length
+	 * @return number of indices written
+	 */
+	public int sphere(float x, float y, float z, float radius, int[] dst) {
+		if (nodeCount == 0)
+			return 0;
+		return sphere(0, x, y, z, radius * radius, dst, 0);
+	}
+
+	private int sphere(int node, float x, float y, float z, float r2, int[] dst, int n) {
+		if (distance2(node, x, y, z) > r2)
+			return n;
+		if (farthest2(node, x, y, z) <= r2)
+			return all(node, dst, n);
+		if (isLeaf(node)) {
+			for (int j = nodeStart[node]; j < nodeEnd[node] && n < dst.length; j++) {
+				float dx = xyz[j * 3] - x, dy = xyz[j * 3 + 1] - y, dz = xyz[j * 3 + 2] - z;
+				if (dx * dx + dy * dy + dz * dz <= r2)
+					dst[n++] = index[j];
+			}
+			return n;
+		}
+		for (int o = 0; o < 8 && n < dst.length; o++) {
+			int child = children[node * 8 + o];
+			if (child >= 0)
+				n = sphere(child, x, y, z, r2, dst, n);
+		}
+		return n;
+	}
+
+	/**
+	 * The k points nearest to a position, nearest first
+	 * @param x position x
+	 * @param y position y
+	 * @param z position z
+	 * @param k number of neighbours
+	 * @param dst indices of the points in the cloud, at least k
+	 * @param distances distances of the points, at least k, the search keeps
+	 * its heap in it so nothing is allocated
+	 * @return number of neighbours found, k unless the tree has fewer points
+	 */
+	public int nearest(float x, float y, float z, int k, int[] dst, float[] distances) {
+		if (k < 1 || dst.length < k || distances.length < k)
+			throw new IllegalArgumentException("invalid k " + k + " for " + dst.length
+					+ " indices and " + distances.length + " distances");
+		if (nodeCount == 0)
+			return 0;
+		// max heap of the squared distances, kept in the arrays of the caller
+		float[] heap = distances;
+		int n = nearest(0, x, y, z, k, dst, heap, 0);
+		// heap sort, nearest first
+		for (int end = n - 1; end > 0; end--) {
+			swap(dst, heap, 0, end);
+			siftDown(dst, heap, 0, end);
+		}
+		for (int i = 0; i < n; i++)
+			heap[i] = (float) Math.sqrt(heap[i]);
+		return n;
+	}
+
+	private int nearest(int node, float x, float y, float z, int k, int[] dst, float[] heap, int n) {
+		if (n == k && distance2(node, x, y, z) > heap[0])
+			return n;
+		if (isLeaf(node)) {
+			for (int j = nodeStart[node]; j < nodeEnd[node]; j++) {
+				float dx = xyz[j * 3] - x, dy = xyz[j * 3 + 1] - y, dz = xyz[j * 3 + 2] - z;
+				float d2 = dx * dx + dy * dy + dz * dz;
+				if (n < k) {
+					dst[n] = index[j];
+					heap[n] = d2;
+					siftUp(dst, heap, n++);
+				} else if (d2 < heap[0]) {
+					dst[0] = index[j];
+					heap[0] = d2;
+					siftDown(dst, heap, 0, n);
+				}
+			}
+			return n;
+		}
+		// octant of the position first, then the others
+		int b = node * 4;
+		float half = boxes[b + 3] * 0.5f;
+		int near = (x >= boxes[b] + half ? 1 : 0) | (y >= boxes[b + 1] + half ? 2 : 0)
+				| (z >= boxes[b + 2] + half ? 4 : 0);
+		for (int o = 0; o < 8; o++) {
+			int child = children[node * 8 + (near ^ o)];
+			if (child >= 0)
+				n = nearest(child, x, y, z, k, dst, heap, n);
+		}
+		return n;
+	}
+
+	private static void siftUp(int[] ids, float[] heap, int i) {
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (heap[parent] >= heap[i])
+				return;
+			swap(ids, heap, parent, i);
+			i = parent;
+		}
+	}
+
+	private static void siftDown(int[] ids, float[] heap, int i, int n) {
+		while (true) {
+			int l = 2 * i + 1;
+			if (l >= n)
+				return;
+			int c = l + 1 < n && heap[l + 1] > heap[l] ? l + 1 : l;
+			if (heap[i] >= heap[c])
+				return;
+			swap(ids, heap, i, c);
+			i = c;
+		}
+	}
+
+	private static void swap(int[] ids, float[] heap, int a, int b) {
+		int id = ids[a];
+		ids[a] = ids[b];
+		ids[b] = id;
+		float d = heap[a];
+		heap[a] = heap[b];
+		heap[b] = d;
+	}
+
+	private boolean isLeaf(int node) {
+		return children[node * 8] == LEAF;
+	}
+
+	private int all(int node, int[] dst, int n) {
+		int end = Math.min(nodeEnd[node], nodeStart[node] + dst.length - n);
+		for (int j = nodeStart[node]; j < end; j++)
+			dst[n++] = index[j];
+		return n;
+	}
+
+	// squared distance from a position to the nearest point of a node
+	private float distance2(int node, float x, float y, float z) {
+		int b = node * 4;
+		float s = boxes[b + 3];
+		float dx = Math.max(Math.max(boxes[b] - x, x - boxes[b] - s), 0);
+		float dy = Math.max(Math.max(boxes[b + 1] - y, y - boxes[b + 1] - s), 0);
+		float dz = Math.max(Math.max(boxes[b + 2] - z, z - boxes[b + 2] - s), 0);
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	// squared distance from a position to the farthest corner of a node
+	private float farthest2(int node, float x, float y, float z) {
+		int b = node * 4;
+		float s = boxes[b + 3];
+		float dx = Math.max(Math.abs(x - boxes[b]), Math.abs(x - boxes[b] - s));
+		float dy = Math.max(Math.abs(y - boxes[b + 1]), Math.abs(y - boxes[b + 1] - s));
+		float dz = Math.max(Math.abs(z - boxes[b + 2]), Math.abs(z - boxes[b + 2] - s));
+		return dx * dx + dy * dy + dz * dz;
+	}
+}
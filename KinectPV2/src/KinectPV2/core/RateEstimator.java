@@ -0,0 +1,112 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+/**
+ * Sliding window rate estimator.
+ * Keeps the last samples of a running frame count with their time and
+ * measures the count increase over the window, so frames that were produced
+ * but never acquired are still counted. Samples older than the window are
+ * ignored, the rate falls to 0 when the stream stops.
+ */
+public class RateEstimator {
+
+	public final static int  DEFAULT_SAMPLES = 32;
+	public final static long DEFAULT_WINDOW  = 1000000000L;
+
+	private final long[] counts;
+	private final long[] times;
+	private final long   window;
+
+	private int head;
+	private int size;
+
+	public RateEstimator(){
+		this(DEFAULT_SAMPLES, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * @param samples max number of samples kept
+	 * @param window max age of the samples, in nanoseconds
+	 */
+	public RateEstimator(int samples, long window){
+		if(samples < 2)
+			throw new IllegalArgumentException("a rate needs at least 2 samples");
+		counts = new long[samples];
+		times  = new long[samples];
+		this.window = window;
+	}
+
+	/**
+	 * Add a sample
+	 * @param count running count, ex. frame sequence
+	 * @param time time of the sample, System.nanoTime()
+	 */
+	public void update(long count, long time){
+		head = (head + 1) % counts.length;
+		counts[head] = count;
+		times[head]  = time;
+		if(size < counts.length)
+			size++;
+	}
+
+	/**
+	 * Rate per second over the window ending now
+	 * @return float
+	 */
+	public float getRate(){
+		return getRate(System.nanoTime());
+	}
+
+	/**
+	 * Rate per second over the window ending at the given time
+	 * @param now System.nanoTime()
+	 * @return float
+	 */
+	public float getRate(long now){
+		if(size < 2 || now - times[head] > window)
+			return 0;
+
+		int oldest = head;
+		for(int i = 1; i < size; i++){
+			int index = (head - i + counts.length) % counts.length;
+			if(now - times[index] > window)
+				break;
+			oldest = index;
+		}
+
+		long elapsed = times[head] - times[oldest];
+		if(elapsed <= 0)
+			return 0;
+		return (counts[head] - counts[oldest]) * 1.0E9f / elapsed;
+	}
+
+	/**
+	 * Forget all the samples
+	 */
+	public void reset(){
+		head = 0;
+		size = 0;
+	}
+}
@@ -0,0 +1,124 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ShortBuffer;
+
+/**
+ * Helpers for the 16 bit raw depth, getRawDepth16Data() and RAW_DEPTH_16.
+ * Depth values are unsigned millimeters from 0 to 8000, 0 when unknown,
+ * stored in java shorts, so values over 32767 would read negative without
+ * these helpers.
+ */
+public final class RawDepth implements Constants {
+
+	public final static int MIN_DEPTH = 500;
+	public final static int MAX_DEPTH = 8000;
+
+	private RawDepth() {
+	}
+
+	/**
+	 * Depth in millimeters of a raw value
+	 * @param value short
+	 * @return int
+	 */
+	public static int millimeters(short value) {
+		return value & 0xffff;
+	}
+
+	/**
+	 * Depth in meters of a raw value
+	 * @param value short
+	 * @return float
+	 */
+	public static float meters(short value) {
+		return (value & 0xffff) * 0.001f;
+	}
+
+	/**
+	 * Depth in millimeters at a pixel of the depth image
+	 * @param depth short array of 512 x 424
+	 * @param x 0 - 511
+	 * @param y 0 - 423
+	 * @return int
+	 */
+	public static int millimeters(short [] depth, int x, int y) {
+		return depth[y * WIDTHDepth + x] & 0xffff;
+	}
+
+	/**
+	 * Depth in millimeters at an index of a ShortBuffer, absolute read
+	 * @param depth ShortBuffer
+	 * @param index int
+	 * @return int
+	 */
+	public static int millimeters(ShortBuffer depth, int index) {
+		return depth.get(index) & 0xffff;
+	}
+
+	/**
+	 * Depth in millimeters at a pixel of the depth image
+	 * @param depth ShortBuffer of 512 x 424
+	 * @param x 0 - 511
+	 * @param y 0 - 423
+	 * @return int
+	 */
+	public static int millimeters(ShortBuffer depth, int x, int y) {
+		return depth.get(y * WIDTHDepth + x) & 0xffff;
+	}
+
+	/**
+	 * True if the sensor measured the pixel
+	 * @param value short
+	 * @return boolean
+	 */
+	public static boolean isValid(short value) {
+		return value != 0;
+	}
+
+	/**
+	 * Widen raw values to millimeters, same values as getRawDepthData()
+	 * @param src short array
+	 * @param dst int array of at least src.length
+	 * @return dst
+	 */
+	public static int [] toMillimeters(short [] src, int [] dst) {
+		for (int i = 0; i < src.length; i++)
+			dst[i] = src[i] & 0xffff;
+		return dst;
+	}
+
+	/**
+	 * Pack depth values in millimeters to raw values
+	 * @param src int array, values from 0 to 65535
+	 * @param dst short array of at least src.length
+	 * @return dst
+	 */
+	public static short [] fromMillimeters(int [] src, short [] dst) {
+		for (int i = 0; i < src.length; i++)
+			dst[i] = (short) src[i];
+		return dst;
+	}
+}
@@ -0,0 +1,163 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Frame read from a recording by FramePlayer.
+ * The views map the file directly, nothing is copied until copyTo().
+ */
+public class RecordedFrame implements RecordingProperties, Constants {
+
+	private final Stream     stream;
+	private final int        index;
+	private final long       sequence;
+	private final long       timestamp;
+	private final long       deviceTime;
+	private final int        encoding;
+	private final ByteBuffer data;
+
+	RecordedFrame(Stream stream, int index, long sequence, long timestamp, long deviceTime,
+			int encoding, ByteBuffer data) {
+		this.stream     = stream;
+		this.index      = index;
+		this.sequence   = sequence;
+		this.timestamp  = timestamp;
+		this.deviceTime = deviceTime;
+		this.encoding   = encoding;
+		this.data       = data;
+	}
+
+	public Stream getStream() {
+		return stream;
+	}
+
+	/**
+	 * Position of the frame among the frames of its stream
+	 * @return int
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Capture time, System.nanoTime() of the recording machine
+	 * @return long
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Sensor time in 100 ns units
+	 * @return long
+	 */
+	public long getDeviceTime() {
+		return deviceTime;
+	}
+
+	/**
+	 * Payload encoding, ENCODING_RAW or ENCODING_UINT16
+	 * @return int
+	 */
+	public int getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Frame data as bytes
+	 * @return ByteBuffer
+	 */
+	public ByteBuffer getByteBuffer() {
+		return data.duplicate().order(data.order());
+	}
+
+	/**
+	 * Frame data of ENCODING_UINT16 frames and Int16 streams, read values with RawDepth.millimeters()
+	 * @return ShortBuffer
+	 */
+	public ShortBuffer asShortBuffer() {
+		return data.asShortBuffer();
+	}
+
+	/**
+	 * Frame data of ENCODING_RAW Int32 frames
+	 * @return IntBuffer
+	 */
+	public IntBuffer asIntBuffer() {
+		return data.asIntBuffer();
+	}
+
+	/**
+	 * Frame data of ENCODING_RAW Float frames
+	 * @return FloatBuffer
+	 */
+	public FloatBuffer asFloatBuffer() {
+		return data.asFloatBuffer();
+	}
+
+	/**
+	 * Copy the frame of an Int32 stream, whatever the encoding
+	 * @param dst int array of at least the stream length
+	 * @return dst
+	 */
+	public int [] copyTo(int [] dst) {
+		int length = stream.length;
+		if (encoding == ENCODING_UINT16 || stream.type == Int16) {
+			for (int i = 0; i < length; i++)
+				dst[i] = data.getShort(i * 2) & 0xffff;
+		} else {
+			asIntBuffer().get(dst, 0, length);
+		}
+		return dst;
+	}
+
+	/**
+	 * Copy the frame of an ENCODING_UINT16 frame or an Int16 stream
+	 * @param dst short array of at least the stream length
+	 * @return dst
+	 */
+	public short [] copyTo(short [] dst) {
+		asShortBuffer().get(dst, 0, stream.length);
+		return dst;
+	}
+
+	/**
+	 * Copy the frame of a Float stream
+	 * @param dst float array of at least the stream length
+	 * @return dst
+	 */
+	public float [] copyTo(float [] dst) {
+		asFloatBuffer().get(dst, 0, stream.length);
+		return dst;
+	}
+}
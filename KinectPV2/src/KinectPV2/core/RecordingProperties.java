@@ -0,0 +1,59 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+/**
+ * Layout of the binary recordings written by FrameRecorder and read by FramePlayer.
+ * A header, one chunk per frame, the frame index and a trailer pointing to
+ * the index. All values in the byte order flagged in the header.
+ *
+ * header  : magic, version, byte order, start time (ms), reserved
+ * frame   : FRAME_TAG, stream id, sequence, timestamp, device time, encoding,
+ *           payload bytes, payload padded to 8 bytes
+ * index   : INDEX_TAG, frame count, per frame offset, timestamp, stream id, reserved
+ * trailer : index offset, frame count, END_TAG
+ *
+ * A recording without trailer, ex. after a crash, is indexed by scanning the frames.
+ */
+public interface RecordingProperties {
+
+	public final static long MAGIC   = 0x314345523256504BL; // "KPV2REC1"
+	public final static int  VERSION = 1;
+
+	public final static int FRAME_TAG = 0x4D415246; // "FRAM"
+	public final static int INDEX_TAG = 0x58444E49; // "INDX"
+	public final static int END_TAG   = 0x444E454B; // "KEND"
+
+	public final static int HEADER_BYTES       = 32;
+	public final static int FRAME_HEADER_BYTES = 40;
+	public final static int INDEX_ENTRY_BYTES  = 24;
+	public final static int TRAILER_BYTES      = 16;
+
+	public final static int LITTLE_ENDIAN = 0;
+	public final static int BIG_ENDIAN    = 1;
+
+	// payload encodings
+	public final static int ENCODING_RAW    = 0; // elements of the stream type
+	public final static int ENCODING_UINT16 = 1; // Int32 values packed as unsigned 16 bits
+}
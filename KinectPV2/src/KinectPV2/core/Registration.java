@@ -0,0 +1,483 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Registration of the depth and color frames, color at every depth pixel
+ * and depth at every color pixel, from the depth to color mapping.
+ * The mapping is turned into an integer gather index once per mapping
+ * frame, then every color frame is a gather through the index. Depth at
+ * color scatters every depth pixel over a small footprint of the color
+ * image, keeping the nearest depth: the depth pixels are bucketed by the
+ * color row they map to, then every band of color rows scatters only the
+ * pixels landing in its rows, so no two bands write the same pixel.
+ * Every pass is split into bands of rows computed in parallel on a
+ * ForkJoinPool, into arrays owned by the caller.
+ * A registration handles one frame at a time, use one per thread.
+ */
+public class Registration implements Constants {
+
+	/**
+	 * Color of the nearest color pixel
+	 */
+	public final static int NEAREST  = 0;
+
+	/**
+	 * Color interpolated between the 4 nearest color pixels
+	 */
+	public final static int BILINEAR = 1;
+
+	/**
+	 * Default number of rows per band
+	 */
+	public final static int DEFAULT_BAND_ROWS = 53;
+
+	/**
+	 * Default color pixels around a depth pixel in depthAtColor, 1 is 3 x 3
+	 */
+	public final static int DEFAULT_SPLAT_RADIUS = 1;
+
+	private final static int DEPTH_PIXELS = WIDTHDepth * HEIGHTDepth;
+	private final static int COLOR_PIXELS = WIDTHColor * HEIGHTColor;
+
+	// passes, bands of depth rows but depth at color in bands of color rows
+	private final BandRunner runner;
+	private final BandRunner.IntBiConsumer indexMapping = this::indexMapping;
+	private final BandRunner.IntBiConsumer indexDepth   = this::indexDepth;
+	private final BandRunner.IntBiConsumer gather       = this::gather;
+	private final BandRunner.IntBiConsumer scatter      = this::scatter;
+
+	private int sampling    = NEAREST;
+	private int splatRadius = DEFAULT_SPLAT_RADIUS;
+
+	// GATHER INDEX per depth pixel, -1 when the pixel has no color
+	private final int[] nearest = new int[DEPTH_PIXELS];
+	private final int[] corner  = new int[DEPTH_PIXELS];
+	// x and y weights of the right and lower pixels, 0 to 256, in 16 bits each
+	private final int[] weights = new int[DEPTH_PIXELS];
+	private long    sequence;
+	private boolean indexed;
+	private boolean javaMapping;
+
+	// MAPPING in Java, camera points and color coordinates of the depth pixels
+	private float[] points;
+	private float[] mapping;
+	private DepthCalibration calibration;
+
+	// DEPTH PIXELS by the color row of their nearest color pixel, the
+	// pixels of row y from rowOffsets[y] to rowOffsets[y + 1]
+	private int[]   byRow;
+	private int[]   rowOffsets;
+	private boolean bucketed;
+
+	// little endian view of the last color source, BGRA bytes read as ARGB ints
+	private ByteBuffer lastSource;
+	private IntBuffer  intView;
+	private int[]      lastArray;
+
+	// arguments of the running pass
+	private FloatBuffer mapBuffer;
+	private ShortBuffer depth;
+	private IntBuffer   colors;
+	private int[]       dst;
+	private int         low;
+	private int         high;
+
+	/**
+	 * Registration running on the common ForkJoinPool
+	 */
+	public Registration() {
+		runner = new BandRunner(DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Registration running on its own pool, 1 computes on the calling thread
+	 * @param parallelism number of worker threads
+	 */
+	public Registration(int parallelism) {
+		runner = new BandRunner(parallelism, DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Number of threads registering a frame
+	 * @return int
+	 */
+	public int getParallelism() {
+		return runner.getParallelism();
+	}
+
+	/**
+	 * Rows computed by a single task
+	 * @param rows at least 1
+	 */
+	public void setBandRows(int rows) {
+		runner.setBandRows(rows);
+	}
+
+	public int getBandRows() {
+		return runner.getBandRows();
+	}
+
+	/**
+	 * Sampling of the color frame in colorAtDepth
+	 * @param sampling NEAREST or BILINEAR
+	 */
+	public void setSampling(int sampling) {
+		if (sampling != NEAREST && sampling != BILINEAR)
+			throw new IllegalArgumentException("unknown sampling " + sampling);
+		this.sampling = sampling;
+	}
+
+	public int getSampling() {
+		return sampling;
+	}
+
+	/**
+	 * Color pixels around every depth pixel in depthAtColor, 0 writes a single pixel
+	 * @param radius from 0 to 4
+	 */
+	public void setSplatRadius(int radius) {
+		if (radius < 0 || radius > 4)
+			throw new IllegalArgumentException("splat radius must be from 0 to 4, got " + radius);
+		splatRadius = radius;
+	}
+
+	public int getSplatRadius() {
+		return splatRadius;
+	}
+
+	// MAPPING
+
+	/**
+	 * Index the depth to color mapping of the device, only when sequence
+	 * changed since the last mapping
+	 * @param depthToColor color x, y per depth pixel, ex. the MAP_DEPTH_TO_COLOR frame
+	 * @param sequence sequence of the mapping frame, 0 always indexes
+	 * @return true if the mapping was indexed
+	 */
+	public boolean setMapping(FloatBuffer depthToColor, long sequence) {
+		if (depthToColor.capacity() < DEPTH_PIXELS * 2)
+			throw new IllegalArgumentException("mapping needs " + DEPTH_PIXELS * 2
+					+ " floats, has " + depthToColor.capacity());
+		if (isIndexed(sequence, false))
+			return false;
+		mapBuffer = depthToColor;
+		runner.run(HEIGHTDepth, indexMapping);
+		mapBuffer = null;
+		this.sequence = sequence;
+		indexed = true;
+		bucketed = false;
+		javaMapping = false;
+		return true;
+	}
+
+	/**
+	 * Index the mapping of a 16 bit depth frame computed in Java, from the
+	 * rays and the CoordinateMapper of a calibration, only when sequence
+	 * changed since the last mapping
+	 * @param calibration DepthCalibration with a CoordinateMapper
+	 * @param depth 16 bit depth in millimeters, 512 x 424
+	 * @param low pixels with a depth up to low have no color
+	 * @param high pixels with a depth from high have no color
+	 * @param sequence sequence of the depth frame, 0 always indexes
+	 * @return true if the mapping was indexed
+	 */
+	public boolean setMapping(DepthCalibration calibration, ShortBuffer depth, int low, int high,
+			long sequence) {
+		if (calibration.getCoordinateMapper() == null)
+			throw new IllegalArgumentException("the calibration has no CoordinateMapper");
+		if (depth.capacity() < DEPTH_PIXELS)
+			throw new IllegalArgumentException("depth needs " + DEPTH_PIXELS
+					+ " values, has " + depth.capacity());
+		if (isIndexed(sequence, true))
+			return false;
+		if (points == null) {
+			points  = new float[DEPTH_PIXELS * 3];
+			mapping = new float[DEPTH_PIXELS * 2];
+		}
+		this.calibration = calibration;
+		this.depth = depth;
+		this.low = low;
+		this.high = high;
+		runner.run(HEIGHTDepth, indexDepth);
+		this.calibration = null;
+		this.depth = null;
+		this.sequence = sequence;
+		indexed = true;
+		bucketed = false;
+		javaMapping = true;
+		return true;
+	}
+
+	/**
+	 * Index the next mapping even with the same sequence
+	 */
+	public void invalidate() {
+		indexed = false;
+	}
+
+	// REGISTRATION
+
+	/**
+	 * Color of every depth pixel, 0 for the pixels without color
+	 * @param color BGRA bytes, 1920 x 1080 x 4, ex. the COLOR frame
+	 * @param dst int array of at least 512 x 424, ARGB
+	 * @return dst
+	 */
+	public int[] colorAtDepth(ByteBuffer color, int[] dst) {
+		if (color.capacity() < COLOR_PIXELS * 4)
+			throw new IllegalArgumentException("color needs " + COLOR_PIXELS * 4
+					+ " bytes, has " + color.capacity());
+		if (color != lastSource) {
+			ByteBuffer view = color.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			view.clear();
+			intView = view.asIntBuffer();
+			lastSource = color;
+			lastArray = null;
+		}
+		return colorAtDepth(intView, dst);
+	}
+
+	/**
+	 * Color of every depth pixel, 0 for the pixels without color
+	 * @param color ARGB pixels, 1920 x 1080, ex. KinectCore.getColorData(int[])
+	 * @param dst int array of at least 512 x 424, ARGB
+	 * @return dst
+	 */
+	public int[] colorAtDepth(int[] color, int[] dst) {
+		if (color.length < COLOR_PIXELS)
+			throw new IllegalArgumentException("color needs " + COLOR_PIXELS
+					+ " pixels, has " + color.length);
+		if (color != lastArray) {
+			intView = IntBuffer.wrap(color);
+			lastArray = color;
+			lastSource = null;
+		}
+		return colorAtDepth(intView, dst);
+	}
+
+	private int[] colorAtDepth(IntBuffer color, int[] dst) {
+		checkIndexed();
+		if (dst.length < DEPTH_PIXELS)
+			throw new IllegalArgumentException("destination needs " + DEPTH_PIXELS
+					+ " pixels, has " + dst.length);
+		colors = color;
+		this.dst = dst;
+		runner.run(HEIGHTDepth, gather);
+		colors = null;
+		this.dst = null;
+		return dst;
+	}
+
+	/**
+	 * Depth in millimeters of every color pixel, the nearest of the depth
+	 * pixels mapped around it, 0 for the pixels without depth
+	 * @param depth 16 bit depth in millimeters, 512 x 424, the frame of the mapping
+	 * @param dst int array of at least 1920 x 1080
+	 * @return dst
+	 */
+	public int[] depthAtColor(ShortBuffer depth, int[] dst) {
+		checkIndexed();
+		if (depth.capacity() < DEPTH_PIXELS)
+			throw new IllegalArgumentException("depth needs " + DEPTH_PIXELS
+					+ " values, has " + depth.capacity());
+		if (dst.length < COLOR_PIXELS)
+			throw new IllegalArgumentException("destination needs " + COLOR_PIXELS
+					+ " pixels, has " + dst.length);
+		if (!bucketed)
+			bucket();
+		this.depth = depth;
+		this.dst = dst;
+		runner.run(HEIGHTColor, scatter);
+		this.depth = null;
+		this.dst = null;
+		return dst;
+	}
+
+	/**
+	 * Index of the color pixel nearest to a depth pixel
+	 * @param depthIndex y x 512 + x
+	 * @return color index y x 1920 + x, -1 without color
+	 */
+	public int getColorIndex(int depthIndex) {
+		checkIndexed();
+		return nearest[depthIndex];
+	}
+
+	/**
+	 * Shut down the worker threads of a registration created with its own pool
+	 */
+	public void close() {
+		runner.close();
+	}
+
+	private boolean isIndexed(long sequence, boolean java) {
+		return indexed && sequence != 0 && sequence == this.sequence && java == javaMapping;
+	}
+
+	private void checkIndexed() {
+		if (!indexed)
+			throw new IllegalStateException("no mapping, call setMapping first");
+	}
+
+	// depth pixels sorted by the color row of their nearest color pixel,
+	// a counting sort keeping the depth order within a row
+	private void bucket() {
+		if (byRow == null) {
+			byRow = new int[DEPTH_PIXELS];
+			rowOffsets = new int[HEIGHTColor + 1];
+		}
+		int[] offsets = rowOffsets;
+		Arrays.fill(offsets, 0);
+		for (int i = 0; i < DEPTH_PIXELS; i++)
+			if (nearest[i] >= 0)
+				offsets[nearest[i] / WIDTHColor + 1]++;
+		for (int y = 0; y < HEIGHTColor; y++)
+			offsets[y + 1] += offsets[y];
+		// every offset moves to the start of the next row, then back
+		for (int i = 0; i < DEPTH_PIXELS; i++)
+			if (nearest[i] >= 0)
+				byRow[offsets[nearest[i] / WIDTHColor]++] = i;
+		System.arraycopy(offsets, 0, offsets, 1, HEIGHTColor);
+		offsets[0] = 0;
+		bucketed = true;
+	}
+
+	private void indexMapping(int rowStart, int rowEnd) {
+		FloatBuffer src = mapBuffer;
+		for (int i = rowStart * WIDTHDepth, to = rowEnd * WIDTHDepth; i < to; i++)
+			index(i, src.get(i * 2), src.get(i * 2 + 1));
+	}
+
+	// camera points of the band, mapped to the color image, then indexed
+	private void indexDepth(int rowStart, int rowEnd) {
+		int from = rowStart * WIDTHDepth;
+		int to   = rowEnd * WIDTHDepth;
+		float[] rays = calibration.rays();
+		for (int i = from; i < to; i++) {
+			int d = depth.get(i) & 0xffff;
+			float z = d > low && d < high ? d * 0.001f : 0;
+			points[i * 3]     = rays[i * 2] * z;
+			points[i * 3 + 1] = rays[i * 2 + 1] * z;
+			points[i * 3 + 2] = z;
+		}
+		calibration.getCoordinateMapper().mapCameraPointsToColorSpace(points, mapping, from, to);
+		for (int i = from; i < to; i++)
+			index(i, mapping[i * 2], mapping[i * 2 + 1]);
+	}
+
+	// the device maps the pixels out of the thresholds to 0, 0
+	private void index(int i, float x, float y) {
+		nearest[i] = -1;
+		corner[i]  = -1;
+		if (!(x >= 0 && y >= 0 && x < WIDTHColor && y < HEIGHTColor) || (x == 0 && y == 0))
+			return;
+		int nx = Math.min((int) (x + 0.5f), WIDTHColor - 1);
+		int ny = Math.min((int) (y + 0.5f), HEIGHTColor - 1);
+		nearest[i] = ny * WIDTHColor + nx;
+		int cx = Math.min((int) x, WIDTHColor - 2);
+		int cy = Math.min((int) y, HEIGHTColor - 2);
+		int wx = Math.min((int) ((x - cx) * 256 + 0.5f), 256);
+		int wy = Math.min((int) ((y - cy) * 256 + 0.5f), 256);
+		corner[i]  = cy * WIDTHColor + cx;
+		weights[i] = wy << 16 | wx;
+	}
+
+	private void gather(int rowStart, int rowEnd) {
+		if (sampling == BILINEAR)
+			gatherBilinear(rowStart * WIDTHDepth, rowEnd * WIDTHDepth);
+		else
+			gatherNearest(rowStart * WIDTHDepth, rowEnd * WIDTHDepth);
+	}
+
+	private void gatherNearest(int from, int to) {
+		IntBuffer src = colors;
+		for (int i = from; i < to; i++) {
+			int c = nearest[i];
+			dst[i] = c < 0 ? 0 : src.get(c) | 0xff000000;
+		}
+	}
+
+	private void gatherBilinear(int from, int to) {
+		IntBuffer src = colors;
+		for (int i = from; i < to; i++) {
+			int c = corner[i];
+			if (c < 0) {
+				dst[i] = 0;
+				continue;
+			}
+			int wx = weights[i] & 0xffff;
+			int wy = weights[i] >>> 16;
+			int top    = lerp(src.get(c), src.get(c + 1), wx);
+			int bottom = lerp(src.get(c + WIDTHColor), src.get(c + WIDTHColor + 1), wx);
+			dst[i] = lerp(top, bottom, wy) | 0xff000000;
+		}
+	}
+
+	// nearest depth of the color rows of the band, from the depth pixels
+	// mapped within the splat radius of them, the band owns its rows
+	private void scatter(int rowStart, int rowEnd) {
+		int[] out = dst;
+		ShortBuffer src = depth;
+		int r = splatRadius;
+		Arrays.fill(out, rowStart * WIDTHColor, rowEnd * WIDTHColor, 0);
+		int from = rowOffsets[Math.max(rowStart - r, 0)];
+		int to   = rowOffsets[Math.min(rowEnd + r, HEIGHTColor)];
+		for (int p = from; p < to; p++) {
+			int i = byRow[p];
+			int d = src.get(i) & 0xffff;
+			if (d == 0)
+				continue;
+			int c = nearest[i];
+			int cx = c % WIDTHColor;
+			int cy = c / WIDTHColor;
+			int x0 = Math.max(cx - r, 0);
+			int x1 = Math.min(cx + r, WIDTHColor - 1);
+			int y0 = Math.max(cy - r, rowStart);
+			int y1 = Math.min(cy + r, rowEnd - 1);
+			for (int y = y0; y <= y1; y++) {
+				for (int x = x0, k = y * WIDTHColor + x0; x <= x1; x++, k++) {
+					int current = out[k];
+					if (current == 0 || d < current)
+						out[k] = d;
+				}
+			}
+		}
+	}
+
+	// per channel a + (b - a) x w / 256, red with blue and alpha with green in 16 bit lanes
+	private static int lerp(int a, int b, int w) {
+		int iw = 256 - w;
+		int rb = ((a & 0xff00ff) * iw + (b & 0xff00ff) * w) >>> 8 & 0xff00ff;
+		int ag = (((a >>> 8) & 0xff00ff) * iw + ((b >>> 8) & 0xff00ff) * w) & 0xff00ff00;
+		return ag | rb;
+	}
+}
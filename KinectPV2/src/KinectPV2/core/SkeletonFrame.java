@@ -0,0 +1,285 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+
+/**
+ * Skeletons of all the bodies of a single skeleton frame, as packed arrays
+ * indexed by body and joint: index = body * JointType_Count + joint.
+ * Positions hold x, y, z and orientations w, x, y, z per joint, states the
+ * tracking state of each joint, the hand joints hold the hand state instead.
+ * The TrackingId of every tracked body is kept as given by the sensor.
+ * Unpacked once per new frame, without any object per joint.
+ */
+public class SkeletonFrame implements SkeletonProperties {
+
+	/**
+	 * Number of joints of a single body
+	 */
+	public final static int JOINTS = JointType_Count;
+
+	// floats per joint and per body in the native skeleton streams
+	private final static int RAW_JOINT = 9;
+	private final static int RAW_BODY  = (JointType_Count + 1) * RAW_JOINT;
+	// the 64 bit TrackingId in the bits of the first two floats after the joints
+	private final static int RAW_ID    = JointType_Count * RAW_JOINT;
+
+	private final Stream stream;
+
+	private final float[]   positions;
+	private final float[]   orientations;
+	private final byte[]    states;
+	private final boolean[] tracked;
+	private final byte[]    handStates;
+	private final long[]    trackingIds;
+
+	private final float[] raw;
+
+	private long sequence;
+	private long timestamp;
+
+	public SkeletonFrame(Stream stream) {
+		if (stream.getLength() != JOINTSIZE || stream.getType() != Float)
+			throw new IllegalArgumentException(stream + " is not a skeleton stream");
+		this.stream = stream;
+		positions    = new float[BODY_COUNT * JOINTS * 3];
+		orientations = new float[BODY_COUNT * JOINTS * 4];
+		states       = new byte[BODY_COUNT * JOINTS];
+		tracked      = new boolean[BODY_COUNT];
+		handStates   = new byte[BODY_COUNT * 2];
+		trackingIds  = new long[BODY_COUNT];
+		raw          = new float[JOINTSIZE];
+	}
+
+	/**
+	 * Index of a joint in the packed arrays
+	 * @param body 0 - 5
+	 * @param joint JointType
+	 * @return int
+	 */
+	public static int index(int body, int joint) {
+		return body * JOINTS + joint;
+	}
+
+	/**
+	 * Unpack a frame of the stream, only if it is a new one
+	 * @param frame FrameBuffer of the skeleton stream
+	 * @return true if the frame was unpacked
+	 */
+	public boolean update(FrameBuffer frame) {
+		if (frame.getStream() != stream)
+			throw new IllegalArgumentException(frame.getStream() + " frame in a " + stream + " SkeletonFrame");
+		if (frame.getSequence() == sequence)
+			return false;
+		ByteBuffer src = frame.getByteBuffer();
+		for (int i = 0; i < raw.length; i++)
+			raw[i] = src.getFloat(i << 2);
+		update(raw);
+		sequence  = frame.getSequence();
+		timestamp = frame.getTimestamp();
+		return true;
+	}
+
+	/**
+	 * Unpack the packed joints of a skeleton stream, BODY_COUNT x 26 x 9 floats
+	 * @param rawData float array of the skeleton stream
+	 */
+	public void update(float[] rawData) {
+		for (int body = 0; body < BODY_COUNT; body++) {
+			int rawBody = body * RAW_BODY;
+			tracked[body] = rawData[rawBody + RAW_BODY - 1] == 1.0f;
+			int joint0 = body * JOINTS;
+			if (!tracked[body]) {
+				for (int j = 0; j < JOINTS; j++)
+					states[joint0 + j] = TrackingState_NotTracked;
+				handStates[body * 2]     = HandState_NotTracked;
+				handStates[body * 2 + 1] = HandState_NotTracked;
+				trackingIds[body] = 0;
+				continue;
+			}
+			trackingIds[body] = (java.lang.Float.floatToRawIntBits(rawData[rawBody + RAW_ID]) & 0xffffffffL)
+					| (long) java.lang.Float.floatToRawIntBits(rawData[rawBody + RAW_ID + 1]) << 32;
+			for (int j = 0; j < JOINTS; j++) {
+				int r = rawBody + j * RAW_JOINT;
+				int i = joint0 + j;
+				positions[i * 3]     = rawData[r];
+				positions[i * 3 + 1] = rawData[r + 1];
+				positions[i * 3 + 2] = rawData[r + 2];
+				orientations[i * 4]     = rawData[r + 3];
+				orientations[i * 4 + 1] = rawData[r + 4];
+				orientations[i * 4 + 2] = rawData[r + 5];
+				orientations[i * 4 + 3] = rawData[r + 6];
+				states[i] = (byte) rawData[r + 7];
+			}
+			handStates[body * 2]     = states[joint0 + JointType_HandLeft];
+			handStates[body * 2 + 1] = states[joint0 + JointType_HandRight];
+		}
+	}
+
+	/**
+	 * Copy another frame of the same stream
+	 * @param src SkeletonFrame
+	 */
+	void set(SkeletonFrame src) {
+		if (src.stream != stream)
+			throw new IllegalArgumentException(src.stream + " frame in a " + stream + " SkeletonFrame");
+		System.arraycopy(src.positions, 0, positions, 0, positions.length);
+		System.arraycopy(src.orientations, 0, orientations, 0, orientations.length);
+		System.arraycopy(src.states, 0, states, 0, states.length);
+		System.arraycopy(src.tracked, 0, tracked, 0, tracked.length);
+		System.arraycopy(src.handStates, 0, handStates, 0, handStates.length);
+		System.arraycopy(src.trackingIds, 0, trackingIds, 0, trackingIds.length);
+		sequence  = src.sequence;
+		timestamp = src.timestamp;
+	}
+
+	/**
+	 * Stream of the frame, SKELETON_3D, SKELETON_DEPTH or SKELETON_COLOR
+	 * @return Stream
+	 */
+	public Stream getStream() {
+		return stream;
+	}
+
+	/**
+	 * Sequence number of the unpacked frame, 0 before the first frame
+	 * @return long
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Capture time of the unpacked frame, System.nanoTime()
+	 * @return long
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Packed positions x, y, z, BODY_COUNT x JointType_Count x 3
+	 * @return float []
+	 */
+	public float[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * Packed orientations w, x, y, z, BODY_COUNT x JointType_Count x 4
+	 * @return float []
+	 */
+	public float[] getOrientations() {
+		return orientations;
+	}
+
+	/**
+	 * Packed tracking states, BODY_COUNT x JointType_Count, hand state for the hand joints
+	 * @return byte []
+	 */
+	public byte[] getStates() {
+		return states;
+	}
+
+	/**
+	 * Check if a body is tracked
+	 * @param body 0 - 5
+	 * @return boolean
+	 */
+	public boolean isTracked(int body) {
+		return tracked[body];
+	}
+
+	/**
+	 * TrackingId the sensor gave a body, the same for the same person while
+	 * tracked, a new one once the body is lost and acquired again
+	 * @param body 0 - 5
+	 * @return long, 0 when the body is not tracked
+	 */
+	public long getTrackingId(int body) {
+		return trackingIds[body];
+	}
+
+	/**
+	 * Number of tracked bodies
+	 * @return int
+	 */
+	public int getTrackedCount() {
+		int count = 0;
+		for (int body = 0; body < BODY_COUNT; body++)
+			if (tracked[body])
+				count++;
+		return count;
+	}
+
+	public float getX(int body, int joint) {
+		return positions[index(body, joint) * 3];
+	}
+
+	public float getY(int body, int joint) {
+		return positions[index(body, joint) * 3 + 1];
+	}
+
+	public float getZ(int body, int joint) {
+		return positions[index(body, joint) * 3 + 2];
+	}
+
+	/**
+	 * Tracking state of a joint, hand state for the hand joints
+	 * @param body 0 - 5
+	 * @param joint JointType
+	 * @return int
+	 */
+	public int getState(int body, int joint) {
+		return states[index(body, joint)];
+	}
+
+	/**
+	 * Left hand state of a body
+	 * @param body 0 - 5
+	 * @return int HandState
+	 */
+	public int getLeftHandState(int body) {
+		return handStates[body * 2];
+	}
+
+	/**
+	 * Right hand state of a body
+	 * @param body 0 - 5
+	 * @return int HandState
+	 */
+	public int getRightHandState(int body) {
+		return handStates[body * 2 + 1];
+	}
+
+	/**
+	 * Memory held by the frame, in bytes
+	 * @return long
+	 */
+	public long getAllocatedBytes() {
+		return (positions.length + orientations.length + raw.length) * 4L
+				+ states.length + tracked.length + handStates.length + trackingIds.length * 8L;
+	}
+}
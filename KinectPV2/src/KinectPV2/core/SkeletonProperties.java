@@ -1,4 +1,4 @@
-package KinectPV2;
+package KinectPV2.core;
 
 /*
 Copyright (C) 2014  Thomas Sanchez Lengeling.
@@ -0,0 +1,112 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+/**
+ * Frame streams produced by the device, with the number of elements and the
+ * element type (Int32, Float or Int16) of a single frame.
+ * The ids must match the FrameStream enum of the native library.
+ */
+public enum Stream implements SkeletonProperties, FaceProperties {
+	COLOR(0, WIDTHColor * HEIGHTColor, Int32),
+	DEPTH(1, WIDTHDepth * HEIGHTDepth, Int32),
+	DEPTH_256(2, WIDTHDepth * HEIGHTDepth, Int32),
+	RAW_DEPTH(3, WIDTHDepth * HEIGHTDepth, Int32),
+	RAW_DEPTH_256(4, WIDTHDepth * HEIGHTDepth, Int32),
+	DEPTH_MASK(5, WIDTHDepth * HEIGHTDepth, Int32),
+	INFRARED(6, WIDTHDepth * HEIGHTDepth, Int32),
+	INFRARED_LONG_EXPOSURE(7, WIDTHDepth * HEIGHTDepth, Int32),
+	BODY_TRACK(8, WIDTHDepth * HEIGHTDepth, Int32),
+	RAW_BODY_TRACK(9, WIDTHDepth * HEIGHTDepth, Int32),
+	BODY_TRACK_IDS(10, BODY_COUNT, Int32),
+	POINT_CLOUD_DEPTH_IMAGE(11, WIDTHDepth * HEIGHTDepth, Int32),
+	SKELETON_3D(12, JOINTSIZE, Float),
+	SKELETON_DEPTH(13, JOINTSIZE, Float),
+	SKELETON_COLOR(14, JOINTSIZE, Float),
+	FACE_COLOR(15, FACESIZE, Float),
+	FACE_INFRARED(16, FACESIZE, Float),
+	HD_FACE(17, HDFaceVertexPoints, Float),
+	POINT_CLOUD_DEPTH(18, WIDTHDepth * HEIGHTDepth * 3, Float),
+	POINT_CLOUD_COLOR(19, WIDTHColor * HEIGHTColor * 3, Float),
+	COLOR_CHANNEL(20, WIDTHColor * HEIGHTColor * 3, Float),
+	MAP_DEPTH_TO_COLOR(21, WIDTHDepth * HEIGHTDepth * 2, Float),
+	RAW_DEPTH_16(22, WIDTHDepth * HEIGHTDepth, Int16);
+
+	final int id;
+	final int length;
+	final int type;
+	final int elementBytes;
+
+	Stream(int id, int length, int type){
+		this.id     = id;
+		this.length = length;
+		this.type   = type;
+		elementBytes = type == Int16 ? 2 : 4;
+	}
+
+	/**
+	 * Id of the stream, shared with the native library and the recordings
+	 * @return int
+	 */
+	public int getId(){
+		return id;
+	}
+
+	/**
+	 * Stream of an id
+	 * @param id int
+	 * @return Stream
+	 */
+	public static Stream fromId(int id){
+		for(Stream stream : values()){
+			if(stream.id == id)
+				return stream;
+		}
+		throw new IllegalArgumentException("unknown stream id " + id);
+	}
+
+	/**
+	 * Number of elements of a single frame
+	 * @return int
+	 */
+	public int getLength(){
+		return length;
+	}
+
+	/**
+	 * Element type of the frame, Int32, Float or Int16
+	 * @return int
+	 */
+	public int getType(){
+		return type;
+	}
+
+	/**
+	 * Size of a single frame in bytes
+	 * @return int
+	 */
+	public int getFrameBytes(){
+		return length * elementBytes;
+	}
+}
@@ -0,0 +1,755 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * FrameSource generating a scene without any sensor, up to 6 bodies
+ * waving their arms in front of a wall and a floor.
+ * Produces depth, infrared, body index, skeleton and face streams in the
+ * same layout as the Kinect v2, the other streams stay empty. Every stream
+ * has its own frame rate and the depth based images can be rendered at a
+ * lower resolution, scaled up to 512 x 424.
+ * Useful to run and measure sketches on machines without a Kinect.
+ */
+public class SyntheticFrameSource implements FrameSource, Runnable, SkeletonProperties, FaceProperties {
+
+	// Kinect v2 like camera intrinsics, camera space in meters
+	public final static float DEPTH_FOCAL = 365.5f;
+	public final static float DEPTH_CX    = 256.0f;
+	public final static float DEPTH_CY    = 212.0f;
+	public final static float COLOR_FOCAL = 1081.4f;
+	public final static float COLOR_CX    = 960.0f;
+	public final static float COLOR_CY    = 540.0f;
+	public final static float COLOR_OFFSET = 0.052f;
+
+	public final static float DEFAULT_FRAME_RATE = 30.0f;
+
+	private final static int   WALL_DEPTH   = 4500;
+	private final static float FLOOR_HEIGHT = -0.95f;
+	private final static int   NO_BODY      = 255;
+	// TrackingId of body 0, the sensor hands out ids of this magnitude
+	private final static long  TRACKING_ID  = 72057594037927936L;
+
+	private final static int [] BODY_COLORS = { 0x0000ff, 0x00ff00, 0xff0000, 0xffff00, 0xff00ff, 0x00ffff };
+
+	// joint positions relative to the spine base, x y z in meters
+	private final static float [] POSE = {
+		 0.00f,  0.00f,  0.00f,	// SpineBase
+		 0.00f,  0.30f,  0.00f,	// SpineMid
+		 0.00f,  0.60f,  0.00f,	// Neck
+		 0.00f,  0.75f, -0.02f,	// Head
+		-0.18f,  0.52f,  0.00f,	// ShoulderLeft
+		-0.20f,  0.25f,  0.00f,	// ElbowLeft
+		-0.22f,  0.02f,  0.00f,	// WristLeft
+		-0.22f, -0.05f,  0.00f,	// HandLeft
+		 0.18f,  0.52f,  0.00f,	// ShoulderRight
+		 0.20f,  0.25f,  0.00f,	// ElbowRight
+		 0.22f,  0.02f,  0.00f,	// WristRight
+		 0.22f, -0.05f,  0.00f,	// HandRight
+		-0.10f, -0.02f,  0.00f,	// HipLeft
+		-0.11f, -0.45f,  0.00f,	// KneeLeft
+		-0.12f, -0.85f,  0.00f,	// AnkleLeft
+		-0.12f, -0.90f, -0.10f,	// FootLeft
+		 0.10f, -0.02f,  0.00f,	// HipRight
+		 0.11f, -0.45f,  0.00f,	// KneeRight
+		 0.12f, -0.85f,  0.00f,	// AnkleRight
+		 0.12f, -0.90f, -0.10f,	// FootRight
+		 0.00f,  0.52f,  0.00f,	// SpineShoulder
+		-0.22f, -0.12f,  0.00f,	// HandTipLeft
+		-0.19f, -0.07f, -0.02f,	// ThumbLeft
+		 0.22f, -0.12f,  0.00f,	// HandTipRight
+		 0.19f, -0.07f, -0.02f,	// ThumbRight
+	};
+
+	// arm joints rotated around their shoulder
+	private final static int [] LEFT_ARM  = { JointType_ElbowLeft, JointType_WristLeft, JointType_HandLeft,
+			JointType_HandTipLeft, JointType_ThumbLeft };
+	private final static int [] RIGHT_ARM = { JointType_ElbowRight, JointType_WristRight, JointType_HandRight,
+			JointType_HandTipRight, JointType_ThumbRight };
+
+	// bones drawn into the depth based images, joint pairs and radius in meters
+	private final static int [] BONES = {
+		JointType_SpineBase, JointType_SpineMid,
+		JointType_SpineMid, JointType_SpineShoulder,
+		JointType_SpineShoulder, JointType_Neck,
+		JointType_Neck, JointType_Head,
+		JointType_SpineShoulder, JointType_ShoulderLeft,
+		JointType_ShoulderLeft, JointType_ElbowLeft,
+		JointType_ElbowLeft, JointType_WristLeft,
+		JointType_WristLeft, JointType_HandTipLeft,
+		JointType_SpineShoulder, JointType_ShoulderRight,
+		JointType_ShoulderRight, JointType_ElbowRight,
+		JointType_ElbowRight, JointType_WristRight,
+		JointType_WristRight, JointType_HandTipRight,
+		JointType_SpineBase, JointType_HipLeft,
+		JointType_HipLeft, JointType_KneeLeft,
+		JointType_KneeLeft, JointType_AnkleLeft,
+		JointType_AnkleLeft, JointType_FootLeft,
+		JointType_SpineBase, JointType_HipRight,
+		JointType_HipRight, JointType_KneeRight,
+		JointType_KneeRight, JointType_AnkleRight,
+		JointType_AnkleRight, JointType_FootRight,
+	};
+	private final static float [] BONE_RADIUS = {
+		0.15f, 0.15f, 0.06f, 0.10f,
+		0.06f, 0.05f, 0.04f, 0.04f,
+		0.06f, 0.05f, 0.04f, 0.04f,
+		0.08f, 0.07f, 0.06f, 0.05f,
+		0.08f, 0.07f, 0.06f, 0.05f,
+	};
+
+	// streams produced by the source
+	private final static Stream [] STREAMS = {
+		Stream.DEPTH, Stream.DEPTH_256, Stream.RAW_DEPTH, Stream.RAW_DEPTH_16, Stream.RAW_DEPTH_256,
+		Stream.INFRARED, Stream.INFRARED_LONG_EXPOSURE,
+		Stream.BODY_TRACK, Stream.BODY_TRACK_IDS, Stream.RAW_BODY_TRACK,
+		Stream.SKELETON_3D, Stream.SKELETON_DEPTH, Stream.SKELETON_COLOR,
+		Stream.FACE_COLOR, Stream.FACE_INFRARED
+	};
+
+	private final AtomicReferenceArray<FrameExchange> exchanges;
+	private final long []  periods;
+	private final long []  nextFrames;
+	private volatile long  enabledStreams;
+
+	private int depthWidth;
+	private int depthHeight;
+	private int bodyCount;
+
+	private int lowThreshold;
+	private int highThreshold;
+
+	private volatile boolean running;
+	private Thread thread;
+	private long   startTime;
+
+	// SCENE of the current frame
+	private final float []   joints;
+	private final int []     handStates;
+	private final float []   headAngles;
+	private int []           sceneDepth;
+	private int []           sceneBody;
+	private int []           columns;
+	private int []           rows;
+	private final int []     bodyIndex;
+	private volatile int     numberOfUsers;
+
+	public SyntheticFrameSource() {
+		int streams = Stream.values().length;
+		exchanges  = new AtomicReferenceArray<FrameExchange>(streams);
+		periods    = new long[streams];
+		nextFrames = new long[streams];
+		setFrameRate(DEFAULT_FRAME_RATE);
+
+		depthWidth  = WIDTHDepth;
+		depthHeight = HEIGHTDepth;
+		bodyCount   = BODY_COUNT;
+
+		lowThreshold  = 0;
+		highThreshold = 8000;
+
+		joints     = new float[BODY_COUNT * JointType_Count * 3];
+		handStates = new int[BODY_COUNT * 2];
+		headAngles = new float[BODY_COUNT * 3];
+		bodyIndex  = new int[WIDTHDepth * HEIGHTDepth];
+	}
+
+	// SETTINGS
+
+	/**
+	 * Set the frame rate of every stream
+	 * @param fps frames per second
+	 */
+	public void setFrameRate(float fps) {
+		for (Stream stream : Stream.values())
+			setFrameRate(stream, fps);
+	}
+
+	/**
+	 * Set the frame rate of a single stream
+	 * @param stream Stream
+	 * @param fps frames per second
+	 */
+	public void setFrameRate(Stream stream, float fps) {
+		if (fps <= 0)
+			throw new IllegalArgumentException("frame rate has to be positive: " + fps);
+		periods[stream.ordinal()] = (long) (1.0E9 / fps);
+	}
+
+	/**
+	 * Get the frame rate of a stream
+	 * @param stream Stream
+	 * @return float
+	 */
+	public float getFrameRate(Stream stream) {
+		return (float) (1.0E9 / periods[stream.ordinal()]);
+	}
+
+	/**
+	 * Set the resolution the depth, infrared and body index images are
+	 * rendered at, scaled up to 512 x 424 in the frames. Call before start()
+	 * @param width 1 - 512
+	 * @param height 1 - 424
+	 */
+	public void setDepthResolution(int width, int height) {
+		if (width < 1 || width > WIDTHDepth || height < 1 || height > HEIGHTDepth)
+			throw new IllegalArgumentException("depth resolution has to be within "
+					+ WIDTHDepth + " x " + HEIGHTDepth + ": " + width + " x " + height);
+		if (running)
+			throw new IllegalStateException("resolution has to be set before start()");
+		depthWidth  = width;
+		depthHeight = height;
+	}
+
+	public int getDepthWidth() {
+		return depthWidth;
+	}
+
+	public int getDepthHeight() {
+		return depthHeight;
+	}
+
+	/**
+	 * Set the number of bodies in the scene
+	 * @param count 0 - 6
+	 */
+	public void setBodyCount(int count) {
+		if (count < 0 || count > BODY_COUNT)
+			throw new IllegalArgumentException("body count has to be within 0 - " + BODY_COUNT + ": " + count);
+		bodyCount = count;
+	}
+
+	public int getBodyCount() {
+		return bodyCount;
+	}
+
+	// FRAME SOURCE
+
+	public boolean start() {
+		if (running)
+			return true;
+		sceneDepth = new int[depthWidth * depthHeight];
+		sceneBody  = new int[depthWidth * depthHeight];
+		columns = new int[WIDTHDepth];
+		for (int x = 0; x < WIDTHDepth; x++)
+			columns[x] = x * depthWidth / WIDTHDepth;
+		rows = new int[HEIGHTDepth];
+		for (int y = 0; y < HEIGHTDepth; y++)
+			rows[y] = y * depthHeight / HEIGHTDepth;
+
+		startTime = System.nanoTime();
+		for (int i = 0; i < nextFrames.length; i++)
+			nextFrames[i] = startTime;
+
+		running = true;
+		thread = new Thread(this, "KinectPV2 SyntheticFrameSource");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	public String getVersion() {
+		return "Synthetic " + depthWidth + " x " + depthHeight + ", " + bodyCount + " bodies";
+	}
+
+	public boolean update() {
+		return running;
+	}
+
+	public void stop() {
+		running = false;
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			thread = null;
+		}
+	}
+
+	public void close() {
+		stop();
+	}
+
+	public void enableStream(Stream stream, boolean toggle) {
+		if (toggle)
+			enabledStreams |= 1L << stream.ordinal();
+		else
+			enabledStreams &= ~(1L << stream.ordinal());
+	}
+
+	public FrameExchange openExchange(Stream stream) {
+		FrameExchange exchange = new FrameExchange(stream);
+		exchanges.set(stream.ordinal(), exchange);
+		return exchange;
+	}
+
+	public void closeExchange(Stream stream) {
+		exchanges.set(stream.ordinal(), null);
+	}
+
+	public void acquireFrames(FrameExchange [] exchanges, int count) {
+		for (int i = 0; i < count; i++)
+			exchanges[i].acquire();
+	}
+
+	public void copyBodyIndexUser(int index, int [] dst) {
+		int color = BODY_COLORS[index];
+		synchronized (bodyIndex) {
+			for (int i = 0; i < bodyIndex.length; i++)
+				dst[i] = bodyIndex[i] == index ? color : 0;
+		}
+	}
+
+	public int getNumberOfUsers() {
+		return numberOfUsers;
+	}
+
+	public void setLowThresholdPC(int val) {
+		lowThreshold = val;
+	}
+
+	public int getLowThresholdPC() {
+		return lowThreshold;
+	}
+
+	public void setHighThresholdPC(int val) {
+		highThreshold = val;
+	}
+
+	public int getHighThresholdPC() {
+		return highThreshold;
+	}
+
+	public float [] mapCameraPointToDepthSpace(float x, float y, float z) {
+		return new float[] { depthX(x, z), depthY(y, z) };
+	}
+
+	public float [] mapCameraPointToColorSpace(float x, float y, float z) {
+		return new float[] { colorX(x, z), colorY(y, z) };
+	}
+
+	public void mapCameraPointsToDepthSpace(float [] src, float [] dst, int count) {
+		for (int i = 0; i < count; i++) {
+			dst[i * 2]     = depthX(src[i * 3], src[i * 3 + 2]);
+			dst[i * 2 + 1] = depthY(src[i * 3 + 1], src[i * 3 + 2]);
+		}
+	}
+
+	public void mapCameraPointsToColorSpace(float [] src, float [] dst, int count) {
+		for (int i = 0; i < count; i++) {
+			dst[i * 2]     = colorX(src[i * 3], src[i * 3 + 2]);
+			dst[i * 2 + 1] = colorY(src[i * 3 + 1], src[i * 3 + 2]);
+		}
+	}
+
+	public void enableCoordinateMapperRGBDepth() {
+	}
+
+	public boolean copyDepthFrameToCameraSpaceTable(float [] dst) {
+		for (int y = 0; y < HEIGHTDepth; y++) {
+			float rayY = (DEPTH_CY - (y + 0.5f)) / DEPTH_FOCAL;
+			for (int x = 0; x < WIDTHDepth; x++) {
+				int i = (y * WIDTHDepth + x) * 2;
+				dst[i]     = (x + 0.5f - DEPTH_CX) / DEPTH_FOCAL;
+				dst[i + 1] = rayY;
+			}
+		}
+		return true;
+	}
+
+	// GENERATOR
+
+	public void run() {
+		while (running) {
+			long now = System.nanoTime();
+			long next = now + 10000000L;
+			boolean sceneReady  = false;
+			boolean imagesReady = false;
+
+			for (Stream stream : STREAMS) {
+				int index = stream.ordinal();
+				if ((enabledStreams & (1L << index)) == 0)
+					continue;
+
+				if (now >= nextFrames[index]) {
+					FrameExchange exchange = exchanges.get(index);
+					if (exchange != null) {
+						if (!sceneReady) {
+							updateScene((now - startTime) / 1.0E9f);
+							sceneReady = true;
+						}
+						if (!imagesReady && stream.type != Float && stream != Stream.BODY_TRACK_IDS) {
+							renderImages();
+							imagesReady = true;
+						}
+						writeFrame(stream, exchange.getWriteBuffer());
+						exchange.publish(now, (now - startTime) / 100);
+					}
+					nextFrames[index] += periods[index];
+					if (nextFrames[index] <= now)
+						nextFrames[index] = now + periods[index];
+				}
+				next = Math.min(next, nextFrames[index]);
+			}
+
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	private void updateScene(float time) {
+		for (int b = 0; b < BODY_COUNT; b++) {
+			float rootX = (b - (bodyCount - 1) * 0.5f) * 0.7f + 0.25f * (float) Math.sin(0.4f * time + b);
+			float rootY = FLOOR_HEIGHT + 0.95f;
+			float rootZ = 2.2f + 0.4f * (b % 2) + 0.3f * (float) Math.sin(0.3f * time + 2 * b);
+			float swing = 0.6f * (1.0f + (float) Math.sin(2.5f * time + b));
+
+			for (int j = 0; j < JointType_Count; j++) {
+				int i = (b * JointType_Count + j) * 3;
+				joints[i + 0] = rootX + POSE[j * 3 + 0];
+				joints[i + 1] = rootY + POSE[j * 3 + 1];
+				joints[i + 2] = rootZ + POSE[j * 3 + 2];
+			}
+			rotateArm(b, JointType_ShoulderLeft, LEFT_ARM, -swing);
+			rotateArm(b, JointType_ShoulderRight, RIGHT_ARM, swing);
+
+			handStates[b * 2 + 0] = ((int) (time + b) % 2 == 0) ? HandState_Open : HandState_Closed;
+			handStates[b * 2 + 1] = ((int) (time + b + 1) % 2 == 0) ? HandState_Open : HandState_Closed;
+
+			headAngles[b * 3 + 0] = 10.0f * (float) Math.sin(0.7f * time + b);
+			headAngles[b * 3 + 1] = 20.0f * (float) Math.sin(0.5f * time + b);
+			headAngles[b * 3 + 2] = 5.0f * (float) Math.sin(0.9f * time + b);
+		}
+		numberOfUsers = bodyCount;
+	}
+
+	private void rotateArm(int body, int shoulder, int [] arm, float angle) {
+		float cos = (float) Math.cos(angle);
+		float sin = (float) Math.sin(angle);
+		int s = (body * JointType_Count + shoulder) * 3;
+		for (int j : arm) {
+			int i = (body * JointType_Count + j) * 3;
+			float dx = joints[i + 0] - joints[s + 0];
+			float dy = joints[i + 1] - joints[s + 1];
+			joints[i + 0] = joints[s + 0] + dx * cos - dy * sin;
+			joints[i + 1] = joints[s + 1] + dx * sin + dy * cos;
+		}
+	}
+
+	// render depth in mm and body index at the image resolution
+	private void renderImages() {
+		float scaleX = depthWidth / (float) WIDTHDepth;
+		float scaleY = depthHeight / (float) HEIGHTDepth;
+
+		for (int y = 0; y < depthHeight; y++) {
+			float rayY = (DEPTH_CY - (y + 0.5f) / scaleY) / DEPTH_FOCAL;
+			int depth = WALL_DEPTH;
+			if (rayY < 0)
+				depth = Math.min(WALL_DEPTH, (int) (FLOOR_HEIGHT / rayY * 1000.0f));
+			int row = y * depthWidth;
+			for (int x = 0; x < depthWidth; x++) {
+				sceneDepth[row + x] = depth;
+				sceneBody[row + x]  = NO_BODY;
+			}
+		}
+
+		for (int b = 0; b < bodyCount; b++) {
+			for (int k = 0; k < BONE_RADIUS.length; k++) {
+				int ja = (b * JointType_Count + BONES[k * 2 + 0]) * 3;
+				int jb = (b * JointType_Count + BONES[k * 2 + 1]) * 3;
+				drawBone(b, joints[ja], joints[ja + 1], joints[ja + 2],
+						joints[jb], joints[jb + 1], joints[jb + 2], BONE_RADIUS[k], scaleX, scaleY);
+			}
+		}
+
+		synchronized (bodyIndex) {
+			for (int y = 0; y < HEIGHTDepth; y++) {
+				int row = rows[y] * depthWidth;
+				for (int x = 0; x < WIDTHDepth; x++)
+					bodyIndex[y * WIDTHDepth + x] = sceneBody[row + columns[x]];
+			}
+		}
+	}
+
+	private void drawBone(int body, float ax, float ay, float az, float bx, float by, float bz,
+			float radius, float scaleX, float scaleY) {
+		float u0 = depthX(ax, az) * scaleX;
+		float v0 = depthY(ay, az) * scaleY;
+		float u1 = depthX(bx, bz) * scaleX;
+		float v1 = depthY(by, bz) * scaleY;
+		float r  = radius * DEPTH_FOCAL * scaleX / Math.min(az, bz);
+
+		int minX = Math.max(0, (int) (Math.min(u0, u1) - r));
+		int maxX = Math.min(depthWidth - 1, (int) (Math.max(u0, u1) + r));
+		int minY = Math.max(0, (int) (Math.min(v0, v1) - r));
+		int maxY = Math.min(depthHeight - 1, (int) (Math.max(v0, v1) + r));
+
+		float du = u1 - u0;
+		float dv = v1 - v0;
+		float length = du * du + dv * dv;
+		float r2 = r * r;
+
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				float px = x + 0.5f - u0;
+				float py = y + 0.5f - v0;
+				float t  = length > 0 ? Math.max(0, Math.min(1, (px * du + py * dv) / length)) : 0;
+				float ex = px - t * du;
+				float ey = py - t * dv;
+				float d2 = ex * ex + ey * ey;
+				if (d2 > r2)
+					continue;
+				// round surface, closer at the center of the bone
+				int depth = (int) ((az + t * (bz - az) - radius * (float) Math.sqrt(1 - d2 / r2)) * 1000.0f);
+				int index = y * depthWidth + x;
+				if (depth < sceneDepth[index]) {
+					sceneDepth[index] = depth;
+					sceneBody[index]  = body;
+				}
+			}
+		}
+	}
+
+	private void writeFrame(Stream stream, FrameBuffer frame) {
+		switch (stream) {
+		case BODY_TRACK_IDS: {
+			IntBuffer ids = frame.asIntBuffer();
+			for (int b = 0; b < BODY_COUNT; b++)
+				ids.put(b, b < bodyCount ? 1 : 0);
+			break;
+		}
+		case SKELETON_3D:
+		case SKELETON_DEPTH:
+		case SKELETON_COLOR:
+			writeSkeleton(stream, frame.asFloatBuffer());
+			break;
+		case FACE_COLOR:
+		case FACE_INFRARED:
+			writeFace(stream, frame.asFloatBuffer());
+			break;
+		case RAW_DEPTH_16: {
+			ShortBuffer dst = frame.asShortBuffer();
+			for (int y = 0; y < HEIGHTDepth; y++) {
+				int row = rows[y] * depthWidth;
+				for (int x = 0; x < WIDTHDepth; x++)
+					dst.put(y * WIDTHDepth + x, (short) sceneDepth[row + columns[x]]);
+			}
+			break;
+		}
+		default:
+			writeImage(stream, frame.asIntBuffer());
+			break;
+		}
+	}
+
+	private void writeImage(Stream stream, IntBuffer dst) {
+		for (int y = 0; y < HEIGHTDepth; y++) {
+			int row = rows[y] * depthWidth;
+			for (int x = 0; x < WIDTHDepth; x++) {
+				int depth = sceneDepth[row + columns[x]];
+				int body  = sceneBody[row + columns[x]];
+				int value;
+				switch (stream) {
+				case RAW_DEPTH:
+					value = depth;
+					break;
+				case DEPTH:
+					value = colorByte2Int((int) (depth * 0.056666f));
+					break;
+				case RAW_DEPTH_256:
+					value = depth256(depth);
+					break;
+				case DEPTH_256:
+					value = colorByte2Int(depth256(depth));
+					break;
+				case INFRARED:
+				case INFRARED_LONG_EXPOSURE:
+					value = colorByte2Int(infrared(depth, body));
+					break;
+				case RAW_BODY_TRACK:
+					value = body;
+					break;
+				default:
+					value = colorByte2Int(body);
+					break;
+				}
+				dst.put(y * WIDTHDepth + x, value);
+			}
+		}
+	}
+
+	private void writeSkeleton(Stream stream, FloatBuffer dst) {
+		int bodySize = (JointType_Count + 1) * 9;
+		for (int b = 0; b < BODY_COUNT; b++) {
+			int base = b * bodySize;
+			if (b >= bodyCount) {
+				for (int i = 0; i < bodySize; i++)
+					dst.put(base + i, 0);
+				dst.put(base + bodySize - 1, -1.0f);
+				continue;
+			}
+			for (int j = 0; j < JointType_Count; j++) {
+				int i = (b * JointType_Count + j) * 3;
+				float x = joints[i + 0];
+				float y = joints[i + 1];
+				float z = joints[i + 2];
+				int index = base + j * 9;
+				if (stream == Stream.SKELETON_DEPTH) {
+					dst.put(index + 0, depthX(x, z));
+					dst.put(index + 1, depthY(y, z));
+					dst.put(index + 2, 0);
+				} else if (stream == Stream.SKELETON_COLOR) {
+					dst.put(index + 0, colorX(x, z));
+					dst.put(index + 1, colorY(y, z));
+					dst.put(index + 2, 0);
+				} else {
+					dst.put(index + 0, x);
+					dst.put(index + 1, y);
+					dst.put(index + 2, z);
+				}
+				dst.put(index + 3, 1.0f);
+				dst.put(index + 4, 0);
+				dst.put(index + 5, 0);
+				dst.put(index + 6, 0);
+
+				int state = TrackingState_Tracked;
+				if (j == JointType_HandLeft)
+					state = handStates[b * 2 + 0];
+				else if (j == JointType_HandRight)
+					state = handStates[b * 2 + 1];
+				dst.put(index + 7, state);
+				dst.put(index + 8, j);
+			}
+			// TrackingId in the bits of the first two floats after the joints
+			long trackingId = TRACKING_ID + b;
+			dst.put(base + JointType_Count * 9, java.lang.Float.intBitsToFloat((int) trackingId));
+			dst.put(base + JointType_Count * 9 + 1, java.lang.Float.intBitsToFloat((int) (trackingId >>> 32)));
+			dst.put(base + bodySize - 1, 1.0f);
+		}
+	}
+
+	private void writeFace(Stream stream, FloatBuffer dst) {
+		boolean color = stream == Stream.FACE_COLOR;
+		for (int b = 0; b < BODY_COUNT; b++) {
+			int base = b * 36;
+			if (b >= bodyCount) {
+				for (int i = 0; i < 36; i++)
+					dst.put(base + i, 0);
+				continue;
+			}
+			int head = (b * JointType_Count + JointType_Head) * 3;
+			float hx = joints[head + 0];
+			float hy = joints[head + 1];
+			float hz = joints[head + 2];
+
+			// eyes, nose and mouth corners
+			writeFacePoint(dst, base + Face_LeftEye * 2, hx - 0.03f, hy + 0.03f, hz - 0.08f, color);
+			writeFacePoint(dst, base + Face_RightEye * 2, hx + 0.03f, hy + 0.03f, hz - 0.08f, color);
+			writeFacePoint(dst, base + Face_Nose * 2, hx, hy, hz - 0.10f, color);
+			writeFacePoint(dst, base + Face_LeftMouth * 2, hx - 0.025f, hy - 0.04f, hz - 0.08f, color);
+			writeFacePoint(dst, base + Face_RightMouth * 2, hx + 0.025f, hy - 0.04f, hz - 0.08f, color);
+			for (int i = 10; i < 20; i++)
+				dst.put(base + i, 0);
+
+			float left   = color ? colorX(hx - 0.1f, hz) : depthX(hx - 0.1f, hz);
+			float top    = color ? colorY(hy + 0.12f, hz) : depthY(hy + 0.12f, hz);
+			float right  = color ? colorX(hx + 0.1f, hz) : depthX(hx + 0.1f, hz);
+			float bottom = color ? colorY(hy - 0.12f, hz) : depthY(hy - 0.12f, hz);
+			dst.put(base + 20, left);
+			dst.put(base + 21, top);
+			dst.put(base + 22, right - left);
+			dst.put(base + 23, bottom - top);
+
+			dst.put(base + 24, headAngles[b * 3 + 0]);
+			dst.put(base + 25, headAngles[b * 3 + 1]);
+			dst.put(base + 26, headAngles[b * 3 + 2]);
+
+			int happy = handStates[b * 2] == HandState_Open ? DetectionResult_Yes : DetectionResult_No;
+			dst.put(base + 27 + FaceProperty_Happy, happy);
+			dst.put(base + 27 + FaceProperty_Engaged, DetectionResult_Yes);
+			dst.put(base + 27 + FaceProperty_LeftEyeClosed, DetectionResult_No);
+			dst.put(base + 27 + FaceProperty_RightEyeClosed, DetectionResult_No);
+			dst.put(base + 27 + FaceProperty_LookingAway, DetectionResult_No);
+			dst.put(base + 27 + FaceProperty_MouthMoved, DetectionResult_Yes);
+			dst.put(base + 27 + FaceProperty_MouthOpen, DetectionResult_No);
+			dst.put(base + 27 + FaceProperty_WearingGlasses, DetectionResult_No);
+			dst.put(base + 35, 1.0f);
+		}
+	}
+
+	private void writeFacePoint(FloatBuffer dst, int index, float x, float y, float z, boolean color) {
+		dst.put(index + 0, color ? colorX(x, z) : depthX(x, z));
+		dst.put(index + 1, color ? colorY(y, z) : depthY(y, z));
+	}
+
+	// PROJECTIONS
+
+	private static float depthX(float x, float z) {
+		return DEPTH_CX + DEPTH_FOCAL * x / z;
+	}
+
+	private static float depthY(float y, float z) {
+		return DEPTH_CY - DEPTH_FOCAL * y / z;
+	}
+
+	private static float colorX(float x, float z) {
+		return COLOR_CX + COLOR_FOCAL * (x - COLOR_OFFSET) / z;
+	}
+
+	private static float colorY(float y, float z) {
+		return COLOR_CY - COLOR_FOCAL * y / z;
+	}
+
+	// same encodings as the native device
+
+	private static int depth256(int depth) {
+		return (depth >= 500 && depth <= 4500) ? depth % 256 : 0;
+	}
+
+	private static int infrared(int depth, int body) {
+		int intensity = 255 - depth * 255 / 6000;
+		if (body != NO_BODY)
+			intensity += 40;
+		return Math.max(0, Math.min(255, intensity));
+	}
+
+	private static int colorByte2Int(int gray) {
+		gray = gray & 0xffff;
+		return 0xff000000 | (gray << 16) | (gray << 8) | gray;
+	}
+}
@@ -0,0 +1,118 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+/**
+ * Stable handle of a user, kept by a UserTracker while the user stays in view
+ * even when the body slot of the user changes. The body slot indexes the
+ * skeletons, the body track users and the face data of the same frame.
+ */
+public class TrackedUser {
+
+	private final int  id;
+	private final long enterTime;
+
+	int   body;
+	long  trackingId;
+	long  lastSeen;
+	float x;
+	float y;
+	float z;
+
+	TrackedUser(int id, int body, long time) {
+		this.id   = id;
+		this.body = body;
+		enterTime = time;
+		lastSeen  = time;
+	}
+
+	/**
+	 * Id of the user, never reused by the UserTracker
+	 * @return int
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Current body slot of the user, -1 while the user is lost
+	 * @return int 0 - 5 or -1
+	 */
+	public int getBody() {
+		return body;
+	}
+
+	/**
+	 * Last TrackingId the sensor gave the body of the user, it changes when
+	 * the body is acquired again after being lost
+	 * @return long
+	 */
+	public long getTrackingId() {
+		return trackingId;
+	}
+
+	/**
+	 * Check if the user is in the last skeleton frame
+	 * @return boolean
+	 */
+	public boolean isTracked() {
+		return body != -1;
+	}
+
+	/**
+	 * Capture time of the frame the user entered, System.nanoTime()
+	 * @return long
+	 */
+	public long getEnterTime() {
+		return enterTime;
+	}
+
+	/**
+	 * Capture time of the last frame with the user, System.nanoTime()
+	 * @return long
+	 */
+	public long getLastSeen() {
+		return lastSeen;
+	}
+
+	/**
+	 * Last SpineMid position of the user, in meters
+	 */
+	public float getX() {
+		return x;
+	}
+
+	public float getY() {
+		return y;
+	}
+
+	public float getZ() {
+		return z;
+	}
+
+	@Override
+	public String toString() {
+		return "user " + id + (body == -1 ? " lost" : " body " + body);
+	}
+}
@@ -0,0 +1,303 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Stable user handles over the 3d skeleton stream. The tracked bodies of each
+ * new frame are matched to the known users by the TrackingId of the sensor,
+ * then the bodies acquired again under a new TrackingId by the distance of
+ * their SpineMid joint, cheapest pairs first, over at most BODY_COUNT x users
+ * pairs, so a user keeps the same TrackedUser when the body slots are
+ * reshuffled or the body is lost for less than the leave delay. Enter and
+ * leave listeners are called from update.
+ */
+public class UserTracker implements SkeletonProperties {
+
+	public final static long  DEFAULT_LEAVE_DELAY  = 500000000L;
+	public final static float DEFAULT_MAX_DISTANCE = 0.5f;
+
+	// a body in the slot the user had in the previous frame is most likely the same user
+	private final static float SAME_SLOT_WEIGHT = 0.25f;
+
+	private final static int CAPACITY = BODY_COUNT * 2;
+
+	private final TrackedUser[] users;
+	private final TrackedUser[] bodies;
+	private int userCount;
+	private int nextId = 1;
+
+	// candidate pairs, sorted by cost
+	private final float[]   pairCost;
+	private final int[]     pairUser;
+	private final int[]     pairBody;
+	private final boolean[] userMatched;
+	private final boolean[] bodyMatched;
+
+	private final CopyOnWriteArrayList<Consumer<TrackedUser>> enterListeners;
+	private final CopyOnWriteArrayList<Consumer<TrackedUser>> leaveListeners;
+
+	private long  leaveDelay  = DEFAULT_LEAVE_DELAY;
+	private float maxDistance = DEFAULT_MAX_DISTANCE;
+	private long  sequence;
+
+	public UserTracker() {
+		users       = new TrackedUser[CAPACITY];
+		bodies      = new TrackedUser[BODY_COUNT];
+		pairCost    = new float[CAPACITY * BODY_COUNT];
+		pairUser    = new int[CAPACITY * BODY_COUNT];
+		pairBody    = new int[CAPACITY * BODY_COUNT];
+		userMatched = new boolean[CAPACITY];
+		bodyMatched = new boolean[BODY_COUNT];
+		enterListeners = new CopyOnWriteArrayList<Consumer<TrackedUser>>();
+		leaveListeners = new CopyOnWriteArrayList<Consumer<TrackedUser>>();
+	}
+
+	/**
+	 * Match the bodies of a new 3d skeleton frame to the users, nothing is done
+	 * if the frame was already matched
+	 * @param frame SkeletonFrame of SKELETON_3D, ex. KinectCore.getSkeleton3dFrame()
+	 * @return true if the frame was matched
+	 */
+	public boolean update(SkeletonFrame frame) {
+		if (frame.getStream() != Stream.SKELETON_3D)
+			throw new IllegalArgumentException(frame.getStream() + " is not the 3d skeleton stream");
+		if (frame.getSequence() == sequence)
+			return false;
+		sequence = frame.getSequence();
+		long time = frame.getTimestamp();
+		float[] positions = frame.getPositions();
+
+		Arrays.fill(userMatched, false);
+		Arrays.fill(bodyMatched, false);
+		Arrays.fill(bodies, null);
+
+		// the same TrackingId is the same user
+		for (int body = 0; body < BODY_COUNT; body++) {
+			long trackingId = frame.getTrackingId(body);
+			if (!frame.isTracked(body) || trackingId == 0)
+				continue;
+			for (int u = 0; u < userCount; u++) {
+				if (!userMatched[u] && users[u].trackingId == trackingId) {
+					userMatched[u]    = true;
+					bodyMatched[body] = true;
+					track(users[u], body, frame, time);
+					break;
+				}
+			}
+		}
+
+		// pairs within the max distance of the bodies left
+		int pairs = 0;
+		for (int u = 0; u < userCount; u++) {
+			if (userMatched[u])
+				continue;
+			TrackedUser user = users[u];
+			for (int body = 0; body < BODY_COUNT; body++) {
+				if (!frame.isTracked(body) || bodyMatched[body])
+					continue;
+				int p = SkeletonFrame.index(body, JointType_SpineMid) * 3;
+				float dx = positions[p] - user.x;
+				float dy = positions[p + 1] - user.y;
+				float dz = positions[p + 2] - user.z;
+				float cost = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+				if (cost > maxDistance)
+					continue;
+				if (user.body == body)
+					cost *= SAME_SLOT_WEIGHT;
+				// insertion into the sorted pairs
+				int i = pairs++;
+				while (i > 0 && pairCost[i - 1] > cost) {
+					pairCost[i] = pairCost[i - 1];
+					pairUser[i] = pairUser[i - 1];
+					pairBody[i] = pairBody[i - 1];
+					i--;
+				}
+				pairCost[i] = cost;
+				pairUser[i] = u;
+				pairBody[i] = body;
+			}
+		}
+
+		// cheapest pairs first
+		for (int i = 0; i < pairs; i++) {
+			int u    = pairUser[i];
+			int body = pairBody[i];
+			if (userMatched[u] || bodyMatched[body])
+				continue;
+			userMatched[u]    = true;
+			bodyMatched[body] = true;
+			track(users[u], body, frame, time);
+		}
+
+		// lost users leave after the leave delay
+		for (int u = userCount - 1; u >= 0; u--) {
+			if (userMatched[u])
+				continue;
+			TrackedUser user = users[u];
+			user.body = -1;
+			if (time - user.lastSeen > leaveDelay)
+				remove(u);
+		}
+
+		// new users
+		for (int body = 0; body < BODY_COUNT; body++) {
+			if (!frame.isTracked(body) || bodyMatched[body])
+				continue;
+			if (userCount == CAPACITY)
+				remove(oldestLost());
+			TrackedUser user = new TrackedUser(nextId++, body, time);
+			users[userCount++] = user;
+			track(user, body, frame, time);
+			for (Consumer<TrackedUser> listener : enterListeners)
+				listener.accept(user);
+		}
+		return true;
+	}
+
+	private void track(TrackedUser user, int body, SkeletonFrame frame, long time) {
+		float[] positions = frame.getPositions();
+		int p = SkeletonFrame.index(body, JointType_SpineMid) * 3;
+		user.body       = body;
+		user.trackingId = frame.getTrackingId(body);
+		user.lastSeen   = time;
+		user.x = positions[p];
+		user.y = positions[p + 1];
+		user.z = positions[p + 2];
+		bodies[body] = user;
+	}
+
+	private void remove(int u) {
+		TrackedUser user = users[u];
+		user.body = -1;
+		users[u] = users[--userCount];
+		users[userCount] = null;
+		for (Consumer<TrackedUser> listener : leaveListeners)
+			listener.accept(user);
+	}
+
+	// there are at most BODY_COUNT tracked users, the rest of a full tracker is lost
+	private int oldestLost() {
+		int oldest = -1;
+		for (int u = 0; u < userCount; u++)
+			if (users[u].body == -1 && (oldest == -1 || users[u].lastSeen < users[oldest].lastSeen))
+				oldest = u;
+		return oldest;
+	}
+
+	/**
+	 * User in a body slot of the last frame
+	 * @param body 0 - 5
+	 * @return TrackedUser or null
+	 */
+	public TrackedUser getUser(int body) {
+		return bodies[body];
+	}
+
+	/**
+	 * Known user by id, tracked or lost
+	 * @param id TrackedUser.getId()
+	 * @return TrackedUser or null
+	 */
+	public TrackedUser getUserById(int id) {
+		for (int u = 0; u < userCount; u++)
+			if (users[u].getId() == id)
+				return users[u];
+		return null;
+	}
+
+	/**
+	 * Number of known users, tracked or lost
+	 * @return int
+	 */
+	public int getUserCount() {
+		return userCount;
+	}
+
+	/**
+	 * Known user, tracked or lost
+	 * @param index 0 - getUserCount()
+	 * @return TrackedUser
+	 */
+	public TrackedUser getKnownUser(int index) {
+		if (index >= userCount)
+			throw new IndexOutOfBoundsException("user " + index + " of " + userCount);
+		return users[index];
+	}
+
+	/**
+	 * Call listener with every user that enters
+	 * @param listener Consumer of TrackedUser
+	 */
+	public void addEnterListener(Consumer<TrackedUser> listener) {
+		enterListeners.add(listener);
+	}
+
+	public boolean removeEnterListener(Consumer<TrackedUser> listener) {
+		return enterListeners.remove(listener);
+	}
+
+	/**
+	 * Call listener with every user that leaves, lost for longer than the leave delay
+	 * @param listener Consumer of TrackedUser
+	 */
+	public void addLeaveListener(Consumer<TrackedUser> listener) {
+		leaveListeners.add(listener);
+	}
+
+	public boolean removeLeaveListener(Consumer<TrackedUser> listener) {
+		return leaveListeners.remove(listener);
+	}
+
+	/**
+	 * Time a lost user keeps its handle, to come back in another body slot
+	 * @param nanos nanoseconds, default DEFAULT_LEAVE_DELAY
+	 */
+	public void setLeaveDelay(long nanos) {
+		if (nanos < 0)
+			throw new IllegalArgumentException("leave delay " + nanos);
+		leaveDelay = nanos;
+	}
+
+	public long getLeaveDelay() {
+		return leaveDelay;
+	}
+
+	/**
+	 * Max distance between the last position of a user and a body of the same user
+	 * @param meters default DEFAULT_MAX_DISTANCE
+	 */
+	public void setMaxDistance(float meters) {
+		if (meters <= 0)
+			throw new IllegalArgumentException("max distance " + meters);
+		maxDistance = meters;
+	}
+
+	public float getMaxDistance() {
+		return maxDistance;
+	}
+}
@@ -0,0 +1,425 @@
+package KinectPV2.core;
+
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+KinectPV2, Kinect for Windows v2 library for processing
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Voxel grid downsampling of point clouds, every cubic cell of the grid
+ * holding points becomes the centroid of its points, with their average
+ * color when the points have colors.
+ * The cloud is split into bands of image rows bucketed in parallel on a
+ * ForkJoinPool, each band into its own open addressing hash of the packed
+ * cell coordinates, then the bands are merged. The centroids are written
+ * into a buffer owned by the grid and reused every frame.
+ * A grid filters one cloud at a time, use one per thread.
+ */
+public class VoxelGrid implements Constants {
+
+	/**
+	 * Default cell size in meters
+	 */
+	public final static float DEFAULT_VOXEL_SIZE = 0.02f;
+
+	/**
+	 * Default number of rows of 512 points per band
+	 */
+	public final static int DEFAULT_BAND_ROWS = 53;
+
+	// cell coordinates in 21 bits each
+	private final static int  CELL_BITS   = 21;
+	private final static int  CELL_OFFSET = 1 << (CELL_BITS - 1);
+	private final static long EMPTY       = -1L;
+
+	private final BandRunner runner;
+	private final BandRunner.IntBiConsumer bucket = this::bucket;
+
+
+	private float voxelSize = DEFAULT_VOXEL_SIZE;
+	private int   minPoints = 1;
+
+	// one hash per band, merged into cells
+	private Cells[] bands = new Cells[0];
+	private final Cells cells = new Cells();
+
+	// OUTPUT, x, y, z and ARGB per voxel
+	private FloatBuffer points;
+	private int[]       colors;
+	private int         voxelCount;
+
+	// arguments of the running filter
+	private FloatBuffer source;
+	private int[]       sourceColors;
+	private int         count;
+	private int         bandPoints;
+	private float       invSize;
+
+	/**
+	 * Grid running on the common ForkJoinPool
+	 */
+	public VoxelGrid() {
+		runner = new BandRunner(DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Grid running on its own pool, 1 filters on the calling thread
+	 * @param parallelism number of worker threads
+	 */
+	public VoxelGrid(int parallelism) {
+		runner = new BandRunner(parallelism, DEFAULT_BAND_ROWS);
+	}
+
+	/**
+	 * Number of threads filtering a cloud
+	 * @return int
+	 */
+	public int getParallelism() {
+		return runner.getParallelism();
+	}
+
+	/**
+	 * Rows of 512 points bucketed by a single task
+	 * @param rows at least 1
+	 */
+	public void setBandRows(int rows) {
+		runner.setBandRows(rows);
+	}
+
+	public int getBandRows() {
+		return runner.getBandRows();
+	}
+
+	/**
+	 * Edge of the cubic cells
+	 * @param size in meters, ex. 0.01 for 1 cm
+	 */
+	public void setVoxelSize(float size) {
+		if (!(size > 0))
+			throw new IllegalArgumentException("voxel size must be positive, got " + size);
+		voxelSize = size;
+	}
+
+	public float getVoxelSize() {
+		return voxelSize;
+	}
+
+	/**
+	 * Cells with fewer points are dropped, to remove isolated noise
+	 * @param points at least 1
+	 */
+	public void setMinPoints(int points) {
+		if (points < 1)
+			throw new IllegalArgumentException("min points must be at least 1, got " + points);
+		minPoints = points;
+	}
+
+	public int getMinPoints() {
+		return minPoints;
+	}
+
+	// FILTER
+
+	/**
+	 * Downsample count points x, y, z, points with a depth z of 0 are skipped
+	 * as the pixels without depth of the point clouds
+	 * @param src FloatBuffer of at least count x 3, ex. KinectCore.getPointCloudDepthPos()
+	 * @param count number of points, ex. 512 x 424
+	 * @return number of voxels
+	 */
+	public int filter(FloatBuffer src, int count) {
+		return filter(src, null, count);
+	}
+
+	/**
+	 * Downsample count points x, y, z with an ARGB color each, points with
+	 * a depth z of 0 are skipped, colors of 0 are not averaged
+	 * @param src FloatBuffer of at least count x 3
+	 * @param colors int array of at least count, ex. Registration.colorAtDepth()
+	 * @param count number of points
+	 * @return number of voxels
+	 */
+	public int filter(FloatBuffer src, int[] colors, int count) {
+		if (count < 0 || src.capacity() < count * 3)
+			throw new IllegalArgumentException("source needs " + count * 3
+					+ " floats, has " + src.capacity());
+		if (colors != null && colors.length < count)
+			throw new IllegalArgumentException("colors needs " + count
+					+ " values, has " + colors.length);
+		// a single band on a single thread, nothing to merge
+		bandPoints = getParallelism() == 1 ? Math.max(count, 1) : runner.getBandRows() * WIDTHDepth;
+		int bandCount = Math.max((count + bandPoints - 1) / bandPoints, 1);
+		if (bands.length < bandCount) {
+			Cells[] grown = new Cells[bandCount];
+			System.arraycopy(bands, 0, grown, 0, bands.length);
+			for (int i = bands.length; i < bandCount; i++)
+				grown[i] = new Cells();
+			bands = grown;
+		}
+		source = src;
+		sourceColors = colors;
+		this.count = count;
+		invSize = 1.0f / voxelSize;
+
+		// every task buckets a single band
+		runner.run(bandCount, 1, bucket);
+
+		if (bandCount == 1) {
+			write(bands[0], colors != null);
+		} else {
+			cells.clear();
+			for (int b = 0; b < bandCount; b++)
+				cells.merge(bands[b]);
+			write(cells, colors != null);
+		}
+
+		source = null;
+		sourceColors = null;
+		return voxelCount;
+	}
+
+	/**
+	 * Centroids of the last filter, x, y, z per voxel, reused by the next filter
+	 * @return direct FloatBuffer, rewound, limited to the voxels
+	 */
+	public FloatBuffer getPoints() {
+		if (points == null)
+			points = newBuffer(0);
+		points.rewind();
+		points.limit(voxelCount * 3);
+		return points;
+	}
+
+	/**
+	 * Average ARGB colors of the last filter with colors, 0 for voxels without colored points
+	 * @return int array of at least getVoxelCount(), reused by the next filter
+	 */
+	public int[] getColors() {
+		if (colors == null)
+			colors = new int[0];
+		return colors;
+	}
+
+	public int getVoxelCount() {
+		return voxelCount;
+	}
+
+	/**
+	 * Shut down the worker threads of a grid created with its own pool
+	 */
+	public void close() {
+		runner.close();
+	}
+
+	private void write(Cells c, boolean colored) {
+		float[] d = c.data;
+		int n = 0;
+		for (int o = 3; o < c.size * Cells.STRIDE; o += Cells.STRIDE)
+			if (d[o] >= minPoints)
+				n++;
+		if (points == null || points.capacity() < n * 3)
+			points = newBuffer(Math.max(n, count / 8) * 3);
+		if (colored && (colors == null || colors.length < n))
+			colors = new int[Math.max(n, count / 8)];
+		points.clear();
+		int v = 0;
+		for (int o = 0; o < c.size * Cells.STRIDE; o += Cells.STRIDE) {
+			float k = d[o + 3];
+			if (k < minPoints)
+				continue;
+			float inv = 1.0f / k;
+			points.put(v * 3, d[o] * inv);
+			points.put(v * 3 + 1, d[o + 1] * inv);
+			points.put(v * 3 + 2, d[o + 2] * inv);
+			if (colored) {
+				float kc = d[o + 7];
+				colors[v] = kc == 0 ? 0 : 0xff000000
+						| Math.round(d[o + 4] / kc) << 16
+						| Math.round(d[o + 5] / kc) << 8
+						| Math.round(d[o + 6] / kc);
+			}
+			v++;
+		}
+		voxelCount = n;
+		points.limit(n * 3);
+	}
+
+	private static FloatBuffer newBuffer(int length) {
+		return ByteBuffer.allocateDirect(length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	private void bucket(int bandStart, int bandEnd) {
+		for (int b = bandStart; b < bandEnd; b++)
+			bucket(b);
+	}
+
+	private void bucket(int band) {
+		FloatBuffer src = source;
+		int[] rgb = sourceColors;
+		float inv = invSize;
+		Cells c = bands[band];
+		c.clear();
+		// neighbouring pixels mostly fall in the same cell
+		long lastKey = EMPTY;
+		int  lastOffset = 0;
+		int from = band * bandPoints;
+		int to   = Math.min(from + bandPoints, count);
+		for (int i = from; i < to; i++) {
+			float x = src.get(i * 3);
+			float y = src.get(i * 3 + 1);
+			float z = src.get(i * 3 + 2);
+			if (!(z > 0))
+				continue;
+			long key = key(x * inv, y * inv, z * inv);
+			if (key == EMPTY)
+				continue;
+			if (key != lastKey) {
+				lastOffset = c.offset(key);
+				lastKey = key;
+			}
+			c.add(lastOffset, x, y, z, rgb != null ? rgb[i] : 0);
+		}
+	}
+
+	// packed cell coordinates, EMPTY out of the 21 bit range or for NaN
+	private static long key(float x, float y, float z) {
+		if (!(Math.abs(x) < CELL_OFFSET && Math.abs(y) < CELL_OFFSET && z < CELL_OFFSET))
+			return EMPTY;
+		return (long) (floor(x) + CELL_OFFSET) << (CELL_BITS * 2)
+				| (long) (floor(y) + CELL_OFFSET) << CELL_BITS
+				| (long) (floor(z) + CELL_OFFSET);
+	}
+
+	private static int floor(float v) {
+		int i = (int) v;
+		return v < i ? i - 1 : i;
+	}
+
+	// HASH of the cells, linear probing on the keys, sums stored densely in
+	// the order the cells are met so new cells are appended. Sums x, y, z,
+	// point count, red, green, blue and colored count of a cell are
+	// contiguous, counts as floats are exact up to 2^24 points
+	private static final class Cells {
+		final static int STRIDE = 8;
+
+		long[]  keys;
+		int[]   cells;
+		float[] data;
+		int     size;
+		int     mask;
+
+		Cells() {
+			allocate(1 << 12);
+			data = new float[(1 << 11) * STRIDE];
+		}
+
+		private void allocate(int capacity) {
+			keys = new long[capacity];
+			Arrays.fill(keys, EMPTY);
+			cells = new int[capacity];
+			mask = capacity - 1;
+		}
+
+		void clear() {
+			if (size > 0)
+				Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+
+		private int hash(long key) {
+			long h = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+			h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+			return (int) (h ^ (h >>> 33)) & mask;
+		}
+
+		// offset of the sums of a key, appended with zero sums when new
+		int offset(long key) {
+			int slot = hash(key);
+			long k;
+			while ((k = keys[slot]) != key) {
+				if (k == EMPTY) {
+					if (size + 1 > (mask + 1) >> 1) {
+						grow();
+						return offset(key);
+					}
+					int o = size * STRIDE;
+					if (o + STRIDE > data.length)
+						data = Arrays.copyOf(data, data.length * 2);
+					Arrays.fill(data, o, o + STRIDE, 0);
+					keys[slot] = key;
+					cells[slot] = size++;
+					return o;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return cells[slot] * STRIDE;
+		}
+
+		void add(int o, float x, float y, float z, int argb) {
+			float[] d = data;
+			d[o]     += x;
+			d[o + 1] += y;
+			d[o + 2] += z;
+			d[o + 3] += 1;
+			if (argb != 0) {
+				d[o + 4] += (argb >> 16) & 0xff;
+				d[o + 5] += (argb >> 8) & 0xff;
+				d[o + 6] += argb & 0xff;
+				d[o + 7] += 1;
+			}
+		}
+
+		void merge(Cells band) {
+			float[] src = band.data;
+			for (int slot = 0; slot <= band.mask; slot++) {
+				long key = band.keys[slot];
+				if (key == EMPTY)
+					continue;
+				int o = offset(key);
+				int f = band.cells[slot] * STRIDE;
+				for (int c = 0; c < STRIDE; c++)
+					data[o + c] += src[f + c];
+			}
+		}
+
+		// rehash the keys into twice the slots, the sums stay in place
+		private void grow() {
+			long[] oldKeys = keys;
+			int[]  oldCells = cells;
+			allocate(keys.length * 2);
+			for (int slot = 0; slot < oldKeys.length; slot++) {
+				long key = oldKeys[slot];
+				if (key == EMPTY)
+					continue;
+				int s = hash(key);
+				while (keys[s] != EMPTY)
+					s = (s + 1) & mask;
+				keys[s] = key;
+				cells[s] = oldCells[slot];
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.IntBuffer;
+
+import KinectPV2.core.ColorConverter;
+import KinectPV2.core.KinectCore;
+import KinectPV2.core.Stream;
+import KinectPV2.core.SyntheticFrameSource;
+
+/*
+ * Headless check that the getters filling caller storage allocate nothing
+ * once warmed up: the bytes allocated by the calling thread are read with
+ * com.sun.management.ThreadMXBean around a loop of frames from the
+ * synthetic source. The synthetic source has no color stream, the color
+ * getters still convert the empty color frame.
+ */
+public class AllocationTest {
+
+	public static void main(String[] args) throws InterruptedException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		KinectCore kinect = new KinectCore(new SyntheticFrameSource());
+		kinect.enableDepthImg(true);
+		kinect.enableColorImg(true);
+		// the color frames converted on this thread
+		kinect.setColorConverter(new ColorConverter(1));
+		kinect.start();
+
+		int[] depth = new int[Stream.RAW_DEPTH.getLength()];
+		int[] color = new int[1920 * 1080];
+		IntBuffer depthBuffer = IntBuffer.allocate(Stream.RAW_DEPTH.getLength());
+
+		// warm up until the methods are compiled
+		for (int i = 0; i < 2000; i++) {
+			frame(kinect, depth, color, depthBuffer);
+			if (i % 100 == 0)
+				Thread.sleep(10);
+		}
+
+		// a new synthetic frame about every 33 ms
+		int frames = 100;
+		long first = kinect.getFrameInfo(Stream.RAW_DEPTH).getSequence();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < frames; i++) {
+			frame(kinect, depth, color, depthBuffer);
+			Thread.sleep(33);
+		}
+		long bytes = threads.getThreadAllocatedBytes(thread) - before;
+		long captured = kinect.getFrameInfo(Stream.RAW_DEPTH).getSequence() - first;
+		kinect.close();
+
+		System.out.println(frames + " calls over " + captured + " new depth frames allocated "
+				+ bytes + " bytes, " + bytes / (double) frames + " bytes a call");
+		if (bytes > 0 || captured == 0) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	static void frame(KinectCore kinect, int[] depth, int[] color, IntBuffer depthBuffer) {
+		kinect.getRawDepthData(depth);
+		kinect.getRawDepthData(depthBuffer);
+		kinect.getColorData(color);
+	}
+}
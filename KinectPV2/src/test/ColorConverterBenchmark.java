@@ -0,0 +1,119 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import KinectPV2.core.ColorConverter;
+
+/*
+ * Benchmark of the ColorConverter on a 1920 x 1080 BGRA frame: frames per
+ * second of every conversion for 1 thread up to the number of cores, after
+ * checking that every parallelism gives the same pixels as a single thread.
+ * The first argument sets the highest parallelism.
+ */
+public class ColorConverterBenchmark {
+
+	static final int WIDTH  = 1920;
+	static final int HEIGHT = 1080;
+	static final int WARMUP = 50;
+	static final int FRAMES = 200;
+
+	public static void main(String[] args) {
+		int cores = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		ByteBuffer frame = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+		Random random = new Random(1);
+		for (int i = 0; i < WIDTH * HEIGHT * 4; i++)
+			frame.put(i, (byte) random.nextInt(256));
+
+		int[] argb = new int[WIDTH * HEIGHT];
+		int[] argbRef = new int[WIDTH * HEIGHT];
+		byte[] planar = new byte[WIDTH * HEIGHT * 3];
+		byte[] planarRef = new byte[WIDTH * HEIGHT * 3];
+		float[] planarFloat = new float[WIDTH * HEIGHT * 3];
+		float[] planarFloatRef = new float[WIDTH * HEIGHT * 3];
+		byte[] gray = new byte[WIDTH * HEIGHT];
+		byte[] grayRef = new byte[WIDTH * HEIGHT];
+
+		ColorConverter single = new ColorConverter(1);
+		single.bgraToArgb(frame, WIDTH, HEIGHT, argbRef);
+		single.bgraToPlanarRGB(frame, WIDTH, HEIGHT, planarRef);
+		single.bgraToPlanarRGB(frame, WIDTH, HEIGHT, planarFloatRef);
+		single.bgraToGray(frame, WIDTH, HEIGHT, grayRef);
+		single.close();
+
+		boolean ok = true;
+		System.out.println("threads       argb   planar  planar float  gray   (frames/s)");
+		for (int threads = 1; threads <= cores; threads = next(threads, cores)) {
+			ColorConverter converter = new ColorConverter(threads);
+			converter.bgraToArgb(frame, WIDTH, HEIGHT, argb);
+			converter.bgraToPlanarRGB(frame, WIDTH, HEIGHT, planar);
+			converter.bgraToPlanarRGB(frame, WIDTH, HEIGHT, planarFloat);
+			converter.bgraToGray(frame, WIDTH, HEIGHT, gray);
+			if (!Arrays.equals(argb, argbRef) || !Arrays.equals(planar, planarRef)
+					|| !Arrays.equals(planarFloat, planarFloatRef) || !Arrays.equals(gray, grayRef)) {
+				System.out.println(threads + " threads differ from a single thread");
+				ok = false;
+			}
+
+			double argbRate = 0, planarRate = 0, floatRate = 0, grayRate = 0;
+			for (int pass = 0; pass < 2; pass++) {
+				boolean measure = pass == 1;
+				int frames = measure ? FRAMES : WARMUP;
+				long t0 = System.nanoTime();
+				for (int i = 0; i < frames; i++)
+					converter.bgraToArgb(frame, WIDTH, HEIGHT, argb);
+				long t1 = System.nanoTime();
+				for (int i = 0; i < frames; i++)
+					converter.bgraToPlanarRGB(frame, WIDTH, HEIGHT, planar);
+				long t2 = System.nanoTime();
+				for (int i = 0; i < frames; i++)
+					converter.bgraToPlanarRGB(frame, WIDTH, HEIGHT, planarFloat);
+				long t3 = System.nanoTime();
+				for (int i = 0; i < frames; i++)
+					converter.bgraToGray(frame, WIDTH, HEIGHT, gray);
+				long t4 = System.nanoTime();
+				argbRate = frames / ((t1 - t0) / 1e9);
+				planarRate = frames / ((t2 - t1) / 1e9);
+				floatRate = frames / ((t3 - t2) / 1e9);
+				grayRate = frames / ((t4 - t3) / 1e9);
+			}
+			System.out.printf("%7d %10.0f %8.0f %13.0f %5.0f%n", threads, argbRate, planarRate, floatRate, grayRate);
+			converter.close();
+		}
+		if (!ok) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	// doubling the threads, the number of cores last
+	static int next(int threads, int cores) {
+		if (threads < cores && threads * 2 > cores)
+			return cores;
+		return threads * 2;
+	}
+}
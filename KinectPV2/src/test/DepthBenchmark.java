@@ -0,0 +1,127 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.nio.ShortBuffer;
+
+import KinectPV2.core.KinectCore;
+import KinectPV2.core.RawDepth;
+import KinectPV2.core.Stream;
+import KinectPV2.core.SyntheticFrameSource;
+
+/*
+ * Benchmark of the 16 bit depth path against the int per pixel one on
+ * frames of the synthetic source: copy the frame and count the pixels
+ * between 0.5 and 2 m, the pass every depth consumer makes. Compares
+ * getRawDepthData(int[]), getRawDepth16Data(short[]) and the view of
+ * getRawDepth16Buffer() read in place.
+ */
+public class DepthBenchmark {
+
+	static final int WARMUP = 2000;
+	static final int FRAMES = 5000;
+	static final int NEAR = 500;
+	static final int FAR  = 2000;
+
+	public static void main(String[] args) throws InterruptedException {
+		KinectCore kinect = new KinectCore(new SyntheticFrameSource());
+		kinect.enableDepthImg(true);
+		kinect.start();
+
+		int[] ints = new int[Stream.RAW_DEPTH.getLength()];
+		short[] shorts = new short[Stream.RAW_DEPTH_16.getLength()];
+
+		// the exchanges open on the first read, then hold the same frame in both formats
+		for (int i = 0; i < 10; i++) {
+			kinect.getRawDepthData(ints);
+			kinect.getRawDepth16Data(shorts);
+			Thread.sleep(40);
+		}
+		kinect.close();
+		long intCount = intPass(kinect, ints);
+		long shortCount = shortPass(kinect, shorts);
+		long bufferCount = bufferPass(kinect);
+		System.out.println("pixels in range int " + intCount + " short " + shortCount + " view " + bufferCount);
+
+		double intTime = 0, shortTime = 0, bufferTime = 0;
+		long sink = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			int frames = pass == 0 ? WARMUP : FRAMES;
+			long t0 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				sink += intPass(kinect, ints);
+			long t1 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				sink += shortPass(kinect, shorts);
+			long t2 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				sink += bufferPass(kinect);
+			long t3 = System.nanoTime();
+			intTime = (t1 - t0) / 1e3 / frames;
+			shortTime = (t2 - t1) / 1e3 / frames;
+			bufferTime = (t3 - t2) / 1e3 / frames;
+		}
+		System.out.printf("int[]   %7.1f us a frame, %d KB%n", intTime, ints.length * 4 / 1024);
+		System.out.printf("short[] %7.1f us a frame, %d KB%n", shortTime, shorts.length * 2 / 1024);
+		System.out.printf("view    %7.1f us a frame, no copy (%d)%n", bufferTime, sink);
+
+		if (intCount == 0 || intCount != shortCount || intCount != bufferCount) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	static long intPass(KinectCore kinect, int[] depth) {
+		kinect.getRawDepthData(depth);
+		long count = 0;
+		for (int i = 0; i < depth.length; i++) {
+			int d = depth[i];
+			if (d >= NEAR && d <= FAR)
+				count++;
+		}
+		return count;
+	}
+
+	static long shortPass(KinectCore kinect, short[] depth) {
+		kinect.getRawDepth16Data(depth);
+		long count = 0;
+		for (int i = 0; i < depth.length; i++) {
+			int d = RawDepth.millimeters(depth[i]);
+			if (d >= NEAR && d <= FAR)
+				count++;
+		}
+		return count;
+	}
+
+	static long bufferPass(KinectCore kinect) {
+		ShortBuffer depth = kinect.getRawDepth16Buffer();
+		long count = 0;
+		for (int i = 0, n = depth.limit(); i < n; i++) {
+			int d = RawDepth.millimeters(depth.get(i));
+			if (d >= NEAR && d <= FAR)
+				count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.nio.IntBuffer;
+
+import KinectPV2.core.FrameBuffer;
+import KinectPV2.core.FrameExchange;
+import KinectPV2.core.FrameInfo;
+import KinectPV2.core.Stream;
+
+/*
+ * Headless check of the Java side of the frame exchange against a pure
+ * Java producer filling the same direct buffers as the native device:
+ * every int of a frame carries the sequence number the frame is published
+ * with, so the consumer sees any torn frame. Also checks that the
+ * sequences only grow, that the counters of FrameInfo add up and that the
+ * typed views share the memory of the frame.
+ */
+public class FrameExchangeTest {
+
+	static final long RUN_NANOS = 2000000000L;
+
+	public static void main(String[] args) throws InterruptedException {
+		final FrameExchange exchange = new FrameExchange(Stream.RAW_DEPTH);
+		final int length = Stream.RAW_DEPTH.getLength();
+		final long end = System.nanoTime() + RUN_NANOS;
+		final long[] published = new long[1];
+
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				long sequence = 0;
+				while (System.nanoTime() < end) {
+					FrameBuffer frame = exchange.getWriteBuffer();
+					IntBuffer data = frame.asIntBuffer();
+					sequence++;
+					for (int i = 0; i < length; i++)
+						data.put(i, (int) sequence);
+					exchange.publish(System.nanoTime(), sequence);
+				}
+				published[0] = sequence;
+			}
+		});
+		producer.start();
+
+		long acquires = 0, torn = 0, backwards = 0, last = 0;
+		while (producer.isAlive()) {
+			FrameBuffer frame = exchange.acquire();
+			acquires++;
+			long sequence = frame.getSequence();
+			if (sequence == 0)
+				continue;
+			if (sequence < last)
+				backwards++;
+			last = sequence;
+			if (frame.getDeviceTime() != sequence)
+				torn++;
+			IntBuffer data = frame.asIntBuffer();
+			for (int i = 0; i < length; i += 97) {
+				if (data.get(i) != (int) sequence) {
+					torn++;
+					break;
+				}
+			}
+		}
+		producer.join();
+		FrameBuffer frame = exchange.acquire();
+		FrameInfo info = exchange.getFrameInfo();
+
+		boolean ok = torn == 0 && backwards == 0;
+		ok &= frame.getSequence() == published[0] && info.getSequence() == published[0];
+		ok &= info.getFramesConsumed() + info.getFramesDropped() == info.getFramesProduced();
+		System.out.println("published " + published[0] + " acquires " + acquires
+				+ " consumed " + info.getFramesConsumed() + " dropped " + info.getFramesDropped()
+				+ " torn " + torn + " backwards " + backwards);
+
+		// typed views over the same memory
+		frame.asIntBuffer().put(0, 0x01020304);
+		boolean shared = frame.getByteBuffer().getInt(0) == 0x01020304;
+		frame.asFloatBuffer().put(1, 1.5f);
+		shared &= frame.asIntBuffer().get(1) == Float.floatToIntBits(1.5f);
+		System.out.println("views share the frame " + shared);
+		ok &= shared;
+
+		// a relayed copy keeps the sequence and times
+		FrameExchange relay = new FrameExchange(Stream.RAW_DEPTH);
+		relay.publish(frame);
+		FrameBuffer copy = relay.acquire();
+		boolean relayed = copy.getSequence() == frame.getSequence()
+				&& copy.getTimestamp() == frame.getTimestamp()
+				&& copy.asIntBuffer().get(length - 1) == frame.asIntBuffer().get(length - 1);
+		System.out.println("relay keeps the frame " + relayed);
+		ok &= relayed;
+
+		if (!ok) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import KinectPV2.core.FrameBuffer;
+import KinectPV2.core.GestureEngine;
+import KinectPV2.core.GestureListener;
+import KinectPV2.core.GestureTemplate;
+import KinectPV2.core.SkeletonFrame;
+import KinectPV2.core.SkeletonProperties;
+import KinectPV2.core.Stream;
+
+/*
+ * Benchmark of the GestureEngine on 6 users x 50 templates at 30 Hz. The
+ * templates are hand trajectories of 60 frames recorded from the stream
+ * with startRecording and stopRecording. Each user then performs its own
+ * sequence of the gestures, 10 % faster or slower and with 1 cm of jitter,
+ * 15 frames of rest in between, against thresholds of 0.15. Reports the
+ * time of a frame against the 33 ms budget, the allocation on the calling
+ * thread, and how many performances were detected as the right gesture.
+ */
+public class GestureBenchmark implements SkeletonProperties {
+
+	static final int TEMPLATES = 50;
+	static final int LENGTH    = 60;
+	static final int REST      = 15;
+	static final int GESTURES  = 20;
+	static final int PASSES    = 5;
+
+	// the default threshold fires early on the nearest of 50 random gestures
+	static final float THRESHOLD = 0.15f;
+	static final float JITTER    = 0.01f;
+	static final long  FRAME_NS  = 33333333L;
+
+	// floats per joint and per body in the native skeleton streams
+	static final int RAW_JOINT = 9;
+	static final int RAW_BODY  = (JointType_Count + 1) * RAW_JOINT;
+
+	static final int[] JOINTS = { JointType_HandRight, JointType_HandLeft };
+
+	static final float[][] shapes = new float[TEMPLATES][];
+
+	// gesture performed by each body at each frame, -1 at rest or while it is performed
+	static int[][] performed;
+
+	static long sequence;
+
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		for (int g = 0; g < TEMPLATES; g++)
+			shapes[g] = new float[] { 0.1f + 0.3f * random.nextFloat(), 0.1f + 0.3f * random.nextFloat(),
+					(float) (2 * Math.PI * random.nextFloat()), 0.5f + 1.5f * random.nextFloat(),
+					0.1f + 0.2f * random.nextFloat(), (float) (2 * Math.PI * random.nextFloat()) };
+
+		GestureTemplate[] templates = record();
+		SkeletonFrame[] frames = perform(random);
+		System.out.println(TEMPLATES + " templates recorded, " + frames.length + " frames of " + BODY_COUNT
+				+ " users");
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		boolean failed = false;
+		for (int parallelism : new int[] { 1, 0 }) {
+			GestureEngine engine = new GestureEngine(JOINTS, GestureEngine.DEFAULT_WINDOW, parallelism);
+			for (GestureTemplate template : templates) {
+				template.setThreshold(THRESHOLD);
+				engine.addTemplate(template);
+			}
+			final int[] detected = new int[BODY_COUNT];
+			int performances = 0, right = 0;
+			engine.addGestureListener(new GestureListener() {
+				public void gestureDetected(int body, GestureTemplate template, float distance) {
+					detected[body] = Integer.parseInt(template.getName());
+				}
+			});
+			double time = 0;
+			long bytes = 0;
+			for (int pass = 0; pass < PASSES; pass++) {
+				long b0 = threads.getThreadAllocatedBytes(thread);
+				long t0 = System.nanoTime();
+				for (int n = 0; n < frames.length; n++) {
+					engine.update(frames[n]);
+					for (int body = 0; body < BODY_COUNT; body++) {
+						int gesture = performed[body][n];
+						if (gesture == -1)
+							continue;
+						// the last frame of a performance, the gesture should have been detected by now
+						if (pass == PASSES - 1) {
+							performances++;
+							if (detected[body] == gesture)
+								right++;
+						}
+						detected[body] = -1;
+					}
+				}
+				long t1 = System.nanoTime();
+				bytes = threads.getThreadAllocatedBytes(thread) - b0;
+				time = (t1 - t0) / 1e6 / frames.length;
+			}
+			engine.close();
+			System.out.printf("parallelism %d (%d threads): %6.3f ms a frame, %4.1f %% of 33 ms, "
+					+ "%d bytes in %d frames, %d of %d gestures detected%n", parallelism, engine.getParallelism(),
+					time, time * 3, bytes, frames.length, right, performances);
+			failed |= right < performances * 9 / 10 || time > 33;
+			if (parallelism == 1)
+				failed |= bytes != 0;
+		}
+
+		if (failed) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	// every template performed once by body 0 and recorded by the engine
+	static GestureTemplate[] record() {
+		GestureEngine engine = new GestureEngine(JOINTS, GestureEngine.DEFAULT_WINDOW, 1);
+		FrameBuffer buffer = new FrameBuffer(Stream.SKELETON_3D);
+		float[] raw = new float[JOINTSIZE];
+		SkeletonFrame frame = new SkeletonFrame(Stream.SKELETON_3D);
+		GestureTemplate[] templates = new GestureTemplate[TEMPLATES];
+		for (int g = 0; g < TEMPLATES; g++) {
+			for (int i = 0; i < REST + LENGTH; i++) {
+				if (i == REST)
+					engine.startRecording(0);
+				float s = i < REST ? 0 : (i - REST + 1) / (float) LENGTH;
+				pose(raw, 0, g, s, null);
+				for (int body = 1; body < BODY_COUNT; body++)
+					raw[body * RAW_BODY + RAW_BODY - 1] = 0;
+				next(buffer, raw, frame);
+				engine.update(frame);
+			}
+			templates[g] = engine.stopRecording(0, String.valueOf(g));
+		}
+		engine.close();
+		return templates;
+	}
+
+	// GESTURES performances of each body, ending with rest frames
+	static SkeletonFrame[] perform(Random random) {
+		int[][] lengths = new int[BODY_COUNT][GESTURES];
+		int[][] gestures = new int[BODY_COUNT][GESTURES];
+		int total = 0;
+		for (int body = 0; body < BODY_COUNT; body++) {
+			int frames = 0;
+			for (int k = 0; k < GESTURES; k++) {
+				gestures[body][k] = random.nextInt(TEMPLATES);
+				lengths[body][k] = LENGTH * 9 / 10 + random.nextInt(LENGTH / 5 + 1);
+				frames += REST + lengths[body][k];
+			}
+			total = Math.max(total, frames + REST);
+		}
+		performed = new int[BODY_COUNT][total];
+		FrameBuffer buffer = new FrameBuffer(Stream.SKELETON_3D);
+		float[] raw = new float[JOINTSIZE];
+		SkeletonFrame[] frames = new SkeletonFrame[total];
+		int[] k = new int[BODY_COUNT];
+		int[] i = new int[BODY_COUNT];
+		for (int n = 0; n < total; n++) {
+			for (int body = 0; body < BODY_COUNT; body++) {
+				performed[body][n] = -1;
+				if (k[body] == GESTURES) {
+					pose(raw, body, 0, 0, random);
+					continue;
+				}
+				int length = lengths[body][k[body]];
+				int at = i[body]++;
+				float s = at < REST ? 0 : (at - REST + 1) / (float) length;
+				pose(raw, body, gestures[body][k[body]], s, random);
+				if (at == REST + length - 1) {
+					performed[body][n] = gestures[body][k[body]];
+					k[body]++;
+					i[body] = 0;
+				}
+			}
+			frames[n] = new SkeletonFrame(Stream.SKELETON_3D);
+			next(buffer, raw, frames[n]);
+		}
+		return frames;
+	}
+
+	// a standing body with the hands at step s of a gesture, 0 at rest
+	static void pose(float[] raw, int body, int gesture, float s, Random random) {
+		int rawBody = body * RAW_BODY;
+		float x0 = body * 0.8f - 2.0f;
+		for (int joint = 0; joint < SkeletonFrame.JOINTS; joint++) {
+			int r = rawBody + joint * RAW_JOINT;
+			float x = x0, y = 0.3f, z = 2.5f;
+			if (joint == JointType_SpineBase)
+				y = 0.0f;
+			else if (joint == JointType_SpineShoulder)
+				y = 0.55f;
+			float[] shape = shapes[gesture];
+			if (joint == JointType_HandRight) {
+				float a = (float) (2 * Math.PI * shape[3] * s);
+				x += 0.3f + shape[0] * (float) Math.sin(a) * (s > 0 ? 1 : 0);
+				y += shape[1] * (float) Math.sin(a + shape[2]) * (s > 0 ? 1 : 0);
+			} else if (joint == JointType_HandLeft) {
+				x -= 0.3f;
+				y += shape[4] * (float) Math.sin(Math.PI * s + shape[5]) * (s > 0 ? 1 : 0);
+			}
+			raw[r]     = x + (random != null ? JITTER * (float) random.nextGaussian() : 0);
+			raw[r + 1] = y + (random != null ? JITTER * (float) random.nextGaussian() : 0);
+			raw[r + 2] = z + (random != null ? JITTER * (float) random.nextGaussian() : 0);
+			raw[r + 3] = 1;
+			raw[r + 7] = TrackingState_Tracked;
+		}
+		raw[rawBody + RAW_BODY - 1] = 1.0f;
+	}
+
+	static void next(FrameBuffer buffer, float[] raw, SkeletonFrame frame) {
+		for (int k = 0; k < JOINTSIZE; k++)
+			buffer.asFloatBuffer().put(k, raw[k]);
+		sequence++;
+		buffer.commit(sequence, sequence * FRAME_NS, sequence);
+		frame.update(buffer);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import KinectPV2.core.FrameBuffer;
+import KinectPV2.core.HoltFilter;
+import KinectPV2.core.JointFilter;
+import KinectPV2.core.KalmanFilter;
+import KinectPV2.core.OneEuroFilter;
+import KinectPV2.core.SkeletonFrame;
+import KinectPV2.core.SkeletonProperties;
+import KinectPV2.core.Stream;
+
+/*
+ * Benchmark of the joint filters on 6 tracked bodies x 25 joints at 30 Hz,
+ * with 1 cm of gaussian jitter, 3 cm on the inferred feet: the bodies stand
+ * still, then sway 10 cm at 0.25 Hz. Reports the time and the allocation of
+ * a frame for the One-Euro, Holt and Kalman filters, and the error of the
+ * filtered positions against the error of the raw ones.
+ */
+public class JointFilterBenchmark implements SkeletonProperties {
+
+	static final int WARMUP = 20000;
+	static final int FRAMES = 50000;
+	static final int RING   = 300;
+	static final int SETTLE = 30;
+
+	static final float JITTER          = 0.01f;
+	static final float INFERRED_JITTER = 0.03f;
+	static final long  FRAME_NS        = 33333333L;
+
+	// floats per joint and per body in the native skeleton streams
+	static final int RAW_JOINT = 9;
+	static final int RAW_BODY  = (JointType_Count + 1) * RAW_JOINT;
+
+	static final float SWAY = 0.1f;
+
+	public static void main(String[] args) {
+		float[][] stillTruth = new float[RING][BODY_COUNT * SkeletonFrame.JOINTS * 3];
+		float[][] swayTruth = new float[RING][BODY_COUNT * SkeletonFrame.JOINTS * 3];
+		SkeletonFrame[] still = frames(0, stillTruth);
+		SkeletonFrame[] frames = frames(SWAY, swayTruth);
+		double rawStill = error(still, stillTruth, null);
+		double rawSway = error(frames, swayTruth, null);
+
+		JointFilter[] filters = { new OneEuroFilter(), new HoltFilter(), new KalmanFilter() };
+		String[] names = { "One-Euro", "Holt", "Kalman" };
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		boolean failed = false;
+		System.out.printf("raw       error still %5.2f mm, swaying %5.2f mm%n", rawStill * 1000, rawSway * 1000);
+		for (int f = 0; f < filters.length; f++) {
+			JointFilter filter = filters[f];
+			double time = 0;
+			long bytes = 0;
+			for (int pass = 0; pass < 2; pass++) {
+				int count = pass == 0 ? WARMUP : FRAMES;
+				long b0 = threads.getThreadAllocatedBytes(thread);
+				long t0 = System.nanoTime();
+				for (int i = 0; i < count; i++)
+					filter.update(frames[i % RING]);
+				long t1 = System.nanoTime();
+				bytes = threads.getThreadAllocatedBytes(thread) - b0;
+				time = (t1 - t0) / 1e3 / count;
+			}
+			filter.reset();
+			double errorStill = error(still, stillTruth, filter);
+			filter.reset();
+			double errorSway = error(frames, swayTruth, filter);
+			System.out.printf("%-9s error still %5.2f mm, swaying %5.2f mm, %5.2f us a frame, %d bytes in %d frames%n",
+					names[f], errorStill * 1000, errorSway * 1000, time, bytes, FRAMES);
+			failed |= bytes != 0 || errorStill >= rawStill || errorSway >= rawSway;
+		}
+
+		if (failed) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	// a ring of frames, each with its own sequence and 33 ms apart
+	static SkeletonFrame[] frames(float amplitude, float[][] truth) {
+		Random random = new Random(1);
+		SkeletonFrame[] frames = new SkeletonFrame[RING];
+		FrameBuffer buffer = new FrameBuffer(Stream.SKELETON_3D);
+		float[] raw = new float[JOINTSIZE];
+		for (int n = 0; n < RING; n++) {
+			float t = n * FRAME_NS / 1.0E9f;
+			for (int body = 0; body < BODY_COUNT; body++) {
+				int rawBody = body * RAW_BODY;
+				for (int joint = 0; joint < SkeletonFrame.JOINTS; joint++) {
+					int r = rawBody + joint * RAW_JOINT;
+					int i = SkeletonFrame.index(body, joint) * 3;
+					boolean inferred = joint == JointType_FootLeft || joint == JointType_FootRight;
+					float jitter = inferred ? INFERRED_JITTER : JITTER;
+					for (int c = 0; c < 3; c++) {
+						float phase = 0.7f * body + 0.3f * joint + 2.1f * c;
+						truth[n][i + c] = (c == 2 ? 2.0f : 0.0f) + 0.1f * joint / SkeletonFrame.JOINTS
+								+ amplitude * (float) Math.sin(2 * Math.PI * 0.25 * t + phase);
+						raw[r + c] = truth[n][i + c] + jitter * (float) random.nextGaussian();
+					}
+					raw[r + 3] = 1;
+					raw[r + 7] = inferred ? TrackingState_Inferred : TrackingState_Tracked;
+				}
+				raw[rawBody + RAW_BODY - 1] = 1.0f;
+			}
+			for (int k = 0; k < JOINTSIZE; k++)
+				buffer.asFloatBuffer().put(k, raw[k]);
+			buffer.commit(n + 1, (n + 1) * FRAME_NS, n + 1);
+			frames[n] = new SkeletonFrame(Stream.SKELETON_3D);
+			frames[n].update(buffer);
+		}
+		return frames;
+	}
+
+	// root mean square distance to the truth over the ring, after the filter settles
+	static double error(SkeletonFrame[] frames, float[][] truth, JointFilter filter) {
+		double sum = 0;
+		long count = 0;
+		for (int n = 0; n < RING; n++) {
+			float[] positions = frames[n].getPositions();
+			if (filter != null) {
+				filter.update(frames[n]);
+				positions = filter.getFrame().getPositions();
+			}
+			if (n < SETTLE)
+				continue;
+			for (int i = 0; i < positions.length; i++) {
+				double d = positions[i] - truth[n][i];
+				sum += d * d;
+			}
+			count += positions.length / 3;
+		}
+		return Math.sqrt(sum / count);
+	}
+}
@@ -0,0 +1,150 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import KinectPV2.core.DepthCalibration;
+import KinectPV2.core.KinectCore;
+import KinectPV2.core.NormalEstimator;
+import KinectPV2.core.SyntheticFrameSource;
+
+/*
+ * Headless check of the NormalEstimator: a tilted plane and a sphere are
+ * traced along the depth rays of the synthetic source, every normal is
+ * compared with the exact one. Also checks that the normals of the
+ * KinectCore are computed once per depth frame.
+ */
+public class NormalEstimatorTest {
+
+	static final int POINTS = 512 * 424;
+
+	public static void main(String[] args) throws InterruptedException {
+		SyntheticFrameSource source = new SyntheticFrameSource();
+		source.start();
+		float[] rays = DepthCalibration.create(source).getRays();
+		source.stop();
+
+		FloatBuffer cloud = ByteBuffer.allocateDirect(POINTS * 12).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		FloatBuffer out = ByteBuffer.allocateDirect(POINTS * NormalEstimator.STRIDE * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		NormalEstimator estimator = new NormalEstimator();
+		boolean ok = true;
+
+		// plane n . p = d facing the camera, every 97th pixel without depth,
+		// corner windows may keep too few of them for a normal
+		double nx = 0.3, ny = -0.2, nz = -1;
+		double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		nx /= length;
+		ny /= length;
+		nz /= length;
+		double d = -2.0;
+		for (int i = 0; i < POINTS; i++) {
+			double rx = rays[i * 2], ry = rays[i * 2 + 1];
+			double t = i % 97 == 0 ? 0 : d / (nx * rx + ny * ry + nz);
+			put(cloud, i, rx * t, ry * t, t);
+		}
+		estimator.compute(cloud, out);
+		double max = 0;
+		int normals = 0, missing = 0;
+		for (int i = 0; i < POINTS; i++) {
+			float ax = out.get(i * 6 + 3), ay = out.get(i * 6 + 4), az = out.get(i * 6 + 5);
+			if (ax == 0 && ay == 0 && az == 0) {
+				if (cloud.get(i * 3 + 2) > 0)
+					missing++;
+				continue;
+			}
+			normals++;
+			max = Math.max(max, angle(ax * nx + ay * ny + az * nz));
+		}
+		System.out.printf("plane: %d normals, %d points with depth without one, max error %.4f deg%n",
+				normals, missing, max);
+		ok &= max < 0.1 && missing < POINTS / 1000;
+
+		// sphere of 0.5 m, no background
+		double cx = 0.2, cy = 0.1, cz = 2, r = 0.5;
+		for (int i = 0; i < POINTS; i++) {
+			double rx = rays[i * 2], ry = rays[i * 2 + 1];
+			double a = rx * rx + ry * ry + 1;
+			double b = -2 * (rx * cx + ry * cy + cz);
+			double c = cx * cx + cy * cy + cz * cz - r * r;
+			double disc = b * b - 4 * a * c;
+			double t = disc < 0 ? 0 : (-b - Math.sqrt(disc)) / (2 * a);
+			put(cloud, i, rx * t, ry * t, t);
+		}
+		estimator.setWindowRadius(2);
+		estimator.compute(cloud, out);
+		double sum = 0;
+		max = 0;
+		normals = 0;
+		for (int i = 0; i < POINTS; i++) {
+			float ax = out.get(i * 6 + 3), ay = out.get(i * 6 + 4), az = out.get(i * 6 + 5);
+			if (ax == 0 && ay == 0 && az == 0)
+				continue;
+			double gx = (out.get(i * 6) - cx) / r;
+			double gy = (out.get(i * 6 + 1) - cy) / r;
+			double gz = (out.get(i * 6 + 2) - cz) / r;
+			double error = angle(ax * gx + ay * gy + az * gz);
+			sum += error;
+			max = Math.max(max, error);
+			normals++;
+		}
+		System.out.printf("sphere: %d normals, mean error %.3f deg, max %.3f deg%n", normals, sum / normals, max);
+		ok &= normals > 0 && sum / normals < 1;
+
+		// once per frame, the acquisition stopped so the frame does not change
+		KinectCore kinect = new KinectCore(new SyntheticFrameSource());
+		kinect.enablePointCloudJava(true);
+		kinect.start();
+		for (int i = 0; i < 10; i++) {
+			kinect.getPointCloudNormals();
+			Thread.sleep(40);
+		}
+		kinect.close();
+		kinect.getPointCloudNormals();
+		long t0 = System.nanoTime();
+		for (int i = 0; i < 100; i++)
+			kinect.getPointCloudNormals();
+		double ms = (System.nanoTime() - t0) / 100 / 1e6;
+		System.out.printf("cached normals %.3f ms a call%n", ms);
+		ok &= ms < 1;
+
+		estimator.close();
+		if (!ok) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	static void put(FloatBuffer cloud, int i, double x, double y, double z) {
+		cloud.put(i * 3, (float) x);
+		cloud.put(i * 3 + 1, (float) y);
+		cloud.put(i * 3 + 2, (float) z);
+	}
+
+	static double angle(double dot) {
+		return Math.toDegrees(Math.acos(Math.min(1, dot)));
+	}
+}
@@ -0,0 +1,182 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import KinectPV2.core.KinectCore;
+import KinectPV2.core.PointOctree;
+import KinectPV2.core.SyntheticFrameSource;
+
+/*
+ * Headless check of the PointOctree over a synthetic point cloud: the box,
+ * sphere and nearest queries against a linear search, the time of a build
+ * and the queries per second. The first argument sets the parallelism of
+ * the build, the common ForkJoinPool otherwise.
+ */
+public class PointOctreeTest {
+
+	static final int POINTS = 512 * 424;
+
+	public static void main(String[] args) throws InterruptedException {
+		FloatBuffer cloud = syntheticCloud();
+		float[] p = new float[POINTS * 3];
+		cloud.get(p);
+
+		PointOctree tree = args.length > 0 ? new PointOctree(Integer.parseInt(args[0])) : new PointOctree();
+		int count = tree.build(cloud, POINTS);
+		System.out.println("points " + count + " nodes " + tree.getNodeCount()
+				+ " parallelism " + tree.getParallelism());
+
+		int errors = checkQueries(tree, p, count);
+		System.out.println("query mismatches " + errors);
+
+		// build time, target well under 10 ms a frame
+		for (int i = 0; i < 100; i++)
+			tree.build(cloud, POINTS);
+		int runs = 200;
+		double min = Double.MAX_VALUE, sum = 0;
+		for (int i = 0; i < runs; i++) {
+			long t0 = System.nanoTime();
+			tree.build(cloud, POINTS);
+			double ms = (System.nanoTime() - t0) / 1e6;
+			min = Math.min(min, ms);
+			sum += ms;
+		}
+		System.out.printf("build min %.2f ms mean %.2f ms%n", min, sum / runs);
+
+		queryRate(tree, p);
+		tree.close();
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	// point cloud of the synthetic source, copied once it has frames
+	static FloatBuffer syntheticCloud() throws InterruptedException {
+		KinectCore kinect = new KinectCore(new SyntheticFrameSource());
+		kinect.enablePointCloudJava(true);
+		kinect.start();
+		FloatBuffer cloud = null;
+		for (int i = 0; i < 10; i++) {
+			cloud = kinect.getPointCloudDepthPos();
+			Thread.sleep(40);
+		}
+		FloatBuffer copy = ByteBuffer.allocateDirect(POINTS * 12).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		cloud.rewind();
+		copy.put(cloud);
+		copy.rewind();
+		kinect.close();
+		return copy;
+	}
+
+	static int checkQueries(PointOctree tree, float[] p, int count) {
+		Random random = new Random(3);
+		int[] dst = new int[POINTS];
+		int[] hits = new int[POINTS];
+		int[] nearest = new int[10];
+		float[] distances = new float[10];
+		float[] all = new float[count];
+		int errors = 0;
+		for (int q = 0; q < 50; q++) {
+			float cx = (random.nextFloat() - 0.5f) * 4;
+			float cy = (random.nextFloat() - 0.5f) * 3;
+			float cz = 1 + random.nextFloat() * 3;
+			float h = random.nextFloat() * 0.8f;
+
+			int box = tree.box(cx - h, cy - h, cz - h, cx + h, cy + h, cz + h, dst);
+			int sphere = tree.sphere(cx, cy, cz, h, hits);
+			int boxRef = 0, sphereRef = 0, m = 0;
+			for (int i = 0; i < POINTS; i++) {
+				float x = p[i * 3], y = p[i * 3 + 1], z = p[i * 3 + 2];
+				if (!(z > 0))
+					continue;
+				if (x >= cx - h && x <= cx + h && y >= cy - h && y <= cy + h && z >= cz - h && z <= cz + h)
+					boxRef++;
+				float dx = x - cx, dy = y - cy, dz = z - cz;
+				float d2 = dx * dx + dy * dy + dz * dz;
+				if (d2 <= h * h)
+					sphereRef++;
+				all[m++] = (float) Math.sqrt(d2);
+			}
+			Arrays.sort(dst, 0, box);
+			for (int i = 1; i < box; i++)
+				if (dst[i] == dst[i - 1])
+					errors++;
+			if (box != boxRef || sphere != sphereRef)
+				errors++;
+
+			int k = tree.nearest(cx, cy, cz, nearest.length, nearest, distances);
+			Arrays.sort(all, 0, m);
+			for (int i = 0; i < k; i++)
+				if (Math.abs(all[i] - distances[i]) > 1e-5f)
+					errors++;
+		}
+		return errors;
+	}
+
+	static void queryRate(PointOctree tree, float[] p) {
+		Random random = new Random(5);
+		int queries = 100000;
+		float[] q = new float[queries * 3];
+		for (int i = 0; i < queries; i++) {
+			int j;
+			do {
+				j = random.nextInt(POINTS);
+			} while (!(p[j * 3 + 2] > 0));
+			q[i * 3]     = p[j * 3];
+			q[i * 3 + 1] = p[j * 3 + 1];
+			q[i * 3 + 2] = p[j * 3 + 2] + 0.01f;
+		}
+		int[] dst = new int[POINTS];
+		int[] nearest = new int[8];
+		float[] distances = new float[8];
+		long found = 0;
+		for (int rep = 0; rep < 2; rep++) {
+			long t0 = System.nanoTime();
+			for (int i = 0; i < queries; i++)
+				found += tree.nearest(q[i * 3], q[i * 3 + 1], q[i * 3 + 2], 8, nearest, distances);
+			long t1 = System.nanoTime();
+			for (int i = 0; i < queries; i++)
+				found += tree.sphere(q[i * 3], q[i * 3 + 1], q[i * 3 + 2], 0.05f, dst);
+			long t2 = System.nanoTime();
+			int linear = queries / 100;
+			for (int i = 0; i < linear; i++) {
+				float x = q[i * 3], y = q[i * 3 + 1], z = q[i * 3 + 2];
+				for (int j = 0; j < POINTS; j++) {
+					float dx = p[j * 3] - x, dy = p[j * 3 + 1] - y, dz = p[j * 3 + 2] - z;
+					if (dx * dx + dy * dy + dz * dz <= 0.0025f)
+						found++;
+				}
+			}
+			long t3 = System.nanoTime();
+			System.out.printf("nearest 8 %.0f/s, sphere 5 cm %.0f/s, linear sphere %.0f/s (%d)%n",
+					queries / ((t1 - t0) / 1e9), queries / ((t2 - t1) / 1e9),
+					linear / ((t3 - t2) / 1e9), found);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import KinectPV2.KQuaternion;
+import KinectPV2.core.SkeletonFrame;
+import processing.core.PVector;
+
+/*
+ * Benchmark of the quaternion rotations, the three local axes of 6 bodies
+ * x 25 joints a frame: the allocating rotate(), rotateInto() on a float
+ * array and the batch KQuaternion.rotate() over packed orientations as
+ * in SkeletonFrame.getOrientations(). Checks that the three agree and
+ * that the in place paths allocate nothing, with multInto and slerpInto
+ * against mult and the endpoints.
+ */
+public class QuaternionBenchmark {
+
+	static final int WARMUP = 20000;
+	static final int FRAMES = 50000;
+	static final int COUNT  = 6 * SkeletonFrame.JOINTS;
+
+	static final float[][] AXES = { { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 } };
+
+	static final float[] vector = new float[3];
+	static final float[] axis   = new float[COUNT * 3];
+
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		float[] orientations = new float[COUNT * 4];
+		KQuaternion[] quaternions = new KQuaternion[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			quaternions[i] = new KQuaternion((float) random.nextGaussian(), (float) random.nextGaussian(),
+					(float) random.nextGaussian(), (float) random.nextGaussian()).normalize();
+			orientations[i * 4]     = quaternions[i].getW();
+			orientations[i * 4 + 1] = quaternions[i].getX();
+			orientations[i * 4 + 2] = quaternions[i].getY();
+			orientations[i * 4 + 3] = quaternions[i].getZ();
+		}
+		float[] allocating = new float[COUNT * 9];
+		float[] into = new float[COUNT * 9];
+		float[] batch = new float[COUNT * 9];
+		allocatingPass(quaternions, allocating);
+		intoPass(quaternions, into);
+		batchPass(orientations, batch);
+		float rotateError = Math.max(maxError(allocating, into), maxError(allocating, batch));
+		float quaternionError = quaternionCheck();
+		System.out.println("max error rotate " + rotateError + " mult / slerp " + quaternionError);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		double allocatingTime = 0, intoTime = 0, batchTime = 0;
+		long[] allocatingBytes = new long[2];
+		long inPlaceBytes = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			int frames = pass == 0 ? WARMUP : FRAMES;
+			long b0 = threads.getThreadAllocatedBytes(thread);
+			long t0 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				allocatingPass(quaternions, allocating);
+			long t1 = System.nanoTime();
+			long b1 = threads.getThreadAllocatedBytes(thread);
+			for (int i = 0; i < frames; i++)
+				intoPass(quaternions, into);
+			long t2 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				batchPass(orientations, batch);
+			long t3 = System.nanoTime();
+			long b3 = threads.getThreadAllocatedBytes(thread);
+			allocatingTime = (t1 - t0) / 1e3 / frames;
+			intoTime = (t2 - t1) / 1e3 / frames;
+			batchTime = (t3 - t2) / 1e3 / frames;
+			allocatingBytes[pass] = (b1 - b0) / frames;
+			inPlaceBytes = b3 - b1;
+		}
+		// once compiled, escape analysis can remove the allocations of rotate() in a loop this small
+		System.out.printf("rotate()     %6.2f us a frame, %d bytes a frame warming up, %d after%n", allocatingTime,
+				allocatingBytes[0], allocatingBytes[1]);
+		System.out.printf("rotateInto() %6.2f us a frame%n", intoTime);
+		System.out.printf("batch        %6.2f us a frame, %d bytes in all the in place frames%n", batchTime,
+				inPlaceBytes);
+
+		if (rotateError > 1e-5f || quaternionError > 1e-5f || inPlaceBytes != 0) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	static void allocatingPass(KQuaternion[] quaternions, float[] out) {
+		for (int i = 0; i < COUNT; i++) {
+			for (int a = 0; a < 3; a++) {
+				PVector v = quaternions[i].rotate(AXES[a][0], AXES[a][1], AXES[a][2]);
+				int o = (a * COUNT + i) * 3;
+				out[o]     = v.x;
+				out[o + 1] = v.y;
+				out[o + 2] = v.z;
+			}
+		}
+	}
+
+	static void intoPass(KQuaternion[] quaternions, float[] out) {
+		for (int i = 0; i < COUNT; i++) {
+			for (int a = 0; a < 3; a++) {
+				quaternions[i].rotateInto(AXES[a][0], AXES[a][1], AXES[a][2], vector);
+				System.arraycopy(vector, 0, out, (a * COUNT + i) * 3, 3);
+			}
+		}
+	}
+
+	static void batchPass(float[] orientations, float[] out) {
+		for (int a = 0; a < 3; a++) {
+			KQuaternion.rotate(orientations, AXES[a][0], AXES[a][1], AXES[a][2], axis, COUNT);
+			System.arraycopy(axis, 0, out, a * COUNT * 3, COUNT * 3);
+		}
+	}
+
+	static float maxError(float[] a, float[] b) {
+		float max = 0;
+		for (int i = 0; i < a.length; i++)
+			max = Math.max(max, Math.abs(a[i] - b[i]));
+		return max;
+	}
+
+	static float quaternionCheck() {
+		KQuaternion p = new KQuaternion(1, 2, 3, 4).normalize();
+		KQuaternion q = new KQuaternion(-2, 1, 0.5f, 3).normalize();
+		KQuaternion out = new KQuaternion();
+		float max = distance(p.mult(p, q), p.multInto(q, out));
+		max = Math.max(max, distance(p, p.slerpInto(q, 0, out)));
+		KQuaternion end = p.slerpInto(q, 1, out);
+		// q and -q are the same rotation
+		max = Math.max(max, Math.min(distance(q, end), distance(q, end.set(-end.getW(), -end.getX(),
+				-end.getY(), -end.getZ()))));
+		return max;
+	}
+
+	static float distance(KQuaternion a, KQuaternion b) {
+		return Math.max(Math.max(Math.abs(a.getW() - b.getW()), Math.abs(a.getX() - b.getX())),
+				Math.max(Math.abs(a.getY() - b.getY()), Math.abs(a.getZ() - b.getZ())));
+	}
+}
@@ -0,0 +1,168 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import KinectPV2.core.DepthCalibration;
+import KinectPV2.core.FrameBuffer;
+import KinectPV2.core.KinectCore;
+import KinectPV2.core.Registration;
+import KinectPV2.core.Stream;
+import KinectPV2.core.SyntheticFrameSource;
+
+/*
+ * Benchmark of the Registration against the loop of the MapDepthToColor
+ * example, on a depth frame of the synthetic source and a generated color
+ * image, the synthetic source has no color stream. The example loop takes
+ * a fresh copy of the depth to color map every frame, as
+ * getMapDepthToColor() does, and gathers with bounds checks. Checks the
+ * nearest samples against the CoordinateMapper and the depth kept at
+ * color against the depth of the mapped pixels.
+ */
+public class RegistrationBenchmark {
+
+	static final int WARMUP = 30;
+	static final int FRAMES = 100;
+
+	static final int DEPTH = 512 * 424;
+	static final int WIDTH = 1920;
+	static final int HEIGHT = 1080;
+
+	public static void main(String[] args) throws InterruptedException {
+		KinectCore kinect = new KinectCore(new SyntheticFrameSource());
+		kinect.enablePointCloudJava(true);
+		kinect.start();
+		short[] depth = new short[Stream.RAW_DEPTH_16.getLength()];
+		// the exchanges open on the first read
+		for (int i = 0; i < 10; i++) {
+			kinect.getRawDepth16Data(depth);
+			Thread.sleep(40);
+		}
+		kinect.close();
+		DepthCalibration calibration = kinect.getDepthCalibration();
+		int low = kinect.getLowThresholdDepthPC();
+		int high = kinect.getHighThresholdDepthPC();
+
+		float[] points = kinect.getPointCloudBuilder().build(calibration, ShortBuffer.wrap(depth), low, high,
+				new float[DEPTH * 3]);
+		float[] map = calibration.getCoordinateMapper().mapCameraPointsToColorSpace(points, new float[DEPTH * 2],
+				DEPTH);
+		int[] pixels = new int[WIDTH * HEIGHT];
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = 0xff000000 | ((i % WIDTH) * 131 & 0xff) << 16 | ((i / WIDTH) & 0xff) << 8 | (i * 7 & 0xff);
+		ByteBuffer color = ByteBuffer.allocateDirect(pixels.length * 4 + FrameBuffer.TRAILER_BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		color.asIntBuffer().put(pixels);
+
+		Registration registration = new Registration();
+		registration.setMapping(calibration, ShortBuffer.wrap(depth), low, high, 1);
+
+		// nearest samples against the mapper
+		int[] nearest = registration.colorAtDepth(color, new int[DEPTH]);
+		int valid = 0, mismatch = 0;
+		for (int i = 0; i < DEPTH; i++) {
+			float x = map[i * 2], y = map[i * 2 + 1];
+			int expected = 0;
+			if (x >= 0 && y >= 0 && x < WIDTH && y < HEIGHT && !(x == 0 && y == 0)) {
+				valid++;
+				int nx = Math.min((int) (x + 0.5f), WIDTH - 1);
+				int ny = Math.min((int) (y + 0.5f), HEIGHT - 1);
+				expected = pixels[ny * WIDTH + nx];
+			}
+			if (nearest[i] != expected)
+				mismatch++;
+		}
+		// the depth kept at a color pixel is the nearest of the depth pixels mapped to it
+		int[] atColor = registration.depthAtColor(ShortBuffer.wrap(depth), new int[WIDTH * HEIGHT]);
+		int behind = 0;
+		for (int i = 0; i < DEPTH; i++) {
+			int c = registration.getColorIndex(i);
+			int d = depth[i] & 0xffff;
+			if (c >= 0 && d > 0 && (atColor[c] == 0 || atColor[c] > d))
+				behind++;
+		}
+		System.out.println("mapped depth pixels " + valid + ", nearest mismatches " + mismatch
+				+ ", depth at color behind " + behind);
+
+		int[] dst = new int[DEPTH];
+		int[] depthDst = new int[WIDTH * HEIGHT];
+		double exampleTime = 0, nearestTime = 0, bilinearTime = 0, mappingTime = 0, depthTime = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			int frames = pass == 0 ? WARMUP : FRAMES;
+			long t0 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				exampleLoop(map, pixels, dst);
+			long t1 = System.nanoTime();
+			registration.setSampling(Registration.NEAREST);
+			for (int i = 0; i < frames; i++)
+				registration.colorAtDepth(color, dst);
+			long t2 = System.nanoTime();
+			registration.setSampling(Registration.BILINEAR);
+			for (int i = 0; i < frames; i++)
+				registration.colorAtDepth(color, dst);
+			long t3 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				registration.setMapping(calibration, ShortBuffer.wrap(depth), low, high, i + 2);
+			long t4 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				registration.depthAtColor(ShortBuffer.wrap(depth), depthDst);
+			long t5 = System.nanoTime();
+			exampleTime = (t1 - t0) / 1e6 / frames;
+			nearestTime = (t2 - t1) / 1e6 / frames;
+			bilinearTime = (t3 - t2) / 1e6 / frames;
+			mappingTime = (t4 - t3) / 1e6 / frames;
+			depthTime = (t5 - t4) / 1e6 / frames;
+		}
+		System.out.printf("%d threads%n", registration.getParallelism());
+		System.out.printf("example loop   %6.2f ms a frame%n", exampleTime);
+		System.out.printf("nearest        %6.2f ms a frame%n", nearestTime);
+		System.out.printf("bilinear       %6.2f ms a frame%n", bilinearTime);
+		System.out.printf("new mapping    %6.2f ms, only when the depth frame changes%n", mappingTime);
+		System.out.printf("depth at color %6.2f ms a frame%n", depthTime);
+		registration.close();
+
+		if (valid == 0 || mismatch != 0 || behind != 0) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	// the loop of the MapDepthToColor example
+	static void exampleLoop(float[] map, int[] color, int[] dst) {
+		float[] mapDCT = map.clone();
+		for (int i = 0; i < DEPTH; i++) {
+			float x = mapDCT[i * 2];
+			float y = mapDCT[i * 2 + 1];
+			int px = (int) x;
+			int py = (int) y;
+			if (px >= 0 && px < WIDTH && py >= 0 && py < HEIGHT)
+				dst[i] = color[py * WIDTH + px];
+			else
+				dst[i] = 0;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import KinectPV2.KJoint;
+import KinectPV2.KinectPV2;
+import KinectPV2.Skeleton;
+import KinectPV2.core.SkeletonFrame;
+import KinectPV2.core.Stream;
+import KinectPV2.core.SyntheticFrameSource;
+import processing.core.PApplet;
+import processing.core.PVector;
+
+/*
+ * Benchmark of joint iteration over the 6 bodies of a skeleton frame of
+ * the synthetic source: the packed arrays of getSkeleton3dFrame(), the
+ * KJoint views of getSkeleton3d(), and the former layout that unpacked
+ * the float array into a new PVector and orientation array for every joint.
+ * Every pass fetches the frame and sums x + y + z of the tracked joints.
+ */
+public class SkeletonBenchmark {
+
+	static final int WARMUP = 20000;
+	static final int FRAMES = 50000;
+
+	// floats per joint and per body in the native skeleton streams
+	static final int RAW_JOINT = 9;
+	static final int RAW_BODY  = (KinectPV2.JointType_Count + 1) * RAW_JOINT;
+
+	public static void main(String[] args) throws InterruptedException {
+		SyntheticFrameSource source = new SyntheticFrameSource();
+		KinectPV2 kinect = new KinectPV2(new PApplet(), source);
+		kinect.enableSkeleton3DMap(true);
+		kinect.init();
+
+		float[] raw = new float[Stream.SKELETON_3D.getLength()];
+		// the exchanges open on the first read, wait for tracked bodies
+		for (int i = 0; i < 20 && kinect.getSkeleton3dFrame().getTrackedCount() == 0; i++) {
+			kinect.getSkeleton3d();
+			kinect.getFrameData(Stream.SKELETON_3D, raw);
+			Thread.sleep(40);
+		}
+		kinect.close();
+
+		double frameSum = framePass(kinect);
+		double viewSum = viewPass(kinect);
+		double objectSum = objectPass(kinect, raw);
+		int tracked = kinect.getSkeleton3dFrame().getTrackedCount();
+		System.out.println("tracked bodies " + tracked + " sum frame " + (float) frameSum + " views "
+				+ (float) viewSum + " objects " + (float) objectSum);
+
+		double frameTime = 0, viewTime = 0, objectTime = 0;
+		double sink = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			int frames = pass == 0 ? WARMUP : FRAMES;
+			long t0 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				sink += framePass(kinect);
+			long t1 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				sink += viewPass(kinect);
+			long t2 = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				sink += objectPass(kinect, raw);
+			long t3 = System.nanoTime();
+			frameTime = (t1 - t0) / 1e3 / frames;
+			viewTime = (t2 - t1) / 1e3 / frames;
+			objectTime = (t3 - t2) / 1e3 / frames;
+		}
+		int joints = tracked * SkeletonFrame.JOINTS;
+		System.out.printf("SkeletonFrame %6.2f us a frame, %5.1f M joints/s%n", frameTime, joints / frameTime);
+		System.out.printf("KJoint views  %6.2f us a frame, %5.1f M joints/s%n", viewTime, joints / viewTime);
+		System.out.printf("new objects   %6.2f us a frame, %5.1f M joints/s (%d)%n", objectTime, joints / objectTime,
+				(long) sink);
+
+		if (tracked == 0 || frameSum != viewSum || frameSum != objectSum) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	static double framePass(KinectPV2 kinect) {
+		SkeletonFrame frame = kinect.getSkeleton3dFrame();
+		float[] positions = frame.getPositions();
+		double sum = 0;
+		for (int body = 0; body < KinectPV2.BODY_COUNT; body++) {
+			if (!frame.isTracked(body))
+				continue;
+			for (int i = SkeletonFrame.index(body, 0) * 3, n = i + SkeletonFrame.JOINTS * 3; i < n; i += 3)
+				sum += positions[i] + positions[i + 1] + positions[i + 2];
+		}
+		return sum;
+	}
+
+	static double viewPass(KinectPV2 kinect) {
+		double sum = 0;
+		for (Skeleton skeleton : kinect.getSkeleton3d()) {
+			if (!skeleton.isTracked())
+				continue;
+			KJoint[] joints = skeleton.getJoints();
+			for (int j = 0; j < SkeletonFrame.JOINTS; j++)
+				sum += joints[j].getX() + joints[j].getY() + joints[j].getZ();
+		}
+		return sum;
+	}
+
+	// the unpacking of the former Skeleton.createSkeletonData
+	static double objectPass(KinectPV2 kinect, float[] raw) {
+		kinect.getFrameData(Stream.SKELETON_3D, raw);
+		double sum = 0;
+		for (int body = 0; body < KinectPV2.BODY_COUNT; body++) {
+			int rawBody = body * RAW_BODY;
+			if (raw[rawBody + RAW_BODY - 1] != 1.0f)
+				continue;
+			PVector[] positions = new PVector[SkeletonFrame.JOINTS];
+			float[][] orientations = new float[SkeletonFrame.JOINTS][];
+			for (int j = 0; j < SkeletonFrame.JOINTS; j++) {
+				int r = rawBody + j * RAW_JOINT;
+				positions[j] = new PVector(raw[r], raw[r + 1], raw[r + 2]);
+				orientations[j] = new float[] { raw[r + 3], raw[r + 4], raw[r + 5], raw[r + 6] };
+			}
+			for (int j = 0; j < SkeletonFrame.JOINTS; j++)
+				sum += positions[j].x + positions[j].y + positions[j].z;
+		}
+		return sum;
+	}
+}
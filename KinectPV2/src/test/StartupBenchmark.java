@@ -0,0 +1,122 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import KinectPV2.KinectPV2;
+import KinectPV2.Skeleton;
+import KinectPV2.core.KinectCore;
+import KinectPV2.core.Stream;
+import KinectPV2.core.SyntheticFrameSource;
+import processing.core.PApplet;
+
+/*
+ * Startup benchmark of the headless KinectCore against the KinectPV2
+ * adapter: every run is a fresh JVM reading the synthetic source, timed
+ * from the start of the JVM to the first skeleton frame, with the classes
+ * loaded and the heap used by then. Run without arguments, the children
+ * are started with "core" or "processing".
+ */
+public class StartupBenchmark {
+
+	static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			child(args[0]);
+			return;
+		}
+		for (String mode : new String[] { "core", "processing" }) {
+			double[] ms = new double[RUNS];
+			String last = null;
+			for (int i = 0; i < RUNS; i++) {
+				last = run(mode);
+				ms[i] = Double.parseDouble(last.split(" ")[0]);
+			}
+			Arrays.sort(ms);
+			String[] fields = last.split(" ");
+			System.out.printf("%-10s median %6.1f ms to the first skeleton, %s classes, %s KB heap%n",
+					mode, ms[RUNS / 2], fields[1], fields[2]);
+		}
+	}
+
+	// a child JVM on the same class path, its result line
+	static String run(String mode) throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				StartupBenchmark.class.getName(), mode).redirectErrorStream(true).start();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		String line, result = null;
+		while ((line = reader.readLine()) != null)
+			if (line.startsWith("RESULT "))
+				result = line.substring(7);
+		process.waitFor();
+		if (result == null)
+			throw new IllegalStateException(mode + " run failed");
+		return result;
+	}
+
+	static void child(String mode) throws InterruptedException {
+		if (mode.equals("core")) {
+			KinectCore kinect = new KinectCore(new SyntheticFrameSource());
+			kinect.enableSkeleton3DMap(true);
+			kinect.start();
+			float[] joints = new float[Stream.SKELETON_3D.getLength()];
+			kinect.getFrameData(Stream.SKELETON_3D, joints);
+			while (kinect.getFrameInfo(Stream.SKELETON_3D).getSequence() == 0) {
+				Thread.sleep(1);
+				kinect.getFrameData(Stream.SKELETON_3D, joints);
+			}
+			report();
+			kinect.close();
+		} else {
+			KinectPV2 kinect = new KinectPV2(new PApplet(), new SyntheticFrameSource());
+			kinect.enableSkeleton3DMap(true);
+			kinect.init();
+			Skeleton[] skeletons = kinect.getSkeleton3d();
+			while (kinect.getFrameInfo(Stream.SKELETON_3D).getSequence() == 0) {
+				Thread.sleep(1);
+				skeletons = kinect.getSkeleton3d();
+			}
+			report();
+			System.out.println(skeletons.length + " skeletons");
+			kinect.close();
+		}
+		System.exit(0);
+	}
+
+	static void report() {
+		long ms = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		int classes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+		Runtime runtime = Runtime.getRuntime();
+		long heap = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+		System.out.println("RESULT " + ms + " " + classes + " " + heap);
+	}
+}
@@ -0,0 +1,167 @@
+/*
+Copyright (C) 2014  Thomas Sanchez Lengeling.
+ KinectPV2, Kinect for Windows v2 library for processing
+ 
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+ 
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+ 
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package test;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import KinectPV2.core.KinectCore;
+import KinectPV2.core.SyntheticFrameSource;
+import KinectPV2.core.VoxelGrid;
+
+/*
+ * Benchmark of the VoxelGrid on the 512 x 424 point cloud of the synthetic
+ * source at several voxel sizes, with and without colors, on the calling
+ * thread and on the common pool. Checks the centroids and the average
+ * colors against a HashMap of the cells.
+ */
+public class VoxelGridBenchmark {
+
+	static final int WARMUP = 30;
+	static final int FRAMES = 100;
+	static final int POINTS = 512 * 424;
+
+	static final float[] SIZES = { 0.01f, 0.02f, 0.05f, 0.1f };
+
+	public static void main(String[] args) throws InterruptedException {
+		KinectCore kinect = new KinectCore(new SyntheticFrameSource());
+		kinect.enablePointCloudJava(true);
+		kinect.start();
+		FloatBuffer cloud = null;
+		// the exchanges open on the first read
+		for (int i = 0; i < 10; i++) {
+			cloud = kinect.getPointCloudDepthPos();
+			Thread.sleep(40);
+		}
+		float[] points = new float[POINTS * 3];
+		cloud.rewind();
+		cloud.get(points);
+		kinect.close();
+		FloatBuffer src = FloatBuffer.wrap(points);
+		// every third point without a color
+		int[] colors = new int[POINTS];
+		for (int i = 0; i < POINTS; i++)
+			colors[i] = i % 3 == 0 ? 0 : 0xff000000 | (i & 0xff) << 16 | ((i >> 8) & 0xff) << 8 | 50;
+
+		VoxelGrid single = new VoxelGrid(1);
+		VoxelGrid common = new VoxelGrid();
+		boolean failed = false;
+		for (float size : SIZES) {
+			single.setVoxelSize(size);
+			common.setVoxelSize(size);
+			int voxels = single.filter(src, colors, POINTS);
+			int wrong = check(single, points, colors, size);
+			common.filter(src, colors, POINTS);
+			wrong += check(common, points, colors, size);
+
+			double singleTime = 0, colorTime = 0, commonTime = 0;
+			for (int pass = 0; pass < 2; pass++) {
+				int frames = pass == 0 ? WARMUP : FRAMES;
+				long t0 = System.nanoTime();
+				for (int i = 0; i < frames; i++)
+					single.filter(src, POINTS);
+				long t1 = System.nanoTime();
+				for (int i = 0; i < frames; i++)
+					single.filter(src, colors, POINTS);
+				long t2 = System.nanoTime();
+				for (int i = 0; i < frames; i++)
+					common.filter(src, colors, POINTS);
+				long t3 = System.nanoTime();
+				singleTime = (t1 - t0) / 1e6 / frames;
+				colorTime = (t2 - t1) / 1e6 / frames;
+				commonTime = (t3 - t2) / 1e6 / frames;
+			}
+			System.out.printf("%3.0f mm: %6d voxels, %d wrong, %5.2f ms, %5.2f ms with colors, "
+					+ "%5.2f ms with colors on %d threads%n", size * 1000, voxels, wrong, singleTime, colorTime,
+					commonTime, common.getParallelism());
+			failed |= voxels == 0 || wrong != 0 || colorTime > 33 || commonTime > 33;
+		}
+		single.close();
+		common.close();
+
+		if (failed) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	// voxels whose centroid or color differs from the cells of a HashMap, or missing voxels
+	static int check(VoxelGrid grid, float[] points, int[] colors, float size) {
+		Map<Long, double[]> cells = new HashMap<Long, double[]>();
+		for (int i = 0; i < POINTS; i++) {
+			if (!(points[i * 3 + 2] > 0))
+				continue;
+			double[] cell = cells.get(key(points[i * 3], points[i * 3 + 1], points[i * 3 + 2], size));
+			if (cell == null) {
+				cell = new double[6];
+				cells.put(key(points[i * 3], points[i * 3 + 1], points[i * 3 + 2], size), cell);
+			}
+			cell[0] += points[i * 3];
+			cell[1] += points[i * 3 + 1];
+			cell[2] += points[i * 3 + 2];
+			cell[3]++;
+			if (colors[i] != 0) {
+				cell[4] += (colors[i] >> 8) & 0xff;
+				cell[5]++;
+			}
+		}
+		FloatBuffer centroids = grid.getPoints();
+		int[] averages = grid.getColors();
+		int wrong = cells.size() - grid.getVoxelCount();
+		for (int v = 0; v < grid.getVoxelCount(); v++) {
+			float x = centroids.get(v * 3), y = centroids.get(v * 3 + 1), z = centroids.get(v * 3 + 2);
+			double[] cell = find(cells, x, y, z, size);
+			if (cell == null) {
+				wrong++;
+				continue;
+			}
+			int green = (averages[v] >> 8) & 0xff;
+			if (cell[5] == 0 ? averages[v] != 0 : Math.abs(cell[4] / cell[5] - green) > 1)
+				wrong++;
+		}
+		return wrong;
+	}
+
+	// cell of a centroid, a centroid of points on the border of a cell can round just outside of it
+	static double[] find(Map<Long, double[]> cells, float x, float y, float z, float size) {
+		for (int i = 0; i < 27; i++) {
+			double[] cell = cells.get(key(x + (i % 3 - 1) * 1e-4f, y + (i / 3 % 3 - 1) * 1e-4f,
+					z + (i / 9 - 1) * 1e-4f, size));
+			if (cell != null && Math.abs(cell[0] / cell[3] - x) <= 1e-4 && Math.abs(cell[1] / cell[3] - y) <= 1e-4
+					&& Math.abs(cell[2] / cell[3] - z) <= 1e-4)
+				return cell;
+		}
+		return null;
+	}
+
+	// cell of a point, with the float arithmetic of the grid
+	static long key(float x, float y, float z, float size) {
+		float inv = 1.0f / size;
+		long cx = (long) Math.floor(x * inv);
+		long cy = (long) Math.floor(y * inv);
+		long cz = (long) Math.floor(z * inv);
+		return (cx * 1000003L + cy) * 1000003L + cz;
+	}
+}